@@ -0,0 +1,90 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the inline rolls of macro bodies shaped like those of common frameworks, with
+ * and without the cache in {@link MapToolLineParser#getInlineRolls(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InlineRollBenchmark {
+  /** A library function that checks its arguments and updates a token. */
+  private static final String LIBRARY_FUNCTION =
+      """
+      [h: id = arg(0)]
+      [h: amount = arg(1)]
+      [h, if(!isNumber(amount)): assert(0, "Amount must be a number", 0)]
+      [h: hp = getProperty("HP", id)]
+      [h: hp = max(0, min(getProperty("MaxHP", id), hp - amount))]
+      [h: setProperty("HP", hp, id)]
+      [h, if(hp == 0): setState("Dead", 1, id); setState("Dead", 0, id)]
+      [h: macro.return = json.set("{}", "id", id, "hp", hp)]
+      """;
+
+  /** A macro that builds an HTML table of the selected tokens. */
+  private static final String REPORT_MACRO =
+      """
+      [h: tokens = getSelected("json")]
+      <table>
+      [r, foreach(id, tokens, ""), code: {
+        [h: name = getName(id)]
+        [h: hp = getProperty("HP", id)]
+        <tr><td>[r: name]</td><td>[r: hp] / [r: getProperty("MaxHP", id)]</td>
+        <td>[r, if(getState("Dead", id)): "dead"; "alive"]</td></tr>
+      }]
+      </table>
+      [h, count(3): total = total + 1d6]
+      {total}
+      """;
+
+  @Param({"library", "report"})
+  public String macro;
+
+  private String body;
+
+  @Setup
+  public void setUp() {
+    body = "library".equals(macro) ? LIBRARY_FUNCTION : REPORT_MACRO;
+  }
+
+  @Benchmark
+  public List<?> locate() {
+    return MapToolLineParser.locateInlineRolls(body);
+  }
+
+  @Benchmark
+  public List<?> cached() {
+    return MapToolLineParser.getInlineRolls(body);
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.walker.WalkerMetric;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.HexGridHorizontal;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.ZonePoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the A* search of the walkers with the boxed search they used before: a priority queue,
+ * hash map and hash set of {@link AStarCellPoint}s, with new nodes and a new neighbor list for
+ * every expansion.
+ *
+ * <p>The map is a {@code mapCells} square with walls of blocking terrain that force a winding path
+ * from one corner to the other. Diagonals cost the same as other moves, so that both searches use
+ * the same costs. Run with {@code -prof gc} to compare allocation rates.
+ *
+ * <p>The drag benchmarks move the goal one cell at a time, as when a token is dragged, to compare
+ * continuing the previous search with starting over. The hierarchical benchmark first finds a
+ * coarse route through a {@link ClusterGraph}, which is built once and then reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AStarBenchmark {
+  @Param({"square", "hex"})
+  public String gridType;
+
+  @Param({"300", "600"})
+  public int mapCells;
+
+  private AbstractAStarWalker walker;
+  private AbstractAStarWalker hierarchicalWalker;
+  private Set<CellPoint> blockedCells;
+  private CellPoint start;
+  private CellPoint goal;
+
+  @Setup
+  public void setUp() {
+    var zone = new Zone();
+    Grid grid = "hex".equals(gridType) ? new HexGridHorizontal() : new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+
+    // Walls every 50 cells, with the gap alternating between the top and the bottom.
+    blockedCells = new HashSet<>();
+    for (int wallX = 50; wallX < mapCells; wallX += 50) {
+      boolean gapAtTop = (wallX / 50) % 2 == 0;
+      for (int y = 0; y < mapCells; y++) {
+        if (gapAtTop ? y < 5 : y >= mapCells - 5) {
+          continue;
+        }
+        var cell = new CellPoint(wallX, y);
+        ZonePoint zp = grid.convert(cell);
+        var token = new Token();
+        token.setX(zp.x);
+        token.setY(zp.y);
+        token.setTerrainModifierOperation(TerrainModifierOperation.BLOCK);
+        zone.putToken(token);
+        blockedCells.addAll(token.getOccupiedCells(grid));
+      }
+    }
+
+    walker = createWalker(zone);
+    walker.setHierarchicalMinCells(Integer.MAX_VALUE);
+    hierarchicalWalker = createWalker(zone);
+    hierarchicalWalker.setHierarchicalMinCells(0);
+
+    start = new CellPoint(0, 0);
+    goal = new CellPoint(mapCells - 1, mapCells - 1);
+  }
+
+  private AbstractAStarWalker createWalker(Zone zone) {
+    AbstractAStarWalker created =
+        "hex".equals(gridType)
+            ? new AStarHorizHexEuclideanWalker(zone)
+            : new AStarSquareEuclideanWalker(zone, WalkerMetric.ONE_ONE_ONE);
+    // There are no waypoints yet, so this only sets the movement options.
+    created.replaceLastWaypoint(
+        new CellPoint(0, 0), true, Set.of(TerrainModifierOperation.NONE), null);
+    return created;
+  }
+
+  @Benchmark
+  public List<CellPoint> primitive() {
+    walker.resetSearch();
+    return walker.findPath(new CellPoint(start.x, start.y), goal, 60_000);
+  }
+
+  /** Searches only the clusters along a coarse route through the cluster graph. */
+  @Benchmark
+  public List<CellPoint> hierarchical() {
+    hierarchicalWalker.resetSearch();
+    return hierarchicalWalker.findPath(new CellPoint(start.x, start.y), goal, 60_000);
+  }
+
+  /** Drags the goal along ten cells, continuing the search from one goal to the next. */
+  @Benchmark
+  public List<CellPoint> dragContinued() {
+    return drag(false);
+  }
+
+  /** Drags the goal along ten cells, searching afresh for each goal. */
+  @Benchmark
+  public List<CellPoint> dragFromScratch() {
+    return drag(true);
+  }
+
+  @Benchmark
+  public List<CellPoint> boxed() {
+    return boxedPath(new CellPoint(start.x, start.y), goal);
+  }
+
+  private List<CellPoint> drag(boolean fromScratch) {
+    walker.resetSearch();
+    List<CellPoint> path = null;
+    for (int i = 0; i < 10; i++) {
+      if (fromScratch) {
+        walker.resetSearch();
+      }
+      path =
+          walker.findPath(
+              new CellPoint(start.x, start.y), new CellPoint(goal.x - i, goal.y), 60_000);
+    }
+    return path;
+  }
+
+  /** The search loop of the walkers before they used {@link AStarNodes}. */
+  private List<CellPoint> boxedPath(CellPoint start, CellPoint goal) {
+    walker.crossX = start.x - goal.x;
+    walker.crossY = start.y - goal.y;
+
+    Queue<AStarCellPoint> openList =
+        new PriorityQueue<>(Comparator.comparingDouble(AStarCellPoint::fCost));
+    Map<AStarCellPoint, AStarCellPoint> openSet = new HashMap<>();
+    Set<AStarCellPoint> closedSet = new HashSet<>();
+
+    var startNode = new AStarCellPoint(start, false);
+    openList.add(startNode);
+    openSet.put(startNode, startNode);
+
+    AStarCellPoint currentNode = null;
+    while (!openList.isEmpty()) {
+      currentNode = openList.remove();
+      openSet.remove(currentNode);
+      if (currentNode.position.equals(goal)) {
+        break;
+      }
+
+      for (AStarCellPoint neighbor : boxedNeighbors(currentNode, closedSet)) {
+        neighbor.h = walker.hScore(neighbor.position.x, neighbor.position.y, false, goal);
+        AStarCellPoint oldNode = openSet.get(neighbor);
+        if (oldNode != null) {
+          if (neighbor.g < oldNode.g) {
+            openList.remove(oldNode);
+            oldNode.replaceG(neighbor);
+            oldNode.parent = currentNode;
+            openList.add(oldNode);
+          }
+          continue;
+        }
+        openList.add(neighbor);
+        openSet.put(neighbor, neighbor);
+      }
+
+      closedSet.add(currentNode);
+      currentNode = null;
+    }
+
+    List<CellPoint> path = new LinkedList<>();
+    while (currentNode != null) {
+      path.add(currentNode.position);
+      currentNode = currentNode.parent;
+    }
+    return path;
+  }
+
+  private List<AStarCellPoint> boxedNeighbors(AStarCellPoint node, Set<AStarCellPoint> closedSet) {
+    List<AStarCellPoint> neighbors = new ArrayList<>();
+    for (int[] neighborArray : walker.getNeighborMap(node.position.x, node.position.y)) {
+      double diagonalMultiplier = walker.getDiagonalMultiplier(neighborArray);
+      var neighbor =
+          new AStarCellPoint(
+              node.position.x + neighborArray[0], node.position.y + neighborArray[1], false);
+      if (closedSet.contains(neighbor)) {
+        continue;
+      }
+      if (blockedCells.contains(neighbor.position)) {
+        closedSet.add(neighbor);
+        continue;
+      }
+      neighbor.parent = node;
+      neighbor.g = node.g + Math.ceil(diagonalMultiplier);
+      neighbor.position.distanceTraveled = neighbor.g;
+      neighbors.add(neighbor);
+    }
+    return neighbors;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.TokenFootprint;
+import net.rptools.maptool.model.Zone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the movement checks A* makes along a long path across a large map with scattered MBL,
+ * both the first time ({@code cold}) and once the passability grid has been filled ({@code warm}).
+ *
+ * <p>The walker itself needs a running client, so this drives the {@link PassabilityGrid} with the
+ * same queries the walker makes for each expanded cell.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PassabilityBenchmark {
+  private static final int[][] DIRECTIONS = {
+    {0, -1}, {1, 0}, {0, 1}, {-1, 0}, {1, -1}, {1, 1}, {-1, 1}, {-1, -1}
+  };
+
+  @Param({"300"})
+  public int mapCells;
+
+  @Param({"500"})
+  public int obstacles;
+
+  private Grid grid;
+  private MovementBlockingTopology topology;
+  private TokenFootprint footprint;
+  private PassabilityGrid warmGrid;
+
+  @Setup
+  public void setUp() {
+    var zone = new Zone();
+    grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+
+    var random = new Random(42);
+    var mbl = new Area();
+    for (int i = 0; i < obstacles; i++) {
+      int x = random.nextInt(mapCells) * 50;
+      int y = random.nextInt(mapCells) * 50;
+      mbl.add(new Area(new Rectangle(x, y, 10 + random.nextInt(200), 10 + random.nextInt(200))));
+    }
+    zone.updateMaskTopology(mbl, false, Zone.TopologyType.MBL);
+
+    topology =
+        new MovementBlockingTopology(
+            zone.getWalls(), zone.getMasks(EnumSet.of(Zone.TopologyType.MBL), null));
+    footprint = grid.getDefaultFootprint();
+    warmGrid = new PassabilityGrid(grid, topology);
+    walkDiagonal(warmGrid, null);
+  }
+
+  @Benchmark
+  public void cold(Blackhole blackhole) {
+    walkDiagonal(new PassabilityGrid(grid, topology), blackhole);
+  }
+
+  @Benchmark
+  public void warm(Blackhole blackhole) {
+    walkDiagonal(warmGrid, blackhole);
+  }
+
+  /** Checks every neighbour of every cell on a band along the diagonal of the map. */
+  private void walkDiagonal(PassabilityGrid passability, Blackhole blackhole) {
+    for (int i = 0; i < mapCells; i++) {
+      for (int band = -2; band <= 2; band++) {
+        int x = i + band;
+        int y = i;
+        for (int[] direction : DIRECTIONS) {
+          boolean blocked =
+              passability.isPositionBlocked(footprint, x + direction[0], y + direction[1])
+                  || passability.isMoveBlocked(x, y, direction[0], direction[1]);
+          if (blackhole != null) {
+            blackhole.consume(blocked);
+          }
+        }
+      }
+    }
+  }
+}
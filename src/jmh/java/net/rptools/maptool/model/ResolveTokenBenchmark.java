@@ -0,0 +1,87 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures {@link Zone#resolveToken(String)} on a zone with many tokens. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveTokenBenchmark {
+  @Param({"5000"})
+  public int tokenCount;
+
+  private Zone zone;
+  private String lastName;
+  private String lastGMName;
+  private String lastId;
+
+  @Setup
+  public void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+
+    for (int i = 0; i < tokenCount; i++) {
+      Token token = new Token();
+      token.setName("Goblin " + i);
+      token.setGMName("G" + i);
+      token.setX((i % 100) * 50);
+      token.setY((i / 100) * 50);
+      token.setZOrder(i);
+      zone.putToken(token);
+    }
+    Token last = zone.getAllTokens().get(tokenCount - 1);
+    lastName = last.getName().toUpperCase();
+    lastGMName = last.getGMName().toLowerCase();
+    lastId = last.getId().toString();
+  }
+
+  @Benchmark
+  public Token resolveByName() {
+    return zone.resolveToken(lastName);
+  }
+
+  @Benchmark
+  public Token resolveByGMName() {
+    return zone.resolveToken(lastGMName);
+  }
+
+  @Benchmark
+  public Token resolveById() {
+    return zone.resolveToken(lastId);
+  }
+
+  @Benchmark
+  public Token resolveMissing() {
+    return zone.resolveToken("Nobody");
+  }
+}
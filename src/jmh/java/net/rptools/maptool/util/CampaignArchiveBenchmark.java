@@ -0,0 +1,130 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.util.CampaignArchive.ZoneFormat;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing and reading the zones of a large campaign with each {@link ZoneFormat}, and
+ * saving again after changing one zone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CampaignArchiveBenchmark {
+  @Param({"XML", "PROTOBUF"})
+  public ZoneFormat zoneFormat;
+
+  @Param({"20"})
+  public int zoneCount;
+
+  @Param({"500"})
+  public int tokensPerZone;
+
+  private File dir;
+  private PersistedCampaign persistedCampaign;
+  private Zone changingZone;
+  private File saved;
+  private File target;
+
+  @Setup
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("campaign-benchmark").toFile();
+
+    var campaign = new Campaign();
+    for (int z = 0; z < zoneCount; z++) {
+      var zone = new Zone();
+      Grid grid = new SquareGrid();
+      grid.setSize(50);
+      zone.setGrid(grid);
+      zone.setName("Map " + z);
+      for (int i = 0; i < tokensPerZone; i++) {
+        Token token = new Token();
+        token.setName("Goblin " + i);
+        token.setX((i % 100) * 50);
+        token.setY((i / 100) * 50);
+        token.setProperty("HP", Integer.toString(i));
+        zone.putToken(token);
+      }
+      campaign.putZone(zone);
+    }
+    changingZone = campaign.getZones().get(0);
+    persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = campaign;
+
+    saved = new File(dir, "saved.cmpgn");
+    target = new File(dir, "target.cmpgn");
+    write(saved, null);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private void write(File file, File previous) throws IOException {
+    try (var archive = new CampaignArchive.Writer(file, previous, zoneFormat)) {
+      archive.putCampaign(persistedCampaign, Map.of());
+    }
+  }
+
+  @Benchmark
+  public long save() throws IOException {
+    write(target, null);
+    return target.length();
+  }
+
+  @Benchmark
+  public long saveOneZoneChanged() throws IOException {
+    changingZone.setName(changingZone.getName());
+    write(target, saved);
+    return target.length();
+  }
+
+  @Benchmark
+  public PersistedCampaign load() throws IOException {
+    try (var pakFile = new PackedFile(saved)) {
+      return CampaignArchive.read(pakFile, "1.15.0");
+    }
+  }
+}
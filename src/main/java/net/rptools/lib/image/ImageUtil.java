@@ -19,6 +19,8 @@
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.MediaTracker;
 import java.awt.Transparency;
@@ -151,7 +153,46 @@ public static BufferedImage createCompatibleImage(
       transparency = pickBestTransparency(img);
     }
     BufferedImage compImg = new BufferedImage(width, height, transparency);
+    drawInto(compImg, img, width, height);
+    return compImg;
+  }
+
+  /**
+   * Create a copy of the image in the pixel layout of the default screen, so that Java2D can cache
+   * it in video memory and draw it without per-frame format conversion. Falls back to {@link
+   * #createCompatibleImage(Image, Map)} when running headless.
+   *
+   * @param img the image to copy
+   * @param hints a {@link Map} that may contain the key HINT_TRANSPARENCY to define a the
+   *     transparency color
+   * @return a {@link BufferedImage} with a copy of img
+   */
+  public static BufferedImage createDisplayCompatibleImage(Image img, Map<String, Object> hints) {
+    if (img == null) {
+      return null;
+    }
+    if (GraphicsEnvironment.isHeadless()) {
+      return createCompatibleImage(img, hints);
+    }
+    int width = Math.max(img.getWidth(null), 1);
+    int height = Math.max(img.getHeight(null), 1);
+
+    int transparency;
+    if (hints != null && hints.containsKey(HINT_TRANSPARENCY)) {
+      transparency = (Integer) hints.get(HINT_TRANSPARENCY);
+    } else {
+      transparency = pickBestTransparency(img);
+    }
+    GraphicsConfiguration config =
+        GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice()
+            .getDefaultConfiguration();
+    BufferedImage compImg = config.createCompatibleImage(width, height, transparency);
+    drawInto(compImg, img, width, height);
+    return compImg;
+  }
 
+  private static void drawInto(BufferedImage compImg, Image img, int width, int height) {
     Graphics2D g = null;
     try {
       g = compImg.createGraphics();
@@ -162,7 +203,6 @@ public static BufferedImage createCompatibleImage(
         g.dispose();
       }
     }
-    return compImg;
   }
 
   /**
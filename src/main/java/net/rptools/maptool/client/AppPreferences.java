@@ -143,6 +143,13 @@ public class AppPreferences {
   public static final Preference<Boolean> allowPlayerMacroEditsDefault =
       BooleanType.create("allowPlayerMacroEditsDefault", true);
 
+  /**
+   * Whether macros started from the user interface are evaluated on a worker thread, so that long
+   * macros do not freeze the client.
+   */
+  public static final Preference<Boolean> runMacrosInBackground =
+      BooleanType.create("runMacrosInBackground", false);
+
   public static final Preference<Integer> portraitSize = IntegerType.create("portraitSize", 175);
 
   public static final Preference<Integer> thumbnailSize = IntegerType.create("thumbnailSize", 500);
@@ -341,6 +348,11 @@ public class AppPreferences {
   public static final Preference<Integer> frameRateCap =
       IntegerType.create("frameRateCap", 60).validateIt(cap -> cap > 0);
 
+  public static final Preference<Integer> imageLoaderThreads =
+      IntegerType.create(
+              "imageLoaderThreads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1))
+          .validateIt(threads -> threads > 0);
+
   public static final Preference<Integer> upnpDiscoveryTimeout =
       IntegerType.create("upnpDiscoveryTimeout", 5000);
 
@@ -33,6 +33,9 @@ public class AutoSaveManager {
   private Timer autoSaveTimer;
   private long lastAutoSave = -1;
 
+  /** The campaign copy of the last autosave, whose unchanged zones the next copy can share. */
+  private Campaign lastSnapshot;
+
   public static final File AUTOSAVE_FILE =
       new File(
           AppUtil.getAppHome("autosave"), // $NON-NLS-1$
@@ -95,12 +98,11 @@ private boolean executeAndContinue() {
     // This occurs on the event dispatch thread, so it's ok to mess with the models.  (XXX Is this
     // true?  What about
     // updates coming in on the network?)
-    // We need to clone the campaign so that we can save in the background, but
-    // not have concurrency issues with the original model.
-    //
-    // NOTE: This is a cheesy way to clone the campaign, but it makes it so that I
-    // don't have to keep all the various models' clone methods updated on each change.
-    final Campaign campaign = new Campaign(MapTool.getCampaign());
+    // We need to copy the campaign so that we can save in the background, but
+    // not have concurrency issues with the original model. Only the zones that changed since the
+    // last autosave are copied; the others are shared with the last copy, which nothing changes.
+    final Campaign campaign = Campaign.snapshot(MapTool.getCampaign(), lastSnapshot);
+    lastSnapshot = campaign;
     log.info(
         "Time to copy Campaign object (ms): "
             + (System.currentTimeMillis() - startCopy)); // $NON-NLS-1$
@@ -156,6 +158,7 @@ protected void done() {
 
   /** Removes any autosaved files */
   public void purge() {
+    lastSnapshot = null;
     if (AUTOSAVE_FILE.exists()) {
       AUTOSAVE_FILE.delete();
     }
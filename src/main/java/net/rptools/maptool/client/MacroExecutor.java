@@ -0,0 +1,219 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import com.google.common.base.Suppliers;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs macros on a worker thread instead of the Swing event dispatch thread, when {@link
+ * AppPreferences#runMacrosInBackground} is set, so that long macros do not freeze the client.
+ *
+ * <p>Only the evaluation of the macro runs on the worker. Every step that reads or changes the
+ * campaign or the user interface, such as calling a MapTool function, reading a token variable or
+ * looking up a macro, is handed to the event dispatch thread with {@link #callOnEdt(EdtTask)} while
+ * the worker waits. The steps are therefore applied to the model one at a time and in the order
+ * of the macro, and the client keeps painting and handling input between them.
+ *
+ * <p>The worker runs one macro at a time. It has its own parser state, kept apart from that of the
+ * other threads with {@link MacroLocal}, so macros that the event dispatch thread runs meanwhile,
+ * such as those of frames, events and tooltips, neither wait for it nor disturb it.
+ */
+public final class MacroExecutor {
+  /**
+   * A step of a macro that runs on the event dispatch thread.
+   *
+   * @param <T> the type of the result.
+   * @param <E> the type of the exception the step can throw.
+   */
+  @FunctionalInterface
+  public interface EdtTask<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  /**
+   * State of the macros that the worker keeps apart from the other threads. Like a {@link
+   * ThreadLocal}, except that the steps the event dispatch thread runs for the worker see the state
+   * of the worker.
+   *
+   * @param <T> the type of the state.
+   */
+  public static final class MacroLocal<T> {
+    private final T shared;
+    private final Supplier<T> worker;
+
+    private MacroLocal(Supplier<T> supplier) {
+      shared = supplier.get();
+      worker = Suppliers.memoize(supplier::get);
+    }
+
+    /**
+     * @return the state of the macro running on the current thread.
+     */
+    public T get() {
+      return isRunningForWorker() ? worker.get() : shared;
+    }
+  }
+
+  private static final Logger log = LogManager.getLogger(MacroExecutor.class);
+
+  private static volatile Thread workerThread;
+
+  private static final ExecutorService worker =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            var thread = new Thread(r, "MacroExecutor");
+            thread.setDaemon(true);
+            workerThread = thread;
+            return thread;
+          });
+
+  /** Whether the event dispatch thread is running a step for the worker. Only used on the EDT. */
+  private static boolean runningForWorker;
+
+  private MacroExecutor() {}
+
+  /**
+   * Creates state of the macros that the worker keeps apart from the other threads.
+   *
+   * @param supplier creates the state, once for the worker and once for the other threads.
+   * @param <T> the type of the state.
+   * @return the state.
+   */
+  public static <T> MacroLocal<T> local(Supplier<T> supplier) {
+    return new MacroLocal<>(supplier);
+  }
+
+  /**
+   * @return {@code true} if macros started from the user interface run on the worker.
+   */
+  public static boolean isEnabled() {
+    return AppPreferences.runMacrosInBackground.get();
+  }
+
+  /**
+   * @return {@code true} if the current thread is the worker that runs macros.
+   */
+  public static boolean isWorkerThread() {
+    return Thread.currentThread() == workerThread;
+  }
+
+  /**
+   * @return {@code true} if the current thread is the worker, or the event dispatch thread running
+   *     a step for it.
+   */
+  public static boolean isRunningForWorker() {
+    return isWorkerThread() || (SwingUtilities.isEventDispatchThread() && runningForWorker);
+  }
+
+  /**
+   * Checks if a macro started on the current thread should be handed to the worker. That is the
+   * case for macros started by the user on the event dispatch thread, but not for the macros that
+   * other macros run.
+   *
+   * @return {@code true} if the macro should be run with {@link #submit(Runnable)}.
+   */
+  public static boolean shouldSubmit() {
+    return isEnabled()
+        && SwingUtilities.isEventDispatchThread()
+        && !runningForWorker
+        && MapTool.getParser().getContextStackSize() == 0;
+  }
+
+  /**
+   * Runs a macro on the worker, after the macros submitted before it.
+   *
+   * @param macro the macro to run.
+   * @return the future that completes when the macro has run.
+   */
+  public static Future<?> submit(Runnable macro) {
+    return worker.submit(
+        () -> {
+          try {
+            macro.run();
+          } catch (RuntimeException e) {
+            log.error("Error running macro in the background", e);
+          }
+        });
+  }
+
+  /**
+   * Runs a step of a macro on the event dispatch thread, and waits for it. On any other thread than
+   * the worker the step is run directly.
+   *
+   * @param task the step to run.
+   * @param <T> the type of the result.
+   * @param <E> the type of the exception the step can throw.
+   * @return the result of the step.
+   * @throws E if the step throws it.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T, E extends Exception> T callOnEdt(EdtTask<T, E> task) throws E {
+    if (!isWorkerThread()) {
+      return task.call();
+    }
+    var future =
+        new FutureTask<T>(
+            () -> {
+              boolean previous = runningForWorker;
+              runningForWorker = true;
+              try {
+                return task.call();
+              } finally {
+                runningForWorker = previous;
+              }
+            });
+    // The worker waits for each step, so the steps run in the order of the macro.
+    SwingUtilities.invokeLater(future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Interrupted while waiting for the event dispatch thread");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException re) {
+        throw re;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw (E) cause;
+    }
+  }
+
+  /**
+   * Runs a step of a macro on the event dispatch thread, and waits for it. On any other thread than
+   * the worker the step is run directly.
+   *
+   * @param task the step to run.
+   */
+  public static void runOnEdt(Runnable task) {
+    callOnEdt(
+        () -> {
+          task.run();
+          return null;
+        });
+  }
+}
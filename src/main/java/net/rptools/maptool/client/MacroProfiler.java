@@ -0,0 +1,283 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import net.rptools.maptool.client.functions.json.JsonParseCache;
+import net.rptools.maptool.util.PatternCache;
+
+/**
+ * Instrumenting profiler for MTScript. While it is enabled, every macro run, expression evaluation
+ * and function call records its call count, its time with and without the calls it makes, and an
+ * estimate of the memory it allocated.
+ *
+ * <p>Sections are entered with {@link #enter(Kind, String)} in a try-with-resources statement. When
+ * the profiler is disabled this returns a shared section that does nothing, so the instrumentation
+ * costs one volatile read.
+ */
+public final class MacroProfiler {
+  /** What a profiled section runs. */
+  public enum Kind {
+    MACRO("macro"),
+    EXPRESSION("expression"),
+    FUNCTION("function");
+
+    private final String label;
+
+    Kind(String label) {
+      this.label = label;
+    }
+  }
+
+  /** A profiled section of code, which is ended by closing it. */
+  public interface Section extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  /**
+   * The totals of all the calls of a macro, expression or function.
+   *
+   * @param kind what was called.
+   * @param name the name of the macro, expression or function.
+   * @param calls the number of calls.
+   * @param inclusiveNanos the time of the calls, including the calls they made.
+   * @param exclusiveNanos the time of the calls, excluding the calls they made.
+   * @param allocatedBytes the estimated memory allocated by the calls, including the calls they
+   *     made.
+   */
+  public record Entry(
+      Kind kind,
+      String name,
+      long calls,
+      long inclusiveNanos,
+      long exclusiveNanos,
+      long allocatedBytes) {}
+
+  /** The longest expression text that is used as the name of a section. */
+  private static final int MAXIMUM_EXPRESSION_LENGTH = 60;
+
+  /** The number of entries to list in the report. */
+  private static final int REPORT_ENTRIES = 50;
+
+  /** The characters that cannot be used in the frames of a folded stack. */
+  private static final Pattern FRAME_SEPARATORS = Pattern.compile("[;\\s]+");
+
+  private static final Section NOT_PROFILED = () -> {};
+
+  private static final com.sun.management.ThreadMXBean threadBean = allocationBean();
+
+  private static volatile boolean enabled;
+
+  private static final ThreadLocal<ArrayDeque<Frame>> stacks =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  private static final Map<Key, Totals> totals = new ConcurrentHashMap<>();
+
+  /** The exclusive time of each call stack, for flame graphs. */
+  private static final Map<String, LongAdder> stackNanos = new ConcurrentHashMap<>();
+
+  private record Key(Kind kind, String name) {}
+
+  private static final class Totals {
+    private long calls;
+    private long inclusiveNanos;
+    private long exclusiveNanos;
+    private long allocatedBytes;
+
+    synchronized void add(long inclusive, long exclusive, long allocated) {
+      calls++;
+      inclusiveNanos += inclusive;
+      exclusiveNanos += exclusive;
+      allocatedBytes += allocated;
+    }
+
+    synchronized Entry toEntry(Key key) {
+      return new Entry(
+          key.kind(), key.name(), calls, inclusiveNanos, exclusiveNanos, allocatedBytes);
+    }
+  }
+
+  /** A section that is running, on the stack of its thread. */
+  private static final class Frame implements Section {
+    private final Key key;
+    private final String stack;
+    private final long startNanos;
+    private final long startBytes;
+    private long childNanos;
+
+    private Frame(Key key, String stack) {
+      this.key = key;
+      this.stack = stack;
+      this.startBytes = allocatedBytes();
+      this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+      long inclusive = System.nanoTime() - startNanos;
+      long allocated = allocatedBytes() - startBytes;
+      long exclusive = inclusive - childNanos;
+
+      ArrayDeque<Frame> stack = stacks.get();
+      stack.pollLast();
+      Frame parent = stack.peekLast();
+      if (parent != null) {
+        parent.childNanos += inclusive;
+      }
+      totals.computeIfAbsent(key, k -> new Totals()).add(inclusive, exclusive, allocated);
+      stackNanos.computeIfAbsent(this.stack, k -> new LongAdder()).add(exclusive);
+    }
+  }
+
+  private MacroProfiler() {}
+
+  /**
+   * @return {@code true} if macros are being profiled.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts or stops profiling. The results collected so far are kept.
+   *
+   * @param enable {@code true} to start profiling, {@code false} to stop.
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /** Discards the results collected so far. */
+  public static void reset() {
+    totals.clear();
+    stackNanos.clear();
+  }
+
+  /**
+   * Starts a profiled section, which ends when the returned section is closed.
+   *
+   * @param kind what the section runs.
+   * @param name the name of the macro, expression or function.
+   * @return the section to close when it has finished.
+   */
+  public static Section enter(Kind kind, String name) {
+    if (!enabled) {
+      return NOT_PROFILED;
+    }
+    if (kind == Kind.EXPRESSION && name.length() > MAXIMUM_EXPRESSION_LENGTH) {
+      name = name.substring(0, MAXIMUM_EXPRESSION_LENGTH) + "...";
+    }
+    var key = new Key(kind, name);
+    ArrayDeque<Frame> stack = stacks.get();
+    Frame parent = stack.peekLast();
+    String frameName = kind.label + ":" + FRAME_SEPARATORS.matcher(name).replaceAll(" ");
+    var frame = new Frame(key, parent == null ? frameName : parent.stack + ";" + frameName);
+    stack.addLast(frame);
+    return frame;
+  }
+
+  /**
+   * Returns the totals of everything that was called while profiling, with the most exclusive time
+   * first.
+   *
+   * @return the totals of the profiled calls.
+   */
+  public static List<Entry> getEntries() {
+    List<Entry> entries = new ArrayList<>(totals.size());
+    totals.forEach((key, value) -> entries.add(value.toEntry(key)));
+    entries.sort(Comparator.comparingLong(Entry::exclusiveNanos).reversed());
+    return entries;
+  }
+
+  /**
+   * Returns a report of the calls that took most time, and of the caches that macros use.
+   *
+   * @return the report as plain text.
+   */
+  public static String getReport() {
+    var sb = new StringBuilder();
+    sb.append(
+        String.format(
+            "%10s %12s %12s %12s  %s%n", "calls", "total ms", "self ms", "alloc KB", "name"));
+    getEntries().stream()
+        .limit(REPORT_ENTRIES)
+        .forEach(
+            e ->
+                sb.append(
+                    String.format(
+                        "%10d %12.3f %12.3f %12d  %s %s%n",
+                        e.calls(),
+                        e.inclusiveNanos() / 1e6,
+                        e.exclusiveNanos() / 1e6,
+                        e.allocatedBytes() / 1024,
+                        e.kind().label,
+                        e.name())));
+    sb.append('\n');
+    appendCacheStats(sb, "Regular expressions", PatternCache.stats());
+    appendCacheStats(sb, "Parsed json", JsonParseCache.stats());
+    return sb.toString();
+  }
+
+  private static void appendCacheStats(StringBuilder sb, String name, CacheStats stats) {
+    sb.append(
+        String.format(
+            "%s: %d hits, %d misses, %.1f%% hit rate%n",
+            name, stats.hitCount(), stats.missCount(), stats.hitRate() * 100));
+  }
+
+  /**
+   * Writes the exclusive time of each call stack in microseconds, in the folded format read by
+   * flame graph tools: one line per stack, with the frames separated by semicolons and followed by
+   * the time.
+   *
+   * @param writer where to write the stacks.
+   * @throws IOException if the stacks could not be written.
+   */
+  public static void writeFlameGraph(Writer writer) throws IOException {
+    var stacks = new ArrayList<>(stackNanos.entrySet());
+    stacks.sort(Map.Entry.comparingByKey());
+    for (var entry : stacks) {
+      long micros = entry.getValue().sum() / 1000;
+      if (micros > 0) {
+        writer.write(entry.getKey() + " " + micros + "\n");
+      }
+    }
+  }
+
+  private static long allocatedBytes() {
+    return threadBean == null ? 0 : threadBean.getCurrentThreadAllocatedBytes();
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+        && bean.isThreadAllocatedMemorySupported()
+        && bean.isThreadAllocatedMemoryEnabled()) {
+      return bean;
+    }
+    return null;
+  }
+}
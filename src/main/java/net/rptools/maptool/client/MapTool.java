@@ -99,6 +99,7 @@
 import net.rptools.maptool.model.player.PlayerDatabaseFactory;
 import net.rptools.maptool.model.player.PlayerZoneListener;
 import net.rptools.maptool.model.player.ServerSidePlayerDatabase;
+import net.rptools.maptool.model.sheet.stats.StatSheetManager;
 import net.rptools.maptool.model.zones.TokensAdded;
 import net.rptools.maptool.model.zones.TokensRemoved;
 import net.rptools.maptool.model.zones.ZoneAdded;
@@ -166,7 +167,8 @@ public class MapTool {
   private static AssetTransferManager assetTransferManager;
   private static AutoSaveManager autoSaveManager;
   private static TaskBarFlasher taskbarFlasher;
-  private static MapToolLineParser parser = new MapToolLineParser();
+  private static final MacroExecutor.MacroLocal<MapToolLineParser> parser =
+      MacroExecutor.local(MapToolLineParser::new);
   private static String lastWhisperer;
   private static ChatAutoSave chatAutoSave;
 
@@ -886,8 +888,12 @@ public static Campaign getCampaign() {
     return client.getCampaign();
   }
 
+  /**
+   * @return the parser of the macro running on this thread. Macros on the {@link MacroExecutor}
+   *     worker have a parser of their own.
+   */
   public static MapToolLineParser getParser() {
-    return parser;
+    return parser.get();
   }
 
   public static void setCampaign(Campaign campaign, @Nullable GUID defaultZoneId) {
@@ -957,6 +963,12 @@ public static void setCampaign(Campaign campaign, @Nullable GUID defaultZoneId)
     MapTool.getFrame().getCampaignPanel().reset();
     MapTool.getFrame().getGmPanel().reset();
     UserDefinedMacroFunctions.getInstance().handleCampaignLoadMacroEvent();
+
+    var statSheetIds = new ArrayList<String>();
+    for (String tokenType : campaign.getTokenTypes()) {
+      statSheetIds.add(campaign.getTokenTypeDefaultSheetId(tokenType).id());
+    }
+    new StatSheetManager().precompile(statSheetIds);
   }
 
   public static AssetTransferManager getAssetTransferManager() {
@@ -1682,7 +1694,7 @@ public static void main(String[] args) {
 
     if (listMacros) {
       StringBuilder logOutput = new StringBuilder();
-      List<String> macroList = new ArrayList<>(parser.listAllMacroFunctions().keySet());
+      List<String> macroList = new ArrayList<>(getParser().listAllMacroFunctions().keySet());
       Collections.sort(macroList);
 
       for (String macro : macroList) {
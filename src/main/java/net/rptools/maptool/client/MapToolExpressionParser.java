@@ -17,16 +17,20 @@
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import net.rptools.dicelib.expression.ExpressionParser;
 import net.rptools.maptool.client.functions.*;
 import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
 import net.rptools.maptool.client.script.javascript.JSMacro;
+import net.rptools.maptool.model.PropertyEvaluation;
 import net.rptools.parser.Expression;
 import net.rptools.parser.Parser;
 import net.rptools.parser.ParserException;
+import net.rptools.parser.VariableResolver;
 import net.rptools.parser.function.Function;
+import net.rptools.parser.function.ParameterException;
 
 public class MapToolExpressionParser extends ExpressionParser {
 
@@ -134,6 +138,28 @@ protected Parser createParser() {
 
   /** Parser implementation that caches expressions in a soft value cache */
   private static class ExpressionCachingParser extends Parser {
+    /** The package of the functions built into the parser. */
+    private static final String PARSER_FUNCTION_PACKAGE = "net.rptools.parser.function.impl";
+
+    /**
+     * The MapTool functions that use nothing but their arguments, the variables and the parser, and
+     * so can run on the {@link MacroExecutor} worker. The variables and the parser hand what needs
+     * the event dispatch thread over themselves.
+     */
+    private static final Set<Class<? extends Function>> BACKGROUND_FUNCTIONS =
+        Set.of(
+            AbortFunction.class,
+            AssertFunction.class,
+            Base64Functions.class,
+            EvalMacroFunctions.class,
+            JSONMacroFunctions.class,
+            MacroArgsFunctions.class,
+            MathFunctions.class,
+            ReturnFunction.class,
+            StrListFunctions.class,
+            StrPropFunctions.class,
+            StringFunctions.class,
+            UserDefinedMacroFunctions.class);
 
     private final Cache<String, Expression> expressionCache =
         CacheBuilder.newBuilder().softValues().build();
@@ -158,6 +184,40 @@ public Expression parseExpression(String expression) throws ParserException {
      */
     @Override
     public Function getFunction(String functionName) {
+      Function function = findFunction(functionName);
+      if (PropertyEvaluation.isRecording() && !isReusable(function)) {
+        PropertyEvaluation.notReusable();
+      }
+      if (function != null && MacroExecutor.isWorkerThread() && !runsInBackground(function)) {
+        function = new EdtFunction(function);
+      }
+      if (function != null && MacroProfiler.isEnabled()) {
+        return new ProfiledFunction(function);
+      }
+      return function;
+    }
+
+    /**
+     * Checks if a token property that calls the function can be evaluated once and reused. Only
+     * the deterministic functions of the parser itself, such as the operators and math functions,
+     * depend on nothing but their arguments.
+     */
+    private static boolean isReusable(Function function) {
+      return function != null
+          && function.isDeterministic()
+          && function.getClass().getPackageName().equals(PARSER_FUNCTION_PACKAGE);
+    }
+
+    /**
+     * Checks if the function can run on the macro worker, instead of the event dispatch thread
+     * where the campaign and the user interface are changed.
+     */
+    private static boolean runsInBackground(Function function) {
+      return function.getClass().getPackageName().equals(PARSER_FUNCTION_PACKAGE)
+          || BACKGROUND_FUNCTIONS.contains(function.getClass());
+    }
+
+    private Function findFunction(String functionName) {
       // check javascript UDFs first.
       if (functionName.startsWith("js.") || functionName.startsWith("ujs.")) {
         if (JSMacro.isFunctionDefined(functionName)) {
@@ -173,4 +233,58 @@ public Function getFunction(String functionName) {
       return super.getFunction(functionName);
     }
   }
+
+  /** Function that changes how another function is called, and otherwise behaves the same. */
+  private interface WrappedFunction extends Function {
+    Function function();
+
+    @Override
+    default void checkParameters(String functionName, List<Object> parameters)
+        throws ParameterException {
+      function().checkParameters(functionName, parameters);
+    }
+
+    @Override
+    default String[] getAliases() {
+      return function().getAliases();
+    }
+
+    @Override
+    default int getMinimumParameterCount() {
+      return function().getMinimumParameterCount();
+    }
+
+    @Override
+    default int getMaximumParameterCount() {
+      return function().getMaximumParameterCount();
+    }
+
+    @Override
+    default boolean isDeterministic() {
+      return function().isDeterministic();
+    }
+  }
+
+  /** Function that records its calls in the {@link MacroProfiler}. */
+  private record ProfiledFunction(Function function) implements WrappedFunction {
+    @Override
+    public Object evaluate(
+        Parser parser, VariableResolver resolver, String functionName, List<Object> parameters)
+        throws ParserException {
+      try (var section = MacroProfiler.enter(MacroProfiler.Kind.FUNCTION, functionName)) {
+        return function.evaluate(parser, resolver, functionName, parameters);
+      }
+    }
+  }
+
+  /** Function that is called on the event dispatch thread by a macro on the worker. */
+  private record EdtFunction(Function function) implements WrappedFunction {
+    @Override
+    public Object evaluate(
+        Parser parser, VariableResolver resolver, String functionName, List<Object> parameters)
+        throws ParserException {
+      return MacroExecutor.callOnEdt(
+          () -> function.evaluate(parser, resolver, functionName, parameters));
+    }
+  }
 }
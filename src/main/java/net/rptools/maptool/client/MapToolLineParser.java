@@ -14,13 +14,14 @@
  */
 package net.rptools.maptool.client;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import net.rptools.dicelib.expression.Result;
 import net.rptools.maptool.client.functions.*;
 import net.rptools.maptool.client.functions.exceptions.*;
@@ -28,12 +29,15 @@
 import net.rptools.maptool.client.ui.htmlframe.HTMLFrameFactory;
 import net.rptools.maptool.client.ui.htmlframe.HTMLFrameFactory.FrameType;
 import net.rptools.maptool.client.ui.macrobuttons.buttons.MacroButtonPrefs;
-import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.MacroButtonProperties;
+import net.rptools.maptool.model.PropertyEvaluation;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.Zone;
 import net.rptools.maptool.model.library.LibraryManager;
+import net.rptools.maptool.model.library.token.LibraryTokenRegistry;
+import net.rptools.maptool.model.library.token.LibraryTokenRegistry.LibraryTokenEntry;
+import net.rptools.maptool.util.PatternCache;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.function.Function;
 import org.apache.commons.lang3.StringUtils;
@@ -69,14 +73,14 @@ public class MapToolLineParser {
   /** The current macro recursive depth. */
   private int macroRecurseDepth = 0;
 
-  /** The maximum parser and macro recursive depth. */
-  private int maxRecursionDepth = DEFAULT_MAX_RECURSIVE_DEPTH;
+  /** The maximum parser and macro recursive depth, shared by the parsers of all threads. */
+  private static volatile int maxRecursionDepth = DEFAULT_MAX_RECURSIVE_DEPTH;
 
   /** The default maximum loop iterations. */
   private static final int DEFAULT_MAX_LOOP_ITERATIONS = 10000;
 
-  /** The maximum amount of loop iterations. */
-  private int maxLoopIterations = DEFAULT_MAX_LOOP_ITERATIONS;
+  /** The maximum amount of loop iterations, shared by the parsers of all threads. */
+  private static volatile int maxLoopIterations = DEFAULT_MAX_LOOP_ITERATIONS;
 
   /** The dice rolls that occurred. */
   private List<Integer> lastRolled = new LinkedList<>();
@@ -152,19 +156,26 @@ public Map<String, String> listAllMacroFunctions() {
     return functionList;
   }
 
+  /**
+   * The inline rolls of lines parsed before. Macros run the same text over and over, and the rolls
+   * depend on nothing but the text, so a line is only scanned the first time it is parsed and its
+   * entry never needs to be invalidated.
+   */
+  private static final Cache<String, List<InlineRollMatch>> INLINE_ROLL_CACHE =
+      CacheBuilder.newBuilder().maximumSize(1000).softValues().build();
+
   // Class to hold the inline rolls and where they start and end.
-  private static class InlineRollMatch {
+  static class InlineRollMatch {
     final int start;
     final int end;
     final String match;
     final int optEnd;
+    private final String opt;
+    private final String roll;
 
     @SuppressWarnings("unused")
     InlineRollMatch(int start, int end, String match) {
-      this.start = start;
-      this.end = end;
-      this.match = match;
-      this.optEnd = -1;
+      this(start, end, match, -1);
     }
 
     InlineRollMatch(int start, int end, String match, int optEnd) {
@@ -172,6 +183,14 @@ private static class InlineRollMatch {
       this.end = end;
       this.match = match;
       this.optEnd = optEnd;
+      // Matches are cached, so work out the parts once.
+      if (optEnd > 0) {
+        opt = match.substring(1, optEnd - start);
+        roll = match.substring(optEnd + 1 - start, end - start);
+      } else {
+        opt = "";
+        roll = match.substring(1, end - start);
+      }
     }
 
     public int getStart() {
@@ -192,19 +211,11 @@ public int getOptEnd() {
     }
 
     public String getOpt() {
-      if (optEnd > 0) {
-        return match.substring(1, optEnd - start);
-      } else {
-        return "";
-      }
+      return opt;
     }
 
     public String getRoll() {
-      if (optEnd > 0) {
-        return match.substring(optEnd + 1 - start, end - start);
-      } else {
-        return match.substring(1, end - start);
-      }
+      return roll;
     }
   }
 
@@ -256,7 +267,7 @@ public String parseLine(
       resolverInitialized = resolver.initialize();
       StringBuilder builder = new StringBuilder();
       int start = 0;
-      List<InlineRollMatch> matches = this.locateInlineRolls(line);
+      List<InlineRollMatch> matches = getInlineRolls(line);
 
       for (InlineRollMatch match : matches) {
         builder.append(line, start, match.getStart()); // add everything before the roll
@@ -550,12 +561,15 @@ public String parseLine(
                   if (!isMacroTrusted()) {
                     throw new ParserException(I18N.getText("macro.function.roll.noPerm"));
                   }
+                  String tokenParam =
+                      option.getParsedParam(0, resolver, tokenInContext, this).toString();
                   Token newToken =
-                      MapTool.getFrame()
-                          .getCurrentZoneRenderer()
-                          .getZone()
-                          .resolveToken(
-                              option.getParsedParam(0, resolver, tokenInContext, this).toString());
+                      MacroExecutor.callOnEdt(
+                          () ->
+                              MapTool.getFrame()
+                                  .getCurrentZoneRenderer()
+                                  .getZone()
+                                  .resolveToken(tokenParam));
                   if (newToken != null) {
                     contextTokenStack.push(resolver.getTokenInContext());
                     resolver.setTokenIncontext(newToken);
@@ -717,7 +731,7 @@ public String parseLine(
                 {
                   // There's only one branch, so our regex is very simple
                   String testRegex = String.format("^\\s*%s\\s*$", branchRegex);
-                  Matcher testMatcher = Pattern.compile(testRegex).matcher(roll);
+                  Matcher testMatcher = PatternCache.compile(testRegex).matcher(roll);
                   if (testMatcher.find()) {
                     rollBranch = testMatcher.group(1);
                   } else {
@@ -743,7 +757,7 @@ public String parseLine(
                       String.format(
                           "^\\s*%s\\s*(?:%s\\s*%s\\s*%s)?\\s*$",
                           branchRegex, branchSepRegex, branchRegex, branchLastSepRegex);
-                  Matcher testMatcher = Pattern.compile(testRegex).matcher(roll);
+                  Matcher testMatcher = PatternCache.compile(testRegex).matcher(roll);
                   if (testMatcher.find()) { // verifies that roll body is well-formed
                     rollBranch = testMatcher.group(1 + whichBranch);
                     if (rollBranch == null) {
@@ -771,11 +785,11 @@ public String parseLine(
                       String.format(
                           "^(?:\\s*%s\\s*%s\\s*)*\\s*%s\\s*%s\\s*$",
                           branchRegex, branchSepRegex, branchRegex, branchLastSepRegex);
-                  Matcher testMatcher = Pattern.compile(testRegex).matcher(roll);
+                  Matcher testMatcher = PatternCache.compile(testRegex).matcher(roll);
                   if (testMatcher.find()) { // verifies that roll body is well-formed
                     String scanRegex =
                         String.format("\\s*%s\\s*(?:%s)?", branchRegex, branchSepRegex);
-                    Matcher scanMatcher = Pattern.compile(scanRegex).matcher(roll);
+                    Matcher scanMatcher = PatternCache.compile(scanRegex).matcher(roll);
                     boolean foundMatch = false;
                     while (!foundMatch && scanMatcher.find()) {
                       String caseLabel = scanMatcher.group(1); // "case (xxx):"
@@ -786,7 +800,7 @@ public String parseLine(
                         foundMatch = true;
                         ;
                       }
-                      if (caseLabel != null && caseLabel.matches(caseTarget)) {
+                      if (caseLabel != null && PatternCache.matches(caseLabel, caseTarget)) {
                         rollBranch = branch.trim();
                         foundMatch = true;
                       }
@@ -809,6 +823,10 @@ public String parseLine(
             // The output style NONE is also allowed in these cases.
             Result result;
             String output_text;
+            if ((output != Output.RESULT && output != Output.NONE) || outputTo != OutputLoc.CHAT) {
+              // Formatted output depends on the context, and frames are shown as a side effect.
+              PropertyEvaluation.notReusable();
+            }
             switch (codeType) {
               case NO_CODE:
                 // If none of the code options are active, any of the formatting options can be
@@ -903,7 +921,7 @@ public String parseLine(
                   boolean catchAssert =
                       BigDecimal.ONE.equals(resolver.getVariable("macro.catchAssert"));
                   if (!catchAssert) throw assertEx;
-                  MapTool.addLocalMessage(assertEx.getMessage());
+                  MacroExecutor.runOnEdt(() -> MapTool.addLocalMessage(assertEx.getMessage()));
                   output_text = "";
                 } catch (ParserException e) {
                   e.addMacro(callName);
@@ -1011,7 +1029,7 @@ public String parseLine(
       exitContext();
       if (resolverInitialized) {
         // This is the top level call, time to clean up
-        resolver.flush();
+        MacroExecutor.runOnEdt(resolver::flush);
       }
       if (MapTool.getFrame() != null) {
         // Repaint in case macros changed anything.
@@ -1049,7 +1067,13 @@ public Result parseExpression(
         log.debug(b);
       }
       List<Integer> origRolled = List.copyOf(rolled);
-      Result res = expressionParser.evaluate(expression, resolver, makeDeterministic);
+      Result res;
+      try (var section = MacroProfiler.enter(MacroProfiler.Kind.EXPRESSION, expression)) {
+        res = expressionParser.evaluate(expression, resolver, makeDeterministic);
+      }
+      if (!res.getRolled().isEmpty()) {
+        PropertyEvaluation.notReusable();
+      }
       // if rolled has changed, we've been in a context that has updated it already
       if (origRolled.equals(rolled)) {
         rolled.addAll(res.getRolled());
@@ -1071,7 +1095,7 @@ public Result parseExpression(
       log.debug(e);
       boolean catchAssert = BigDecimal.ONE.equals(resolver.getVariable("macro.catchAssert"));
       if (!catchAssert) throw e;
-      MapTool.addLocalMessage(e.getMessage());
+      MacroExecutor.runOnEdt(() -> MapTool.addLocalMessage(e.getMessage()));
 
       // return an empty result to not collide with tooltips
       // when catching an assert`
@@ -1148,6 +1172,90 @@ public String runMacro(
       String args,
       boolean createNewVariableContext)
       throws ParserException {
+    // The macro can change without the token properties that call it changing.
+    PropertyEvaluation.notReusable();
+    MacroSource macroSource = MacroExecutor.callOnEdt(() -> findMacro(tokenInContext, qMacroName));
+    if (macroSource == null) {
+      // For convenience to macro authors, no error on a blank macro name
+      return "";
+    }
+    String macroName = macroSource.context().getName();
+    String macroBody = macroSource.body();
+    MapToolMacroContext macroContext = macroSource.context();
+
+    MapToolVariableResolver macroResolver;
+    if (createNewVariableContext) {
+      macroResolver = new MapToolVariableResolver(tokenInContext);
+    } else {
+      macroResolver = resolver;
+    }
+    macroResolver.setVariable("macro.args", args);
+    JsonElement json = JSONMacroFunctions.getInstance().asJsonElement(args);
+    if (json.isJsonArray()) {
+      JsonArray jarr = json.getAsJsonArray();
+      macroResolver.setVariable("macro.args.num", BigDecimal.valueOf(jarr.size()));
+      for (int i = 0; i < jarr.size(); i++) {
+        macroResolver.setVariable("macro.args." + i, asMacroArg(jarr.get(i)));
+      }
+    } else {
+      macroResolver.setVariable("macro.args.num", BigDecimal.ZERO);
+    }
+    macroResolver.setVariable("macro.return", "");
+
+    // Call the macro
+    macroRecurseDepth++;
+    if (macroRecurseDepth > maxRecursionDepth) {
+      parserRecurseDepth = 0;
+      macroRecurseDepth = 0;
+      throw new ParserException(I18N.getText("lineParser.maxRecursion"));
+    }
+    String profiledName = macroName + "@" + macroContext.getSource();
+    try (var section = MacroProfiler.enter(MacroProfiler.Kind.MACRO, profiledName)) {
+      String macroOutput = null;
+
+      try {
+        macroOutput = runMacroBlock(macroResolver, tokenInContext, macroBody, macroContext);
+        // Copy the return value of the macro into our current variable scope.
+        resolver.setVariable("macro.return", macroResolver.getVariable("macro.return"));
+      } catch (ReturnFunctionException returnEx) {
+        Object result = returnEx.getResult();
+        if (result != null) {
+          resolver.setVariable("macro.return", result);
+          macroOutput = result.toString();
+        }
+      }
+      if (macroOutput != null) {
+        // Note! Its important that trim is not used to replace the following two lines.
+        // If you use String.trim() you may inadvertnatly remove the special characters
+        // used to mark rolls.
+        macroOutput = macroOutput.replaceAll("^\\s+", "");
+        macroOutput = macroOutput.replaceAll("\\s+$", "");
+      }
+      return macroOutput;
+    } finally {
+      // exitContext();
+      macroRecurseDepth--;
+    }
+  }
+
+  /**
+   * The text of a macro and the context to run it in.
+   *
+   * @param body the text of the macro.
+   * @param context the context of the macro.
+   */
+  private record MacroSource(String body, MapToolMacroContext context) {}
+
+  /**
+   * Looks up a macro to run. As this reads the campaign, a macro on the {@link MacroExecutor}
+   * worker looks it up on the event dispatch thread.
+   *
+   * @param tokenInContext the token in context, which holds the macros of {@code @TOKEN}.
+   * @param qMacroName the qualified macro name.
+   * @return the macro, or {@code null} if the macro name is blank.
+   * @throws ParserException if the macro cannot be found.
+   */
+  private MacroSource findMacro(Token tokenInContext, String qMacroName) throws ParserException {
     MapToolMacroContext macroContext;
     String macroBody = null;
     String[] macroParts = qMacroName.split("@", 2);
@@ -1160,7 +1268,7 @@ public String runMacro(
       macroLocation = macroParts[1];
     }
     // For convenience to macro authors, no error on a blank macro name
-    if (macroName.equalsIgnoreCase("")) return "";
+    if (macroName.equalsIgnoreCase("")) return null;
 
     // IF the macro is a @this, then we get the location of the current macro and use that.
     if (macroLocation != null && macroLocation.equalsIgnoreCase("this")) {
@@ -1185,26 +1293,14 @@ public String runMacro(
       }
       macroContext = new MapToolMacroContext(macroName, "token", trusted);
     } else if (macroLocation.equalsIgnoreCase("CAMPAIGN")) {
-      MacroButtonProperties mbp = null;
-      for (MacroButtonProperties m : MapTool.getCampaign().getMacroButtonPropertiesArray()) {
-        if (m.getLabel().equals(macroName)) {
-          mbp = m;
-          break;
-        }
-      }
+      MacroButtonProperties mbp = MapTool.getCampaign().getMacroButtonProperty(macroName, false);
       if (mbp == null) {
         throw new ParserException(I18N.getText("lineParser.unknownCampaignMacro", macroName));
       }
       macroBody = mbp.getCommand();
       macroContext = new MapToolMacroContext(macroName, "campaign", !mbp.getAllowPlayerEdits());
     } else if (macroLocation.equalsIgnoreCase("Gm")) {
-      MacroButtonProperties mbp = null;
-      for (MacroButtonProperties m : MapTool.getCampaign().getGmMacroButtonPropertiesArray()) {
-        if (m.getLabel().equals(macroName)) {
-          mbp = m;
-          break;
-        }
-      }
+      MacroButtonProperties mbp = MapTool.getCampaign().getMacroButtonProperty(macroName, true);
       if (mbp == null) {
         throw new ParserException(I18N.getText("lineParser.unknownCampaignMacro", macroName));
       }
@@ -1254,58 +1350,7 @@ public String runMacro(
     if (macroBody == null) {
       throw new ParserException(I18N.getText("lineParser.unknownMacro", macroName));
     }
-    MapToolVariableResolver macroResolver;
-    if (createNewVariableContext) {
-      macroResolver = new MapToolVariableResolver(tokenInContext);
-    } else {
-      macroResolver = resolver;
-    }
-    macroResolver.setVariable("macro.args", args);
-    JsonElement json = JSONMacroFunctions.getInstance().asJsonElement(args);
-    if (json.isJsonArray()) {
-      JsonArray jarr = json.getAsJsonArray();
-      macroResolver.setVariable("macro.args.num", BigDecimal.valueOf(jarr.size()));
-      for (int i = 0; i < jarr.size(); i++) {
-        macroResolver.setVariable("macro.args." + i, asMacroArg(jarr.get(i)));
-      }
-    } else {
-      macroResolver.setVariable("macro.args.num", BigDecimal.ZERO);
-    }
-    macroResolver.setVariable("macro.return", "");
-
-    // Call the macro
-    macroRecurseDepth++;
-    if (macroRecurseDepth > maxRecursionDepth) {
-      parserRecurseDepth = 0;
-      macroRecurseDepth = 0;
-      throw new ParserException(I18N.getText("lineParser.maxRecursion"));
-    }
-    try {
-      String macroOutput = null;
-
-      try {
-        macroOutput = runMacroBlock(macroResolver, tokenInContext, macroBody, macroContext);
-        // Copy the return value of the macro into our current variable scope.
-        resolver.setVariable("macro.return", macroResolver.getVariable("macro.return"));
-      } catch (ReturnFunctionException returnEx) {
-        Object result = returnEx.getResult();
-        if (result != null) {
-          resolver.setVariable("macro.return", result);
-          macroOutput = result.toString();
-        }
-      }
-      if (macroOutput != null) {
-        // Note! Its important that trim is not used to replace the following two lines.
-        // If you use String.trim() you may inadvertnatly remove the special characters
-        // used to mark rolls.
-        macroOutput = macroOutput.replaceAll("^\\s+", "");
-        macroOutput = macroOutput.replaceAll("\\s+$", "");
-      }
-      return macroOutput;
-    } finally {
-      // exitContext();
-      macroRecurseDepth--;
-    }
+    return new MacroSource(macroBody, macroContext);
   }
 
   /**
@@ -1379,30 +1424,8 @@ public Token getTokenMacroLib(String location) throws ParserException {
     if (!location.matches("(?i)^lib:.*")) {
       throw new ParserException(I18N.getText("lineParser.notALibToken"));
     }
-    final String libTokenName = location;
-    Token libToken = null;
-    if (libTokenName.length() > 0) {
-      List<ZoneRenderer> zrenderers = MapTool.getFrame().getZoneRenderers();
-      for (ZoneRenderer zr : zrenderers) {
-        List<Token> tokenList =
-            zr.getZone().getTokensFiltered(t -> t.getName().equalsIgnoreCase(libTokenName));
-
-        for (Token token : tokenList) {
-          // If we are not the GM and the token is not visible to players then we don't
-          // let them get functions from it.
-          if (!MapTool.getPlayer().isGM() && !token.isVisible()) {
-            throw new ParserException(I18N.getText("lineParser.libUnableToExec", libTokenName));
-          }
-          if (libToken != null) {
-            throw new ParserException(I18N.getText("lineParser.duplicateLibTokens", libTokenName));
-          }
-
-          libToken = token;
-        }
-      }
-      return libToken;
-    }
-    return null;
+    LibraryTokenEntry entry = findTokenMacroLib(location);
+    return entry == null ? null : entry.token();
   }
 
   /**
@@ -1420,31 +1443,37 @@ public Zone getTokenMacroLibZone(String location) throws ParserException {
     if (!location.matches("(?i)^lib:.*")) {
       throw new ParserException(I18N.getText("lineParser.notALibToken"));
     }
-    final String libTokenName = location;
-    Zone libTokenZone = null;
-    if (libTokenName.length() > 0) {
-      List<ZoneRenderer> zrenderers = MapTool.getFrame().getZoneRenderers();
-      for (ZoneRenderer zr : zrenderers) {
-        List<Token> tokenList =
-            zr.getZone().getTokensFiltered(t -> t.getName().equalsIgnoreCase(libTokenName));
-
-        for (Token token : tokenList) {
-          // If we are not the GM and the token is not visible to players then we don't
-          // let them get functions from it.
-          if (!MapTool.getPlayer().isGM() && !token.isVisible()) {
-            throw new ParserException(I18N.getText("lineParser.libUnableToExec", libTokenName));
-          }
-
-          if (libTokenZone != null) {
-            throw new ParserException(I18N.getText("lineParser.duplicateLibTokens", libTokenName));
-          }
+    LibraryTokenEntry entry = findTokenMacroLib(location);
+    return entry == null ? null : entry.zone();
+  }
 
-          libTokenZone = zr.getZone();
-        }
+  /**
+   * Looks up the lib:token in the {@link LibraryTokenRegistry}, on the event dispatch thread if
+   * called by a macro on the {@link MacroExecutor} worker.
+   *
+   * @param libTokenName the name of the lib:token.
+   * @return the lib:token and its zone, or {@code null} if there is no such token.
+   * @throws ParserException if the token appears multiple times, or if the caller doesn't have
+   *     access to the token.
+   */
+  private static LibraryTokenEntry findTokenMacroLib(String libTokenName) throws ParserException {
+    if (MacroExecutor.isWorkerThread()) {
+      return MacroExecutor.callOnEdt(() -> findTokenMacroLib(libTokenName));
+    }
+    var registry = LibraryTokenRegistry.getInstance();
+    LibraryTokenEntry found = null;
+    for (LibraryTokenEntry entry : registry.getLibraryTokens(libTokenName)) {
+      // If we are not the GM and the token is not visible to players then we don't
+      // let them get functions from it.
+      if (!MapTool.getPlayer().isGM() && !entry.token().isVisible()) {
+        throw new ParserException(I18N.getText("lineParser.libUnableToExec", libTokenName));
+      }
+      if (found != null) {
+        throw new ParserException(I18N.getText("lineParser.duplicateLibTokens", libTokenName));
       }
-      return libTokenZone;
+      found = entry;
     }
-    return null;
+    return found;
   }
 
   /**
@@ -1482,7 +1511,8 @@ String errorString(String msg, String opts, String roll) {
     return retval;
   }
 
-  public static final MapToolExpressionParser expressionParser = new MapToolExpressionParser();
+  /** The expression parser, which is not shared with the parser of the macro worker. */
+  private final MapToolExpressionParser expressionParser = new MapToolExpressionParser();
 
   private String rollString(Collection<String> options, String text) {
     return rollString(options, null, text);
@@ -1621,13 +1651,29 @@ public boolean isMacroTrusted() {
     return !contextStack.isEmpty() && contextStack.peek().isTrusted();
   }
 
+  /**
+   * Gets the inline rolls within the input line, locating them only if the line has not been parsed
+   * before.
+   *
+   * @param line The line to search for the rolls in.
+   * @return An unmodifiable list of the rolls.
+   */
+  static List<InlineRollMatch> getInlineRolls(String line) {
+    List<InlineRollMatch> matches = INLINE_ROLL_CACHE.getIfPresent(line);
+    if (matches == null) {
+      matches = List.copyOf(locateInlineRolls(line));
+      INLINE_ROLL_CACHE.put(line, matches);
+    }
+    return matches;
+  }
+
   /**
    * Locate the inline rolls within the input line.
    *
    * @param line The line to search for the rolls in.
    * @return A list of the rolls.
    */
-  private List<InlineRollMatch> locateInlineRolls(String line) {
+  static List<InlineRollMatch> locateInlineRolls(String line) {
     List<InlineRollMatch> matches = new ArrayList<InlineRollMatch>();
     ScanState scanState = ScanState.SEARCHING_FOR_ROLL;
     int startMatch = 0;
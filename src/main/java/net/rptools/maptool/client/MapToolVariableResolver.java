@@ -91,8 +91,26 @@ public class MapToolVariableResolver implements VariableResolver {
           CAMPAIGN_PANEL,
           "panel.gm",
           GM_PANEL);
+  /** The variables that stand for fields of the token in context. */
+  private static final Set<String> TOKEN_VARIABLES =
+      Set.of(
+          TOKEN_HALO,
+          TOKEN_NAME,
+          TOKEN_GMNAME,
+          TOKEN_LABEL,
+          TOKEN_VISIBLE,
+          TOKEN_INITIATIVE,
+          TOKEN_INITIATIVE_HOLD);
+
   private final Map<String, Object> variables = new CaseInsensitiveHashMap<>();
 
+  /**
+   * The lower case names that {@link #isLocal(String)} found not to be token properties. The
+   * property lookup reads the campaign on the event dispatch thread, so it is made once per name
+   * for as long as the token in context stays the same.
+   */
+  private final Set<String> localNames = new HashSet<>();
+
   private List<Runnable> delayedActionList;
 
   private Token tokenInContext;
@@ -202,6 +220,13 @@ public Object getVariable(String name, VariableModifiers mods) throws ParserExce
     if (name.startsWith(MarkDownFunctions.MARKDOWN_PREFIX)) {
       return new MarkDownFunctions().getMTSTypeLabel(name);
     }
+    if (PropertyEvaluation.isRecording() && !isReusableRead(name, mods)) {
+      PropertyEvaluation.notReusable();
+    }
+    if (MacroExecutor.isWorkerThread()
+        && (mods == VariableModifiers.Prompt || !variables.containsKey(name) || !isLocal(name))) {
+      return MacroExecutor.callOnEdt(() -> getVariable(name, mods));
+    }
 
     Object result = null;
     if (tokenInContext != null) {
@@ -350,6 +375,17 @@ protected void updateTokenProperty(Token token, String varname, String value) {
   @Override
   public void setVariable(String varname, VariableModifiers modifiers, Object value)
       throws ParserException {
+    if (PropertyEvaluation.isRecording() && !isReusableWrite(varname)) {
+      PropertyEvaluation.notReusable();
+    }
+    if (MacroExecutor.isWorkerThread() && !isLocal(varname)) {
+      MacroExecutor.callOnEdt(
+          () -> {
+            setVariable(varname, modifiers, value);
+            return null;
+          });
+      return;
+    }
 
     if (CONSTANTS.containsKey(varname.toLowerCase())
         && variables.containsKey(varname)) { // allow to be set first time
@@ -416,13 +452,87 @@ public void setVariable(String varname, VariableModifiers modifiers, Object valu
    * @return <code>true</code> if the property is valid for the token.
    */
   private boolean validTokenProperty(String prop, Token token) {
-    for (TokenProperty tp : MapTool.getCampaign().getTokenPropertyList(token.getPropertyType())) {
-      if (tp.getName().equalsIgnoreCase(prop)) {
+    return MapTool.getCampaign().getTokenProperty(token.getPropertyType(), prop) != null;
+  }
+
+  /**
+   * Checks if a token property whose evaluation reads the variable can be evaluated once and
+   * reused. That is the case for the properties of the token, which {@link Token} keeps track of,
+   * and for the variables set by the evaluation itself.
+   *
+   * @param name The name of the variable.
+   * @param mods The modifiers of the variable.
+   * @return <code>true</code> if reading the variable does not prevent reuse.
+   */
+  private boolean isReusableRead(String name, VariableModifiers mods) {
+    if (mods == VariableModifiers.Prompt) {
+      return false;
+    }
+    if (tokenInContext != null) {
+      if (name.startsWith(STATE_PREFIX)
+          || name.startsWith(BAR_PREFIX)
+          || TOKEN_VARIABLES.contains(name)) {
+        return false;
+      }
+      if (validTokenProperty(name, tokenInContext)) {
         return true;
       }
+    } else if (name.equals(INITIATIVE_CURRENT) || name.equals(INITIATIVE_ROUND)) {
+      return false;
     }
+    if (!variables.containsKey(name)) {
+      // The user is asked for the value.
+      return false;
+    }
+    return CONSTANTS.containsKey(name.toLowerCase()) || !PropertyEvaluation.isCallerResolver(this);
+  }
 
-    return false;
+  /**
+   * Checks if a token property whose evaluation sets the variable can be evaluated once and
+   * reused, which is only the case if the variable is discarded with the evaluation.
+   *
+   * @param name The name of the variable.
+   * @return <code>true</code> if setting the variable does not prevent reuse.
+   */
+  private boolean isReusableWrite(String name) {
+    if (PropertyEvaluation.isCallerResolver(this)
+        || name.startsWith(STATE_PREFIX)
+        || name.startsWith(BAR_PREFIX)
+        || TOKEN_VARIABLES.contains(name)
+        || name.endsWith(TOKEN_VISIBLE)
+        || name.equals(INITIATIVE_CURRENT)
+        || name.equals(INITIATIVE_ROUND)) {
+      return false;
+    }
+    return tokenInContext == null || !validTokenProperty(name, tokenInContext);
+  }
+
+  /**
+   * Checks if the variable is only kept by this resolver, so that a macro running on the {@link
+   * MacroExecutor} worker can use it without the event dispatch thread.
+   *
+   * @param name The name of the variable.
+   * @return <code>true</code> if the variable does not stand for anything of the campaign.
+   * @throws ParserException if the token properties cannot be read.
+   */
+  private boolean isLocal(String name) throws ParserException {
+    if (name.startsWith(STATE_PREFIX)
+        || name.startsWith(BAR_PREFIX)
+        || TOKEN_VARIABLES.contains(name)
+        || name.endsWith(TOKEN_VISIBLE)
+        || name.equals(INITIATIVE_CURRENT)
+        || name.equals(INITIATIVE_ROUND)) {
+      return false;
+    }
+    Token token = tokenInContext;
+    if (token == null || localNames.contains(name.toLowerCase(Locale.ROOT))) {
+      return true;
+    }
+    if (MacroExecutor.callOnEdt(() -> validTokenProperty(name, token))) {
+      return false;
+    }
+    localNames.add(name.toLowerCase(Locale.ROOT));
+    return true;
   }
 
   /**
@@ -433,5 +543,6 @@ private boolean validTokenProperty(String prop, Token token) {
    */
   public void setTokenIncontext(Token token) {
     tokenInContext = token;
+    localNames.clear();
   }
 }
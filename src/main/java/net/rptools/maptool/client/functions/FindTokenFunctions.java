@@ -598,8 +598,25 @@ private static Object getTokenList(
       if (range.has("metric")) {
         metric = range.get("metric").getAsString();
       }
+      List<Token> candidates = tokenList;
+      double uptoCells = useDistancePerCell ? upto / zone.getUnitsPerCell() : upto;
+      if (upto != Integer.MAX_VALUE && uptoCells >= 0 && Double.isFinite(uptoCells)) {
+        // Let the zone's spatial index skip tokens that are too far away to be in range. The
+        // radius is generous: every metric covers at least one cell per step.
+        Grid grid = zone.getGrid();
+        double cellSpan =
+            Math.max(Math.hypot(grid.getCellWidth(), grid.getCellHeight()), grid.getSize());
+        Rectangle sourceBounds = token.getBounds(zone);
+        ZonePoint center =
+            new ZonePoint((int) sourceBounds.getCenterX(), (int) sourceBounds.getCenterY());
+        double radius =
+            (uptoCells + 2) * cellSpan + Math.hypot(sourceBounds.width, sourceBounds.height) / 2;
+        Set<Token> nearby = new HashSet<>(zone.getTokensWithin(center, radius));
+        candidates = new ArrayList<>(tokenList);
+        candidates.retainAll(nearby);
+      }
       List<Token> inrange = new LinkedList<Token>();
-      for (Token targetToken : tokenList) {
+      for (Token targetToken : candidates) {
         double distance = instance.getDistance(token, targetToken, useDistancePerCell, metric);
         if (distance <= upto && distance >= from && token != targetToken) {
           inrange.add(targetToken);
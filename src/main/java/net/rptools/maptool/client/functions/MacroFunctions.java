@@ -173,10 +173,10 @@ public Object childEvaluate(
         String id = FunctionUtil.paramAsString(functionName, parameters, 2, true);
         if (id.equalsIgnoreCase("campaign")) {
           return getMacroIndexes(
-              label, delim, MapTool.getCampaign().getMacroButtonPropertiesArray());
+              delim, MapTool.getCampaign().getMacroButtonProperties(label, false));
         } else if (id.equalsIgnoreCase("gm")) {
           return getMacroIndexes(
-              label, delim, MapTool.getCampaign().getGmMacroButtonPropertiesArray());
+              delim, MapTool.getCampaign().getMacroButtonProperties(label, true));
         }
       }
       Token token = FunctionUtil.getTokenFromParam(resolver, functionName, parameters, 2, 3);
@@ -508,19 +508,16 @@ private Object getMacros(String delim, Token token) {
   /**
    * Campaign version of getMacroIndexes().
    *
-   * @param label the label for the macro buttons to return
    * @param delim the delimiter separating the indexes. If "json", returns a JSON Array.
-   * @param list the panel macro list
+   * @param list the panel macros with the label
    * @return the indexes for the macro buttons.
    */
-  private Object getMacroIndexes(String label, String delim, List<MacroButtonProperties> list) {
+  private Object getMacroIndexes(String delim, List<MacroButtonProperties> list) {
     List<String> strIndexes = new ArrayList<>();
     List<Integer> indexes = new ArrayList<>();
     for (MacroButtonProperties mbp : list) {
-      if (mbp.getLabel().equals(label)) {
-        strIndexes.add(Integer.toString(mbp.getIndex()));
-        indexes.add(mbp.getIndex());
-      }
+      strIndexes.add(Integer.toString(mbp.getIndex()));
+      indexes.add(mbp.getIndex());
     }
     if ("json".equals(delim)) {
       JsonArray indArray = new JsonArray();
@@ -545,11 +542,9 @@ private Object getMacroIndexes(String label, String delim, List<MacroButtonPrope
   private Object getMacroIndexes(String label, String delim, Token token) {
     List<String> strIndexes = new ArrayList<>();
     List<Integer> indexes = new ArrayList<>();
-    for (MacroButtonProperties mbp : token.getMacroList(false)) {
-      if (mbp.getLabel().equals(label)) {
-        strIndexes.add(Integer.toString(mbp.getIndex()));
-        indexes.add(mbp.getIndex());
-      }
+    for (MacroButtonProperties mbp : token.getMacros(label, false)) {
+      strIndexes.add(Integer.toString(mbp.getIndex()));
+      indexes.add(mbp.getIndex());
     }
     if ("json".equals(delim)) {
       JsonArray indArray = new JsonArray();
@@ -833,17 +828,15 @@ private String setMacroProps(Object value, String props, String delim, Token tok
       MapTool.serverCommand().updateTokenProperty(token, Token.Update.saveMacro, mbp);
     } else {
       List<MacroButtonProperties> mbpList = new ArrayList<>();
-      for (MacroButtonProperties mbp : token.getMacroList(false)) {
-        if (mbp.getLabel().equals(value.toString())) {
-          if (!mbp.getAllowPlayerEdits() && !MapTool.getParser().isMacroTrusted()) {
-            String label = mbp.getLabel();
-            int index = mbp.getIndex();
-            MapTool.addLocalMessage(
-                I18N.getText(KEY_NO_PERM_OTHER, "setMacroProps", label, index, token.getName()));
-          } else {
-            setMacroProps(mbp, props, delim);
-            mbpList.add(mbp);
-          }
+      for (MacroButtonProperties mbp : token.getMacros(value.toString(), false)) {
+        if (!mbp.getAllowPlayerEdits() && !MapTool.getParser().isMacroTrusted()) {
+          String label = mbp.getLabel();
+          int index = mbp.getIndex();
+          MapTool.addLocalMessage(
+              I18N.getText(KEY_NO_PERM_OTHER, "setMacroProps", label, index, token.getName()));
+        } else {
+          setMacroProps(mbp, props, delim);
+          mbpList.add(mbp);
         }
       }
       // Replaces the matching macros with the new versions
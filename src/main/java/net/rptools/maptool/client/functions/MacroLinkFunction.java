@@ -294,7 +294,8 @@ public String strPropListToArgs(String props) {
   }
 
   /**
-   * Returns the link data as a json element.
+   * Returns the link data as a json element. The element is a copy, so callers may add the form
+   * data to it.
    *
    * @param linkData a string containing the encoded link data
    * @return the link data, decoded and converted to json element
@@ -308,7 +309,7 @@ public JsonElement getLinkDataAsJson(String linkData) {
     if (!decodedLinkData.startsWith("[") && !decodedLinkData.startsWith("{")) {
       return new JsonPrimitive(decodedLinkData);
     } else {
-      return JSONMacroFunctions.getInstance().asJsonElement(decodedLinkData);
+      return JSONMacroFunctions.getInstance().asJsonElement(decodedLinkData).deepCopy();
     }
   }
 
@@ -21,6 +21,7 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.rptools.maptool.language.I18N;
+import net.rptools.maptool.util.PatternCache;
 import net.rptools.parser.Parser;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.VariableResolver;
@@ -114,7 +115,8 @@ public static int parse(String listStr, String delim, ListVisitor visitor) {
       // This pattern needs to be compiled with the DOTALL flag or line terminators might
       // cause premature termination of the matcher.find() operations...
       String escDelim = fullyQuoteString(delim);
-      pattern = Pattern.compile("\\s*(.*?)\\s*" + escDelim + "|\\s*(.*?)\\s*$", Pattern.DOTALL);
+      pattern =
+          PatternCache.compile("\\s*(.*?)\\s*" + escDelim + "|\\s*(.*?)\\s*$", Pattern.DOTALL);
     }
 
     Matcher matcher = pattern.matcher(listStr);
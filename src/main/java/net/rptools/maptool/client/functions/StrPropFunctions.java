@@ -22,6 +22,7 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.rptools.maptool.language.I18N;
+import net.rptools.maptool.util.PatternCache;
 import net.rptools.parser.Parser;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.VariableResolver;
@@ -94,7 +95,7 @@ public static void parse(
     // values will be trimmed. http://forums.rptools.net/viewtopic.php?f=3&t=23841
     // Added "." to allowed key names since variable names can contain dots.
     final String entryPatt = "\\s*([\\w .]+\\s*=.*?)" + delimPatt + "|([\\w .]+\\s*=.*)";
-    final Pattern entryParser = Pattern.compile(entryPatt);
+    final Pattern entryParser = PatternCache.compile(entryPatt);
 
     // Extract the keys and values already in the props string.
     // Save the old keys so we can rebuild the props string in the same order.
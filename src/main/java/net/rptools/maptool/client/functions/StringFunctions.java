@@ -25,6 +25,7 @@
 import java.util.regex.PatternSyntaxException;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.util.FunctionUtil;
+import net.rptools.maptool.util.PatternCache;
 import net.rptools.parser.Parser;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.VariableResolver;
@@ -238,7 +239,7 @@ public Object childEvaluate(
               I18N.getText(
                   "macro.function.general.notEnoughParam", functionName, 2, parameters.size()));
         }
-        if (parameters.get(0).toString().matches(parameters.get(1).toString())) {
+        if (PatternCache.matches(parameters.get(0).toString(), parameters.get(1).toString())) {
           return BigDecimal.valueOf(1);
         } else {
           return BigDecimal.valueOf(0);
@@ -471,7 +472,7 @@ public String sanitize(String input) {
    * @return the delimited list.
    */
   public String stringToList(String string, String pattern, String delim) {
-    String[] parts = string.split(pattern);
+    String[] parts = PatternCache.compile(pattern).split(string);
     return join(parts, delim);
   }
 
@@ -542,7 +543,7 @@ public String replace(String string, String pattern, String replacement, int tim
     }
 
     StringBuffer sb = new StringBuffer();
-    Matcher m = Pattern.compile(pattern).matcher(string);
+    Matcher m = PatternCache.compile(pattern).matcher(string);
     while (m.find()) {
       if (times < 1) {
         break;
@@ -564,7 +565,7 @@ public String replace(String string, String pattern, String replacement, int tim
    * @return the modified version of the string.
    */
   public String replace(String string, String pattern, String replacement) {
-    return string.replaceAll(pattern, replacement);
+    return PatternCache.compile(pattern).matcher(string).replaceAll(replacement);
   }
 
   /**
@@ -585,7 +586,7 @@ public String replace(String string, String pattern, String replacement) {
    */
   public BigDecimal stringFind(VariableResolver resolver, String str, String pattern)
       throws ParserException {
-    Pattern p = Pattern.compile(pattern);
+    Pattern p = PatternCache.compile(pattern);
     Matcher m = p.matcher(str);
     int found = 0;
 
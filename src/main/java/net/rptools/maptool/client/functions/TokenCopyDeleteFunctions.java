@@ -15,6 +15,7 @@
 package net.rptools.maptool.client.functions;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -398,15 +399,12 @@ private void setTokenValues(Token token, JsonObject vals, Zone zone, MapToolVari
       }
     }
 
-    // legacy use, from pre 1.5.7.
-    if (!newVals.has("tokenHandout") && newVals.has("handoutImage")) {
-      // handoutImage -> tokenHandout
-      newVals.add("tokenHandout", newVals.get("handoutImage"));
-    }
-    if (!newVals.has("tokenPortrait") && newVals.has("portraitImage")) {
-      // portraitImage -> tokenPortrait
-      newVals.add("tokenPortrait", newVals.get("portraitImage"));
-    }
+    // legacy use, from pre 1.5.7: handoutImage -> tokenHandout, portraitImage -> tokenPortrait.
+    // The values are read rather than added to newVals, which must not be modified.
+    JsonElement tokenHandout =
+        newVals.has("tokenHandout") ? newVals.get("tokenHandout") : newVals.get("handoutImage");
+    JsonElement tokenPortrait =
+        newVals.has("tokenPortrait") ? newVals.get("tokenPortrait") : newVals.get("portraitImage");
 
     // tokenImage
     if (newVals.has("tokenImage")) {
@@ -414,13 +412,13 @@ private void setTokenValues(Token token, JsonObject vals, Zone zone, MapToolVari
       token.setImageAsset(null, md5key);
     }
     // handoutImage
-    if (newVals.has("tokenHandout")) {
-      MD5Key md5key = TokenImage.getMD5Key(newVals.get("tokenHandout").getAsString(), COPY_FUNC);
+    if (tokenHandout != null) {
+      MD5Key md5key = TokenImage.getMD5Key(tokenHandout.getAsString(), COPY_FUNC);
       token.setCharsheetImage(md5key);
     }
     // portraitImage
-    if (newVals.has("tokenPortrait")) {
-      MD5Key md5key = TokenImage.getMD5Key(newVals.get("tokenPortrait").getAsString(), COPY_FUNC);
+    if (tokenPortrait != null) {
+      MD5Key md5key = TokenImage.getMD5Key(tokenPortrait.getAsString(), COPY_FUNC);
       token.setPortraitImage(md5key);
     }
   }
@@ -36,7 +36,6 @@
 import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.client.walker.WalkerMetric;
-import net.rptools.maptool.client.walker.ZoneWalker;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.AbstractPoint;
 import net.rptools.maptool.model.CellPoint;
@@ -499,16 +498,9 @@ private String getMovement(
 
     if (source.isSnapToGrid() && grid.getCapabilities().isSnapToGridSupported()) {
       if (zone.getGrid().getCapabilities().isPathingSupported()) {
-        var firstPoint = cellPath.getFirst();
         List<CellPoint> cplist = new ArrayList<CellPoint>();
-
-        try (ZoneWalker walker = grid.createZoneWalker()) {
-          walker.replaceLastWaypoint(new CellPoint(firstPoint.x, firstPoint.y));
-          for (AbstractPoint point : cellPath) {
-            CellPoint tokenPoint = new CellPoint(point.x, point.y);
-            walker.replaceLastWaypoint(tokenPoint);
-            cplist.add(tokenPoint);
-          }
+        for (AbstractPoint point : cellPath) {
+          cplist.add(new CellPoint(point.x, point.y));
         }
 
         double bar =
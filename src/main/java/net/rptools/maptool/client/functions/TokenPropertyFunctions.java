@@ -43,6 +43,7 @@
 import net.rptools.maptool.model.library.LibraryManager;
 import net.rptools.maptool.model.library.data.LibraryData;
 import net.rptools.maptool.util.FunctionUtil;
+import net.rptools.maptool.util.PatternCache;
 import net.rptools.maptool.util.StringUtil;
 import net.rptools.parser.Parser;
 import net.rptools.parser.ParserException;
@@ -411,15 +412,9 @@ public Object childEvaluate(
       }
       Object val = null;
 
-      List<TokenProperty> propertyList =
-          MapTool.getCampaign().getCampaignProperties().getTokenPropertyList(propType);
-      if (propertyList != null) {
-        for (TokenProperty property : propertyList) {
-          if (name.equalsIgnoreCase(property.getName())) {
-            val = property.getDefaultValue();
-            break;
-          }
-        }
+      TokenProperty property = MapTool.getCampaign().getTokenProperty(propType, name);
+      if (property != null) {
+        val = property.getDefaultValue();
       }
       if (val == null) {
         return "";
@@ -1244,11 +1239,11 @@ private Object getMatchingLibProperties(
               keys -> {
                 if (delim.equalsIgnoreCase("json")) {
                   var jarr = new JsonArray();
-                  keys.stream().filter(k -> k.matches(pattern)).forEach(jarr::add);
+                  keys.stream().filter(k -> PatternCache.matches(k, pattern)).forEach(jarr::add);
                   return jarr;
                 } else {
                   return keys.stream()
-                      .filter(k -> k.matches(pattern))
+                      .filter(k -> PatternCache.matches(k, pattern))
                       .collect(Collectors.joining(delim));
                 }
               })
@@ -1269,7 +1264,7 @@ private Object getMatchingLibProperties(
    */
   private String getPropertyNames(Token token, String delim, String pattern, boolean raw) {
     List<String> namesList = new ArrayList<String>();
-    Pattern pat = Pattern.compile(pattern);
+    Pattern pat = PatternCache.compile(pattern);
     Set<String> propSet = (raw ? token.getPropertyNamesRaw() : token.getPropertyNames());
     String[] propArray = new String[propSet.size()];
     propSet.toArray(propArray);
@@ -22,11 +22,12 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import net.rptools.maptool.client.MacroExecutor;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.MapToolVariableResolver;
 import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
@@ -48,11 +49,14 @@
 public class UserDefinedMacroFunctions implements Function, AdditionalFunctionDescription {
   private static final Logger log = LogManager.getLogger(UserDefinedMacroFunctions.class);
 
-  private final Map<String, FunctionDefinition> userDefinedFunctions =
-      new HashMap<String, FunctionDefinition>();
-  private final Map<String, FunctionRedefinition> redefinedFunctions =
-      new HashMap<String, FunctionRedefinition>();
-  private final Stack<String> currentFunction = new Stack<String>();
+  /** The defined functions, which macros on the {@link MacroExecutor} worker read as well. */
+  private final Map<String, FunctionDefinition> userDefinedFunctions = new ConcurrentHashMap<>();
+
+  private final Map<String, FunctionRedefinition> redefinedFunctions = new ConcurrentHashMap<>();
+
+  /** The functions being called, kept apart for the worker. */
+  private final MacroExecutor.MacroLocal<Stack<String>> currentFunction =
+      MacroExecutor.local(Stack::new);
 
   private static UserDefinedMacroFunctions instance = new UserDefinedMacroFunctions();
 
@@ -124,7 +128,7 @@ public Object evaluate(
     }
 
     try {
-      currentFunction.push(functionName);
+      currentFunction.get().push(functionName);
       output =
           MapTool.getParser()
               .runMacro(
@@ -137,7 +141,7 @@ public Object evaluate(
       e.addMacro(funcDef.macroName);
       throw e;
     } finally {
-      currentFunction.pop();
+      currentFunction.get().pop();
     }
     // resolver.setVariable("macro.return", newResolver
     // .getVariable("macro.return"));
@@ -210,7 +214,10 @@ public void defineFunction(
         }
         // We have to rename the old function
         fr.functionName = "redefined_" + getNameCounter() + "_" + name;
-        redefinedFunctions.put(fr.functionName, redefinedFunctions.get(name));
+        FunctionRedefinition previous = redefinedFunctions.get(name);
+        if (previous != null) {
+          redefinedFunctions.put(fr.functionName, previous);
+        }
         redefinedFunctions.put(name, fr);
         userDefinedFunctions.put(fr.functionName, userDefinedFunctions.get(name));
       }
@@ -223,7 +230,7 @@ public void defineFunction(
 
   public Object executeOldFunction(
       Parser parser, VariableResolver resolver, List<Object> parameters) throws ParserException {
-    String functionName = currentFunction.peek();
+    String functionName = currentFunction.get().peek();
     FunctionRedefinition functionRedef = redefinedFunctions.get(functionName);
     if (functionRedef == null) {
       throw new ParserException("Old definition for function " + functionName + " does not exist");
@@ -366,14 +373,10 @@ public String getFunctionTooltip(String functionName) {
       MacroButtonProperties buttonProps;
       if ("CAMPAIGN".equalsIgnoreCase(macroLocation)) {
         // campaign macro
-        List<MacroButtonProperties> mbps = MapTool.getCampaign().getMacroButtonPropertiesArray();
-        buttonProps =
-            mbps.stream().filter(m -> m.getLabel().equals(macroName)).findFirst().orElse(null);
+        buttonProps = MapTool.getCampaign().getMacroButtonProperty(macroName, false);
       } else if ("GM".equalsIgnoreCase(macroLocation)) {
         // GM macro
-        List<MacroButtonProperties> mbps = MapTool.getCampaign().getGmMacroButtonPropertiesArray();
-        buttonProps =
-            mbps.stream().filter(m -> m.getLabel().equals(macroName)).findFirst().orElse(null);
+        buttonProps = MapTool.getCampaign().getMacroButtonProperty(macroName, true);
       } else if ("GLOBAL".equalsIgnoreCase(macroLocation)) {
         // Global macro
         List<MacroButtonProperties> mbps = MacroButtonPrefs.getButtonProperties();
@@ -857,23 +857,6 @@ private Object handleJsonPathFunctions(String functionName, List<Object> paramet
     }
   }
 
-  /**
-   * Returns a shallow copy of the passed in {@link JsonElement}. If the value is immutable then
-   * this method may just return the value itself without making a copy.
-   *
-   * @param jsonElement The {@link JsonElement} to copy.
-   * @return The resulting json data.
-   */
-  private JsonElement shallowCopy(JsonElement jsonElement) {
-    if (jsonElement.isJsonObject()) {
-      return jsonObjectFunctions.shallowCopy(jsonElement.getAsJsonObject());
-    } else if (jsonElement.isJsonArray()) {
-      return jsonArrayFunctions.shallowCopy(jsonElement.getAsJsonArray());
-    } else {
-      return jsonElement; // Is immutable so no need to return copy,
-    }
-  }
-
   /**
    * Returns a copy of the passed in json with the specified path removed.
    *
@@ -883,7 +866,8 @@ private JsonElement shallowCopy(JsonElement jsonElement) {
    */
   private JsonElement jsonPathDelete(JsonElement json, String path) {
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).delete(path).json();
+      JsonElement copy = typeConversion.asClonedJsonElement(json);
+      return JsonPath.using(jaywayConfig).parse(copy).delete(path).json();
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -903,7 +887,8 @@ private JsonElement jsonPathPut(JsonElement json, String path, String key, Objec
     Object value = asJsonElement(info);
 
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).put(path, key, value).json();
+      JsonElement copy = typeConversion.asClonedJsonElement(json);
+      return JsonPath.using(jaywayConfig).parse(copy).put(path, key, value).json();
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -922,7 +907,8 @@ private JsonElement jsonPathSet(JsonElement json, String path, Object info) {
     Object value = asJsonElement(info);
 
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).set(path, value).json();
+      JsonElement copy = typeConversion.asClonedJsonElement(json);
+      return JsonPath.using(jaywayConfig).parse(copy).set(path, value).json();
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -976,7 +962,8 @@ public JsonObjectFunctions getJsonObjectFunctions() {
   }
 
   /**
-   * This method returns the object passed in as the appropriate json type.
+   * This method returns the object passed in as the appropriate json type. Strings are parsed
+   * through the {@link JsonParseCache}, so the result may be shared and must not be modified.
    *
    * @param o the object to convert.
    * @return the json representation..
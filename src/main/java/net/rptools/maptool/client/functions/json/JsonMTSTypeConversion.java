@@ -15,9 +15,7 @@
 package net.rptools.maptool.client.functions.json;
 
 import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSyntaxException;
 import java.math.BigDecimal;
 
 /** Class used to convert between json and MT Script types. */
@@ -79,7 +77,9 @@ public String jsonToScriptString(JsonElement element) {
   }
 
   /**
-   * Returns a {@link JsonElement} version of the passed in object.
+   * Returns a {@link JsonElement} version of the passed in object. Strings are parsed through the
+   * {@link JsonParseCache}, so the result may be shared and must not be modified; use {@link
+   * #asClonedJsonElement(Object)} for a copy that can be.
    *
    * @param o the object tp convert to a {@link JsonElement}.
    * @return a {@link JsonElement} version of the object.
@@ -93,11 +93,10 @@ JsonElement asJsonElement(Object o) {
       String s = o.toString();
       if (s.startsWith("[") || s.startsWith("{")) {
         // if it could be a json object try parse it, if we want to try convert strings to numbers
-        // parsing it will do this
-        try {
-          return JsonParser.parseString(o.toString());
-        } catch (JsonSyntaxException e) {
-          // Do nothing as we will return a JsonPrimitive of the string
+        // parsing it will do this. Otherwise we will return a JsonPrimitive of the string.
+        JsonElement json = JsonParseCache.parse(s);
+        if (json != null) {
+          return json;
         }
       }
       return new JsonPrimitive(s);
@@ -110,20 +109,15 @@ JsonElement asJsonElement(Object o) {
   }
 
   /**
-   * Returns a {@link JsonElement} version of the passed in object. If the object is already a
-   * {@link JsonElement} then it will return a cloned copy. As {@link JsonPrimitive}s are immutable
-   * they may not be cloned.
+   * Returns a {@link JsonElement} version of the passed in object that can be modified. If the
+   * object is already a {@link JsonElement} or a string that has been parsed before then it will
+   * return a cloned copy. As {@link JsonPrimitive}s are immutable they may not be cloned.
    *
    * @param json the object tp convert to a {@link JsonElement}.
    * @return a {@link JsonElement} version of the object.
    */
   JsonElement asClonedJsonElement(Object json) {
-    if (json instanceof JsonElement) {
-      JsonElement jsonElement = (JsonElement) json;
-      return jsonElement.deepCopy();
-    } else {
-      return asJsonElement(json);
-    }
+    return asJsonElement(json).deepCopy();
   }
 
   /**
@@ -0,0 +1,158 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Parsed json of the strings that MTScript passes around. Json values are stored as strings in
+ * token properties and variables, and macros read the same strings over and over, so each string is
+ * parsed once and the {@link JsonElement} is shared by everyone who asks for it.
+ *
+ * <p>The shared elements must never be modified. The json functions already copy their arguments
+ * before changing them, since variables share elements too; anything else that needs to change a
+ * parsed value must work on a {@link JsonElement#deepCopy()}.
+ *
+ * <p>A string is first looked up by identity, which is what a token property or variable that is
+ * read repeatedly hits, and then by value, which catches equal strings built by macros.
+ */
+public final class JsonParseCache {
+  /** The number of strings to remember by identity. */
+  private static final int MAXIMUM_IDENTITY_SIZE = 4096;
+
+  /** The total length of the strings to remember by value. */
+  private static final long MAXIMUM_VALUE_WEIGHT = 16L * 1024 * 1024;
+
+  /** Stands for a string that could not be parsed, as the caches cannot hold {@code null}. */
+  private static final JsonElement INVALID = JsonNull.INSTANCE;
+
+  /** the only way to make Gson apply strict evaluation to JsonObjects, apparently. see #2396 */
+  private static final TypeAdapter<JsonObject> STRICT_OBJECT_ADAPTER =
+      new Gson().getAdapter(JsonObject.class);
+
+  private static final ParsedStrings LENIENT = new ParsedStrings();
+  private static final ParsedStrings STRICT_OBJECTS = new ParsedStrings();
+
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+
+  private JsonParseCache() {}
+
+  /** The elements parsed from strings, by identity and by value. */
+  private static final class ParsedStrings {
+    private final Cache<String, JsonElement> byIdentity =
+        CacheBuilder.newBuilder().weakKeys().maximumSize(MAXIMUM_IDENTITY_SIZE).build();
+    private final Cache<String, JsonElement> byValue =
+        CacheBuilder.newBuilder()
+            .maximumWeight(MAXIMUM_VALUE_WEIGHT)
+            .weigher((String json, JsonElement element) -> json.length())
+            .softValues()
+            .build();
+
+    JsonElement get(String json, Function<String, JsonElement> parser) {
+      JsonElement element = byIdentity.getIfPresent(json);
+      if (element == null) {
+        element = byValue.getIfPresent(json);
+        if (element == null) {
+          misses.increment();
+          element = parser.apply(json);
+          byValue.put(json, element);
+        } else {
+          hits.increment();
+        }
+        byIdentity.put(json, element);
+      } else {
+        hits.increment();
+      }
+      return element;
+    }
+  }
+
+  /**
+   * Returns the json in the string, parsed as leniently as {@link JsonParser#parseString(String)}
+   * does.
+   *
+   * @param json the string to parse.
+   * @return the shared parsed element, or {@code null} if the string is not valid json.
+   */
+  @Nullable
+  public static JsonElement parse(String json) {
+    JsonElement element =
+        LENIENT.get(
+            json,
+            s -> {
+              try {
+                return JsonParser.parseString(s);
+              } catch (JsonParseException e) {
+                return INVALID;
+              }
+            });
+    return element == INVALID ? null : element;
+  }
+
+  /**
+   * Returns the json object in the string if the string holds exactly one object in strict json
+   * syntax. This rejects strings such as {@code {"a": 1}{"b": 2}} that {@link #parse(String)}
+   * would accept.
+   *
+   * @param json the string to parse.
+   * @return the shared parsed object, or {@code null} if the string is not a strict json object.
+   */
+  @Nullable
+  public static JsonObject parseStrictObject(String json) {
+    JsonElement element = STRICT_OBJECTS.get(json, JsonParseCache::readStrictObject);
+    return element == INVALID ? null : element.getAsJsonObject();
+  }
+
+  private static JsonElement readStrictObject(String json) {
+    try (JsonReader reader = new JsonReader(new StringReader(json))) {
+      JsonObject result = STRICT_OBJECT_ADAPTER.read(reader);
+      // in case of a situation like {"a": 1}{"b": 2}, the above would have stopped at the first
+      // complete object.  This next line will throw an exception on finding another top-level
+      // object.
+      reader.hasNext();
+      if (result != null && result.isJsonObject()) {
+        return result;
+      }
+    } catch (IOException e) {
+      // deliberately ignored - not a strict json object
+    }
+    return INVALID;
+  }
+
+  /**
+   * Returns the number of lookups that found a parsed string and the number that had to parse it.
+   *
+   * @return the statistics since the cache was created.
+   */
+  public static CacheStats stats() {
+    return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, 0);
+  }
+}
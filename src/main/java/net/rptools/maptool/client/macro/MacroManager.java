@@ -17,6 +17,7 @@
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import net.rptools.maptool.client.MacroExecutor;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.MapToolMacroContext;
 import net.rptools.maptool.client.functions.exceptions.*;
@@ -116,6 +117,7 @@ public record MacroDetails(
     registerMacro(new TextureNoise());
     registerMacro(new VersionMacro());
     registerMacro(new AboutMacro());
+    registerMacro(new ProfileMacro());
     registerMacro(UNDEFINED_MACRO);
   }
 
@@ -281,6 +283,11 @@ public static void executeMacro(String command) {
    * @param macroExecutionContext The context in which the macro is being executed.
    */
   public static void executeMacro(String command, MapToolMacroContext macroExecutionContext) {
+    if (MacroExecutor.shouldSubmit()) {
+      String submittedCommand = command;
+      MacroExecutor.submit(() -> executeMacro(submittedCommand, macroExecutionContext));
+      return;
+    }
     MacroContext context = new MacroContext();
     context.addTransform(command);
     String macroButtonName =
@@ -320,15 +327,7 @@ public static void executeMacro(String command, MapToolMacroContext macroExecuti
         // Preprocess line if required.
         if (def == null || def.expandRolls()) {
           // TODO: fix this, wow I really hate this, it's very, very ugly.
-          Token tokenInContext = null;
-          ZoneRenderer zr = MapTool.getFrame().getCurrentZoneRenderer();
-          if (zr != null) {
-            final MapToolFrame frame = MapTool.getFrame();
-            final CommandPanel cpanel = frame.getCommandPanel();
-            if (cpanel.getIdentityGUID() != null)
-              tokenInContext = zr.getZone().getToken(cpanel.getIdentityGUID());
-            else tokenInContext = zr.getZone().resolveToken(cpanel.getIdentity());
-          }
+          Token tokenInContext = MacroExecutor.callOnEdt(MacroManager::getTokenInContext);
           details = MapTool.getParser().parseLine(tokenInContext, details, macroExecutionContext);
           trustedPath = MapTool.getParser().isMacroPathTrusted();
         }
@@ -337,19 +336,24 @@ public static void executeMacro(String command, MapToolMacroContext macroExecuti
 
         context.addTransform(key + " " + details);
         if (macro != UNDEFINED_MACRO) {
-          executeMacro(context, macro, details, macroExecutionContext);
+          String macroDetails = details;
+          MacroExecutor.runOnEdt(
+              () -> executeMacro(context, macro, macroDetails, macroExecutionContext));
           return;
         }
 
         // Is it an alias ?
         var mdet = findAlias(key);
         if (mdet == null || mdet.isEmpty()) {
-          executeMacro(context, UNDEFINED_MACRO, command, macroExecutionContext);
+          String undefinedCommand = command;
+          MacroExecutor.runOnEdt(
+              () ->
+                  executeMacro(context, UNDEFINED_MACRO, undefinedCommand, macroExecutionContext));
           return;
         }
 
         if (mdet.size() > 1) {
-          printAmbiguousAliasMessage(key);
+          MacroExecutor.runOnEdt(() -> printAmbiguousAliasMessage(key));
           return;
         }
         String alias = mdet.get(0).command();
@@ -361,24 +365,41 @@ public static void executeMacro(String command, MapToolMacroContext macroExecuti
       // Do nothing, just silently exit
       return;
     } catch (JavascriptFunctionException | AssertFunctionException afe) {
-      MapTool.addLocalMessage(afe.getMessage());
+      MacroExecutor.runOnEdt(() -> MapTool.addLocalMessage(afe.getMessage()));
       return;
     } catch (ParserException e) {
       e.addMacro(macroButtonName);
-      MapTool.addErrorMessage(e);
+      MacroExecutor.runOnEdt(() -> MapTool.addErrorMessage(e));
       // These are not errors to worry about as they are usually user input errors so no need to log
       // them.
       return;
     } catch (Exception e) {
-      MapTool.addLocalMessage(
-          I18N.getText("macromanager.couldNotExecute", command, e.getMessage()));
+      String message = I18N.getText("macromanager.couldNotExecute", command, e.getMessage());
+      MacroExecutor.runOnEdt(() -> MapTool.addLocalMessage(message));
       log.warn("Exception executing command: " + command);
       log.warn(e.getStackTrace());
       return;
     }
 
     // We'll only get here if the recurseCount is exceeded
-    MapTool.addLocalMessage(I18N.getText("macromanager.tooManyResolves", command));
+    String message = I18N.getText("macromanager.tooManyResolves", command);
+    MacroExecutor.runOnEdt(() -> MapTool.addLocalMessage(message));
+  }
+
+  /**
+   * @return the token that the chat panel currently speaks as, or {@code null} if there is none.
+   */
+  private static Token getTokenInContext() {
+    ZoneRenderer zr = MapTool.getFrame().getCurrentZoneRenderer();
+    if (zr == null) {
+      return null;
+    }
+    final MapToolFrame frame = MapTool.getFrame();
+    final CommandPanel cpanel = frame.getCommandPanel();
+    if (cpanel.getIdentityGUID() != null) {
+      return zr.getZone().getToken(cpanel.getIdentityGUID());
+    }
+    return zr.getZone().resolveToken(cpanel.getIdentity());
   }
 
   private static List<MacroDetails> findAlias(String key) {
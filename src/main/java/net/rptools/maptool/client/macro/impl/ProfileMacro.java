@@ -0,0 +1,93 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.macro.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.swing.JFileChooser;
+import net.rptools.maptool.client.MacroProfiler;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.client.MapToolMacroContext;
+import net.rptools.maptool.client.macro.Macro;
+import net.rptools.maptool.client.macro.MacroContext;
+import net.rptools.maptool.client.macro.MacroDefinition;
+import net.rptools.maptool.language.I18N;
+
+@MacroDefinition(
+    name = "profile",
+    aliases = {},
+    description = "profile.description")
+/**
+ * This class implements the slash command that turns the {@link MacroProfiler} on and off, shows
+ * its report and exports its call stacks for flame graphs.
+ */
+public class ProfileMacro implements Macro {
+
+  @Override
+  public void execute(MacroContext context, String macro, MapToolMacroContext executionContext) {
+    String[] args = macro.trim().split("\\s+", 2);
+    switch (args[0].toLowerCase()) {
+      case "on" -> {
+        MacroProfiler.reset();
+        MacroProfiler.setEnabled(true);
+        MapTool.addLocalMessage(I18N.getText("profile.on"));
+      }
+      case "off" -> {
+        MacroProfiler.setEnabled(false);
+        MapTool.addLocalMessage(I18N.getText("profile.off"));
+        showReport();
+      }
+      case "reset" -> {
+        MacroProfiler.reset();
+        MapTool.addLocalMessage(I18N.getText("profile.reset"));
+      }
+      case "report" -> showReport();
+      case "export" -> export(args.length > 1 ? new File(args[1]) : null);
+      default -> {
+        MapTool.addLocalMessage(
+            I18N.getText(MacroProfiler.isEnabled() ? "profile.on" : "profile.off"));
+        MapTool.addLocalMessage(I18N.getText("profile.usage"));
+      }
+    }
+  }
+
+  private void showReport() {
+    var frame = MapTool.getProfilingNoteFrame();
+    frame.addText(MacroProfiler.getReport());
+    frame.setVisible(true);
+  }
+
+  private void export(File file) {
+    if (file == null) {
+      JFileChooser chooser = MapTool.getFrame().getSaveFileChooser();
+      chooser.setDialogTitle(I18N.getText("profile.dialogTitle"));
+      chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+      if (chooser.showSaveDialog(MapTool.getFrame()) != JFileChooser.APPROVE_OPTION) {
+        return;
+      }
+      file = chooser.getSelectedFile();
+    }
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      MacroProfiler.writeFlameGraph(writer);
+      MapTool.addLocalMessage(I18N.getText("profile.exported", file.getAbsolutePath()));
+    } catch (IOException e) {
+      MapTool.addLocalMessage(I18N.getText("profile.couldNotExport", e.getMessage()));
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 import com.google.gson.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import net.rptools.maptool.client.MacroExecutor;
 import net.rptools.maptool.client.MapToolVariableResolver;
 import net.rptools.maptool.client.functions.*;
 import net.rptools.maptool.client.script.javascript.api.*;
@@ -28,7 +30,9 @@
 public class JSMacro extends AbstractFunction {
   private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
   private static JSMacro instance = new JSMacro();
-  private static HashMap<String, JSAPIRegisteredMacro> macros = new HashMap<>();
+
+  /** The registered functions, which macros on the {@link MacroExecutor} worker look up too. */
+  private static final Map<String, JSAPIRegisteredMacro> macros = new ConcurrentHashMap<>();
 
   public static void registerMacro(String name, JSAPIRegisteredMacro macro) {
     macros.put(name, macro);
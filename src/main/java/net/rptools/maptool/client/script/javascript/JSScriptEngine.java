@@ -14,10 +14,15 @@
  */
 package net.rptools.maptool.client.script.javascript;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.oracle.truffle.js.scriptengine.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 import javax.script.*;
+import net.rptools.lib.MD5Key;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.functions.MacroJavaScriptBridge;
 import net.rptools.maptool.client.script.javascript.api.*;
@@ -31,6 +36,24 @@
 
 public class JSScriptEngine {
 
+  /** The number of compiled scripts to keep. */
+  private static final int MAXIMUM_SOURCES = 500;
+
+  /**
+   * The engine that all contexts are created from, so that scripts parsed and compiled in one
+   * context are reused by the others.
+   */
+  private static final Engine engine =
+      Engine.newBuilder().option("js.ecmascript-version", "2021").build();
+
+  /**
+   * The sources of the scripts that have been evaluated, by add-on asset {@link MD5Key} or by
+   * script text. The engine only reuses the code compiled for a source when it is given an equal
+   * source, so they are kept here rather than rebuilt for every call.
+   */
+  private static final Cache<Object, Source> sources =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SOURCES).softValues().build();
+
   private static Context.Builder cbuilder;
   private static final JSScriptEngine jsScriptEngine = new JSScriptEngine();
   private static final Logger log = LogManager.getLogger(JSScriptEngine.class);
@@ -38,6 +61,9 @@ public class JSScriptEngine {
   private static final Map<String, JSContext> addOnContexts = new HashMap<String, JSContext>();
   private static final Stack<JSContext> contextStack = new Stack<>();
 
+  /** The classes of the API objects that are added to every context. */
+  private final Set<Class<?>> apiClasses;
+
   public static JSContext getCurrentContext() {
     return contextStack.peek();
   }
@@ -66,8 +92,11 @@ private JSScriptEngine() {
     HostAccess access = habuilder.build();
 
     cbuilder = Context.newBuilder("js");
+    cbuilder.engine(engine);
     cbuilder.allowHostAccess(access);
-    cbuilder.option("js.ecmascript-version", "2021");
+
+    Reflections reflections = new Reflections("net.rptools.maptool.client.script.javascript.api");
+    apiClasses = reflections.getTypesAnnotatedWith(MapToolJSAPIDefinition.class);
   }
 
   public static JSContext registerContext(String name, boolean trusted, boolean makeTrusted)
@@ -131,10 +160,7 @@ public Context makeContext() {
     Context context = cbuilder.build();
     Value bindings = context.getBindings("js");
 
-    Reflections reflections = new Reflections("net.rptools.maptool.client.script.javascript.api");
-    Set<Class<?>> annotated = reflections.getTypesAnnotatedWith(MapToolJSAPIDefinition.class);
-
-    for (Class<?> apiClass : annotated) {
+    for (Class<?> apiClass : apiClasses) {
       try {
         if (MapToolJSAPIInterface.class.isAssignableFrom(apiClass)) {
           registerAPIObject(bindings, (MapToolJSAPIInterface) apiClass.newInstance());
@@ -152,6 +178,37 @@ public static JSScriptEngine getJSScriptEngine() {
     return jsScriptEngine;
   }
 
+  /**
+   * Returns the source of a script, reusing the source of an earlier call with the same script.
+   *
+   * @param script the JavaScript code.
+   * @return the source for the script.
+   */
+  private static Source getSource(String script) {
+    return cachedSource(script, "<eval>", () -> script);
+  }
+
+  /**
+   * Returns the source of a script of an add-on library, reusing the source of the asset if it has
+   * been evaluated before.
+   *
+   * @param assetKey the key of the asset that holds the script.
+   * @param name the name of the script, used in stack traces.
+   * @param script supplies the JavaScript code if the asset has not been evaluated before.
+   * @return the source for the script.
+   */
+  public static Source getSource(MD5Key assetKey, String name, Supplier<String> script) {
+    return cachedSource(assetKey, name, script);
+  }
+
+  private static Source cachedSource(Object key, String name, Supplier<String> script) {
+    try {
+      return sources.get(key, () -> Source.newBuilder("js", script.get(), name).buildLiteral());
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
   public Value evalScript(String contextName, String script)
       throws ScriptException, ParserException {
     return evalScript(contextName, script, MapTool.getParser().isMacroTrusted());
@@ -178,13 +235,28 @@ public Value evalAddOnScript(String contextName, String script, boolean trusted)
 
   public Value evalScript(JSContext context, String script, boolean trusted)
       throws ScriptException, ParserException {
+    return evalScript(context, getSource(script), trusted);
+  }
+
+  public Value evalScript(String contextName, Source source, boolean trusted)
+      throws ScriptException, ParserException {
+    JSContext jc = contexts.get(contextName);
+    if (jc == null) {
+      jc = registerContext(contextName, trusted, trusted);
+    }
+
+    return evalScript(jc, source, trusted);
+  }
+
+  public Value evalScript(JSContext context, Source source, boolean trusted)
+      throws ScriptException, ParserException {
 
     if (context.trusted() && !trusted) {
       throw new ParserException(I18N.getText("macro.function.general.noPermJS", context.name()));
     }
     contextStack.push(context);
     try {
-      return context.context().eval("js", script);
+      return context.context().eval(source);
     } finally {
       contextStack.pop();
     }
@@ -214,7 +286,7 @@ public Value evalAnonymous(String script) throws ScriptException {
     JSContext jc = new JSContext(MapTool.getParser().isMacroTrusted(), c, "<anonymous>");
     contextStack.push(jc);
     try {
-      return makeContext().eval("js", wrapped.toString());
+      return c.eval(getSource(wrapped.toString()));
     } finally {
       contextStack.pop();
     }
@@ -16,6 +16,7 @@
 
 import com.google.common.eventbus.Subscribe;
 import net.rptools.maptool.client.AppConstants;
+import net.rptools.maptool.client.MacroExecutor;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.events.ZoneActivated;
 import net.rptools.maptool.client.events.ZoneDeactivated;
@@ -51,6 +52,14 @@ public enum FrameType {
   public static void show(
       String name, FrameType frameType, boolean isHTML5, String properties, String html)
       throws ParserException {
+    if (MacroExecutor.isWorkerThread()) {
+      MacroExecutor.callOnEdt(
+          () -> {
+            show(name, frameType, isHTML5, properties, html);
+            return null;
+          });
+      return;
+    }
     if (listener == null) {
       listener = new HTMLFrameFactory.Listener();
     }
@@ -221,6 +221,9 @@ public class PreferencesDialog extends JDialog {
   /** Checkbox for if new macros should be editable by players by default. */
   private final JCheckBox allowPlayerMacroEditsDefault;
 
+  /** Checkbox for if macros should run on a worker thread. */
+  private final JCheckBox runMacrosInBackground;
+
   /** Checkbox for if the details of inline rolls should be shown in tooltips. */
   private final JCheckBox toolTipInlineRolls;
 
@@ -637,6 +640,7 @@ public PreferencesDialog() {
     mapSortType = panel.getComboBox("mapSortType");
     movementMetricCombo = panel.getComboBox("movementMetric");
     allowPlayerMacroEditsDefault = panel.getCheckBox("allowPlayerMacroEditsDefault");
+    runMacrosInBackground = panel.getCheckBox("runMacrosInBackground");
     toolTipInlineRolls = panel.getCheckBox("toolTipInlineRolls");
     suppressToolTipsMacroLinks = panel.getCheckBox("suppressToolTipsMacroLinks");
     trustedOutputForeground = (ColorWell) panel.getComponent("trustedOuputForeground");
@@ -928,6 +932,9 @@ public void focusLost(FocusEvent e) {
             AppPreferences.allowPlayerMacroEditsDefault.set(
                 allowPlayerMacroEditsDefault.isSelected()));
 
+    runMacrosInBackground.addActionListener(
+        e -> AppPreferences.runMacrosInBackground.set(runMacrosInBackground.isSelected()));
+
     showAvatarInChat.addActionListener(
         e -> AppPreferences.showAvatarInChat.set(showAvatarInChat.isSelected()));
     saveReminderCheckBox.addActionListener(
@@ -1606,6 +1613,7 @@ private void setInitialState() {
     syrinscapeActiveCheckBox.setSelected(AppPreferences.syrinscapeActive.get());
     showAvatarInChat.setSelected(AppPreferences.showAvatarInChat.get());
     allowPlayerMacroEditsDefault.setSelected(AppPreferences.allowPlayerMacroEditsDefault.get());
+    runMacrosInBackground.setSelected(AppPreferences.runMacrosInBackground.get());
     toolTipInlineRolls.setSelected(AppPreferences.useToolTipForInlineRoll.get());
     suppressToolTipsMacroLinks.setSelected(AppPreferences.suppressToolTipsForMacroLinks.get());
     trustedOutputForeground.setColor(AppPreferences.trustedPrefixForeground.get());
@@ -44,8 +44,8 @@ public class StatSheet {
   public void setContent(Token token, String content, URL entry, StatSheetLocation location) {
     try {
       var statSheetContext = new StatSheetContext(token, MapTool.getPlayer(), location);
-      var output =
-          HTMLUtil.fixHTMLBase(new HandlebarsUtil<>(content, entry).apply(statSheetContext), entry);
+      HandlebarsUtil<StatSheetContext> template = HandlebarsUtil.forLibrary(content, entry);
+      var output = HTMLUtil.fixHTMLBase(template.apply(statSheetContext), entry);
       Platform.runLater(
           () -> {
             var overlay =
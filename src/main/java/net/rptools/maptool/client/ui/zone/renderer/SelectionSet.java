@@ -16,13 +16,13 @@
 
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import net.rptools.maptool.client.MapTool;
-import net.rptools.maptool.client.ui.zone.RenderPathWorker;
+import net.rptools.maptool.client.walker.PathfindingService;
 import net.rptools.maptool.client.walker.ZoneWalker;
 import net.rptools.maptool.model.*;
 import org.apache.logging.log4j.LogManager;
@@ -49,8 +49,11 @@ public class SelectionSet {
   /** The current location of the key token's drag anchor. */
   private final ZonePoint currentPoint;
 
-  private RenderPathWorker renderPathTask;
-  private ExecutorService renderPathThreadPool = Executors.newSingleThreadExecutor();
+  /** Calculates the path to the latest anchor position, dropping the paths to earlier ones. */
+  private final PathfindingService.Channel pathChannel =
+      PathfindingService.getInstance().newChannel();
+
+  private @Nullable CompletableFuture<Void> renderPathTask;
 
   /**
    * @param playerId The ID of the player performing the movement.
@@ -119,10 +122,7 @@ public boolean contains(Token token) {
   public void cancel() {
     if (walker != null) {
       walker.close();
-
-      if (renderPathTask != null) {
-        renderPathTask.cancel(true);
-      }
+      pathChannel.cancel();
     }
   }
 
@@ -134,15 +134,12 @@ public void renderFinalPath() {
 
       if (renderPathTask != null) {
         log.trace("Waiting on Path Rendering... ");
-        while (true) {
-          try {
-            renderPathTask.get();
-            break;
-          } catch (InterruptedException e) {
-          } catch (ExecutionException e) {
-            log.error("Error while waiting for task to finish", e);
-            break;
-          }
+        try {
+          renderPathTask.join();
+        } catch (CancellationException e) {
+          // Superseded by a waypoint, which calculated the path itself.
+        } catch (CompletionException e) {
+          log.error("Error while waiting for task to finish", e);
         }
       }
     }
@@ -156,24 +153,30 @@ public void update(ZonePoint newAnchorPosition) {
       CellPoint point = grid.convert(currentPoint);
       // walker.replaceLastWaypoint(point, restrictMovement); // OLD WAY
 
-      // New way threaded, off the swing UI thread...
-      if (renderPathTask != null) {
-        renderPathTask.cancel(true);
-      }
-
-      boolean restrictMovement =
-          MapTool.getServerPolicy().isUsingAstarPathfinding() && token.getLayer().supportsWalker();
-
+      // New way threaded, off the swing UI thread. Any path still being calculated for an earlier
+      // position is abandoned.
+      boolean restrictMovement = isMovementRestricted();
       Set<Token.TerrainModifierOperation> terrainModifiersIgnored =
           token.getTerrainModifiersIgnored();
+      ZoneWalker walker = this.walker;
 
       renderPathTask =
-          new RenderPathWorker(
-              walker, point, restrictMovement, terrainModifiersIgnored, token, renderer);
-      renderPathThreadPool.execute(renderPathTask);
+          pathChannel.submit(
+              () -> {
+                synchronized (walker) {
+                  walker.replaceLastWaypoint(
+                      point, restrictMovement, terrainModifiersIgnored, token);
+                }
+                return null;
+              },
+              ignored -> renderer.repaint());
     }
   }
 
+  private boolean isMovementRestricted() {
+    return MapTool.getServerPolicy().isUsingAstarPathfinding() && token.getLayer().supportsWalker();
+  }
+
   /**
    * Add the waypoint if it is a new waypoint. If it is an old waypoint remove it.
    *
@@ -181,7 +184,15 @@ public void update(ZonePoint newAnchorPosition) {
    */
   public void toggleWaypoint(ZonePoint location) {
     if (walker != null) {
-      walker.toggleWaypoint(grid.convert(location));
+      // Stop calculating the path to the previous position, and instead finish the path to the
+      // new waypoint here.
+      pathChannel.cancel();
+      CellPoint point = grid.convert(location);
+      synchronized (walker) {
+        walker.replaceLastWaypoint(
+            point, isMovementRestricted(), token.getTerrainModifiersIgnored(), token);
+        walker.toggleWaypoint(point);
+      }
     } else {
       gridlessPath.appendWaypoint(location);
     }
@@ -0,0 +1,171 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link TokenLocation}s drawn in a frame, in drawing order, bucketed into a grid of screen
+ * cells so that point and rectangle queries only look at the tokens near the query.
+ *
+ * <p>Locations must be added in the order they are drawn, i.e., the top most token last. Queries
+ * preserve that order.
+ */
+class TokenLocationIndex {
+  /** Width and height, in screen pixels, of a bucket. */
+  private static final int CELL_SIZE = 128;
+
+  /** Locations covering more buckets than this are kept in {@link #oversized} instead. */
+  private static final int MAX_CELLS_PER_LOCATION = 64;
+
+  private record Entry(TokenLocation location, Rectangle bounds, int order) {}
+
+  private final List<TokenLocation> locations = new ArrayList<>();
+  private final Map<Long, List<Entry>> buckets = new HashMap<>();
+  private final List<Entry> oversized = new ArrayList<>();
+
+  /**
+   * Adds a location on top of all previously added locations.
+   *
+   * @param location the location to add.
+   */
+  public void add(TokenLocation location) {
+    // Use the shape bounds rather than boundsCache, which drifts as the view is panned.
+    var entry = new Entry(location, location.bounds.getBounds(), locations.size());
+    locations.add(location);
+
+    Rectangle bounds = entry.bounds();
+    int minX = Math.floorDiv(bounds.x, CELL_SIZE);
+    int minY = Math.floorDiv(bounds.y, CELL_SIZE);
+    int maxX = Math.floorDiv(bounds.x + bounds.width, CELL_SIZE);
+    int maxY = Math.floorDiv(bounds.y + bounds.height, CELL_SIZE);
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_LOCATION) {
+      oversized.add(entry);
+      return;
+    }
+    for (int cy = minY; cy <= maxY; cy++) {
+      for (int cx = minX; cx <= maxX; cx++) {
+        buckets.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(entry);
+      }
+    }
+  }
+
+  /** Removes all locations. */
+  public void clear() {
+    locations.clear();
+    buckets.clear();
+    oversized.clear();
+  }
+
+  /**
+   * @return all locations, bottom most first.
+   */
+  public List<TokenLocation> getLocations() {
+    return Collections.unmodifiableList(locations);
+  }
+
+  /**
+   * Finds the top most location whose shape contains the point.
+   *
+   * @param x screen x.
+   * @param y screen y.
+   * @return the location, or {@code null} if there is none.
+   */
+  public TokenLocation getTopmostAt(int x, int y) {
+    Entry best = null;
+    List<Entry> bucket =
+        buckets.get(key(Math.floorDiv(x, CELL_SIZE), Math.floorDiv(y, CELL_SIZE)));
+    if (bucket != null) {
+      // Buckets are in drawing order, so the first hit from the end is the top most in the bucket.
+      for (int i = bucket.size() - 1; i >= 0; i--) {
+        Entry entry = bucket.get(i);
+        if (entry.location().bounds.contains(x, y)) {
+          best = entry;
+          break;
+        }
+      }
+    }
+    for (int i = oversized.size() - 1; i >= 0; i--) {
+      Entry entry = oversized.get(i);
+      if (best != null && entry.order() < best.order()) {
+        break;
+      }
+      if (entry.location().bounds.contains(x, y)) {
+        best = entry;
+        break;
+      }
+    }
+    return best == null ? null : best.location();
+  }
+
+  /**
+   * Finds all locations whose bounding box intersects the rectangle.
+   *
+   * @param rect the rectangle in screen space.
+   * @return the locations, bottom most first.
+   */
+  public List<TokenLocation> getIntersecting(Rectangle rect) {
+    List<Entry> found = new ArrayList<>();
+    int minX = Math.floorDiv(rect.x, CELL_SIZE);
+    int minY = Math.floorDiv(rect.y, CELL_SIZE);
+    int maxX = Math.floorDiv(rect.x + rect.width, CELL_SIZE);
+    int maxY = Math.floorDiv(rect.y + rect.height, CELL_SIZE);
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > buckets.size()) {
+      // Cheaper to look at every bucket than every cell of the rectangle.
+      for (List<Entry> bucket : buckets.values()) {
+        collectIntersecting(bucket, rect, found);
+      }
+    } else {
+      for (int cy = minY; cy <= maxY; cy++) {
+        for (int cx = minX; cx <= maxX; cx++) {
+          List<Entry> bucket = buckets.get(key(cx, cy));
+          if (bucket != null) {
+            collectIntersecting(bucket, rect, found);
+          }
+        }
+      }
+    }
+    collectIntersecting(oversized, rect, found);
+
+    // A location spanning several buckets is found once per bucket.
+    found.sort((a, b) -> Integer.compare(a.order(), b.order()));
+    List<TokenLocation> result = new ArrayList<>(found.size());
+    int lastOrder = -1;
+    for (Entry entry : found) {
+      if (entry.order() != lastOrder) {
+        result.add(entry.location());
+        lastOrder = entry.order();
+      }
+    }
+    return result;
+  }
+
+  private static void collectIntersecting(List<Entry> entries, Rectangle rect, List<Entry> found) {
+    for (Entry entry : entries) {
+      if (rect.intersects(entry.bounds())) {
+        found.add(entry);
+      }
+    }
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+}
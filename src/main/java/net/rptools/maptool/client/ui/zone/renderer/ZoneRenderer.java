@@ -105,13 +105,13 @@ public class ZoneRenderer extends JComponent implements DropTargetListener {
   private Scale zoneScale;
   private final Map<Zone.Layer, DrawableRenderer> drawableRenderers;
   private final List<ZoneOverlay> overlayList = new ArrayList<ZoneOverlay>();
-  private final Map<Zone.Layer, List<TokenLocation>> tokenLocationMap =
-      new HashMap<Zone.Layer, List<TokenLocation>>();
+  private final Map<Zone.Layer, TokenLocationIndex> tokenLocationMap =
+      new HashMap<Zone.Layer, TokenLocationIndex>();
   private final List<LabelLocation> labelLocationList = new LinkedList<LabelLocation>();
   private Map<Token, Set<Token>> tokenStackMap;
   private final Map<GUID, SelectionSet> selectionSetMap = new HashMap<GUID, SelectionSet>();
   private final Map<Token, TokenLocation> tokenLocationCache = new HashMap<Token, TokenLocation>();
-  private final List<TokenLocation> markerLocationList = new ArrayList<TokenLocation>();
+  private final TokenLocationIndex markerLocationIndex = new TokenLocationIndex();
   private GeneralPath facingArrow;
   private final List<Token> showPathList = new ArrayList<Token>();
   private boolean showAllPaths = true; // Jamz: new option to show path
@@ -137,6 +137,9 @@ public class ZoneRenderer extends JComponent implements DropTargetListener {
   private PlayerView lastView;
   private Set<GUID> visibleTokenSet = new HashSet<>();
 
+  /** The token images drawn in the current frame, reported to {@link ImageManager}. */
+  private final Set<MD5Key> onscreenImageAssets = new HashSet<>();
+
   private boolean autoResizeStamp = false;
 
   /** Store previous view to restore to, eg after GM shows ctrl+shift+space pointer */
@@ -886,8 +889,9 @@ public void renderZone(Graphics2D g2d, PlayerView view) {
 
     // Clear internal state
     tokenLocationMap.clear();
-    markerLocationList.clear();
+    markerLocationIndex.clear();
     itemRenderList.clear();
+    onscreenImageAssets.clear();
 
     if (!compositor.isInitialised()) compositor.setRenderer(this);
     if (!gridRenderer.isInitialised()) gridRenderer.setRenderer(this);
@@ -1144,6 +1148,9 @@ public void renderZone(Graphics2D g2d, PlayerView view) {
     timer.stop("lightSourceIconOverlay.paintOverlay");
 
     debugRenderer.renderShapes(g2d, Arrays.asList(shape, shape2, shape3, shape4));
+
+    // Let pending image decodes for what is on screen jump the queue.
+    ImageManager.updateViewportAssets(this, onscreenImageAssets);
   }
 
   private void delayRendering(ItemRenderer renderer) {
@@ -1972,9 +1979,7 @@ public List<Token> getTokensOnScreen() {
     List<Token> list = new ArrayList<Token>();
 
     // Always assume tokens, for now
-    List<TokenLocation> tokenLocationListCopy =
-        new ArrayList<TokenLocation>(getTokenLocations(getActiveLayer()));
-    for (TokenLocation location : tokenLocationListCopy) {
+    for (TokenLocation location : getTokenLocations(getActiveLayer()).getLocations()) {
       list.add(location.token);
     }
 
@@ -2008,11 +2013,11 @@ public void setActiveLayer(Zone.Layer layer) {
   }
 
   /**
-   * Get the token locations for the given layer, creates an empty list if there are not locations
+   * Get the token locations for the given layer, creates an empty index if there are not locations
    * for the given layer
    */
-  private List<TokenLocation> getTokenLocations(Zone.Layer layer) {
-    return tokenLocationMap.computeIfAbsent(layer, k -> new LinkedList<>());
+  private TokenLocationIndex getTokenLocations(Zone.Layer layer) {
+    return tokenLocationMap.computeIfAbsent(layer, k -> new TokenLocationIndex());
   }
 
   // TODO: I don't like this hardwiring
@@ -2156,11 +2161,6 @@ protected void renderTokens(
       Rectangle footprintBounds = token.getBounds(zone);
       timer.stop("tokenlist-1a");
 
-      timer.start("tokenlist-1b");
-      // get token image, using image table if present
-      BufferedImage image = getTokenImage(token);
-      timer.stop("tokenlist-1b");
-
       timer.start("tokenlist-1c");
       double scaledWidth = (footprintBounds.width * scale);
       double scaledHeight = (footprintBounds.height * scale);
@@ -2229,7 +2229,7 @@ protected void renderTokens(
       // Markers
       timer.start("renderTokens:Markers");
       if (token.isMarker() && canSeeMarker(token)) {
-        markerLocationList.add(location);
+        markerLocationIndex.add(location);
       }
       timer.stop("renderTokens:Markers");
 
@@ -2237,7 +2237,8 @@ protected void renderTokens(
       if (calculateStacks) {
         timer.start("tokenStack");
         Set<Token> tokenStackSet = null;
-        for (TokenLocation currLocation : getTokenLocations(Zone.Layer.TOKEN)) {
+        for (TokenLocation currLocation :
+            getTokenLocations(Zone.Layer.TOKEN).getIntersecting(location.boundsCache)) {
           // Are we covering anyone ?
           if (location.boundsCache.contains(currLocation.boundsCache)) {
             if (tokenStackSet == null) {
@@ -2263,11 +2264,7 @@ protected void renderTokens(
       // Keep track of the location on the screen
       // Note the order -- the top most token is at the end of the list
       timer.start("renderTokens:Locations");
-      Zone.Layer layer = token.getLayer();
-      List<TokenLocation> locationList = getTokenLocations(layer);
-      if (locationList != null) {
-        locationList.add(location);
-      }
+      getTokenLocations(token.getLayer()).add(location);
       timer.stop("renderTokens:Locations");
 
       // Add the token to our visible set.
@@ -2284,6 +2281,17 @@ protected void renderTokens(
       }
       timer.stop("renderTokens:OnscreenCheck");
 
+      timer.start("tokenlist-1b");
+      // get token image, using image table if present. Only tokens on screen ask for their image,
+      // so that the images of tokens out of view are not decoded.
+      MD5Key imageId = getTokenImageId(token);
+      if (imageId != null) {
+        onscreenImageAssets.add(imageId);
+      }
+      // Adds this as observer so we can repaint once the image is ready. Fixes #1700.
+      BufferedImage image = ImageManager.getImage(imageId, this);
+      timer.stop("tokenlist-1b");
+
       // create a per token Graphics object - normally clipped, unless always visible
       Area tokenCellArea = zone.getGrid().getTokenCellArea(tokenBounds);
       Graphics2D tokenG;
@@ -2969,10 +2977,8 @@ public boolean isTokenSelectable(GUID tokenGUID) {
    */
   public List<GUID> getTokenIdsInBounds(Rectangle rect) {
     final var tokens = new ArrayList<GUID>();
-    for (TokenLocation location : getTokenLocations(getActiveLayer())) {
-      if (rect.intersects(location.bounds.getBounds())) {
-        tokens.add(location.token.getId());
-      }
+    for (TokenLocation location : getTokenLocations(getActiveLayer()).getIntersecting(rect)) {
+      tokens.add(location.token.getId());
     }
     return tokens;
   }
@@ -3021,7 +3027,7 @@ public Area getTokenBounds(Token token) {
   }
 
   public Area getMarkerBounds(Token token) {
-    for (TokenLocation location : markerLocationList) {
+    for (TokenLocation location : markerLocationIndex.getLocations()) {
       if (location.token == token) {
         return location.bounds;
       }
@@ -3048,26 +3054,13 @@ public Rectangle getLabelBounds(Label label) {
    * @return the token
    */
   public Token getTokenAt(int x, int y) {
-    List<TokenLocation> locationList =
-        new ArrayList<TokenLocation>(getTokenLocations(getActiveLayer()));
-    Collections.reverse(locationList);
-    for (TokenLocation location : locationList) {
-      if (location.bounds.contains(x, y)) {
-        return location.token;
-      }
-    }
-    return null;
+    TokenLocation location = getTokenLocations(getActiveLayer()).getTopmostAt(x, y);
+    return location != null ? location.token : null;
   }
 
   public Token getMarkerAt(int x, int y) {
-    List<TokenLocation> locationList = new ArrayList<TokenLocation>(markerLocationList);
-    Collections.reverse(locationList);
-    for (TokenLocation location : locationList) {
-      if (location.bounds.contains(x, y)) {
-        return location.token;
-      }
-    }
-    return null;
+    TokenLocation location = markerLocationIndex.getTopmostAt(x, y);
+    return location != null ? location.token : null;
   }
 
   public List<Token> getTokenStackAt(int x, int y) {
@@ -3371,8 +3364,18 @@ public void addTokens(
    * @return BufferedImage
    */
   private BufferedImage getTokenImage(Token token) {
-    BufferedImage image = null;
-    // Get the basic image
+    // Adds this as observer so we can repaint once the image is ready. Fixes #1700.
+    return ImageManager.getImage(getTokenImageId(token), this);
+  }
+
+  /**
+   * Returns the asset id of the image to draw for the token, using the token's image table if it
+   * has one and a facing.
+   *
+   * @param token the token to get the image id for.
+   * @return the asset id of the image.
+   */
+  private MD5Key getTokenImageId(Token token) {
     if (token.getHasImageTable() && token.hasFacing() && token.getImageTableName() != null) {
       LookupTable lookupTable =
           MapTool.getCampaign().getLookupTableMap().get(token.getImageTableName());
@@ -3380,19 +3383,14 @@ private BufferedImage getTokenImage(Token token) {
         try {
           LookupEntry result = lookupTable.getLookup(Integer.toString(token.getFacing()));
           if (result != null) {
-            image = ImageManager.getImage(result.getImageId(), this);
+            return result.getImageId();
           }
         } catch (ParserException p) {
           // do nothing
         }
       }
     }
-
-    if (image == null) {
-      // Adds this as observer so we can repaint once the image is ready. Fixes #1700.
-      image = ImageManager.getImage(token.getImageAssetId(), this);
-    }
-    return image;
+    return token.getImageAssetId();
   }
 
   /*
@@ -21,7 +21,6 @@
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import net.rptools.maptool.client.ui.zone.RenderPathWorker;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.Path;
 import net.rptools.maptool.model.Token;
@@ -36,7 +35,6 @@ public abstract class AbstractZoneWalker implements ZoneWalker {
   protected Set<TerrainModifierOperation> terrainModifiersIgnored;
   // Can be null, e.g., for measurement tools.
   protected @Nullable Token keyToken;
-  protected RenderPathWorker renderPathWorker;
 
   public AbstractZoneWalker(Zone zone) {
     this.zone = zone;
@@ -91,19 +89,18 @@ public void replaceLastWaypoint(
     if (partialPaths.isEmpty()) {
       return;
     }
-    PartialPath oldPartial = partialPaths.remove(partialPaths.size() - 1);
+    PartialPath oldPartial = partialPaths.get(partialPaths.size() - 1);
 
     // short circuit exit if the point hasn't changed.
     // if (oldPartial.end.equals(point))
     // return null;
 
-    partialPaths.add(
-        new PartialPath(oldPartial.start, point, calculatePath(oldPartial.start, point)));
-  }
-
-  public Path<CellPoint> getPath(RenderPathWorker renderPathWorker) {
-    this.renderPathWorker = renderPathWorker;
-    return getPath();
+    List<CellPoint> path = calculatePath(oldPartial.start, point);
+    if (PathfindingService.isCancelled()) {
+      // A newer point is on its way, so keep showing the old path until its path is ready.
+      return;
+    }
+    partialPaths.set(partialPaths.size() - 1, new PartialPath(oldPartial.start, point, path));
   }
 
   public @Nonnull Path<CellPoint> getPath() {
@@ -0,0 +1,226 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker;
+
+import java.awt.EventQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the path calculations of the user interface off the event dispatch thread.
+ *
+ * <p>Paths that follow the mouse are requested through a {@link Channel}, one per thing being
+ * moved. Each request carries the generation of its channel when it was made, and a newer request
+ * supersedes the older ones: a request that has not started yet is dropped, a running one sees
+ * {@link #isCancelled()} and stops at the next opportunity, and only the result of the latest
+ * request is delivered to the event dispatch thread.
+ *
+ * <p>Macros that need a path calculate it on their own thread instead. Waiting for a pathfinding
+ * thread would have to keep the event dispatch thread handling events, which could start another
+ * macro or change the zone in the middle of the calculation.
+ */
+public final class PathfindingService {
+  private static final Logger log = LogManager.getLogger(PathfindingService.class);
+
+  private static final ThreadFactory pathfindingThreadFactory =
+      (new com.google.common.util.concurrent.ThreadFactoryBuilder())
+          .setNameFormat("pathfinding-%d")
+          .setDaemon(true)
+          .build();
+
+  /** Channels have at most one request queued, so this is plenty for the tokens being moved. */
+  private static final int QUEUE_CAPACITY = 32;
+
+  private static final PathfindingService instance =
+      new PathfindingService(
+          Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)));
+
+  /** The request running on the current thread, if any. */
+  private static final ThreadLocal<Request<?>> currentRequest = new ThreadLocal<>();
+
+  private final ThreadPoolExecutor executor;
+
+  PathfindingService(int threads) {
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            30,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            pathfindingThreadFactory);
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  public static PathfindingService getInstance() {
+    return instance;
+  }
+
+  /**
+   * Checks whether the request being run on the current thread has been superseded. Long
+   * calculations should check this regularly and stop if it is true; their result is dropped
+   * anyway.
+   *
+   * @return {@code true} if the current request has been superseded, {@code false} if it has not
+   *     or the current thread is not running a request.
+   */
+  public static boolean isCancelled() {
+    Request<?> request = currentRequest.get();
+    return request != null && request.isSuperseded();
+  }
+
+  /**
+   * @return a new channel whose requests supersede each other.
+   */
+  public Channel newChannel() {
+    return new Channel();
+  }
+
+  private <T> void execute(Request<T> request) {
+    try {
+      executor.execute(() -> run(request));
+    } catch (RejectedExecutionException e) {
+      log.warn("Pathfinding queue is full, dropping request");
+      request.future.cancel(false);
+      request.channel.finished();
+    }
+  }
+
+  private <T> void run(Request<T> request) {
+    currentRequest.set(request);
+    try {
+      if (request.isSuperseded()) {
+        request.future.cancel(false);
+        return;
+      }
+      T result = request.task.get();
+      if (request.isSuperseded()) {
+        request.future.cancel(false);
+        return;
+      }
+      EventQueue.invokeLater(
+          () -> {
+            // A newer request may have been made while this one was waiting to be delivered.
+            if (!request.isSuperseded()) {
+              request.onResult.accept(result);
+            }
+          });
+      request.future.complete(result);
+    } catch (RuntimeException e) {
+      log.error("Error while calculating path", e);
+      request.future.completeExceptionally(e);
+    } finally {
+      currentRequest.remove();
+      request.channel.finished();
+    }
+  }
+
+  /** A sequence of requests, each of which supersedes those before it. */
+  public final class Channel {
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Whether a request of this channel is queued or running on the executor. */
+    private boolean busy;
+
+    /** The request to run once the current one finishes. */
+    private @Nullable Request<?> pending;
+
+    private Channel() {}
+
+    /**
+     * Requests a calculation, superseding all earlier requests of this channel. Requests of a
+     * channel never run at the same time, so the task may use state that only this channel
+     * touches.
+     *
+     * @param task the calculation, run on a pathfinding thread.
+     * @param onResult called on the event dispatch thread with the result, unless a newer request
+     *     has been made by then.
+     * @return a future for the result, cancelled if the request is superseded before it completes.
+     * @param <T> the type of the result.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task, Consumer<? super T> onResult) {
+      var request = new Request<T>(this, generation.incrementAndGet(), task, onResult);
+      boolean start;
+      synchronized (this) {
+        if (pending != null) {
+          pending.future.cancel(false);
+        }
+        start = !busy;
+        if (start) {
+          busy = true;
+        } else {
+          pending = request;
+        }
+      }
+      if (start) {
+        execute(request);
+      }
+      return request.future;
+    }
+
+    /** Supersedes all requests made so far, without making a new one. */
+    public void cancel() {
+      generation.incrementAndGet();
+      synchronized (this) {
+        if (pending != null) {
+          pending.future.cancel(false);
+          pending = null;
+        }
+      }
+    }
+
+    private void finished() {
+      Request<?> next;
+      synchronized (this) {
+        next = pending;
+        pending = null;
+        busy = next != null;
+      }
+      if (next != null) {
+        execute(next);
+      }
+    }
+  }
+
+  private static final class Request<T> {
+    private final Channel channel;
+    private final long generation;
+    private final Supplier<T> task;
+    private final Consumer<? super T> onResult;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    private Request(
+        Channel channel, long generation, Supplier<T> task, Consumer<? super T> onResult) {
+      this.channel = channel;
+      this.generation = generation;
+      this.task = task;
+      this.onResult = onResult;
+    }
+
+    private boolean isSuperseded() {
+      return generation != channel.generation.get();
+    }
+  }
+}
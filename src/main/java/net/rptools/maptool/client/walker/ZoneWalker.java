@@ -17,7 +17,6 @@
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nonnull;
-import net.rptools.maptool.client.ui.zone.RenderPathWorker;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.Path;
 import net.rptools.maptool.model.Token;
@@ -46,8 +45,6 @@ public void replaceLastWaypoint(
 
   public @Nonnull Path<CellPoint> getPath();
 
-  public Path<CellPoint> getPath(RenderPathWorker renderPathWorker);
-
   public CellPoint getLastPoint();
 
   /**
@@ -0,0 +1,317 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.Arrays;
+
+/**
+ * The nodes of an A* search, stored in parallel primitive arrays and identified by index, together
+ * with the open list as an indexed binary min-heap on the f cost.
+ *
+ * <p>A node is a cell plus whether an odd number of 1-2-1 diagonals was taken to reach it. Nodes
+ * are found by a packed {@code long} key, so a search does not allocate per node or per expansion.
+ * {@link #clear()} keeps all arrays, so one instance can be reused for many searches.
+ */
+final class AStarNodes {
+  /** Returned for missing nodes and as the parent of the start node. */
+  static final int NONE = -1;
+
+  private static final int CLOSED = -2;
+
+  private final LongIntHashMap index = new LongIntHashMap(1024);
+
+  private int size;
+  private int[] x = new int[256];
+  private int[] y = new int[256];
+  private boolean[] odd = new boolean[256];
+  private int[] parent = new int[256];
+  private double[] g = new double[256];
+  private double[] h = new double[256];
+  private double[] distanceTraveled = new double[256];
+  private double[] distanceTraveledWithoutTerrain = new double[256];
+
+  /** Where each node is in {@link #heap}, or {@link #NONE} / {@link #CLOSED}. */
+  private int[] heapPosition = new int[256];
+
+  private int[] heap = new int[256];
+  private int heapSize;
+
+  /** Removes all nodes, keeping the storage for the next search. */
+  void clear() {
+    index.clear();
+    size = 0;
+    heapSize = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the node for the cell and parity, or {@link #NONE} if it has not been seen yet.
+   */
+  int find(int cellX, int cellY, boolean isOdd) {
+    return index.get(key(cellX, cellY, isOdd));
+  }
+
+  /**
+   * Creates a node that is neither open nor closed. The caller must not create a node that already
+   * exists.
+   *
+   * @return the new node.
+   */
+  int create(int cellX, int cellY, boolean isOdd) {
+    if (size == x.length) {
+      grow();
+    }
+    int node = size++;
+    x[node] = cellX;
+    y[node] = cellY;
+    odd[node] = isOdd;
+    parent[node] = NONE;
+    heapPosition[node] = NONE;
+    index.put(key(cellX, cellY, isOdd), node);
+    return node;
+  }
+
+  /**
+   * Closes the node for the cell and parity as unreachable, creating it if needed.
+   *
+   * <p>Unlike nodes closed by {@link #pollLowest()}, the node is not settled: it has no path. Nodes
+   * that are already closed are left as they are.
+   */
+  void close(int cellX, int cellY, boolean isOdd) {
+    int node = find(cellX, cellY, isOdd);
+    if (node == NONE) {
+      node = create(cellX, cellY, isOdd);
+    } else if (isClosed(node)) {
+      return;
+    } else if (isOpen(node)) {
+      removeFromHeap(node);
+    }
+    heapPosition[node] = CLOSED;
+    parent[node] = NONE;
+    g[node] = Double.POSITIVE_INFINITY;
+  }
+
+  boolean isClosed(int node) {
+    return heapPosition[node] == CLOSED;
+  }
+
+  /**
+   * @return whether the node was taken off the open list, so that its cost is final.
+   */
+  boolean isSettled(int node) {
+    return heapPosition[node] == CLOSED && g[node] != Double.POSITIVE_INFINITY;
+  }
+
+  boolean isOpen(int node) {
+    return heapPosition[node] >= 0;
+  }
+
+  boolean isOpenListEmpty() {
+    return heapSize == 0;
+  }
+
+  int openCount() {
+    return heapSize;
+  }
+
+  /**
+   * Adds the node to the open list, or moves it to its new place if it is already open. Call this
+   * after its costs are set.
+   */
+  void open(int node) {
+    int position = heapPosition[node];
+    if (position >= 0) {
+      siftUp(position);
+      siftDown(heapPosition[node]);
+      return;
+    }
+    heap[heapSize] = node;
+    heapPosition[node] = heapSize;
+    siftUp(heapSize++);
+  }
+
+  /**
+   * @return the open node with the lowest f cost, or {@link #NONE} if the open list is empty.
+   */
+  int peekLowest() {
+    return heapSize == 0 ? NONE : heap[0];
+  }
+
+  /**
+   * Removes the open node with the lowest f cost and closes it.
+   *
+   * @return the node, or {@link #NONE} if the open list is empty.
+   */
+  int pollLowest() {
+    if (heapSize == 0) {
+      return NONE;
+    }
+    int node = heap[0];
+    removeFromHeap(node);
+    heapPosition[node] = CLOSED;
+    return node;
+  }
+
+  /**
+   * @param position a position in the open list, from 0 to {@link #openCount()} - 1.
+   * @return the open node at that position, in no particular order.
+   */
+  int openNode(int position) {
+    return heap[position];
+  }
+
+  /**
+   * Replaces the estimate of an open node without moving it. Call {@link #reorderOpenList()} once
+   * all estimates are replaced.
+   */
+  void setH(int node, double hCost) {
+    h[node] = hCost;
+  }
+
+  /** Restores the order of the open list after {@link #setH(int, double)}. */
+  void reorderOpenList() {
+    for (int position = heapSize / 2 - 1; position >= 0; position--) {
+      siftDown(position);
+    }
+  }
+
+  int x(int node) {
+    return x[node];
+  }
+
+  int y(int node) {
+    return y[node];
+  }
+
+  boolean isOdd(int node) {
+    return odd[node];
+  }
+
+  int parent(int node) {
+    return parent[node];
+  }
+
+  double g(int node) {
+    return g[node];
+  }
+
+  double h(int node) {
+    return h[node];
+  }
+
+  double f(int node) {
+    return g[node] + h[node];
+  }
+
+  double distanceTraveled(int node) {
+    return distanceTraveled[node];
+  }
+
+  double distanceTraveledWithoutTerrain(int node) {
+    return distanceTraveledWithoutTerrain[node];
+  }
+
+  /** Sets how the node was reached. Reopen the node afterwards if it is open. */
+  void setCosts(
+      int node,
+      int parentNode,
+      double gCost,
+      double hCost,
+      double traveled,
+      double traveledWithoutTerrain) {
+    parent[node] = parentNode;
+    g[node] = gCost;
+    h[node] = hCost;
+    distanceTraveled[node] = traveled;
+    distanceTraveledWithoutTerrain[node] = traveledWithoutTerrain;
+  }
+
+  private void removeFromHeap(int node) {
+    int position = heapPosition[node];
+    heapPosition[node] = NONE;
+    int last = heap[--heapSize];
+    if (position < heapSize) {
+      heap[position] = last;
+      heapPosition[last] = position;
+      siftUp(position);
+      siftDown(heapPosition[last]);
+    }
+  }
+
+  private void siftUp(int position) {
+    int node = heap[position];
+    double f = f(node);
+    while (position > 0) {
+      int parentPosition = (position - 1) >>> 1;
+      int parentNode = heap[parentPosition];
+      if (f(parentNode) <= f) {
+        break;
+      }
+      heap[position] = parentNode;
+      heapPosition[parentNode] = position;
+      position = parentPosition;
+    }
+    heap[position] = node;
+    heapPosition[node] = position;
+  }
+
+  private void siftDown(int position) {
+    int node = heap[position];
+    double f = f(node);
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && f(heap[child + 1]) < f(heap[child])) {
+        child++;
+      }
+      int childNode = heap[child];
+      if (f <= f(childNode)) {
+        break;
+      }
+      heap[position] = childNode;
+      heapPosition[childNode] = position;
+      position = child;
+    }
+    heap[position] = node;
+    heapPosition[node] = position;
+  }
+
+  private void grow() {
+    int capacity = x.length * 2;
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    odd = Arrays.copyOf(odd, capacity);
+    parent = Arrays.copyOf(parent, capacity);
+    g = Arrays.copyOf(g, capacity);
+    h = Arrays.copyOf(h, capacity);
+    distanceTraveled = Arrays.copyOf(distanceTraveled, capacity);
+    distanceTraveledWithoutTerrain = Arrays.copyOf(distanceTraveledWithoutTerrain, capacity);
+    heapPosition = Arrays.copyOf(heapPosition, capacity);
+    heap = Arrays.copyOf(heap, capacity);
+  }
+
+  /**
+   * Packs a cell and parity into a key. Coordinates must fit in 31 bits, which is far beyond the
+   * size of any map.
+   */
+  static long key(int cellX, int cellY, boolean isOdd) {
+    return ((long) cellX << 33) | ((cellY & 0xFFFFFFFFL) << 1) | (isOdd ? 1 : 0);
+  }
+}
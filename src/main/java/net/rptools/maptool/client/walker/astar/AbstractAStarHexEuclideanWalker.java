@@ -30,16 +30,16 @@ public AbstractAStarHexEuclideanWalker(Zone zone) {
   protected abstract int[][] getNeighborMap(int x, int y);
 
   @Override
-  protected double hScore(AStarCellPoint p1, CellPoint p2) {
-    return euclideanDistance(p1.position, p2);
+  protected double hScore(int x, int y, boolean isOddStepOfOneTwoOneMovement, CellPoint goal) {
+    return euclideanDistance(x, y, goal);
   }
 
   // Adjusted math per: https://www.redblobgames.com/grids/hexagons/#distances
-  private double euclideanDistance(CellPoint current, CellPoint goal) {
+  private double euclideanDistance(int x, int y, CellPoint goal) {
     // Using Axial coordinates q & r to match hex coordinate conventions
-    int aq = current.x;
+    int aq = x;
     int bq = goal.x;
-    int ar = current.y;
+    int ar = y;
     int br = goal.y;
 
     // break ties to prefer better looking paths that are along the straight line from the starting
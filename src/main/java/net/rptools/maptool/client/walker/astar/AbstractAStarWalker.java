@@ -14,7 +14,6 @@
  */
 package net.rptools.maptool.client.walker.astar;
 
-import com.google.common.eventbus.Subscribe;
 import java.awt.Color;
 import java.awt.EventQueue;
 import java.awt.Rectangle;
@@ -23,47 +22,67 @@
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import net.rptools.lib.GeometryUtil;
 import net.rptools.maptool.client.DeveloperOptions;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
 import net.rptools.maptool.client.walker.AbstractZoneWalker;
-import net.rptools.maptool.events.MapToolEventBus;
+import net.rptools.maptool.client.walker.PathfindingService;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Grid;
 import net.rptools.maptool.model.Label;
+import net.rptools.maptool.model.TerrainCostField;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.TokenFootprint;
 import net.rptools.maptool.model.Zone;
-import net.rptools.maptool.model.zones.MaskTopologyChanged;
-import net.rptools.maptool.model.zones.WallTopologyChanged;
+import net.rptools.maptool.model.ZonePoint;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.locationtech.jts.algorithm.ConvexHull;
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 
 public abstract class AbstractAStarWalker extends AbstractZoneWalker {
-  private record TerrainModifier(Token.TerrainModifierOperation operation, double value) {}
+  /**
+   * Everything other than the goal that the result of a search depends on. Topology, fog of war
+   * and footprints are compared by identity, as they are replaced rather than changed.
+   */
+  private record SearchSettings(
+      int startX,
+      int startY,
+      double startDistanceTraveled,
+      double startDistanceTraveledWithoutTerrain,
+      boolean restrictMovement,
+      Set<Token.TerrainModifierOperation> terrainModifiersIgnored,
+      TokenFootprint footprint,
+      PassabilityGrid passability,
+      PreparedGeometry fowExposedAreaGeometry) {
+    boolean canContinue(@Nullable SearchSettings last) {
+      return last != null
+          && startX == last.startX
+          && startY == last.startY
+          && startDistanceTraveled == last.startDistanceTraveled
+          && startDistanceTraveledWithoutTerrain == last.startDistanceTraveledWithoutTerrain
+          && restrictMovement == last.restrictMovement
+          && Objects.equals(terrainModifiersIgnored, last.terrainModifiersIgnored)
+          && footprint == last.footprint
+          && passability == last.passability
+          && fowExposedAreaGeometry == last.fowExposedAreaGeometry;
+    }
+  }
 
   private static boolean isInteger(double d) {
     return (int) d == d;
@@ -71,19 +90,49 @@ private static boolean isInteger(double d) {
 
   private static final Logger log = LogManager.getLogger(AbstractAStarWalker.class);
 
+  /** A map of 500 by 500 cells. */
+  private static final int HIERARCHICAL_MIN_CELLS = 500 * 500;
+
   private final GeometryFactory geometryFactory = new GeometryFactory();
   protected int crossX = 0;
   protected int crossY = 0;
   private Area fowExposedArea = new Area();
   private double cell_cost = zone.getUnitsPerCell();
   private double distance = -1;
-  private final AtomicBoolean invalidatedTopology = new AtomicBoolean(true);
-  private @Nonnull MovementBlockingTopology preparedTopology = new MovementBlockingTopology();
+  private @Nonnull PassabilityGrid passability =
+      new PassabilityGrid(zone.getGrid(), new MovementBlockingTopology());
   private PreparedGeometry fowExposedAreaGeometry = null;
   private TokenFootprint footprint = new TokenFootprint();
-  private Map<CellPoint, Map<CellPoint, Boolean>> vblBlockedMovesByGoal = new ConcurrentHashMap<>();
   private Map<CellPoint, Map<CellPoint, Boolean>> fowBlockedMovesByGoal = new ConcurrentHashMap<>();
-  private final Map<CellPoint, List<TerrainModifier>> terrainCells = new HashMap<>();
+  /** The terrain of the zone, shared with other walkers and fixed for the life of this one. */
+  private final TerrainCostField terrain;
+
+  /** The {@link TerrainCostField#bit} of each terrain operation the token ignores. */
+  private int terrainOperationsIgnored;
+
+  /** The nodes of the current search, kept between searches to avoid reallocating them. */
+  private final AStarNodes nodes = new AStarNodes();
+
+  private boolean vblBlocksMove = false;
+
+  /**
+   * Searches over more cells than this first find a coarse route with a {@link ClusterGraph}, and
+   * only search the clusters along it.
+   */
+  private int hierarchicalMinCells = HIERARCHICAL_MIN_CELLS;
+
+  /** The clusters the search in {@link #nodes} is limited to, or null if it is not limited. */
+  private @Nullable ClusterGraph.Corridor corridor;
+
+  /** What the search in {@link #nodes} was for, or null if it must not be continued. */
+  private @Nullable SearchSettings lastSearch;
+
+  private Rectangle2D lastSearchBounds;
+
+  /** The goal the last search stopped at, which has been settled but not expanded. */
+  private int unexpandedNode = AStarNodes.NONE;
+
+  private boolean showDebugInfo = false;
 
   /**
    * The IDs of all debugging labels, so we can remove them again later. Only access this on the
@@ -92,49 +141,18 @@ private static boolean isInteger(double d) {
    */
   private static final List<GUID> debugLabels = new ArrayList<>();
 
+  /** The debugging labels of the current search, added to the zone once it is done. */
+  private final List<Label> pendingDebugLabels = new ArrayList<>();
+
   public AbstractAStarWalker(Zone zone) {
     super(zone);
-
-    // Get tokens on map that may affect movement
-    for (Token token : zone.getTokensWithTerrainModifiers()) {
-      // log.info("Token: " + token.getName() + ", " + token.getTerrainModifier());
-      Set<CellPoint> cells = token.getOccupiedCells(zone.getGrid());
-      for (CellPoint cell : cells) {
-        terrainCells
-            .computeIfAbsent(cell, ignored -> new ArrayList<>())
-            .add(
-                new TerrainModifier(
-                    token.getTerrainModifierOperation(), token.getTerrainModifier()));
-      }
-    }
-
-    new MapToolEventBus().getMainEventBus().register(this);
+    // Get the tokens on the map that may affect movement.
+    this.terrain = zone.getTerrainCostField();
   }
 
   @Override
   public void close() {
-    new MapToolEventBus().getMainEventBus().unregister(this);
-  }
-
-  private void onTopologyChanged() {
-    // This event is not called on the walker thread, so needs synchronization.
-    invalidatedTopology.set(true);
-  }
-
-  @Subscribe
-  private void onTopologyChanged(WallTopologyChanged event) {
-    if (event.zone() != zone) {
-      return;
-    }
-    onTopologyChanged();
-  }
-
-  @Subscribe
-  private void onTopologyChanged(MaskTopologyChanged event) {
-    if (event.zone() != zone) {
-      return;
-    }
-    onTopologyChanged();
+    // Nothing to release. The passability grid is shared, and replaced when the topology changes.
   }
 
   /**
@@ -153,7 +171,17 @@ private void onTopologyChanged(MaskTopologyChanged event) {
    */
   protected abstract int[][] getNeighborMap(int x, int y);
 
-  protected abstract double hScore(AStarCellPoint p1, CellPoint p2);
+  /**
+   * Estimates the remaining cost from a cell to the goal.
+   *
+   * @param x the x of the cell.
+   * @param y the y of the cell.
+   * @param isOddStepOfOneTwoOneMovement if the movement is 1-2-1 and an odd path was taken so far.
+   * @param goal the goal.
+   * @return the estimated cost.
+   */
+  protected abstract double hScore(
+      int x, int y, boolean isOddStepOfOneTwoOneMovement, CellPoint goal);
 
   protected abstract double getDiagonalMultiplier(int[] neighborArray);
 
@@ -167,14 +195,8 @@ public double getDistance() {
 
   public Map<CellPoint, Set<CellPoint>> getBlockedMoves() {
     final Map<CellPoint, Set<CellPoint>> result = new HashMap<>();
-    for (var entry : vblBlockedMovesByGoal.entrySet()) {
-      result.put(
-          entry.getKey(),
-          entry.getValue().entrySet().stream()
-              .filter(Map.Entry::getValue)
-              .map(Map.Entry::getKey)
-              .collect(Collectors.toSet()));
-    }
+    passability.forEachBlockedMove(
+        (start, goal) -> result.computeIfAbsent(goal, g -> new HashSet<>()).add(start));
     for (var entry : fowBlockedMovesByGoal.entrySet()) {
       result.put(
           entry.getKey(),
@@ -193,27 +215,10 @@ public void setFootprint(TokenFootprint footprint) {
 
   @Override
   protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
-    crossX = start.x - goal.x;
-    crossY = start.y - goal.y;
-
-    Queue<AStarCellPoint> openList =
-        new PriorityQueue<>(Comparator.comparingDouble(AStarCellPoint::fCost));
-    Map<AStarCellPoint, AStarCellPoint> openSet = new HashMap<>(); // For faster lookups
-    Set<AStarCellPoint> closedSet = new HashSet<>();
-
     // Current fail safe... bail out after 10 seconds of searching just in case, shouldn't hang UI
     // as this is off the AWT thread
     long timeOut = System.currentTimeMillis();
-    double estimatedTimeoutNeeded = 10000;
-
-    // if (start.equals(end))
-    // log.info("NO WORK!");
-
-    var startNode = new AStarCellPoint(start, !isInteger(start.distanceTraveledWithoutTerrain));
-    openList.add(startNode);
-    openSet.put(startNode, startNode);
-
-    AStarCellPoint currentNode = null;
+    long estimatedTimeoutNeeded = 10000;
 
     // Get current VBL for map...
     // Using JTS because AWT Area can only intersect with Area and we want to use simple lines here.
@@ -224,19 +229,10 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
     if (zoneRenderer != null) {
       final var zoneView = zoneRenderer.getZoneView();
 
-      if (invalidatedTopology.compareAndSet(true, false)) {
-        // The move cache may no longer accurately reflect the VBL limitations.
-        this.vblBlockedMovesByGoal.clear();
-
-        var topologyTypes =
-            MapTool.getServerPolicy().getVblBlocksMove()
-                ? EnumSet.allOf(Zone.TopologyType.class)
-                : EnumSet.of(Zone.TopologyType.MBL);
-        this.preparedTopology =
-            new MovementBlockingTopology(
-                zone.getWalls(),
-                zone.getMasks(topologyTypes, keyToken == null ? null : keyToken.getId()));
-      }
+      // Shared with other walkers until the topology changes.
+      vblBlocksMove = MapTool.getServerPolicy().getVblBlocksMove();
+      this.passability =
+          PassabilityGrid.get(zone, vblBlocksMove, keyToken == null ? null : keyToken.getId());
 
       var view = zoneRenderer.getPlayerView();
       newFowExposedArea =
@@ -261,91 +257,131 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
       }
     }
 
-    // Erase previous debug labels.
-    EventQueue.invokeLater(
-        () -> {
-          for (GUID labelId : debugLabels) {
-            zone.removeLabel(labelId);
-          }
-          debugLabels.clear();
-        });
+    pendingDebugLabels.clear();
+    showDebugInfo = DeveloperOptions.Toggle.ShowAiDebugging.isEnabled();
 
     // Timeout quicker for GM cause reasons
     if (MapTool.getPlayer().isGM()) {
       estimatedTimeoutNeeded = estimatedTimeoutNeeded / 2;
     }
 
-    // log.info("A* Path timeout estimate: " + estimatedTimeoutNeeded);
-
-    Rectangle2D pathfindingBounds = this.getPathfindingBounds(start, goal);
+    List<CellPoint> returnedCellPointList = findPath(start, goal, estimatedTimeoutNeeded);
 
-    log.debug("Starting pathfinding");
-    log.debug("Pathfinding bounds are {}", pathfindingBounds);
-    while (!openList.isEmpty()) {
-      log.debug("Open list has {} elements", openList.size());
-
-      if (System.currentTimeMillis() > timeOut + estimatedTimeoutNeeded) {
-        log.info("Timing out after " + estimatedTimeoutNeeded);
-        break;
-      }
-
-      currentNode = openList.remove();
-      log.debug("Current node is {}", currentNode.position);
-      openSet.remove(currentNode);
-      if (currentNode.position.equals(goal)) {
-        log.debug("Achieved our goal at {}", goal);
-        break;
-      }
+    // Replace the previous debug labels in one go, unless a newer search is about to.
+    if (!PathfindingService.isCancelled()) {
+      List<Label> labels = List.copyOf(pendingDebugLabels);
+      EventQueue.invokeLater(
+          () -> {
+            for (GUID labelId : debugLabels) {
+              zone.removeLabel(labelId);
+            }
+            debugLabels.clear();
+            for (Label label : labels) {
+              debugLabels.add(label.getId());
+              zone.putLabel(label);
+            }
+          });
+    }
+    pendingDebugLabels.clear();
 
-      for (AStarCellPoint currentNeighbor :
-          getNeighbors(currentNode, closedSet, pathfindingBounds)) {
-        currentNeighbor.h = hScore(currentNeighbor, goal);
-        showDebugInfo(currentNeighbor);
+    timeOut = (System.currentTimeMillis() - timeOut);
+    if (timeOut > 500) {
+      log.debug("Time to calculate A* path warning: " + timeOut + "ms");
+    }
 
-        if (openSet.containsKey(currentNeighbor)) {
-          // check if it is cheaper to get here the way that we just came, versus the previous path
-          AStarCellPoint oldNode = openSet.get(currentNeighbor);
-          if (currentNeighbor.g < oldNode.g) {
-            // We're about to modify the node cost, so we have to reinsert the node.
-            openList.remove(oldNode);
+    return returnedCellPointList;
+  }
 
-            oldNode.replaceG(currentNeighbor);
-            oldNode.parent = currentNode;
+  /**
+   * Runs the search itself, once {@link #calculatePath(CellPoint, CellPoint)} has gathered the
+   * topology and fog of war from the client.
+   *
+   * <p>Nodes live in {@link #nodes}, which is reused from one search to the next, so the search
+   * does not allocate per node or per expansion.
+   *
+   * <p>While a token is dragged, only the goal changes from one search to the next. Every settled
+   * node already has its cheapest path from the start, whatever the goal, so the previous search
+   * is continued rather than restarted: open nodes are re-estimated for the new goal, and the
+   * search only expands past its old frontier if the goal is not already settled.
+   *
+   * <p>On large maps, a new search first finds a coarse route through a {@link ClusterGraph} and
+   * only searches the clusters along it, falling back to searching everywhere if that fails.
+   *
+   * @param start the cell to start from.
+   * @param goal the cell to reach.
+   * @param timeoutMillis how long to search before giving up.
+   * @return the path from start to goal, or just the goal and start if no path was found.
+   */
+  List<CellPoint> findPath(CellPoint start, CellPoint goal, long timeoutMillis) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    crossX = start.x - goal.x;
+    crossY = start.y - goal.y;
 
-            openList.add(oldNode);
-          }
-          continue;
-        }
+    terrainOperationsIgnored = 0;
+    for (Token.TerrainModifierOperation operation : terrainModifiersIgnored) {
+      terrainOperationsIgnored |= TerrainCostField.bit(operation);
+    }
 
-        openList.add(currentNeighbor);
-        openSet.put(currentNeighbor, currentNeighbor);
-        log.debug("Added neighbor to open set: {}", currentNeighbor.position);
+    Rectangle2D pathfindingBounds = this.getPathfindingBounds(start, goal);
+    var settings =
+        new SearchSettings(
+            start.x,
+            start.y,
+            start.distanceTraveled,
+            start.distanceTraveledWithoutTerrain,
+            restrictMovement,
+            terrainModifiersIgnored,
+            footprint,
+            passability,
+            fowExposedAreaGeometry);
+
+    if (!showDebugInfo
+        && settings.canContinue(lastSearch)
+        && lastSearchBounds.contains(pathfindingBounds)
+        && (corridor == null || corridor.contains(goal.x, goal.y))) {
+      log.debug("Continuing pathfinding towards {}", goal);
+      // Nodes outside the new bounds were settled under the old ones, so keep to those.
+      pathfindingBounds = lastSearchBounds;
+      for (int i = 0; i < nodes.openCount(); i++) {
+        int node = nodes.openNode(i);
+        nodes.setH(node, hScore(nodes.x(node), nodes.y(node), nodes.isOdd(node), goal));
       }
-
-      closedSet.add(currentNode);
-      currentNode = null;
-
-      /*
-        We now calculate paths off the main UI thread but only one at a time.
-        If the token moves, we cancel the thread and restart so we're only calculating the most
-        recent path request. Clearing the list effectively finishes this thread gracefully.
-      */
-      if (Thread.interrupted()) {
-        log.debug("Pathfinding cancelled");
-        openList.clear();
+      nodes.reorderOpenList();
+      if (unexpandedNode != AStarNodes.NONE) {
+        expand(unexpandedNode, goal, pathfindingBounds);
+        unexpandedNode = AStarNodes.NONE;
       }
+    } else {
+      log.debug("Starting pathfinding");
+      corridor = findCorridor(start, goal, pathfindingBounds);
+      startSearch(start, settings, pathfindingBounds);
     }
 
-    if (currentNode == null) {
+    log.debug("Pathfinding bounds are {}", pathfindingBounds);
+    int currentNode = search(goal, pathfindingBounds, deadline);
+    if (currentNode == AStarNodes.NONE && corridor != null && nodes.isOpenListEmpty()) {
+      // The coarse route only steps between cells that share an edge, so the walker can fail where
+      // it might have squeezed through elsewhere.
+      log.debug("No path along the coarse route, searching everywhere");
+      corridor = null;
+      startSearch(start, settings, pathfindingBounds);
+      currentNode = search(goal, pathfindingBounds, deadline);
+    }
+
+    if (currentNode == AStarNodes.NONE) {
       log.debug("Failed pathfinding");
     } else {
       log.debug("Completed pathfinding at {}", goal);
     }
 
-    List<CellPoint> returnedCellPointList = new LinkedList<>();
-    while (currentNode != null) {
-      returnedCellPointList.add(currentNode.position);
-      currentNode = currentNode.parent;
+    List<CellPoint> returnedCellPointList = new ArrayList<>();
+    for (int node = currentNode; node != AStarNodes.NONE; node = nodes.parent(node)) {
+      returnedCellPointList.add(
+          new CellPoint(
+              nodes.x(node),
+              nodes.y(node),
+              nodes.distanceTraveled(node),
+              nodes.distanceTraveledWithoutTerrain(node)));
     }
 
     // We don't need to "calculate" distance after the fact as it's already stored as the G cost...
@@ -360,12 +396,145 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
     }
 
     Collections.reverse(returnedCellPointList);
-    timeOut = (System.currentTimeMillis() - timeOut);
-    if (timeOut > 500) {
-      log.debug("Time to calculate A* path warning: " + timeOut + "ms");
+    return returnedCellPointList;
+  }
+
+  private void startSearch(
+      CellPoint start, SearchSettings settings, Rectangle2D pathfindingBounds) {
+    nodes.clear();
+    unexpandedNode = AStarNodes.NONE;
+    lastSearch = settings;
+    lastSearchBounds = pathfindingBounds;
+
+    int startNode =
+        nodes.create(start.x, start.y, !isInteger(start.distanceTraveledWithoutTerrain));
+    nodes.setCosts(
+        startNode,
+        AStarNodes.NONE,
+        0,
+        0,
+        start.distanceTraveled,
+        start.distanceTraveledWithoutTerrain);
+    nodes.open(startNode);
+  }
+
+  /**
+   * Expands nodes until the goal is settled.
+   *
+   * @return the settled goal node, or {@link AStarNodes#NONE} if it could not be reached in time.
+   */
+  private int search(CellPoint goal, Rectangle2D pathfindingBounds, long deadline) {
+    // A continued search may have settled the goal already, but possibly only at the parity with
+    // the higher cost. Keep searching until nothing open can beat it.
+    int currentNode = settledNodeAt(goal);
+    double goalCost =
+        currentNode == AStarNodes.NONE
+            ? Double.POSITIVE_INFINITY
+            : nodes.g(currentNode) + hScore(goal.x, goal.y, nodes.isOdd(currentNode), goal);
+    while (!nodes.isOpenListEmpty() && nodes.f(nodes.peekLowest()) < goalCost) {
+      if (System.currentTimeMillis() > deadline) {
+        log.info("Timing out pathfinding");
+        break;
+      }
+
+      int node = nodes.pollLowest();
+      if (nodes.x(node) == goal.x && nodes.y(node) == goal.y) {
+        log.debug("Achieved our goal at {}", goal);
+        currentNode = node;
+        // Expanded when the search continues, so that its neighbors are not missed.
+        unexpandedNode = node;
+        break;
+      }
+
+      expand(node, goal, pathfindingBounds);
+
+      /*
+        We now calculate paths off the main UI thread but only one at a time.
+        If the token moves, the request is superseded and a new one made so we're only calculating
+        the most recent path request. Stopping here effectively finishes this request gracefully.
+      */
+      if (Thread.interrupted() || PathfindingService.isCancelled()) {
+        log.debug("Pathfinding cancelled");
+        break;
+      }
     }
+    return currentNode;
+  }
 
-    return returnedCellPointList;
+  /**
+   * Finds the clusters to search in if the search would cover a large map, so that the walker
+   * does not search the whole map.
+   *
+   * @return the clusters along a coarse route, or null to search everywhere.
+   */
+  private @Nullable ClusterGraph.Corridor findCorridor(
+      CellPoint start, CellPoint goal, Rectangle2D pathfindingBounds) {
+    if (!restrictMovement || showDebugInfo) {
+      return null;
+    }
+    Grid grid = zone.getGrid();
+    CellPoint min =
+        grid.convert(
+            new ZonePoint((int) pathfindingBounds.getMinX(), (int) pathfindingBounds.getMinY()));
+    CellPoint max =
+        grid.convert(
+            new ZonePoint((int) pathfindingBounds.getMaxX(), (int) pathfindingBounds.getMaxY()));
+    var region = new Rectangle(min.x, min.y, max.x - min.x + 1, max.y - min.y + 1);
+    if ((long) region.width * region.height < hierarchicalMinCells) {
+      return null;
+    }
+
+    var graph =
+        ClusterGraph.get(
+            zone,
+            vblBlocksMove,
+            keyToken == null ? null : keyToken.getId(),
+            footprint,
+            !terrainModifiersIgnored.contains(Token.TerrainModifierOperation.BLOCK));
+    var found =
+        graph.findCorridor(
+            passability, footprint, this::isTerrainBlocked, terrain, start, goal, region);
+    if (found == null) {
+      log.debug("No coarse route from {} to {}", start, goal);
+    } else {
+      log.debug("Searching {} clusters along the coarse route", found.size());
+    }
+    return found;
+  }
+
+  private boolean isTerrainBlocked(int x, int y) {
+    int operations = terrain.getOperations(x, y) & ~terrainOperationsIgnored;
+    return (operations & TerrainCostField.bit(Token.TerrainModifierOperation.BLOCK)) != 0;
+  }
+
+  /**
+   * Sets how many cells a search must cover before it is guided by a coarse route, e.g. to compare
+   * both kinds of search in benchmarks.
+   */
+  void setHierarchicalMinCells(int cells) {
+    this.hierarchicalMinCells = cells;
+  }
+
+  /** Makes the next search start over instead of continuing the last one. */
+  void resetSearch() {
+    lastSearch = null;
+    corridor = null;
+    lastSearchBounds = null;
+    unexpandedNode = AStarNodes.NONE;
+  }
+
+  /**
+   * @return the cheaper settled node of either parity at the cell, or {@link AStarNodes#NONE}.
+   */
+  private int settledNodeAt(CellPoint cell) {
+    int even = nodes.find(cell.x, cell.y, false);
+    int odd = nodes.find(cell.x, cell.y, true);
+    boolean evenSettled = even != AStarNodes.NONE && nodes.isSettled(even);
+    boolean oddSettled = odd != AStarNodes.NONE && nodes.isSettled(odd);
+    if (evenSettled && oddSettled) {
+      return nodes.g(odd) < nodes.g(even) ? odd : even;
+    }
+    return evenSettled ? even : oddSettled ? odd : AStarNodes.NONE;
   }
 
   /**
@@ -388,7 +557,7 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
    */
   protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
     // Bounding box must contain all VBL/MBL ...
-    var vblEnvelope = preparedTopology.getEnvelope();
+    var vblEnvelope = passability.getTopology().getEnvelope();
 
     Rectangle2D pathfindingBounds =
         new Rectangle2D.Double(
@@ -399,8 +568,18 @@ protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
 
     pathfindingBounds = pathfindingBounds.createUnion(fowExposedArea.getBounds());
     // ... and the footprints of all terrain tokens ...
-    for (var cellPoint : terrainCells.keySet()) {
-      pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(cellPoint));
+    Rectangle terrainCells = terrain.getCellBounds();
+    if (terrainCells != null) {
+      int maxX = terrainCells.x + terrainCells.width - 1;
+      int maxY = terrainCells.y + terrainCells.height - 1;
+      for (var corner :
+          List.of(
+              new CellPoint(terrainCells.x, terrainCells.y),
+              new CellPoint(maxX, terrainCells.y),
+              new CellPoint(terrainCells.x, maxY),
+              new CellPoint(maxX, maxY))) {
+        pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(corner));
+      }
     }
     // ... and the original token position ...
     pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(start));
@@ -418,13 +597,24 @@ protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
     return pathfindingBounds;
   }
 
-  protected List<AStarCellPoint> getNeighbors(
-      AStarCellPoint node, Set<AStarCellPoint> closedSet, Rectangle2D pathfindingBounds) {
-    List<AStarCellPoint> neighbors = new ArrayList<>();
-    int[][] neighborMap = getNeighborMap(node.position.x, node.position.y);
+  /**
+   * Opens or improves every reachable neighbor of a node.
+   *
+   * @param node the node to expand, which has just been closed.
+   * @param goal the cell to reach.
+   * @param pathfindingBounds the area the path must stay in.
+   */
+  private void expand(int node, CellPoint goal, Rectangle2D pathfindingBounds) {
+    final int x = nodes.x(node);
+    final int y = nodes.y(node);
+    // If this position is too far out, none of its neighbors can possibly be part of the optimal
+    // path.
+    final boolean outOfBounds =
+        !zone.getGrid().getBounds(new CellPoint(x, y)).intersects(pathfindingBounds);
+    Set<CellPoint> occupiedCells = null;
 
     // Find all the neighbors.
-    for (int[] neighborArray : neighborMap) {
+    for (int[] neighborArray : getNeighborMap(x, y)) {
       double terrainMultiplier = 0;
       double terrainAdder = 0;
       boolean terrainIsFree = false;
@@ -434,48 +624,44 @@ protected List<AStarCellPoint> getNeighbors(
       double diagonalMultiplier = getDiagonalMultiplier(neighborArray);
       boolean invertEvenOddDiagonals = !isInteger(diagonalMultiplier);
 
-      AStarCellPoint neighbor =
-          new AStarCellPoint(
-              node.position.x + neighborArray[0],
-              node.position.y + neighborArray[1],
-              node.isOddStepOfOneTwoOneMovement ^ invertEvenOddDiagonals);
-      log.debug("Checking neighbor: {}", neighbor.position);
-      if (closedSet.contains(neighbor)) {
-        log.debug("Rejected neighbor for being in the closed set: {}", neighbor.position);
+      final int neighborX = x + neighborArray[0];
+      final int neighborY = y + neighborArray[1];
+      final boolean neighborIsOdd = nodes.isOdd(node) ^ invertEvenOddDiagonals;
+      if (corridor != null && !corridor.contains(neighborX, neighborY)) {
         continue;
       }
-
-      if (!zone.getGrid().getBounds(node.position).intersects(pathfindingBounds)) {
-        log.debug("Rejected neighbor for being out of bounds: {}", neighbor.position);
-        // This position is too far out to possibly be part of the optimal path.
-        closedSet.add(neighbor);
+      int neighbor = nodes.find(neighborX, neighborY, neighborIsOdd);
+      if (neighbor != AStarNodes.NONE && nodes.isClosed(neighbor)) {
         continue;
       }
 
-      // Add the cell we're coming from
-      neighbor.parent = node;
+      if (outOfBounds) {
+        nodes.close(neighborX, neighborY, neighborIsOdd);
+        continue;
+      }
 
       // Don't count VBL or Terrain Modifiers
       if (restrictMovement) {
-        if (tokenFootprintIntersectsVBL(neighbor.position)) {
+        if (passability.isPositionBlocked(footprint, neighborX, neighborY)) {
           // The token would overlap VBL if moved to this position, so it is not a valid position.
-          closedSet.add(neighbor);
-          log.debug("Rejected neighbor for being inside MBL: {}", neighbor.position);
+          nodes.close(neighborX, neighborY, neighborIsOdd);
           continue;
         }
 
-        Set<CellPoint> occupiedCells = footprint.getOccupiedCells(node.position);
+        if (occupiedCells == null) {
+          occupiedCells = footprint.getOccupiedCells(new CellPoint(x, y));
+        }
         for (CellPoint cellPoint : occupiedCells) {
           // Check whether moving the occupied cell to its new location would be prohibited by VBL.
-          var cellNeighbor =
-              new CellPoint(cellPoint.x + neighborArray[0], cellPoint.y + neighborArray[1]);
-          if (vblBlocksMovement(cellPoint, cellNeighbor)) {
+          if (passability.isMoveBlocked(
+              cellPoint.x, cellPoint.y, neighborArray[0], neighborArray[1])) {
             blockNode = true;
-            log.debug("MBL blocked movement to neighbor: {}", neighbor.position);
             break;
           }
-          if (fowBlocksMovement(cellPoint, cellNeighbor)) {
-            log.debug("FOW blocked movement to neighbor to {}", neighbor.position);
+          if (fowExposedAreaGeometry != null
+              && fowBlocksMovement(
+                  cellPoint,
+                  new CellPoint(cellPoint.x + neighborArray[0], cellPoint.y + neighborArray[1]))) {
             blockNode = true;
             break;
           }
@@ -486,35 +672,26 @@ protected List<AStarCellPoint> getNeighbors(
         }
 
         // Check for terrain modifiers
-        for (TerrainModifier terrainModifier :
-            terrainCells.getOrDefault(neighbor.position, Collections.emptyList())) {
-          if (!terrainModifiersIgnored.contains(terrainModifier.operation)) {
-            switch (terrainModifier.operation) {
-              case MULTIPLY:
-                terrainMultiplier += terrainModifier.value;
-                break;
-              case ADD:
-                terrainAdder += terrainModifier.value;
-                break;
-              case BLOCK:
-                // Terrain blocking applies equally regardless of even/odd diagonals.
-                closedSet.add(new AStarCellPoint(neighbor.position, false));
-                closedSet.add(new AStarCellPoint(neighbor.position, true));
-                blockNode = true;
-                continue;
-              case FREE:
-                terrainIsFree = true;
-                break;
-              case NONE:
-                break;
-            }
+        int operations = terrain.getOperations(neighborX, neighborY) & ~terrainOperationsIgnored;
+        if (operations != 0) {
+          if ((operations & TerrainCostField.bit(Token.TerrainModifierOperation.MULTIPLY)) != 0) {
+            terrainMultiplier = terrain.getMultiplier(neighborX, neighborY);
+          }
+          if ((operations & TerrainCostField.bit(Token.TerrainModifierOperation.ADD)) != 0) {
+            terrainAdder = terrain.getAddition(neighborX, neighborY);
           }
+          blockNode =
+              (operations & TerrainCostField.bit(Token.TerrainModifierOperation.BLOCK)) != 0;
+          terrainIsFree =
+              (operations & TerrainCostField.bit(Token.TerrainModifierOperation.FREE)) != 0;
         }
       }
       terrainAdder = terrainAdder / cell_cost;
 
       if (blockNode) {
-        log.debug("Terrain blocked movement to neighbor to {}", neighbor.position);
+        // Terrain blocking applies equally regardless of even/odd diagonals.
+        nodes.close(neighborX, neighborY, false);
+        nodes.close(neighborX, neighborY, true);
         continue;
       }
 
@@ -526,94 +703,37 @@ protected List<AStarCellPoint> getNeighbors(
 
       terrainMultiplier = Math.abs(terrainMultiplier); // net negative multipliers screw with the AI
 
+      double g;
+      double distanceTraveled;
+      double distanceTraveledWithoutTerrain;
       if (terrainIsFree) {
-        neighbor.g = node.g;
-        neighbor.position.distanceTraveled = node.position.distanceTraveled;
+        g = nodes.g(node);
+        distanceTraveled = nodes.distanceTraveled(node);
+        distanceTraveledWithoutTerrain = nodes.distanceTraveledWithoutTerrain(node);
       } else {
-        neighbor.position.distanceTraveledWithoutTerrain =
-            node.position.distanceTraveledWithoutTerrain + diagonalMultiplier;
-
-        if (neighbor.isOddStepOfOneTwoOneMovement()) {
-          neighbor.g = node.g + terrainAdder + terrainMultiplier;
-
-          neighbor.position.distanceTraveled =
-              node.position.distanceTraveled + terrainAdder + terrainMultiplier;
-        } else {
-          neighbor.g = node.g + terrainAdder + terrainMultiplier * Math.ceil(diagonalMultiplier);
-
-          neighbor.position.distanceTraveled =
-              node.position.distanceTraveled
-                  + terrainAdder
-                  + terrainMultiplier * Math.ceil(diagonalMultiplier);
-        }
+        double stepCost =
+            neighborIsOdd
+                ? terrainAdder + terrainMultiplier
+                : terrainAdder + terrainMultiplier * Math.ceil(diagonalMultiplier);
+        g = nodes.g(node) + stepCost;
+        distanceTraveled = nodes.distanceTraveled(node) + stepCost;
+        distanceTraveledWithoutTerrain =
+            nodes.distanceTraveledWithoutTerrain(node) + diagonalMultiplier;
+      }
+      double h = hScore(neighborX, neighborY, neighborIsOdd, goal);
+      if (showDebugInfo) {
+        showDebugInfo(neighborX, neighborY, neighborIsOdd, g, h, node);
       }
 
-      log.debug("Accepted neighbor: {}", neighbor.position);
-      neighbors.add(neighbor);
-    }
-
-    return neighbors;
-  }
-
-  private boolean tokenFootprintIntersectsVBL(CellPoint position) {
-    var points =
-        footprint.getOccupiedCells(position).stream()
-            .map(
-                cellPoint -> {
-                  var bounds = zone.getGrid().getBounds(cellPoint);
-                  return new Coordinate(bounds.getCenterX(), bounds.getCenterY());
-                })
-            .toArray(Coordinate[]::new);
-    Geometry footprintGeometry = new ConvexHull(points, geometryFactory).getConvexHull();
-
-    return preparedTopology.intersects(footprintGeometry);
-  }
-
-  private boolean vblBlocksMovement(CellPoint start, CellPoint goal) {
-    Map<CellPoint, Boolean> blockedMoves =
-        vblBlockedMovesByGoal.computeIfAbsent(goal, pos -> new HashMap<>());
-    Boolean test = blockedMoves.get(start);
-    // if it's null then the test for that direction hasn't been set yet otherwise just return the
-    // previous result
-    if (test != null) {
-      return test;
-    }
-
-    Rectangle startBounds = zone.getGrid().getBounds(start);
-    Rectangle goalBounds = zone.getGrid().getBounds(goal);
-
-    if (goalBounds.isEmpty() || startBounds.isEmpty()) {
-      return false;
-    }
-
-    // If the goal center point is in vbl, allow to maintain path through vbl (should be GM only?)
-    /*
-    if (vbl.contains(goal.toPoint())) {
-      // Allow GM to move through VBL
-       return !MapTool.getPlayer().isGM();
-    }
-    */
-
-    // NEW WAY - use polygon test
-    double x1 = startBounds.getCenterX();
-    double y1 = startBounds.getCenterY();
-    double x2 = goalBounds.getCenterX();
-    double y2 = goalBounds.getCenterY();
-    LineString centerRay =
-        geometryFactory.createLineString(
-            new Coordinate[] {new Coordinate(x1, y1), new Coordinate(x2, y2)});
-
-    boolean blocksMovement;
-    try {
-      blocksMovement = preparedTopology.intersects(centerRay);
-    } catch (Exception e) {
-      log.info("clipped.intersects oh oh: ", e);
-      return true;
+      if (neighbor == AStarNodes.NONE) {
+        neighbor = nodes.create(neighborX, neighborY, neighborIsOdd);
+      } else if (g >= nodes.g(neighbor)) {
+        // Already open, and getting here the way that we just came is no cheaper.
+        continue;
+      }
+      nodes.setCosts(neighbor, node, g, h, distanceTraveled, distanceTraveledWithoutTerrain);
+      nodes.open(neighbor);
     }
-
-    blockedMoves.put(start, blocksMovement);
-
-    return blocksMovement;
   }
 
   private boolean fowBlocksMovement(CellPoint start, CellPoint goal) {
@@ -659,15 +779,11 @@ private boolean fowBlocksMovement(CellPoint start, CellPoint goal) {
     return blocksMovement;
   }
 
-  protected void showDebugInfo(AStarCellPoint node) {
-    if (!DeveloperOptions.Toggle.ShowAiDebugging.isEnabled()) {
-      return;
-    }
-
+  protected void showDebugInfo(int x, int y, boolean isOdd, double g, double h, int parentNode) {
     final int basis = zone.getGrid().getSize() / 10;
-    final int xOffset = basis * (node.isOddStepOfOneTwoOneMovement ? 7 : 3);
+    final int xOffset = basis * (isOdd ? 7 : 3);
 
-    Rectangle cellBounds = zone.getGrid().getBounds(node.position);
+    Rectangle cellBounds = zone.getGrid().getBounds(new CellPoint(x, y));
     DecimalFormat f = new DecimalFormat("##.00");
 
     Label gScore = new Label();
@@ -675,26 +791,24 @@ protected void showDebugInfo(AStarCellPoint node) {
     Label fScore = new Label();
     Label parent = new Label();
 
-    gScore.setLabel(f.format(node.g));
+    gScore.setLabel(f.format(g));
     gScore.setX(cellBounds.x + xOffset);
     gScore.setY(cellBounds.y + 1 * basis);
 
-    hScore.setLabel(f.format(node.h));
+    hScore.setLabel(f.format(h));
     hScore.setX(cellBounds.x + xOffset);
     hScore.setY(cellBounds.y + 3 * basis);
 
-    fScore.setLabel(f.format(node.fCost()));
+    fScore.setLabel(f.format(g + h));
     fScore.setX(cellBounds.x + xOffset);
     fScore.setY(cellBounds.y + 5 * basis);
     fScore.setForegroundColor(Color.RED);
 
-    if (node.parent != null) {
+    if (parentNode != AStarNodes.NONE) {
       parent.setLabel(
           String.format(
               "(%d, %d | %s)",
-              node.parent.position.x,
-              node.parent.position.y,
-              node.parent.isOddStepOfOneTwoOneMovement() ? "O" : "E"));
+              nodes.x(parentNode), nodes.y(parentNode), nodes.isOdd(parentNode) ? "O" : "E"));
     } else {
       parent.setLabel("(none)");
     }
@@ -702,15 +816,6 @@ protected void showDebugInfo(AStarCellPoint node) {
     parent.setY(cellBounds.y + 7 * basis);
     parent.setForegroundColor(Color.BLUE);
 
-    EventQueue.invokeLater(
-        () -> {
-          // Track labels to delete later
-          debugLabels.addAll(
-              List.of(gScore.getId(), hScore.getId(), fScore.getId(), parent.getId()));
-          zone.putLabel(gScore);
-          zone.putLabel(hScore);
-          zone.putLabel(fScore);
-          zone.putLabel(parent);
-        });
+    pendingDebugLabels.addAll(List.of(gScore, hScore, fScore, parent));
   }
 }
@@ -0,0 +1,511 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.TokenFootprint;
+import net.rptools.maptool.model.Zone;
+
+/**
+ * A coarse graph of a zone for hierarchical pathfinding (HPA*) on large maps.
+ *
+ * <p>Cells are grouped into clusters of 32 by 32, the same as the chunks of {@link
+ * PassabilityGrid}. Wherever a token can step across the border between two clusters there is a
+ * portal on each side, and the cost of walking between the portals of a cluster is worked out once,
+ * inside the cluster. A route is then found by searching the portals, which are far fewer than the
+ * cells, and the walker only searches the cells of the clusters along that route.
+ *
+ * <p>The graph only steps to the four cells that share an edge, at a cost of one each, and is
+ * blocked by the topology and by blocking terrain. It is a guide for the walker, which still makes
+ * its own moves at its own costs within the route.
+ *
+ * <p>Each cluster remembers what it was built from. When the topology or terrain changes, a cluster
+ * is only rebuilt if its own cells or the crossings on its borders have changed.
+ */
+final class ClusterGraph {
+  /** Tells whether a cell is blocked, e.g. by terrain. */
+  @FunctionalInterface
+  interface CellPredicate {
+    boolean test(int x, int y);
+  }
+
+  /** The clusters a route passes through, together with the clusters around them. */
+  static final class Corridor {
+    private final LongIntHashMap clusters = new LongIntHashMap();
+
+    private Corridor() {}
+
+    /**
+     * @return whether the cell is in one of the clusters of the corridor.
+     */
+    boolean contains(int x, int y) {
+      return clusters.get(clusterKey(x >> CLUSTER_SHIFT, y >> CLUSTER_SHIFT))
+          != LongIntHashMap.MISSING;
+    }
+
+    /**
+     * @return the number of clusters in the corridor.
+     */
+    int size() {
+      return clusters.size();
+    }
+
+    private void addAround(int clusterX, int clusterY) {
+      for (int dx = -1; dx <= 1; dx++) {
+        for (int dy = -1; dy <= 1; dy++) {
+          clusters.put(clusterKey(clusterX + dx, clusterY + dy), 0);
+        }
+      }
+    }
+  }
+
+  private static final int CLUSTER_SHIFT = PassabilityGrid.CHUNK_SHIFT;
+  private static final int CLUSTER_SIZE = 1 << CLUSTER_SHIFT;
+  private static final int CLUSTER_CELLS = CLUSTER_SIZE * CLUSTER_SIZE;
+  private static final int WORDS = CLUSTER_CELLS / 64;
+
+  private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  /** Entrances at least this long get a portal at each end instead of one in the middle. */
+  private static final int LONG_ENTRANCE = 6;
+
+  private static final int EAST = 0;
+  private static final int SOUTH = 1;
+  private static final int WEST = 2;
+  private static final int NORTH = 3;
+  private static final int[] SIDE_DX = {1, 0, -1, 0};
+  private static final int[] SIDE_DY = {0, 1, 0, -1};
+
+  /** Tells the graphs apart by the id of the zone, so that the cache does not keep it alive. */
+  private record Key(
+      GUID zoneId,
+      Class<? extends Grid> gridType,
+      int gridSize,
+      int gridOffsetX,
+      int gridOffsetY,
+      boolean vblBlocksMove,
+      @Nullable GUID excludedTokenId,
+      @Nullable GUID footprintId,
+      boolean terrainBlocks) {}
+
+  /**
+   * Only a few zones and tokens are walked at any one time. A graph refers to its zone through the
+   * passability grid it was last brought up to date with, so the values are soft.
+   */
+  private static final Cache<Key, ClusterGraph> cache =
+      CacheBuilder.newBuilder().maximumSize(8).softValues().build();
+
+  private final Map<Long, Cluster> clusters = new HashMap<>();
+  private final AStarNodes nodes = new AStarNodes();
+
+  private PassabilityGrid passability;
+  private TokenFootprint footprint;
+  private CellPredicate terrainBlocked;
+  private Object terrainSource;
+
+  /** Bumped whenever the inputs change, so that each cluster checks itself again before use. */
+  private int generation;
+
+  private int rebuildCount;
+
+  /**
+   * Finds or creates the cluster graph for a zone and a kind of movement. The graph is kept when
+   * the topology or terrain changes, and brought up to date cluster by cluster as it is used.
+   *
+   * @param zone the zone to walk.
+   * @param vblBlocksMove whether vision blocking topology blocks movement as well as MBL.
+   * @param excludedTokenId the token whose own topology is ignored, usually the one moving.
+   * @param footprint the footprint of the moving token.
+   * @param terrainBlocks whether blocking terrain blocks the moving token.
+   * @return the cluster graph.
+   */
+  static ClusterGraph get(
+      Zone zone,
+      boolean vblBlocksMove,
+      @Nullable GUID excludedTokenId,
+      TokenFootprint footprint,
+      boolean terrainBlocks) {
+    Grid grid = zone.getGrid();
+    var key =
+        new Key(
+            zone.getId(),
+            grid.getClass(),
+            grid.getSize(),
+            grid.getOffsetX(),
+            grid.getOffsetY(),
+            vblBlocksMove,
+            excludedTokenId,
+            footprint.getId(),
+            terrainBlocks);
+    ClusterGraph graph = cache.getIfPresent(key);
+    if (graph == null) {
+      graph = new ClusterGraph();
+      cache.put(key, graph);
+    }
+    return graph;
+  }
+
+  /**
+   * Finds a coarse route between two cells, and returns the clusters the walker should search.
+   *
+   * @param passability the topology to route around.
+   * @param footprint the footprint of the moving token.
+   * @param terrainBlocked which cells are blocked by terrain.
+   * @param terrainSource what {@code terrainBlocked} reads from, which is replaced whenever the
+   *     terrain changes.
+   * @param start the cell to start from.
+   * @param goal the cell to reach.
+   * @param region the cells the route must stay in.
+   * @return the clusters along the route and around them, or null if there is no route.
+   */
+  synchronized @Nullable Corridor findCorridor(
+      PassabilityGrid passability,
+      TokenFootprint footprint,
+      CellPredicate terrainBlocked,
+      Object terrainSource,
+      CellPoint start,
+      CellPoint goal,
+      Rectangle region) {
+    if (passability != this.passability
+        || footprint != this.footprint
+        || terrainSource != this.terrainSource) {
+      this.passability = passability;
+      this.footprint = footprint;
+      this.terrainBlocked = terrainBlocked;
+      this.terrainSource = terrainSource;
+      generation++;
+    }
+
+    int minClusterX = region.x >> CLUSTER_SHIFT;
+    int minClusterY = region.y >> CLUSTER_SHIFT;
+    int maxClusterX = (region.x + region.width - 1) >> CLUSTER_SHIFT;
+    int maxClusterY = (region.y + region.height - 1) >> CLUSTER_SHIFT;
+
+    Cluster startCluster = cluster(start.x >> CLUSTER_SHIFT, start.y >> CLUSTER_SHIFT);
+    Cluster goalCluster = cluster(goal.x >> CLUSTER_SHIFT, goal.y >> CLUSTER_SHIFT);
+    int goalLocal = localIndex(goal.x, goal.y);
+    int[] fromStart = startCluster.distancesFrom(localIndex(start.x, start.y));
+    int[] toGoal = goalCluster.distancesFrom(goalLocal);
+
+    nodes.clear();
+    int startNode = nodes.create(start.x, start.y, false);
+    nodes.setCosts(startNode, AStarNodes.NONE, 0, manhattan(start.x, start.y, goal), 0, 0);
+    nodes.open(startNode);
+
+    int goalNode = AStarNodes.NONE;
+    while (!nodes.isOpenListEmpty()) {
+      int node = nodes.pollLowest();
+      int x = nodes.x(node);
+      int y = nodes.y(node);
+      if (x == goal.x && y == goal.y) {
+        goalNode = node;
+        break;
+      }
+
+      Cluster cluster = cluster(x >> CLUSTER_SHIFT, y >> CLUSTER_SHIFT);
+      int local = localIndex(x, y);
+      if (node == startNode) {
+        for (int portal = 0; portal < cluster.portals.length; portal++) {
+          relax(node, cluster, cluster.portals[portal], fromStart[cluster.portals[portal]], goal);
+        }
+        if (cluster == goalCluster) {
+          relax(node, cluster, goalLocal, fromStart[goalLocal], goal);
+        }
+      }
+
+      int portal = cluster.portalOf(local);
+      if (portal < 0) {
+        continue;
+      }
+      for (int other = 0; other < cluster.portals.length; other++) {
+        relax(node, cluster, cluster.portals[other], cluster.distances[portal][other], goal);
+      }
+      if (cluster == goalCluster) {
+        relax(node, cluster, goalLocal, toGoal[local], goal);
+      }
+      for (int side = 0; side < 4; side++) {
+        if ((cluster.portalSides[portal] & (1 << side)) == 0) {
+          continue;
+        }
+        int neighborClusterX = cluster.clusterX + SIDE_DX[side];
+        int neighborClusterY = cluster.clusterY + SIDE_DY[side];
+        if (neighborClusterX < minClusterX
+            || neighborClusterX > maxClusterX
+            || neighborClusterY < minClusterY
+            || neighborClusterY > maxClusterY) {
+          continue;
+        }
+        int crossX = x + SIDE_DX[side];
+        int crossY = y + SIDE_DY[side];
+        relaxCell(node, crossX, crossY, nodes.g(node) + 1, goal);
+      }
+    }
+
+    if (goalNode == AStarNodes.NONE) {
+      return null;
+    }
+    var corridor = new Corridor();
+    for (int node = goalNode; node != AStarNodes.NONE; node = nodes.parent(node)) {
+      corridor.addAround(nodes.x(node) >> CLUSTER_SHIFT, nodes.y(node) >> CLUSTER_SHIFT);
+    }
+    return corridor;
+  }
+
+  /**
+   * @return how many times a cluster has been built, for tests and debugging.
+   */
+  synchronized int getRebuildCount() {
+    return rebuildCount;
+  }
+
+  private void relax(int from, Cluster cluster, int local, int distance, CellPoint goal) {
+    if (distance == UNREACHABLE) {
+      return;
+    }
+    int x = (cluster.clusterX << CLUSTER_SHIFT) + (local & (CLUSTER_SIZE - 1));
+    int y = (cluster.clusterY << CLUSTER_SHIFT) + (local >> CLUSTER_SHIFT);
+    relaxCell(from, x, y, nodes.g(from) + distance, goal);
+  }
+
+  private void relaxCell(int from, int x, int y, double g, CellPoint goal) {
+    int node = nodes.find(x, y, false);
+    if (node == AStarNodes.NONE) {
+      node = nodes.create(x, y, false);
+    } else if (nodes.isClosed(node) || g >= nodes.g(node)) {
+      return;
+    }
+    nodes.setCosts(node, from, g, manhattan(x, y, goal), 0, 0);
+    nodes.open(node);
+  }
+
+  private static double manhattan(int x, int y, CellPoint goal) {
+    return Math.abs(x - goal.x) + Math.abs(y - goal.y);
+  }
+
+  /** Returns the cluster, built or rebuilt if it is missing or out of date. */
+  private Cluster cluster(int clusterX, int clusterY) {
+    Cluster cluster =
+        clusters.computeIfAbsent(
+            clusterKey(clusterX, clusterY), k -> new Cluster(clusterX, clusterY));
+    if (cluster.generation != generation) {
+      long[] signature = signature(clusterX, clusterY);
+      if (!Arrays.equals(signature, cluster.signature)) {
+        cluster.build(signature);
+        rebuildCount++;
+      }
+      cluster.generation = generation;
+    }
+    return cluster;
+  }
+
+  private boolean isPassable(int x, int y) {
+    return !passability.isPositionBlocked(footprint, x, y) && !terrainBlocked.test(x, y);
+  }
+
+  private boolean canStep(int x, int y, int dx, int dy) {
+    return isPassable(x, y)
+        && isPassable(x + dx, y + dy)
+        && !passability.isMoveBlocked(x, y, dx, dy);
+  }
+
+  /**
+   * Everything a cluster is built from: which of its cells are passable, which steps to the east
+   * and south are open inside it, and which steps across each of its borders are open.
+   */
+  private long[] signature(int clusterX, int clusterY) {
+    int originX = clusterX << CLUSTER_SHIFT;
+    int originY = clusterY << CLUSTER_SHIFT;
+    int last = CLUSTER_SIZE - 1;
+    var signature = new long[3 * WORDS + 2];
+    for (int i = 0; i < CLUSTER_CELLS; i++) {
+      int x = originX + (i & last);
+      int y = originY + (i >> CLUSTER_SHIFT);
+      if (!isPassable(x, y)) {
+        continue;
+      }
+      signature[i >> 6] |= 1L << i;
+      if ((i & last) < last && canStep(x, y, 1, 0)) {
+        signature[WORDS + (i >> 6)] |= 1L << i;
+      }
+      if ((i >> CLUSTER_SHIFT) < last && canStep(x, y, 0, 1)) {
+        signature[2 * WORDS + (i >> 6)] |= 1L << i;
+      }
+    }
+    for (int offset = 0; offset < CLUSTER_SIZE; offset++) {
+      long east = canStep(originX + last, originY + offset, 1, 0) ? 1 : 0;
+      long south = canStep(originX + offset, originY + last, 0, 1) ? 1 : 0;
+      long west = canStep(originX, originY + offset, -1, 0) ? 1 : 0;
+      long north = canStep(originX + offset, originY, 0, -1) ? 1 : 0;
+      signature[3 * WORDS] |= east << offset | south << (offset + CLUSTER_SIZE);
+      signature[3 * WORDS + 1] |= west << offset | north << (offset + CLUSTER_SIZE);
+    }
+    return signature;
+  }
+
+  private static int localIndex(int x, int y) {
+    return ((y & (CLUSTER_SIZE - 1)) << CLUSTER_SHIFT) | (x & (CLUSTER_SIZE - 1));
+  }
+
+  private static long clusterKey(int clusterX, int clusterY) {
+    return AStarNodes.key(clusterX, clusterY, false);
+  }
+
+  private static final class Cluster {
+    final int clusterX;
+    final int clusterY;
+    int generation = -1;
+    long[] signature;
+
+    /** The local index of each portal. */
+    int[] portals = new int[0];
+
+    /** For each portal, a bit for each side it leads across. */
+    int[] portalSides = new int[0];
+
+    /** The cost of walking between each pair of portals, inside the cluster. */
+    int[][] distances = new int[0][];
+
+    Cluster(int clusterX, int clusterY) {
+      this.clusterX = clusterX;
+      this.clusterY = clusterY;
+    }
+
+    int portalOf(int local) {
+      for (int portal = 0; portal < portals.length; portal++) {
+        if (portals[portal] == local) {
+          return portal;
+        }
+      }
+      return -1;
+    }
+
+    void build(long[] signature) {
+      this.signature = signature;
+
+      List<Integer> portalList = new ArrayList<>();
+      List<Integer> sideList = new ArrayList<>();
+      for (int side = 0; side < 4; side++) {
+        int word = 3 * WORDS + (side == EAST || side == SOUTH ? 0 : 1);
+        int shift = side == EAST || side == WEST ? 0 : CLUSTER_SIZE;
+        int open = (int) (signature[word] >>> shift);
+        // Entrances are runs of open crossings. Both sides of a border find the same runs, so the
+        // portals on either side line up.
+        for (int offset = 0; offset < CLUSTER_SIZE; ) {
+          if ((open & (1 << offset)) == 0) {
+            offset++;
+            continue;
+          }
+          int end = offset;
+          while (end + 1 < CLUSTER_SIZE && (open & (1 << (end + 1))) != 0) {
+            end++;
+          }
+          if (end - offset + 1 >= LONG_ENTRANCE) {
+            addPortal(portalList, sideList, side, offset);
+            addPortal(portalList, sideList, side, end);
+          } else {
+            addPortal(portalList, sideList, side, (offset + end) / 2);
+          }
+          offset = end + 1;
+        }
+      }
+
+      portals = portalList.stream().mapToInt(Integer::intValue).toArray();
+      portalSides = sideList.stream().mapToInt(Integer::intValue).toArray();
+      distances = new int[portals.length][];
+      for (int portal = 0; portal < portals.length; portal++) {
+        int[] fromPortal = distancesFrom(portals[portal]);
+        distances[portal] = new int[portals.length];
+        for (int other = 0; other < portals.length; other++) {
+          distances[portal][other] = fromPortal[portals[other]];
+        }
+      }
+    }
+
+    private static void addPortal(
+        List<Integer> portalList, List<Integer> sideList, int side, int offset) {
+      int last = CLUSTER_SIZE - 1;
+      int local =
+          switch (side) {
+            case EAST -> (offset << CLUSTER_SHIFT) | last;
+            case SOUTH -> (last << CLUSTER_SHIFT) | offset;
+            case WEST -> offset << CLUSTER_SHIFT;
+            case NORTH -> offset;
+            default -> throw new IllegalArgumentException("Unknown side " + side);
+          };
+      int existing = portalList.indexOf(local);
+      if (existing >= 0) {
+        sideList.set(existing, sideList.get(existing) | (1 << side));
+      } else {
+        portalList.add(local);
+        sideList.add(1 << side);
+      }
+    }
+
+    /** Breadth-first distances from a cell to every cell of the cluster. */
+    int[] distancesFrom(int local) {
+      var distance = new int[CLUSTER_CELLS];
+      Arrays.fill(distance, UNREACHABLE);
+      if (!isSet(0, local)) {
+        return distance;
+      }
+      var queue = new int[CLUSTER_CELLS];
+      int head = 0;
+      int tail = 0;
+      distance[local] = 0;
+      queue[tail++] = local;
+      int last = CLUSTER_SIZE - 1;
+      while (head < tail) {
+        int cell = queue[head++];
+        int next = distance[cell] + 1;
+        if ((cell & last) < last && isSet(WORDS, cell)) {
+          tail = visit(distance, queue, tail, cell + 1, next);
+        }
+        if ((cell & last) > 0 && isSet(WORDS, cell - 1)) {
+          tail = visit(distance, queue, tail, cell - 1, next);
+        }
+        if ((cell >> CLUSTER_SHIFT) < last && isSet(2 * WORDS, cell)) {
+          tail = visit(distance, queue, tail, cell + CLUSTER_SIZE, next);
+        }
+        if ((cell >> CLUSTER_SHIFT) > 0 && isSet(2 * WORDS, cell - CLUSTER_SIZE)) {
+          tail = visit(distance, queue, tail, cell - CLUSTER_SIZE, next);
+        }
+      }
+      return distance;
+    }
+
+    private static int visit(int[] distance, int[] queue, int tail, int cell, int value) {
+      if (distance[cell] == UNREACHABLE) {
+        distance[cell] = value;
+        queue[tail++] = cell;
+      }
+      return tail;
+    }
+
+    private boolean isSet(int wordOffset, int local) {
+      return (signature[wordOffset + (local >> 6)] & (1L << local)) != 0;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import java.util.Arrays;
+
+/**
+ * Map from {@code long} keys to non-negative {@code int} values, using open addressing with linear
+ * probing so that neither keys nor values are boxed.
+ *
+ * <p>The map only grows. {@link #clear()} keeps the table so that it can be reused without
+ * allocating.
+ */
+final class LongIntHashMap {
+  /** Returned by {@link #get(long)} for keys that are not in the map. */
+  static final int MISSING = -1;
+
+  private long[] keys;
+
+  /** The value of each slot, or {@link #MISSING} if the slot is free. */
+  private int[] values;
+
+  private int mask;
+  private int size;
+
+  LongIntHashMap() {
+    this(64);
+  }
+
+  /**
+   * @param expectedSize the number of entries to make room for up front.
+   */
+  LongIntHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, MISSING);
+    mask = capacity - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param key the key to look up.
+   * @return the value for the key, or {@link #MISSING}.
+   */
+  int get(long key) {
+    for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+      int value = values[slot];
+      if (value == MISSING || keys[slot] == key) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * @param key the key to set.
+   * @param value the value, which must not be negative.
+   */
+  void put(long key, int value) {
+    assert value >= 0;
+    int slot = slot(key);
+    while (values[slot] != MISSING) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+  }
+
+  /** Removes all entries, keeping the table. */
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(values, MISSING);
+      size = 0;
+    }
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldValues.length * 2];
+    Arrays.fill(values, MISSING);
+    mask = keys.length - 1;
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != MISSING) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private int slot(long key) {
+    // Cell coordinates are small and clustered, so mix the bits before masking.
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+import net.rptools.lib.GeometryUtil;
+import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.TokenFootprint;
+import net.rptools.maptool.model.Zone;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.locationtech.jts.algorithm.ConvexHull;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * Which cells a token may stand on, and which moves between neighbouring cells are blocked, for
+ * one version of a zone's movement blocking topology.
+ *
+ * <p>The answers are computed a chunk of cells at a time, the first time any cell of the chunk is
+ * asked about, with the geometry tests of the chunk run in parallel. After that, a lookup is a bit
+ * test. Grids are shared between walkers through {@link #get(Zone, boolean, GUID)}, so the work is
+ * only redone once the topology or the grid changes.
+ */
+final class PassabilityGrid {
+  private static final Logger log = LogManager.getLogger(PassabilityGrid.class);
+
+  /** Chunks are 32 by 32 cells. */
+  static final int CHUNK_SHIFT = 5;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+  /** Moves are to one of the 3 by 3 cells around a cell, including the cell itself. */
+  private static final int DIRECTIONS = 9;
+
+  /**
+   * Tells the grids apart by the id of the zone rather than the zone itself, so that the cache does
+   * not keep closed zones alive.
+   */
+  private record Key(
+      GUID zoneId,
+      long topologyVersion,
+      boolean vblBlocksMove,
+      @Nullable GUID excludedTokenId,
+      Class<? extends Grid> gridType,
+      int gridSize,
+      int gridOffsetX,
+      int gridOffsetY) {}
+
+  /**
+   * Only a few zones and tokens are walked at any one time. A grid refers to its zone through its
+   * {@link Grid}, so the values are soft and give way when memory runs low.
+   */
+  private static final Cache<Key, PassabilityGrid> cache =
+      CacheBuilder.newBuilder().maximumSize(8).softValues().build();
+
+  private final Grid grid;
+  private final MovementBlockingTopology topology;
+  private final boolean topologyEmpty;
+  private final GeometryFactory geometryFactory = GeometryUtil.getGeometryFactory();
+
+  /** Per chunk and direction, the cells the move out of is blocked from. */
+  private final Map<Long, AtomicReferenceArray<long[]>> blockedMoves = new ConcurrentHashMap<>();
+
+  /**
+   * Per footprint and chunk, the cells the footprint would overlap the topology on. Footprints are
+   * told apart by identity, since the default one a walker starts with has no id.
+   */
+  private final Map<TokenFootprint, Map<Long, long[]>> blockedPositions =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+
+  PassabilityGrid(Grid grid, MovementBlockingTopology topology) {
+    this.grid = grid;
+    this.topology = topology;
+    this.topologyEmpty = topology.getEnvelope().isNull();
+  }
+
+  /**
+   * Finds or creates the passability grid for the current topology and grid of a zone.
+   *
+   * @param zone the zone to walk.
+   * @param vblBlocksMove whether vision blocking topology blocks movement as well as MBL.
+   * @param excludedTokenId the token whose own topology is ignored, usually the one moving.
+   * @return the passability grid.
+   */
+  static PassabilityGrid get(Zone zone, boolean vblBlocksMove, @Nullable GUID excludedTokenId) {
+    Grid grid = zone.getGrid();
+    var key =
+        new Key(
+            zone.getId(),
+            zone.getTopologyVersion(),
+            vblBlocksMove,
+            excludedTokenId,
+            grid.getClass(),
+            grid.getSize(),
+            grid.getOffsetX(),
+            grid.getOffsetY());
+    PassabilityGrid passability = cache.getIfPresent(key);
+    if (passability == null) {
+      var topologyTypes =
+          vblBlocksMove
+              ? EnumSet.allOf(Zone.TopologyType.class)
+              : EnumSet.of(Zone.TopologyType.MBL);
+      passability =
+          new PassabilityGrid(
+              grid,
+              new MovementBlockingTopology(
+                  zone.getWalls(), zone.getMasks(topologyTypes, excludedTokenId)));
+      cache.put(key, passability);
+    }
+    return passability;
+  }
+
+  MovementBlockingTopology getTopology() {
+    return topology;
+  }
+
+  /**
+   * @param footprint the footprint of the token.
+   * @param x the x of the cell the token would be at.
+   * @param y the y of the cell the token would be at.
+   * @return {@code true} if the token would overlap the topology at the cell.
+   */
+  boolean isPositionBlocked(TokenFootprint footprint, int x, int y) {
+    if (topologyEmpty) {
+      return false;
+    }
+    var chunks = blockedPositions.computeIfAbsent(footprint, f -> new ConcurrentHashMap<>());
+    long key = chunkKey(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+    long[] bits = chunks.get(key);
+    if (bits == null) {
+      // Another thread may be computing the same chunk. The result is the same either way.
+      bits = computeBlockedPositions(footprint, x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+      chunks.put(key, bits);
+    }
+    return isSet(bits, x, y);
+  }
+
+  /**
+   * @param x the x of the cell moved from.
+   * @param y the y of the cell moved from.
+   * @param dx the x offset, between -1 and 1, of the cell moved to.
+   * @param dy the y offset, between -1 and 1, of the cell moved to.
+   * @return {@code true} if the topology blocks the line between the centers of the cells.
+   */
+  boolean isMoveBlocked(int x, int y, int dx, int dy) {
+    if (topologyEmpty) {
+      return false;
+    }
+    var chunk =
+        blockedMoves.computeIfAbsent(
+            chunkKey(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT),
+            k -> new AtomicReferenceArray<>(DIRECTIONS));
+    int direction = (dx + 1) * 3 + (dy + 1);
+    long[] bits = chunk.get(direction);
+    if (bits == null) {
+      bits = computeBlockedMoves(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, dx, dy);
+      chunk.set(direction, bits);
+    }
+    return isSet(bits, x, y);
+  }
+
+  /**
+   * Reports every blocked move computed so far, e.g. for debugging.
+   *
+   * @param consumer receives the cell moved from and the cell moved to.
+   */
+  void forEachBlockedMove(BiConsumer<CellPoint, CellPoint> consumer) {
+    for (var entry : blockedMoves.entrySet()) {
+      int chunkX = (int) (entry.getKey() >> 32);
+      int chunkY = entry.getKey().intValue();
+      var chunk = entry.getValue();
+      for (int direction = 0; direction < DIRECTIONS; direction++) {
+        long[] bits = chunk.get(direction);
+        if (bits == null) {
+          continue;
+        }
+        for (int i = 0; i < CHUNK_CELLS; i++) {
+          if ((bits[i >> 6] & (1L << i)) != 0) {
+            int x = (chunkX << CHUNK_SHIFT) + (i & (CHUNK_SIZE - 1));
+            int y = (chunkY << CHUNK_SHIFT) + (i >> CHUNK_SHIFT);
+            consumer.accept(
+                new CellPoint(x, y), new CellPoint(x + direction / 3 - 1, y + direction % 3 - 1));
+          }
+        }
+      }
+    }
+  }
+
+  private long[] computeBlockedPositions(TokenFootprint footprint, int chunkX, int chunkY) {
+    // Grids lazily cache their cell shapes, so build the geometries up front on this thread and
+    // only test them in parallel.
+    var hulls = new Geometry[CHUNK_CELLS];
+    for (int i = 0; i < CHUNK_CELLS; i++) {
+      var position =
+          new CellPoint(
+              (chunkX << CHUNK_SHIFT) + (i & (CHUNK_SIZE - 1)),
+              (chunkY << CHUNK_SHIFT) + (i >> CHUNK_SHIFT));
+      var points =
+          footprint.getOccupiedCells(position).stream()
+              .map(
+                  cellPoint -> {
+                    var bounds = grid.getBounds(cellPoint);
+                    return new Coordinate(bounds.getCenterX(), bounds.getCenterY());
+                  })
+              .toArray(Coordinate[]::new);
+      hulls[i] = new ConvexHull(points, geometryFactory).getConvexHull();
+    }
+    return toBits(i -> intersectsTopology(hulls[i]));
+  }
+
+  private long[] computeBlockedMoves(int chunkX, int chunkY, int dx, int dy) {
+    var rays = new Geometry[CHUNK_CELLS];
+    for (int i = 0; i < CHUNK_CELLS; i++) {
+      int x = (chunkX << CHUNK_SHIFT) + (i & (CHUNK_SIZE - 1));
+      int y = (chunkY << CHUNK_SHIFT) + (i >> CHUNK_SHIFT);
+      Rectangle startBounds = grid.getBounds(new CellPoint(x, y));
+      Rectangle goalBounds = grid.getBounds(new CellPoint(x + dx, y + dy));
+      if (!startBounds.isEmpty() && !goalBounds.isEmpty()) {
+        rays[i] =
+            geometryFactory.createLineString(
+                new Coordinate[] {
+                  new Coordinate(startBounds.getCenterX(), startBounds.getCenterY()),
+                  new Coordinate(goalBounds.getCenterX(), goalBounds.getCenterY())
+                });
+      }
+    }
+    return toBits(i -> rays[i] != null && intersectsTopology(rays[i]));
+  }
+
+  private boolean intersectsTopology(Geometry geometry) {
+    try {
+      return topology.intersects(geometry);
+    } catch (Exception e) {
+      log.info("clipped.intersects oh oh: ", e);
+      return true;
+    }
+  }
+
+  private static long[] toBits(IntPredicate blocked) {
+    var results = new boolean[CHUNK_CELLS];
+    IntStream.range(0, CHUNK_CELLS).parallel().forEach(i -> results[i] = blocked.test(i));
+
+    var bits = new long[CHUNK_CELLS / 64];
+    for (int i = 0; i < CHUNK_CELLS; i++) {
+      if (results[i]) {
+        bits[i >> 6] |= 1L << i;
+      }
+    }
+    return bits;
+  }
+
+  private static boolean isSet(long[] bits, int x, int y) {
+    int i = ((y & (CHUNK_SIZE - 1)) << CHUNK_SHIFT) | (x & (CHUNK_SIZE - 1));
+    return (bits[i >> 6] & (1L << i)) != 0;
+  }
+
+  private static long chunkKey(int chunkX, int chunkY) {
+    return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+  }
+}
@@ -14,9 +14,14 @@
  */
 package net.rptools.maptool.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.protobuf.BoolValue;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -66,6 +71,9 @@ public class Campaign {
   private CampaignProperties campaignProperties = new CampaignProperties();
   private transient boolean isBeingSerialized;
 
+  // the content digests of the zones of a snapshot, by zone id; null if this is not a snapshot
+  private transient @Nullable Map<GUID, HashCode> zoneDigests;
+
   // campaign macro button properties. these are saved along with the campaign.
   // as of 1.3b32
   private List<MacroButtonProperties> macroButtonProperties;
@@ -78,6 +86,10 @@ public class Campaign {
   // as of 1.5.6
   private List<MacroButtonProperties> gmMacroButtonProperties;
 
+  // the campaign and GM macros by label, rebuilt when the lists change
+  private transient volatile MacroLabelIndex macroLabelIndex;
+  private transient volatile MacroLabelIndex gmMacroLabelIndex;
+
   // DEPRECATED: As of 1.3b20 these are now in campaignProperties, but are here for backward
   // compatibility
   private Map<String, List<TokenProperty>> tokenTypeMap;
@@ -107,6 +119,44 @@ public class Campaign {
   /** When a player connects to a server, this will be the map they are sent to at first. */
   private @Nullable GUID landingMapId = null;
 
+  /**
+   * The properties of a token type by lower case name.
+   *
+   * @param renames the {@link TokenProperty#getRenameCount() rename count} before the index was
+   *     built.
+   * @param properties the properties of the list the index was built from, in order.
+   * @param byName the properties by lower case name.
+   */
+  private record TokenPropertyIndex(
+      long renames, List<TokenProperty> properties, Map<String, TokenProperty> byName) {
+    TokenPropertyIndex(List<TokenProperty> propertyList) {
+      this(TokenProperty.getRenameCount(), new ArrayList<>(propertyList), new HashMap<>());
+      for (TokenProperty property : properties) {
+        byName.putIfAbsent(property.getName().toLowerCase(Locale.ROOT), property);
+      }
+    }
+
+    /**
+     * Checks if the index still matches the list, which is the case if the list holds the same
+     * properties in the same order and no property has been renamed since.
+     *
+     * @param propertyList the list the index was built from.
+     * @return {@code true} if the index can be used.
+     */
+    boolean isCurrent(List<TokenProperty> propertyList) {
+      // TokenProperty does not override equals, so this only compares the references.
+      return renames == TokenProperty.getRenameCount() && properties.equals(propertyList);
+    }
+  }
+
+  /**
+   * The indexes of the property lists of the token types, by list identity. Property lookups are
+   * made for every evaluated token property. An index is rebuilt whenever its list or the name of
+   * a property changes.
+   */
+  private static final Cache<List<TokenProperty>, TokenPropertyIndex> tokenPropertyIndexes =
+      CacheBuilder.newBuilder().weakKeys().build();
+
   public Campaign() {
     name = "Default";
     macroButtonLastIndex = 0;
@@ -165,6 +215,55 @@ public List<String> getRemoteRepositoryList() {
    * @param campaign The campaign to copy from.
    */
   public Campaign(Campaign campaign) {
+    this(campaign, zone -> new Zone(zone, true));
+  }
+
+  /**
+   * Creates a copy of a campaign that can be saved while the campaign keeps changing. The zones
+   * that have not changed since the previous snapshot share its copies rather than being copied
+   * again, so taking a snapshot costs little more than encoding the zones and copying those that
+   * changed.
+   *
+   * <p>Not every change to a zone changes its {@link Zone#getVersion() version}, such as changes
+   * made to its tokens directly, so a zone is only shared if its encoded content has the same
+   * digest as when the previous snapshot copied it.
+   *
+   * <p>The zones of a snapshot must not be changed, as later snapshots may share them.
+   *
+   * @param campaign The campaign to copy from.
+   * @param previous The previous snapshot of the campaign, or null if there is none.
+   * @return the snapshot.
+   */
+  public static Campaign snapshot(Campaign campaign, @Nullable Campaign previous) {
+    Map<GUID, Zone> previousZones = new HashMap<>();
+    Map<GUID, HashCode> previousDigests = Map.of();
+    if (previous != null) {
+      synchronized (previous.zones) {
+        previousZones.putAll(previous.zones);
+      }
+      if (previous.zoneDigests != null) {
+        previousDigests = previous.zoneDigests;
+      }
+    }
+    Map<GUID, HashCode> sharedDigests = previousDigests;
+    Map<GUID, HashCode> digests = new HashMap<>();
+    Campaign snapshot =
+        new Campaign(
+            campaign,
+            zone -> {
+              HashCode digest = Hashing.sha256().hashBytes(zone.toDto().toByteArray());
+              digests.put(zone.getId(), digest);
+              Zone copy = previousZones.get(zone.getId());
+              if (copy != null && digest.equals(sharedDigests.get(zone.getId()))) {
+                return copy;
+              }
+              return new Zone(zone, true);
+            });
+    snapshot.zoneDigests = digests;
+    return snapshot;
+  }
+
+  private Campaign(Campaign campaign, Function<Zone, Zone> zoneCopier) {
     id = campaign.getId();
     name = campaign.getName();
     landingMapId = campaign.landingMapId;
@@ -180,7 +279,7 @@ public Campaign(Campaign campaign) {
       zonesToCopy = new LinkedHashMap<>(campaign.zones);
     }
     for (Entry<GUID, Zone> entry : zonesToCopy.entrySet()) {
-      Zone copy = new Zone(entry.getValue(), true);
+      Zone copy = zoneCopier.apply(entry.getValue());
       zones.put(copy.getId(), copy);
     }
     campaignProperties = new CampaignProperties(campaign.campaignProperties);
@@ -279,6 +378,27 @@ public List<TokenProperty> getTokenPropertyList(String tokenType) {
         : new ArrayList<TokenProperty>();
   }
 
+  /**
+   * Returns the property of the token type with the name, ignoring case.
+   *
+   * @param tokenType the name of the token type.
+   * @param name the name of the property.
+   * @return the property, or {@code null} if the token type has no such property.
+   */
+  @Nullable
+  public TokenProperty getTokenProperty(String tokenType, String name) {
+    List<TokenProperty> propertyList = getTokenTypeMap().get(tokenType);
+    if (propertyList == null) {
+      return null;
+    }
+    TokenPropertyIndex index = tokenPropertyIndexes.getIfPresent(propertyList);
+    if (index == null || !index.isCurrent(propertyList)) {
+      index = new TokenPropertyIndex(propertyList);
+      tokenPropertyIndexes.put(propertyList, index);
+    }
+    return index.byName().get(name.toLowerCase(Locale.ROOT));
+  }
+
   public void putTokenType(String name, List<TokenProperty> propertyList) {
     getTokenTypeMap().put(name, propertyList);
   }
@@ -518,6 +638,44 @@ public void setGmMacroButtonPropertiesArray(List<MacroButtonProperties> properti
     gmMacroButtonProperties = properties;
   }
 
+  /**
+   * Returns the first macro with the label in the GM or Campaign macro panel.
+   *
+   * @param label the label of the macro
+   * @param gmPanel true for the GM panel, false for the Campaign panel.
+   * @return the macro, or null if there is no macro with the label
+   */
+  @Nullable
+  public MacroButtonProperties getMacroButtonProperty(String label, boolean gmPanel) {
+    return getMacroLabelIndex(gmPanel).getFirst(label);
+  }
+
+  /**
+   * Returns the macros with the label in the GM or Campaign macro panel.
+   *
+   * @param label the label of the macros
+   * @param gmPanel true for the GM panel, false for the Campaign panel.
+   * @return the unmodifiable list of the macros, in the order of the panel's list
+   */
+  public List<MacroButtonProperties> getMacroButtonProperties(String label, boolean gmPanel) {
+    return getMacroLabelIndex(gmPanel).getAll(label);
+  }
+
+  private MacroLabelIndex getMacroLabelIndex(boolean gmPanel) {
+    List<MacroButtonProperties> macros =
+        gmPanel ? getGmMacroButtonPropertiesArray() : getMacroButtonPropertiesArray();
+    MacroLabelIndex index = gmPanel ? gmMacroLabelIndex : macroLabelIndex;
+    if (index == null || !index.isCurrent(macros, macros.size())) {
+      index = MacroLabelIndex.of(macros, macros);
+      if (gmPanel) {
+        gmMacroLabelIndex = index;
+      } else {
+        macroLabelIndex = index;
+      }
+    }
+    return index;
+  }
+
   /**
    * Adds multiple MacroButtonProperties to the GM or Campaign macro panel, starting at the next
    * appropriate index.
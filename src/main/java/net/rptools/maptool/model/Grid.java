@@ -615,6 +615,9 @@ protected Area createHex(double inRadius) {
 
   private void fireGridChanged() {
     getGridShapeCache().clear();
+    if (zone != null) {
+      zone.gridChanged();
+    }
     new MapToolEventBus().getMainEventBus().post(new GridChanged(this.zone));
   }
 
@@ -16,6 +16,7 @@
 
 import java.awt.Color;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
@@ -46,6 +47,9 @@ public class MacroButtonProperties implements Comparable<MacroButtonProperties>
 
   private static final Logger log = LogManager.getLogger(MacroButtonProperties.class);
 
+  /** The number of times the label of a macro was changed, to know when to rebuild indexes. */
+  private static final AtomicInteger labelChanges = new AtomicInteger();
+
   // Jamz: Why a String and not UUID? Because stupid Hessian can't serialize UUID, ug.
   private @Nonnull String macroUUID = UUID.randomUUID().toString();
 
@@ -611,6 +615,14 @@ public void setCommand(String command) {
 
   public void setLabel(String label) {
     this.label = (label == null ? "" : label);
+    labelChanges.incrementAndGet();
+  }
+
+  /**
+   * @return the number of times the label of a macro was changed.
+   */
+  static int getLabelChanges() {
+    return labelChanges.get();
   }
 
   public @Nonnull String getGroup() {
@@ -805,7 +817,7 @@ public void reset() {
     colorKey = "default";
     hotKey = MacroButtonHotKeyManager.HOTKEYS[0];
     command = "";
-    label = String.valueOf(index);
+    setLabel(String.valueOf(index));
     group = "";
     sortby = "";
     autoExecute = true;
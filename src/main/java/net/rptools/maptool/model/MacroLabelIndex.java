@@ -0,0 +1,89 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * The macros of a token or macro panel by label, so that macros called by name are found without
+ * scanning all of them.
+ *
+ * <p>An index is a snapshot of the macros it was built from. It is no longer current once that
+ * collection is replaced or changes size, or once the label of any macro is changed.
+ *
+ * @param source the collection the index was built from.
+ * @param size the number of macros in the collection.
+ * @param labelChanges the number of label changes when the index was built.
+ * @param byLabel the macros with each label, in the order of the collection.
+ */
+record MacroLabelIndex(
+    Object source,
+    int size,
+    int labelChanges,
+    Map<String, List<MacroButtonProperties>> byLabel) {
+
+  /**
+   * Builds the index of the macros.
+   *
+   * @param source the collection that holds the macros.
+   * @param macros the macros, in the order they are searched.
+   * @return the index.
+   */
+  static MacroLabelIndex of(Object source, Collection<MacroButtonProperties> macros) {
+    int labelChanges = MacroButtonProperties.getLabelChanges();
+    Map<String, List<MacroButtonProperties>> byLabel = new HashMap<>();
+    for (MacroButtonProperties macro : macros) {
+      byLabel.computeIfAbsent(macro.getLabel(), l -> new ArrayList<>(1)).add(macro);
+    }
+    byLabel.replaceAll((label, list) -> List.copyOf(list));
+    return new MacroLabelIndex(source, macros.size(), labelChanges, byLabel);
+  }
+
+  /**
+   * Checks if the index still matches the macros.
+   *
+   * @param source the collection that holds the macros.
+   * @param size the number of macros in the collection.
+   * @return {@code true} if the index can be used.
+   */
+  boolean isCurrent(Object source, int size) {
+    return this.source == source
+        && this.size == size
+        && labelChanges == MacroButtonProperties.getLabelChanges();
+  }
+
+  /**
+   * @param label the label of the macro.
+   * @return the first macro with the label, or {@code null} if there is none.
+   */
+  @Nullable
+  MacroButtonProperties getFirst(String label) {
+    List<MacroButtonProperties> macros = byLabel.get(label);
+    return macros == null ? null : macros.get(0);
+  }
+
+  /**
+   * @param label the label of the macros.
+   * @return the unmodifiable list of the macros with the label.
+   */
+  List<MacroButtonProperties> getAll(String label) {
+    return byLabel.getOrDefault(label, List.of());
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.client.MapToolVariableResolver;
+
+/**
+ * Records what the evaluation of a token property depends on, so that {@link Token} can decide
+ * whether the evaluated value may be reused.
+ *
+ * <p>A value may be reused if the evaluation read nothing but the properties of its own token and
+ * the variables it set itself, and had no effect outside of its own variables. The parser reports
+ * everything else, such as function calls, dice rolls and formatted output, with {@link
+ * #notReusable()}. Evaluations nest, and an evaluation inherits the properties read and the
+ * reusability of the evaluations of the properties it refers to.
+ */
+public final class PropertyEvaluation {
+  private static final ThreadLocal<PropertyEvaluation> current = new ThreadLocal<>();
+
+  /** The token whose property is evaluated. */
+  private final Token token;
+
+  /** The resolver passed in by the caller, which outlives the evaluation. */
+  private final @Nullable MapToolVariableResolver resolver;
+
+  /** The evaluation that was in progress when this one started. */
+  private final @Nullable PropertyEvaluation outer;
+
+  /** The lower case names of the properties read. */
+  private final Set<String> properties = new HashSet<>();
+
+  private boolean reusable = true;
+
+  private PropertyEvaluation(
+      Token token,
+      @Nullable MapToolVariableResolver resolver,
+      @Nullable PropertyEvaluation outer) {
+    this.token = token;
+    this.resolver = resolver;
+    this.outer = outer;
+  }
+
+  /**
+   * Starts recording the evaluation of a property of the token on this thread.
+   *
+   * @param token the token whose property is evaluated.
+   * @param resolver the resolver the property is evaluated with, if the caller passed one.
+   * @return the evaluation, which must be ended with {@link #end()}.
+   */
+  static PropertyEvaluation start(Token token, @Nullable MapToolVariableResolver resolver) {
+    var evaluation = new PropertyEvaluation(token, resolver, current.get());
+    current.set(evaluation);
+    return evaluation;
+  }
+
+  /** Stops recording, and adds what was recorded to the evaluation this one is nested in. */
+  void end() {
+    if (outer == null) {
+      current.remove();
+      return;
+    }
+    current.set(outer);
+    outer.properties.addAll(properties);
+    if (!reusable || outer.token != token) {
+      outer.reusable = false;
+    }
+  }
+
+  /**
+   * @return {@code true} if the evaluated value may be reused.
+   */
+  boolean isReusable() {
+    return reusable;
+  }
+
+  /**
+   * @return the lower case names of the properties that were read.
+   */
+  Set<String> getProperties() {
+    return properties;
+  }
+
+  /**
+   * Records that a property of the token was read by the evaluation in progress, if any.
+   *
+   * @param token the token whose property was read.
+   * @param name the name of the property.
+   */
+  static void propertyRead(Token token, String name) {
+    var evaluation = current.get();
+    if (evaluation != null) {
+      evaluation.read(token, name);
+    }
+  }
+
+  /**
+   * Records that properties of the token were read by the evaluation in progress, if any.
+   *
+   * @param token the token whose properties were read.
+   * @param names the names of the properties.
+   */
+  static void propertiesRead(Token token, Collection<String> names) {
+    var evaluation = current.get();
+    if (evaluation != null) {
+      for (String name : names) {
+        evaluation.read(token, name);
+      }
+    }
+  }
+
+  private void read(Token token, String name) {
+    if (token != this.token) {
+      reusable = false;
+    } else {
+      properties.add(name.toLowerCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * @return {@code true} if a property is being evaluated on this thread.
+   */
+  public static boolean isRecording() {
+    return current.get() != null;
+  }
+
+  /** Records that the evaluation in progress, if any, may not be reused. */
+  public static void notReusable() {
+    var evaluation = current.get();
+    if (evaluation != null) {
+      evaluation.reusable = false;
+    }
+  }
+
+  /**
+   * Checks if the resolver was passed in by the caller of the evaluation in progress, so that its
+   * variables may have been set before the evaluation started and outlive it.
+   *
+   * @param resolver the resolver to check.
+   * @return {@code true} if the resolver belongs to the caller.
+   */
+  public static boolean isCallerResolver(MapToolVariableResolver resolver) {
+    var evaluation = current.get();
+    return evaluation != null && evaluation.resolver == resolver;
+  }
+}
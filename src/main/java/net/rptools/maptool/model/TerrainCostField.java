@@ -0,0 +1,161 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.awt.Rectangle;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+
+/**
+ * The terrain modifiers of a zone, per cell, as of one moment.
+ *
+ * <p>The field is split into regions of 32 by 32 cells. A region that has terrain holds dense
+ * arrays of which operations apply to each cell, and the sum of the multipliers and of the
+ * additions. Regions without terrain are not stored.
+ *
+ * <p>A field never changes once created, so it can be read from any thread. When terrain tokens
+ * change, {@link Zone#getTerrainCostField()} returns a new field that shares the unchanged regions
+ * with the old one.
+ */
+public final class TerrainCostField {
+  static final int REGION_SHIFT = 5;
+  static final int REGION_SIZE = 1 << REGION_SHIFT;
+  static final int REGION_CELLS = REGION_SIZE * REGION_SIZE;
+
+  /** A field without terrain. */
+  static final TerrainCostField EMPTY = new TerrainCostField(Map.of());
+
+  /** The modifiers of the cells of one region. */
+  record Region(byte[] operations, double[] multipliers, double[] additions, Rectangle cells) {}
+
+  /** The regions, in a dense array covering {@link #originX}, {@link #originY} onwards. */
+  private final Region[] regions;
+
+  private final int originX;
+  private final int originY;
+  private final int width;
+  private final int height;
+  private final @Nullable Rectangle cellBounds;
+
+  /**
+   * @param regionsByKey the regions with terrain, by {@link #regionKey(int, int)}.
+   */
+  TerrainCostField(Map<Long, Region> regionsByKey) {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    Rectangle bounds = null;
+    for (var entry : regionsByKey.entrySet()) {
+      int regionX = (int) (entry.getKey() >> 32);
+      int regionY = entry.getKey().intValue();
+      minX = Math.min(minX, regionX);
+      minY = Math.min(minY, regionY);
+      maxX = Math.max(maxX, regionX);
+      maxY = Math.max(maxY, regionY);
+      Rectangle cells = entry.getValue().cells();
+      bounds = bounds == null ? new Rectangle(cells) : bounds.union(cells);
+    }
+
+    if (regionsByKey.isEmpty()) {
+      originX = originY = width = height = 0;
+      regions = new Region[0];
+    } else {
+      originX = minX;
+      originY = minY;
+      width = maxX - minX + 1;
+      height = maxY - minY + 1;
+      regions = new Region[width * height];
+      for (var entry : regionsByKey.entrySet()) {
+        int regionX = (int) (entry.getKey() >> 32);
+        int regionY = entry.getKey().intValue();
+        regions[(regionY - originY) * width + (regionX - originX)] = entry.getValue();
+      }
+    }
+    cellBounds = bounds;
+  }
+
+  /**
+   * @param operation a terrain modifier operation.
+   * @return the bit of the operation in {@link #getOperations(int, int)}.
+   */
+  public static int bit(TerrainModifierOperation operation) {
+    return 1 << operation.ordinal();
+  }
+
+  /**
+   * @return {@code true} if no cell has terrain.
+   */
+  public boolean isEmpty() {
+    return cellBounds == null;
+  }
+
+  /**
+   * @return the smallest rectangle of cells containing every cell with terrain, or null if there is
+   *     none.
+   */
+  public @Nullable Rectangle getCellBounds() {
+    return cellBounds == null ? null : new Rectangle(cellBounds);
+  }
+
+  /**
+   * @param x the x of the cell.
+   * @param y the y of the cell.
+   * @return the {@link #bit(TerrainModifierOperation)} of every operation of the terrain on the
+   *     cell, or 0 if it has none.
+   */
+  public int getOperations(int x, int y) {
+    Region region = region(x, y);
+    return region == null ? 0 : region.operations()[index(x, y)];
+  }
+
+  /**
+   * @param x the x of the cell.
+   * @param y the y of the cell.
+   * @return the sum of the {@link TerrainModifierOperation#MULTIPLY} modifiers on the cell.
+   */
+  public double getMultiplier(int x, int y) {
+    Region region = region(x, y);
+    return region == null ? 0 : region.multipliers()[index(x, y)];
+  }
+
+  /**
+   * @param x the x of the cell.
+   * @param y the y of the cell.
+   * @return the sum of the {@link TerrainModifierOperation#ADD} modifiers on the cell.
+   */
+  public double getAddition(int x, int y) {
+    Region region = region(x, y);
+    return region == null ? 0 : region.additions()[index(x, y)];
+  }
+
+  private @Nullable Region region(int x, int y) {
+    int regionX = (x >> REGION_SHIFT) - originX;
+    int regionY = (y >> REGION_SHIFT) - originY;
+    if (regionX < 0 || regionY < 0 || regionX >= width || regionY >= height) {
+      return null;
+    }
+    return regions[regionY * width + regionX];
+  }
+
+  static int index(int x, int y) {
+    return ((y & (REGION_SIZE - 1)) << REGION_SHIFT) | (x & (REGION_SIZE - 1));
+  }
+
+  static long regionKey(int regionX, int regionY) {
+    return ((long) regionX << 32) | (regionY & 0xFFFFFFFFL);
+  }
+}
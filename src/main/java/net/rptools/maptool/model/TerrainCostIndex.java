@@ -0,0 +1,224 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static net.rptools.maptool.model.TerrainCostField.REGION_CELLS;
+import static net.rptools.maptool.model.TerrainCostField.REGION_SHIFT;
+
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.TerrainCostField.Region;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+
+/**
+ * Keeps the {@link TerrainCostField} of a {@link Zone} up to date as its terrain tokens change.
+ *
+ * <p>The index remembers which cells each terrain token covers. When a token changes, only the
+ * regions it covered before and covers now are recomputed, and only when the next field is asked
+ * for. Regions are recomputed from the tokens that cover them rather than by subtracting the old
+ * modifiers, so that the sums stay exact.
+ *
+ * <p>Like {@link TokenSpatialIndex}, the index does not observe tokens: the zone must call {@link
+ * #update(Token)} and {@link #remove(Token)}. Since occupied cells depend on the grid, the index is
+ * rebuilt whenever it notices the grid has changed.
+ */
+final class TerrainCostIndex {
+  private record Contribution(
+      Set<CellPoint> cells, TerrainModifierOperation operation, double modifier) {}
+
+  private final Zone zone;
+  private final Map<GUID, Contribution> contributions = new HashMap<>();
+
+  /** The tokens covering each region. */
+  private final Map<Long, Set<GUID>> tokensByRegion = new HashMap<>();
+
+  private final Map<Long, Region> regions = new HashMap<>();
+  private final Set<Long> dirtyRegions = new HashSet<>();
+  private TerrainCostField field = TerrainCostField.EMPTY;
+
+  /** The grid state the cells were calculated for. */
+  private Grid indexedGrid;
+
+  private int indexedGridSize;
+  private int indexedGridOffsetX;
+  private int indexedGridOffsetY;
+
+  TerrainCostIndex(Zone zone) {
+    this.zone = zone;
+    checkGrid();
+  }
+
+  /**
+   * Records the terrain of the token, replacing what was recorded for it before.
+   *
+   * @param token the token that was added or changed.
+   */
+  synchronized void update(Token token) {
+    if (checkGrid() || indexedGrid == null) {
+      return;
+    }
+    Contribution old = contributions.get(token.getId());
+    Contribution current = contributionOf(token);
+    if (old == null && current == null) {
+      // By far the most common case: a token without terrain.
+      return;
+    }
+    if (old != null && old.equals(current)) {
+      return;
+    }
+    if (old != null) {
+      removeContribution(token.getId(), old);
+    }
+    if (current != null) {
+      addContribution(token.getId(), current);
+    }
+  }
+
+  /**
+   * Forgets the terrain of the token.
+   *
+   * @param token the token that was removed.
+   */
+  synchronized void remove(Token token) {
+    Contribution old = contributions.get(token.getId());
+    if (old != null) {
+      removeContribution(token.getId(), old);
+    }
+  }
+
+  /**
+   * @return the field for the current terrain tokens, recomputing the regions that changed.
+   */
+  synchronized TerrainCostField getField() {
+    checkGrid();
+    if (dirtyRegions.isEmpty()) {
+      return field;
+    }
+    for (long key : dirtyRegions) {
+      Set<GUID> tokens = tokensByRegion.get(key);
+      if (tokens == null) {
+        regions.remove(key);
+      } else {
+        regions.put(key, computeRegion(key, tokens));
+      }
+    }
+    dirtyRegions.clear();
+    field = new TerrainCostField(regions);
+    return field;
+  }
+
+  private Region computeRegion(long key, Set<GUID> tokens) {
+    var operations = new byte[REGION_CELLS];
+    var multipliers = new double[REGION_CELLS];
+    var additions = new double[REGION_CELLS];
+    Rectangle cells = null;
+    for (GUID id : tokens) {
+      Contribution contribution = contributions.get(id);
+      for (CellPoint cell : contribution.cells()) {
+        if (TerrainCostField.regionKey(cell.x >> REGION_SHIFT, cell.y >> REGION_SHIFT) != key) {
+          continue;
+        }
+        int index = TerrainCostField.index(cell.x, cell.y);
+        operations[index] |= (byte) TerrainCostField.bit(contribution.operation());
+        switch (contribution.operation()) {
+          case MULTIPLY -> multipliers[index] += contribution.modifier();
+          case ADD -> additions[index] += contribution.modifier();
+          default -> {}
+        }
+        var cellRect = new Rectangle(cell.x, cell.y, 1, 1);
+        cells = cells == null ? cellRect : cells.union(cellRect);
+      }
+    }
+    return new Region(operations, multipliers, additions, cells);
+  }
+
+  private @Nullable Contribution contributionOf(Token token) {
+    TerrainModifierOperation operation = token.getTerrainModifierOperation();
+    if (operation == TerrainModifierOperation.NONE) {
+      return null;
+    }
+    return new Contribution(
+        Set.copyOf(token.getOccupiedCells(indexedGrid)), operation, token.getTerrainModifier());
+  }
+
+  private void addContribution(GUID id, Contribution contribution) {
+    contributions.put(id, contribution);
+    for (long key : regionsOf(contribution)) {
+      tokensByRegion.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+      dirtyRegions.add(key);
+    }
+  }
+
+  private void removeContribution(GUID id, Contribution contribution) {
+    contributions.remove(id);
+    for (long key : regionsOf(contribution)) {
+      Set<GUID> tokens = tokensByRegion.get(key);
+      if (tokens != null) {
+        tokens.remove(id);
+        if (tokens.isEmpty()) {
+          tokensByRegion.remove(key);
+        }
+      }
+      dirtyRegions.add(key);
+    }
+  }
+
+  private static Set<Long> regionsOf(Contribution contribution) {
+    Set<Long> keys = new LinkedHashSet<>();
+    for (CellPoint cell : contribution.cells()) {
+      keys.add(TerrainCostField.regionKey(cell.x >> REGION_SHIFT, cell.y >> REGION_SHIFT));
+    }
+    return keys;
+  }
+
+  /**
+   * Rebuilds the index if the grid changed since the cells were calculated.
+   *
+   * @return {@code true} if the index was rebuilt.
+   */
+  private boolean checkGrid() {
+    Grid grid = zone.getGrid();
+    if (grid == indexedGrid
+        && (grid == null
+            || (grid.getSize() == indexedGridSize
+                && grid.getOffsetX() == indexedGridOffsetX
+                && grid.getOffsetY() == indexedGridOffsetY))) {
+      return false;
+    }
+    indexedGrid = grid;
+    if (grid != null) {
+      indexedGridSize = grid.getSize();
+      indexedGridOffsetX = grid.getOffsetX();
+      indexedGridOffsetY = grid.getOffsetY();
+    }
+    contributions.clear();
+    tokensByRegion.clear();
+    dirtyRegions.addAll(regions.keySet());
+    if (grid != null) {
+      for (Token token : zone.getTokensWithTerrainModifiers()) {
+        Contribution contribution = contributionOf(token);
+        if (contribution != null) {
+          addContribution(token.getId(), contribution);
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -14,11 +14,8 @@
  */
 package net.rptools.maptool.model;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.TypeAdapter;
-import com.google.gson.stream.JsonReader;
 import com.google.protobuf.Int32Value;
 import com.google.protobuf.StringValue;
 import java.awt.Color;
@@ -34,9 +31,9 @@
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -50,6 +47,7 @@
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.MapToolVariableResolver;
 import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
+import net.rptools.maptool.client.functions.json.JsonParseCache;
 import net.rptools.maptool.client.swing.SwingUtil;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.language.I18N;
@@ -101,10 +99,6 @@ public class Token implements Cloneable {
   /** The stat sheet properties for the token. */
   @Nullable private StatSheetProperties statSheet;
 
-  /** the only way to make Gson apply strict evaluation to JsonObjects, apparently. see #2396 */
-  private static final TypeAdapter<JsonObject> strictGsonObjectAdapter =
-      new Gson().getAdapter(JsonObject.class);
-
   public boolean getAllowURIAccess() {
     if (allowURIAccess && !isLibToken()) {
       allowURIAccess = false;
@@ -381,9 +375,40 @@ public String toString() {
 
   private CaseInsensitiveHashMap<Object> propertyMapCI = new CaseInsensitiveHashMap<>();
 
+  /**
+   * An evaluated property that can be returned again for as long as its value, and the values of
+   * the properties it refers to, stay the same.
+   *
+   * @param raw the unevaluated value of the property.
+   * @param trusted whether the property was evaluated in a trusted context.
+   * @param dependencies the unevaluated values of the properties the evaluation read.
+   * @param value the evaluated value.
+   */
+  private record EvaluatedProperty(
+      Object raw, boolean trusted, Map<String, Object> dependencies, Object value) {
+    boolean isCurrent(Token token, Object raw, boolean trusted) {
+      if (trusted != this.trusted || !raw.equals(this.raw)) {
+        return false;
+      }
+      for (Map.Entry<String, Object> dependency : dependencies.entrySet()) {
+        if (!Objects.equals(
+            token.getPropertyOrDefault(dependency.getKey()), dependency.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** The evaluated properties that can be reused, by lower case name. */
+  private transient volatile Map<String, EvaluatedProperty> evaluatedProperties;
+
   private Map<String, String> macroMap;
   private Map<Integer, MacroButtonProperties> macroPropertiesMap = new HashMap<>();
 
+  /** The macros by label, rebuilt when macros are added, replaced, removed or renamed. */
+  private transient volatile MacroLabelIndex macroLabelIndex;
+
   private Map<String, String> speechMap = new HashMap<>();
 
   private HeroLabData heroLabData;
@@ -1874,19 +1899,20 @@ public Object getProperty(String key) {
    */
   @Nullable
   public String getPropertyDefault(@Nonnull String key) {
-    List<TokenProperty> propertyList =
-        MapTool.getCampaign().getCampaignProperties().getTokenPropertyList(propertyType);
-    if (propertyList == null) {
-      return null;
-    }
-
-    for (TokenProperty property : propertyList) {
-      if (key.equalsIgnoreCase(property.getName())) {
-        return property.getDefaultValue();
-      }
-    }
+    TokenProperty property = MapTool.getCampaign().getTokenProperty(propertyType, key);
+    return property == null ? null : property.getDefaultValue();
+  }
 
-    return null;
+  /**
+   * Returns the value of the property, or its default if the token has no value for it.
+   *
+   * @param key the name of the property.
+   * @return the unevaluated value, or {@code null} if there is neither a value nor a default.
+   */
+  @Nullable
+  private Object getPropertyOrDefault(@Nonnull String key) {
+    Object val = getProperty(key);
+    return val != null ? val : getPropertyDefault(key);
   }
 
   /**
@@ -1907,19 +1933,9 @@ public Object evaluateProperty(
        * attempting to parse anything that actually is a proper JSON, so let's try a stricter
        * evaluation process here first (see #2396).
        */
-      try {
-        try (JsonReader reader = new JsonReader(new StringReader(val.toString()))) {
-          JsonObject result = strictGsonObjectAdapter.read(reader);
-          // in case of a situation like {"a": 1}{"b": 2}, the above would have stopped at the first
-          // complete object.  This next line will throw an exception on finding another top-level
-          // object, allowing us to move on with other evaluation.
-          reader.hasNext();
-          if (result.isJsonObject()) {
-            return result;
-          }
-        }
-      } catch (IOException e) {
-        // deliberately ignored - continue parsing
+      JsonObject result = JsonParseCache.parseStrictObject(val.toString());
+      if (result != null) {
+        return result;
       }
     }
     // try to convert it to a JSON array. Fixes #2057.
@@ -1964,19 +1980,61 @@ public Object getEvaluatedProperty(@Nonnull String key) {
    *
    * @param resolver the variable resolver to parse code inside the property
    * @param key the key of the value
-   * @return the value
+   * @return the value; json values are copies that the caller may change
    */
   @Nonnull
   public Object getEvaluatedProperty(
       @Nullable MapToolVariableResolver resolver, @Nonnull String key) {
-    Object val = getProperty(key);
-    if (val == null) {
-      val = getPropertyDefault(key);
-    }
+    PropertyEvaluation.propertyRead(this, key);
+    Object val = getPropertyOrDefault(key);
     if (val == null) {
       return "";
     }
-    return evaluateProperty(resolver, key, val);
+
+    boolean trusted = MapTool.getParser().isMacroTrusted();
+    String evaluatedKey = key.toLowerCase(Locale.ROOT);
+    EvaluatedProperty evaluated = getEvaluatedProperties().get(evaluatedKey);
+    if (evaluated != null && evaluated.isCurrent(this, val, trusted)) {
+      PropertyEvaluation.propertiesRead(this, evaluated.dependencies().keySet());
+      return unshared(evaluated.value());
+    }
+
+    var evaluation = PropertyEvaluation.start(this, resolver);
+    Object value;
+    try {
+      value = evaluateProperty(resolver, key, val);
+    } finally {
+      evaluation.end();
+    }
+    if (evaluation.isReusable()) {
+      Map<String, Object> dependencies = new HashMap<>();
+      for (String name : evaluation.getProperties()) {
+        dependencies.put(name, getPropertyOrDefault(name));
+      }
+      getEvaluatedProperties()
+          .put(evaluatedKey, new EvaluatedProperty(val, trusted, dependencies, value));
+    } else if (evaluated != null) {
+      getEvaluatedProperties().remove(evaluatedKey);
+    }
+    return unshared(value);
+  }
+
+  /**
+   * Returns an evaluated property value that the caller may change. Json values are shared with
+   * the remembered evaluation and the {@link JsonParseCache}, so they are copied.
+   *
+   * @param value the evaluated value.
+   * @return the value, or a copy of it if it is json.
+   */
+  private static Object unshared(Object value) {
+    return value instanceof JsonElement json ? json.deepCopy() : value;
+  }
+
+  private Map<String, EvaluatedProperty> getEvaluatedProperties() {
+    if (evaluatedProperties == null) {
+      evaluatedProperties = new ConcurrentHashMap<>();
+    }
+    return evaluatedProperties;
   }
 
   /**
@@ -2048,14 +2106,33 @@ public MacroButtonProperties getMacro(int index, boolean secure) {
   // avoid this; it loads the first macro with this label, but there could be more than one macro
   // with that label
   public MacroButtonProperties getMacro(String label, boolean secure) {
-    Set<Integer> keys = getMacroPropertiesMap(secure).keySet();
-    for (int key : keys) {
-      MacroButtonProperties prop = macroPropertiesMap.get(key);
-      if (prop.getLabel().equals(label)) {
-        return prop;
-      }
+    MacroLabelIndex index = getMacroLabelIndex(secure);
+    return index == null ? null : index.getFirst(label);
+  }
+
+  /**
+   * Gets the macros on the token with the label.
+   *
+   * @param label the label of the macros
+   * @param secure whether there should be a check for player ownership
+   * @return the unmodifiable list of the macros, in the order of {@link #getMacroList(boolean)}
+   */
+  public List<MacroButtonProperties> getMacros(String label, boolean secure) {
+    MacroLabelIndex index = getMacroLabelIndex(secure);
+    return index == null ? List.of() : index.getAll(label);
+  }
+
+  private MacroLabelIndex getMacroLabelIndex(boolean secure) {
+    Map<Integer, MacroButtonProperties> macros = getMacroPropertiesMap(secure);
+    if (macros.isEmpty()) {
+      return null;
+    }
+    MacroLabelIndex index = macroLabelIndex;
+    if (index == null || !index.isCurrent(macros, macros.size())) {
+      index = MacroLabelIndex.of(macros, macros.values());
+      macroLabelIndex = index;
     }
-    return null;
+    return index;
   }
 
   /**
@@ -2089,6 +2166,7 @@ public void saveMacroList(List<MacroButtonProperties> newMacroList, boolean clea
       }
       macroPropertiesMap.put(macro.getIndex(), macro);
     }
+    macroLabelIndex = null;
   }
 
   /**
@@ -2098,6 +2176,7 @@ public void saveMacroList(List<MacroButtonProperties> newMacroList, boolean clea
    */
   public void saveMacro(MacroButtonProperties prop) {
     getMacroPropertiesMap(false).put(prop.getIndex(), prop);
+    macroLabelIndex = null;
   }
 
   /**
@@ -0,0 +1,148 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import net.rptools.maptool.util.StringUtil;
+
+/**
+ * Case-insensitive index from token name and GM name to the tokens of a {@link Zone}.
+ *
+ * <p>Like the spatial index, this does not observe the tokens: the zone must call {@link
+ * #update(Token)} after a token is put or changed, and {@link #remove(Token)} when it is removed.
+ */
+final class TokenNameIndex {
+  private record Names(Token token, @Nullable String name, @Nullable String gmName) {}
+
+  private final Map<String, List<Token>> tokensByName = new HashMap<>();
+  private final Map<String, List<Token>> tokensByGMName = new HashMap<>();
+  private final Map<GUID, Names> indexedNames = new HashMap<>();
+
+  /**
+   * Indexes the token under its current name and GM name, replacing any names it was indexed under
+   * before.
+   *
+   * @param token the token to index.
+   */
+  void update(Token token) {
+    String name = token.getName();
+    String gmName = StringUtil.isEmpty(token.getGMName()) ? null : token.getGMName();
+
+    Names old = indexedNames.get(token.getId());
+    if (old != null) {
+      if (old.token() == token
+          && Objects.equals(old.name(), name)
+          && Objects.equals(old.gmName(), gmName)) {
+        return;
+      }
+      unindex(old);
+    }
+    var names = new Names(token, name, gmName);
+    indexedNames.put(token.getId(), names);
+    if (name != null) {
+      tokensByName.computeIfAbsent(key(name), k -> new ArrayList<>(1)).add(token);
+    }
+    if (gmName != null) {
+      tokensByGMName.computeIfAbsent(key(gmName), k -> new ArrayList<>(1)).add(token);
+    }
+  }
+
+  /**
+   * Removes the token from the index.
+   *
+   * @param token the token to remove.
+   */
+  void remove(Token token) {
+    Names old = indexedNames.remove(token.getId());
+    if (old != null) {
+      unindex(old);
+    }
+  }
+
+  /**
+   * @param name the name to look for.
+   * @return the first token, in z-order, with the name, or {@code null} if there is none.
+   */
+  @Nullable
+  Token getTokenByName(String name) {
+    return first(tokensByName, name, Token::getName);
+  }
+
+  /**
+   * @param gmName the GM name to look for.
+   * @return the first token, in z-order, with the GM name, or {@code null} if there is none.
+   */
+  @Nullable
+  Token getTokenByGMName(String gmName) {
+    return first(tokensByGMName, gmName, Token::getGMName);
+  }
+
+  @Nullable
+  private static Token first(
+      Map<String, List<Token>> index, String name, Function<Token, String> getter) {
+    if (name == null) {
+      return null;
+    }
+    List<Token> candidates = index.get(key(name));
+    if (candidates == null) {
+      return null;
+    }
+    Token first = null;
+    for (Token token : candidates) {
+      // The key folds case the same way as equalsIgnoreCase() does, but make sure.
+      if (name.equalsIgnoreCase(getter.apply(token))
+          && (first == null || Zone.TOKEN_Z_ORDER_COMPARATOR.compare(token, first) < 0)) {
+        first = token;
+      }
+    }
+    return first;
+  }
+
+  private void unindex(Names names) {
+    if (names.name() != null) {
+      removeFrom(tokensByName, key(names.name()), names.token());
+    }
+    if (names.gmName() != null) {
+      removeFrom(tokensByGMName, key(names.gmName()), names.token());
+    }
+  }
+
+  private static void removeFrom(Map<String, List<Token>> index, String key, Token token) {
+    List<Token> tokens = index.get(key);
+    if (tokens != null) {
+      tokens.remove(token);
+      if (tokens.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Folds the case of a name so that two names have the same key exactly when {@link
+   * String#equalsIgnoreCase(String)} considers them equal.
+   */
+  private static String key(String name) {
+    var sb = new StringBuilder(name.length());
+    name.codePoints()
+        .forEach(cp -> sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp))));
+    return sb.toString();
+  }
+}
@@ -16,9 +16,13 @@
 
 import com.google.protobuf.StringValue;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
 import net.rptools.maptool.server.proto.TokenPropertyDto;
 
 public class TokenProperty implements Serializable {
+  /** The number of times any token property has been renamed. */
+  private static final AtomicLong renameCount = new AtomicLong();
+
   private String name;
   private String shortName;
   private boolean highPriority; // showOnStatSheet; so that 1.3b28 files load in 1.3b29
@@ -113,6 +117,17 @@ public String getDisplayName() {
 
   public void setName(String name) {
     this.name = name;
+    renameCount.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of times any token property has been renamed, so that indexes of properties
+   * by name can tell when they must be rebuilt.
+   *
+   * @return the number of renames so far.
+   */
+  public static long getRenameCount() {
+    return renameCount.get();
   }
 
   public String getShortName() {
@@ -0,0 +1,223 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.Zone.Layer;
+
+/**
+ * Spatial index of the tokens of a {@link Zone}, keyed by layer and by token footprint bounds.
+ *
+ * <p>Each layer has a grid of buckets in zone coordinates. A token is registered in every bucket
+ * its bounds touch, so area queries only need to look at the tokens in the buckets they cover.
+ *
+ * <p>The index does not observe tokens. The zone must call {@link #update(Token)} whenever a token
+ * may have moved, resized or changed layers, and {@link #remove(Token)} when it is removed. Since
+ * bounds depend on the grid, the index is rebuilt whenever it notices the grid has changed.
+ */
+final class TokenSpatialIndex {
+  /** Width and height, in zone units, of a bucket. */
+  private static final int BUCKET_SIZE = 512;
+
+  private record Entry(Token token, Layer layer, Rectangle bounds) {}
+
+  private final Zone zone;
+  private final Map<Layer, Map<Long, List<Token>>> bucketsByLayer = new EnumMap<>(Layer.class);
+  private final Map<GUID, Entry> entries = new HashMap<>();
+
+  /** The grid state the bounds were calculated for. */
+  private Grid indexedGrid;
+
+  private int indexedGridSize;
+  private int indexedGridOffsetX;
+  private int indexedGridOffsetY;
+
+  TokenSpatialIndex(Zone zone) {
+    this.zone = zone;
+  }
+
+  /**
+   * Adds the token to the index, or moves it to its current bounds and layer if it is already
+   * indexed.
+   *
+   * @param token the token to index.
+   */
+  void update(Token token) {
+    if (checkGrid() || indexedGrid == null) {
+      // Either everything was just reindexed, including this token, or there is nothing to index
+      // against until the zone has a grid.
+      return;
+    }
+    Entry old = entries.remove(token.getId());
+    Rectangle bounds = token.getBounds(zone);
+    if (old != null) {
+      if (old.token() == token && old.layer() == token.getLayer() && old.bounds().equals(bounds)) {
+        entries.put(token.getId(), old);
+        return;
+      }
+      // Moved, or replaced by a new instance of the same token, e.g. one received from the server.
+      removeFromBuckets(old);
+    }
+    addToBuckets(token, bounds);
+  }
+
+  /**
+   * Removes the token from the index.
+   *
+   * @param token the token to remove.
+   */
+  void remove(Token token) {
+    Entry old = entries.remove(token.getId());
+    if (old != null) {
+      removeFromBuckets(old);
+    }
+  }
+
+  /** Removes every token, e.g. before the index is rebuilt. */
+  void clear() {
+    entries.clear();
+    bucketsByLayer.clear();
+  }
+
+  /**
+   * Finds the tokens whose bounds intersect the rectangle.
+   *
+   * @param rect the area, in zone coordinates.
+   * @param layer the layer to look on, or {@code null} to look on all layers.
+   * @return the tokens found, in no particular order.
+   */
+  List<Token> getIntersecting(Rectangle rect, @Nullable Layer layer) {
+    checkGrid();
+
+    List<Token> result = new ArrayList<>();
+    Set<GUID> seen = new HashSet<>();
+    int minX = Math.floorDiv(rect.x, BUCKET_SIZE);
+    int minY = Math.floorDiv(rect.y, BUCKET_SIZE);
+    int maxX = Math.floorDiv(rect.x + rect.width, BUCKET_SIZE);
+    int maxY = Math.floorDiv(rect.y + rect.height, BUCKET_SIZE);
+
+    for (var layerEntry : bucketsByLayer.entrySet()) {
+      if (layer != null && layerEntry.getKey() != layer) {
+        continue;
+      }
+      Map<Long, List<Token>> buckets = layerEntry.getValue();
+      if ((long) (maxX - minX + 1) * (maxY - minY + 1) > buckets.size()) {
+        // Cheaper to look at every bucket than every cell of the rectangle.
+        for (List<Token> bucket : buckets.values()) {
+          collectIntersecting(bucket, rect, seen, result);
+        }
+      } else {
+        for (int by = minY; by <= maxY; by++) {
+          for (int bx = minX; bx <= maxX; bx++) {
+            List<Token> bucket = buckets.get(key(bx, by));
+            if (bucket != null) {
+              collectIntersecting(bucket, rect, seen, result);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private void collectIntersecting(
+      List<Token> bucket, Rectangle rect, Set<GUID> seen, List<Token> result) {
+    for (Token token : bucket) {
+      if (rect.intersects(entries.get(token.getId()).bounds()) && seen.add(token.getId())) {
+        result.add(token);
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the index if the grid changed since the bounds were calculated.
+   *
+   * @return {@code true} if the index was rebuilt.
+   */
+  private boolean checkGrid() {
+    Grid grid = zone.getGrid();
+    if (grid == indexedGrid
+        && (grid == null
+            || (grid.getSize() == indexedGridSize
+                && grid.getOffsetX() == indexedGridOffsetX
+                && grid.getOffsetY() == indexedGridOffsetY))) {
+      return false;
+    }
+    indexedGrid = grid;
+    if (grid != null) {
+      indexedGridSize = grid.getSize();
+      indexedGridOffsetX = grid.getOffsetX();
+      indexedGridOffsetY = grid.getOffsetY();
+    }
+    clear();
+    if (grid != null) {
+      for (Token token : zone.getAllTokens()) {
+        addToBuckets(token, token.getBounds(zone));
+      }
+    }
+    return true;
+  }
+
+  private void addToBuckets(Token token, Rectangle bounds) {
+    var entry = new Entry(token, token.getLayer(), bounds);
+    entries.put(token.getId(), entry);
+    var buckets = bucketsByLayer.computeIfAbsent(entry.layer(), l -> new HashMap<>());
+    forEachBucket(bounds, key -> buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(token));
+  }
+
+  private void removeFromBuckets(Entry entry) {
+    var buckets = bucketsByLayer.get(entry.layer());
+    if (buckets == null) {
+      return;
+    }
+    forEachBucket(
+        entry.bounds(),
+        key -> {
+          List<Token> bucket = buckets.get(key);
+          if (bucket != null) {
+            // Tokens are equal by id, so this also finds a replaced instance.
+            bucket.remove(entry.token());
+            if (bucket.isEmpty()) {
+              buckets.remove(key);
+            }
+          }
+        });
+  }
+
+  private static void forEachBucket(Rectangle bounds, LongConsumer visitor) {
+    int minX = Math.floorDiv(bounds.x, BUCKET_SIZE);
+    int minY = Math.floorDiv(bounds.y, BUCKET_SIZE);
+    int maxX = Math.floorDiv(bounds.x + bounds.width, BUCKET_SIZE);
+    int maxY = Math.floorDiv(bounds.y + bounds.height, BUCKET_SIZE);
+    for (int by = minY; by <= maxY; by++) {
+      for (int bx = minX; bx <= maxX; bx++) {
+        visitor.accept(key(bx, by));
+      }
+    }
+  }
+
+  private static long key(int bx, int by) {
+    return ((long) bx << 32) | (by & 0xFFFFFFFFL);
+  }
+}
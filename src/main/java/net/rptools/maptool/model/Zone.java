@@ -20,6 +20,7 @@
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -68,7 +69,6 @@
 import net.rptools.maptool.server.Mapper;
 import net.rptools.maptool.server.proto.DrawnElementListDto;
 import net.rptools.maptool.server.proto.ZoneDto;
-import net.rptools.maptool.util.StringUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -355,7 +355,31 @@ public enum TopologyType {
   private Map<GUID, ExposedAreaMetaData> exposedAreaMeta = new HashMap<GUID, ExposedAreaMetaData>();
 
   /** Token list ordered by Z. */
-  private final List<Token> tokenOrderedList = new LinkedList<Token>();
+  private List<Token> tokenOrderedList = new ArrayList<Token>();
+
+  /** Immutable views of {@link #tokenOrderedList}, rebuilt on first use after a change. */
+  private transient TokenViews tokenViews;
+
+  /** Spatial index of the tokens, created on first use. */
+  private transient TokenSpatialIndex tokenSpatialIndex;
+
+  /** Name and GM name index of the tokens, created on first use. */
+  private transient TokenNameIndex tokenNameIndex;
+
+  /** Terrain modifiers of the tokens per cell, created on first use. */
+  private transient TerrainCostIndex terrainCostIndex;
+
+  /** Hands out zone versions, so that no two states of any zones have the same version. */
+  private static final AtomicLong versionCounter = new AtomicLong();
+
+  /**
+   * Changes whenever the walls or mask topology change, including when a token with mask topology
+   * is added, changed or removed.
+   */
+  private transient volatile long topologyVersion = versionCounter.incrementAndGet();
+
+  /** Changes whenever the zone is changed through its methods. */
+  private transient volatile long version = versionCounter.incrementAndGet();
 
   private InitiativeList initiativeList = new InitiativeList(this);
 
@@ -424,6 +448,7 @@ public enum TopologyType {
   private transient Map<String, Integer> tokenNumberCache;
 
   {
+    watchInitiativeList();
     drawablesByLayer = new EnumMap<>(Layer.class);
     drawablesByLayer.put(Layer.TOKEN, drawables);
     drawablesByLayer.put(Layer.GM, gmDrawables);
@@ -438,6 +463,7 @@ public Zone() {
   }
 
   public void setBackgroundPaint(DrawablePaint paint) {
+    changed();
     backgroundPaint = paint;
   }
 
@@ -448,11 +474,13 @@ public MD5Key getBackgroundAsset() {
   }
 
   public void setMapAsset(MD5Key id) {
+    changed();
     mapAsset = id;
     boardChanged = true;
   }
 
   public void setTokenVisionDistance(int units) {
+    changed();
     tokenVisionDistance = units;
   }
 
@@ -465,6 +493,7 @@ public VisionType getVisionType() {
   }
 
   public void setVisionType(VisionType visionType) {
+    changed();
     this.visionType = visionType;
   }
 
@@ -473,6 +502,7 @@ public LightingStyle getLightingStyle() {
   }
 
   public void setLightingStyle(LightingStyle lightingStyle) {
+    changed();
     this.lightingStyle = lightingStyle;
     new MapToolEventBus().getMainEventBus().post(new ZoneLightingChanged(this));
   }
@@ -482,10 +512,12 @@ public TokenSelection getTokenSelection() {
   }
 
   public void setTokenSelection(TokenSelection tokenSelection) {
+    changed();
     this.tokenSelection = tokenSelection;
   }
 
   public void setFogPaint(DrawablePaint paint) {
+    changed();
     fogPaint = paint;
   }
 
@@ -516,10 +548,12 @@ public void setFogPaint(DrawablePaint paint) {
   }
 
   public void setName(String name) {
+    changed();
     this.name = name;
   }
 
   public void setPlayerAlias(String playerAlias) {
+    changed();
     this.playerAlias =
         playerAlias == null || playerAlias.equals("") || playerAlias.equals(name)
             ? null
@@ -569,6 +603,7 @@ public Zone(Zone zone) {
    * @param keepIds Should the token ids stay the same.
    */
   public Zone(Zone zone, boolean keepIds) {
+    long sourceVersion = zone.version;
     if (keepIds) {
       this.id = zone.getId();
       this.creationTime = zone.creationTime;
@@ -684,6 +719,11 @@ public Zone(Zone zone, boolean keepIds) {
     aStarRounding = zone.aStarRounding;
     isVisible = zone.isVisible;
     hasFog = zone.hasFog;
+
+    if (keepIds) {
+      // An exact copy is the same state of the same zone, so campaign saves can treat it as such.
+      version = sourceVersion;
+    }
   }
 
   public GUID getId() {
@@ -695,6 +735,7 @@ public GUID getId() {
    * cleaned up before being used.
    */
   public void imported() {
+    changed();
     initiativeList.clearModel();
   }
 
@@ -703,6 +744,7 @@ public int getHeight() {
   }
 
   public void setHeight(int height) {
+    changed();
     this.height = height;
   }
 
@@ -711,6 +753,7 @@ public int getWidth() {
   }
 
   public void setWidth(int width) {
+    changed();
     this.width = width;
   }
 
@@ -719,10 +762,12 @@ public boolean isVisible() {
   }
 
   public void setVisible(boolean isVisible) {
+    changed();
     this.isVisible = isVisible;
   }
 
   public void setGrid(Grid grid) {
+    changed();
     this.grid = grid;
     grid.setZone(this);
     new MapToolEventBus().getMainEventBus().post(new GridChanged(this));
@@ -737,6 +782,7 @@ public int getGridColor() {
   }
 
   public void setGridColor(int color) {
+    changed();
     gridColor = color;
   }
 
@@ -755,6 +801,7 @@ public void setBoardChanged(boolean set) {
   }
 
   public void setBoard(Point position) {
+    changed();
     boardPosition.x = position.x;
     boardPosition.y = position.y;
     setBoardChanged(true);
@@ -762,6 +809,7 @@ public void setBoard(Point position) {
   }
 
   public void setBoard(int newX, int newY) {
+    changed();
     boardPosition.x = newX;
     boardPosition.y = newY;
     setBoardChanged(true);
@@ -769,6 +817,7 @@ public void setBoard(int newX, int newY) {
   }
 
   public void setBoard(Point position, MD5Key asset) {
+    changed();
     this.setMapAsset(asset);
     this.setBoard(position);
   }
@@ -786,6 +835,7 @@ public boolean drawBoard() {
   }
 
   public void setDrawBoard(boolean draw) {
+    changed();
     drawBoard = draw;
   }
 
@@ -798,6 +848,7 @@ public float getImageScaleX() {
   }
 
   public void setImageScaleX(float imageScaleX) {
+    changed();
     this.imageScaleX = imageScaleX;
   }
 
@@ -806,6 +857,7 @@ public float getImageScaleY() {
   }
 
   public void setImageScaleY(float imageScaleY) {
+    changed();
     this.imageScaleY = imageScaleY;
   }
 
@@ -817,6 +869,7 @@ public boolean hasFog() {
   }
 
   public void setHasFog(boolean flag) {
+    changed();
     hasFog = flag;
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
@@ -989,17 +1042,21 @@ public List<MaskTopology> getMasks(Set<TopologyType> types, @Nullable GUID exclu
   }
 
   public void replaceWalls(WallTopology walls) {
+    changed();
     this.walls = walls;
+    topologyVersion = versionCounter.incrementAndGet();
     new MapToolEventBus().getMainEventBus().post(new WallTopologyChanged(this));
   }
 
   public void updateWall(Wall wall) {
+    changed();
     var existingWall = this.walls.getWall(wall.from(), wall.to());
 
     existingWall.ifPresentOrElse(
         existing -> {
           existing.copyDataFrom(wall);
 
+          topologyVersion = versionCounter.incrementAndGet();
           new MapToolEventBus().getMainEventBus().post(new WallTopologyChanged(this));
         },
         () -> {
@@ -1007,6 +1064,58 @@ public void updateWall(Wall wall) {
         });
   }
 
+  /**
+   * @return a number that changes whenever {@link WallTopologyChanged} or {@link
+   *     MaskTopologyChanged} is fired for this zone, or a token with mask topology is added,
+   *     changed or removed, so that derived data can tell it is stale. Like {@link #getVersion()},
+   *     the number is never reused, even by other zones.
+   */
+  public long getTopologyVersion() {
+    return topologyVersion;
+  }
+
+  /**
+   * Returns the version of the zone, which changes whenever the zone is changed through its
+   * methods, including changes to its tokens and initiative list. Versions are never reused, even
+   * by other zones, so an unchanged version means the same state of the same zone.
+   *
+   * @return the current version.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  private void changed() {
+    version = versionCounter.incrementAndGet();
+  }
+
+  /**
+   * Marks the topology as changed if any of the tokens carries mask topology, since their topology
+   * is part of the topology of the zone.
+   *
+   * @param tokens the tokens that were added, changed or removed. Null entries are ignored.
+   */
+  private void tokenTopologyChanged(Token... tokens) {
+    for (Token token : tokens) {
+      if (token != null && token.hasAnyMaskTopology()) {
+        topologyVersion = versionCounter.incrementAndGet();
+        return;
+      }
+    }
+  }
+
+  /** Counts changes to the size or offset of the grid as changes to the zone. */
+  void gridChanged() {
+    changed();
+  }
+
+  /** Counts changes to the initiative list as changes to the zone. */
+  private void watchInitiativeList() {
+    if (initiativeList != null) {
+      initiativeList.addPropertyChangeListener(e -> changed());
+    }
+  }
+
   public Area getMaskTopology(TopologyType topologyType) {
     return switch (topologyType) {
       case WALL_VBL -> topology;
@@ -1024,6 +1133,7 @@ public Area getMaskTopology(TopologyType topologyType) {
    * @param topologyType the type of the topology
    */
   public void updateMaskTopology(Area area, boolean erase, TopologyType topologyType) {
+    changed();
     var topology =
         switch (topologyType) {
           case WALL_VBL -> this.topology;
@@ -1039,11 +1149,14 @@ public void updateMaskTopology(Area area, boolean erase, TopologyType topologyTy
       topology.add(area);
     }
 
+    topologyVersion = versionCounter.incrementAndGet();
     new MapToolEventBus().getMainEventBus().post(new MaskTopologyChanged(this));
   }
 
   /** Fire the event {@link MaskTopologyChanged}. */
   public void tokenMaskTopologyChanged(Collection<TopologyType> types) {
+    changed();
+    topologyVersion = versionCounter.incrementAndGet();
     new MapToolEventBus().getMainEventBus().post(new MaskTopologyChanged(this));
   }
 
@@ -1068,6 +1181,18 @@ public Area getTokenMaskTopology(TopologyType type, @Nullable GUID excluding) {
    * @param token the token that changed
    */
   public void tokenChanged(Token token) {
+    changed();
+    Token stored = tokenMap.get(token.getId());
+    tokenTopologyChanged(token, stored);
+    if (stored != null) {
+      // The layer or z-order may have changed in place.
+      placeInZOrder(stored);
+      getTokenSpatialIndex().update(stored);
+      getTokenNameIndex().update(stored);
+      if (terrainCostIndex != null) {
+        terrainCostIndex.update(stored);
+      }
+    }
     new MapToolEventBus()
         .getMainEventBus()
         .post(new TokensChanged(this, Collections.singletonList(token)));
@@ -1079,6 +1204,7 @@ public void tokenChanged(Token token) {
    * @param token the token that had its macro changed
    */
   public void tokenMacroChanged(Token token) {
+    changed();
     new MapToolEventBus().getMainEventBus().post(new TokenMacroChanged(token));
   }
 
@@ -1088,6 +1214,7 @@ public void tokenMacroChanged(Token token) {
    * @param token the token that had its panel appearance changed
    */
   public void tokenPanelChanged(Token token) {
+    changed();
     new MapToolEventBus().getMainEventBus().post(new TokenPanelChanged(token));
   }
 
@@ -1097,6 +1224,7 @@ public void tokenPanelChanged(Token token) {
    * @param globalOnly should the exposed area of all tokens be also cleared?
    */
   public void clearExposedArea(boolean globalOnly) {
+    changed();
     exposedArea = new Area();
     if (!globalOnly) {
       exposedAreaMeta.clear();
@@ -1110,6 +1238,7 @@ public void clearExposedArea(boolean globalOnly) {
    * @param tokenSet the set of token GUID to reset
    */
   public void clearExposedArea(Set<GUID> tokenSet) {
+    changed();
     // Jamz: Clear FoW for set tokens only, for use by
     // ExposeVisibleAreaOnlyAction Menu action and exposePCOnlyArea() macro
 
@@ -1136,6 +1265,7 @@ public void clearExposedArea(Set<GUID> tokenSet) {
    * @param tok the token to expose for, or null
    */
   public void exposeArea(Area area, Token tok) {
+    changed();
     if (area == null || area.isEmpty()) {
       return;
     }
@@ -1173,6 +1303,7 @@ public void exposeArea(Area area, Token tok) {
    * @param selectedToks the set GUID of selected tokens
    */
   public void exposeArea(Area area, Set<GUID> selectedToks) {
+    changed();
     if (area == null || area.isEmpty()) {
       return;
     }
@@ -1224,6 +1355,7 @@ public void exposeArea(Area area, Set<GUID> selectedToks) {
    * @param selectedToks the selected tokens
    */
   public void setFogArea(Area area, Set<GUID> selectedToks) {
+    changed();
     if (area == null) {
       return;
     }
@@ -1255,6 +1387,7 @@ public void setFogArea(Area area, Set<GUID> selectedToks) {
   }
 
   public void hideArea(Area area, Set<GUID> selectedToks) {
+    changed();
     if (area == null) {
       return;
     }
@@ -1341,6 +1474,7 @@ public double getUnitsPerCell() {
   }
 
   public void setUnitsPerCell(double unitsPerCell) {
+    changed();
     this.unitsPerCell = unitsPerCell;
   }
 
@@ -1353,6 +1487,7 @@ public AStarRoundingOptions getAStarRounding() {
   }
 
   public void setAStarRounding(AStarRoundingOptions aStarRounding) {
+    changed();
     this.aStarRounding = aStarRounding;
   }
 
@@ -1368,13 +1503,30 @@ public int getSmallestZOrder() {
 
   /** Sort the tokens by their ZOrder */
   public void sortZOrder() {
+    changed();
     tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    tokenViews = null;
+  }
+
+  /**
+   * Moves the token to its place in {@link #tokenOrderedList}, adding it if it is not there yet.
+   *
+   * @param token the token that was added, replaced, or whose z-order or layer may have changed.
+   */
+  private void placeInZOrder(Token token) {
+    // The z-order may already have changed in place, so the list is only known to be sorted once
+    // the token, or the copy it replaces, is taken out. Tokens are equal when their ids are.
+    tokenOrderedList.remove(token);
+    int index = Collections.binarySearch(tokenOrderedList, token, TOKEN_Z_ORDER_COMPARATOR);
+    tokenOrderedList.add(-index - 1, token);
+    tokenViews = null;
   }
 
   ///////////////////////////////////////////////////////////////////////////
   // labels
   ///////////////////////////////////////////////////////////////////////////
   public void putLabel(Label label) {
+    changed();
     boolean newLabel = labels.containsKey(label.getId());
     labels.put(label.getId(), label);
 
@@ -1390,6 +1542,7 @@ public List<Label> getLabels() {
   }
 
   public void removeLabel(GUID labelId) {
+    changed();
     Label label = labels.remove(labelId);
     if (label != null) {
       new MapToolEventBus().getMainEventBus().post(new LabelRemoved(label));
@@ -1401,11 +1554,13 @@ public void removeLabel(GUID labelId) {
   ///////////////////////////////////////////////////////////////////////////
 
   public void addDrawable(DrawnElement drawnElement) {
+    changed();
     drawablesByLayer.get(drawnElement.getDrawable().getLayer()).add(drawnElement);
     new MapToolEventBus().getMainEventBus().post(new DrawableAdded(this, drawnElement));
   }
 
   public void updateDrawable(DrawnElement drawnElement, Pen pen) {
+    changed();
     final var elementList = drawablesByLayer.get(drawnElement.getDrawable().getLayer());
     for (DrawnElement de : elementList) {
       if (de.getDrawable().getId().equals(drawnElement.getDrawable().getId())) {
@@ -1417,6 +1572,7 @@ public void updateDrawable(DrawnElement drawnElement, Pen pen) {
   }
 
   public void addDrawableRear(DrawnElement drawnElement) {
+    changed();
     // Since the list is drawn in order
     // items that are drawn first are at the "back"
     drawablesByLayer.get(drawnElement.getDrawable().getLayer()).addFirst(drawnElement);
@@ -1428,6 +1584,7 @@ public List<DrawnElement> getDrawnElements(Zone.Layer layer) {
   }
 
   public void removeDrawable(GUID drawableId) {
+    changed();
     // Since we don't know anything about the drawable, look through all the layers
     // Do we need to remove it from the Undo manager as well? Probably. Perhaps some
     // UndoPerZone method that searches and deletes the drawable ID?
@@ -1453,6 +1610,7 @@ private void removeDrawable(List<DrawnElement> drawableList, GUID drawableId) {
   }
 
   public void clearDrawables(Layer layer) {
+    changed();
     final var original = drawablesByLayer.get(layer);
     final var copy = new ArrayList<>(original);
     original.clear();
@@ -1464,6 +1622,7 @@ public void clearDrawables(Layer layer) {
   }
 
   public void addDrawable(Pen pen, Drawable drawable) {
+    changed();
     undo.addDrawable(pen, drawable);
   }
 
@@ -1472,6 +1631,7 @@ public boolean canUndo() {
   }
 
   public void undoDrawable() {
+    changed();
     undo.undo();
   }
 
@@ -1480,6 +1640,7 @@ public boolean canRedo() {
   }
 
   public void redoDrawable() {
+    changed();
     undo.redo();
   }
 
@@ -1495,14 +1656,17 @@ public void redoDrawable() {
    * @param token the Token to be added to this zone
    */
   public void putToken(Token token) {
-    boolean newToken = !tokenMap.containsKey(token.getId());
-
-    tokenMap.put(token.getId(), token);
+    changed();
+    Token previous = tokenMap.put(token.getId(), token);
+    boolean newToken = previous == null;
+    tokenTopologyChanged(token, previous);
 
-    // LATER: optimize this
-    tokenOrderedList.remove(token);
-    tokenOrderedList.add(token);
-    tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    placeInZOrder(token);
+    getTokenSpatialIndex().update(token);
+    getTokenNameIndex().update(token);
+    if (terrainCostIndex != null) {
+      terrainCostIndex.update(token);
+    }
 
     if (newToken) {
       new MapToolEventBus()
@@ -1521,6 +1685,7 @@ public void putToken(Token token) {
    * @param token the token that was edited
    */
   public void editToken(Token token) {
+    changed();
     putToken(token);
     new MapToolEventBus().getMainEventBus().post(new TokenEdited(this, token));
   }
@@ -1538,6 +1703,7 @@ public void editToken(Token token) {
    */
   @Deprecated
   public void putTokens(List<Token> tokens) {
+    changed();
     Collection<Token> values = tokenMap.values();
 
     List<Token> addedTokens = new LinkedList<Token>(tokens);
@@ -1547,11 +1713,19 @@ public void putTokens(List<Token> tokens) {
     changedTokens.retainAll(values);
 
     for (Token t : tokens) {
-      tokenMap.put(t.getId(), t);
+      tokenTopologyChanged(t, tokenMap.put(t.getId(), t));
     }
     tokenOrderedList.removeAll(tokens);
     tokenOrderedList.addAll(tokens);
     tokenOrderedList.sort(TOKEN_Z_ORDER_COMPARATOR);
+    tokenViews = null;
+    for (Token t : tokens) {
+      getTokenSpatialIndex().update(t);
+      getTokenNameIndex().update(t);
+      if (terrainCostIndex != null) {
+        terrainCostIndex.update(t);
+      }
+    }
 
     if (!addedTokens.isEmpty()) {
       new MapToolEventBus().getMainEventBus().post(new TokensAdded(this, addedTokens));
@@ -1567,9 +1741,17 @@ public void putTokens(List<Token> tokens) {
    * @param id the id of the token
    */
   public void removeToken(GUID id) {
+    changed();
     Token token = tokenMap.remove(id);
     if (token != null) {
+      tokenTopologyChanged(token);
       tokenOrderedList.remove(token);
+      tokenViews = null;
+      getTokenSpatialIndex().remove(token);
+      getTokenNameIndex().remove(token);
+      if (terrainCostIndex != null) {
+        terrainCostIndex.remove(token);
+      }
       new MapToolEventBus()
           .getMainEventBus()
           .post(new TokensRemoved(this, Collections.singletonList(token)));
@@ -1582,12 +1764,20 @@ public void removeToken(GUID id) {
    * @param ids the list of ids of the tokens
    */
   public void removeTokens(List<GUID> ids) {
+    changed();
     List<Token> removedTokens = new ArrayList<>();
     if (ids != null) {
       for (GUID id : ids) {
         Token token = tokenMap.remove(id);
         if (token != null) {
+          tokenTopologyChanged(token);
           tokenOrderedList.remove(token);
+          tokenViews = null;
+          getTokenSpatialIndex().remove(token);
+          getTokenNameIndex().remove(token);
+          if (terrainCostIndex != null) {
+            terrainCostIndex.remove(token);
+          }
           removedTokens.add(token);
         }
       }
@@ -1606,12 +1796,7 @@ public Token getToken(GUID id) {
    * @return the first token with a given name. The name is matched case-insensitively.
    */
   public Token getTokenByName(String name) {
-    for (Token token : getAllTokens()) {
-      if (name.equalsIgnoreCase(token.getName())) {
-        return token;
-      }
-    }
-    return null;
+    return getTokenNameIndex().getTokenByName(name);
   }
 
   /**
@@ -1644,15 +1829,7 @@ public Token resolveToken(String identifier) {
    * @return the first token with a given GM name. The name is matched case-insensitively.
    */
   public Token getTokenByGMName(String name) {
-    for (Token token : getAllTokens()) {
-      if (StringUtil.isEmpty(token.getGMName())) {
-        continue;
-      }
-      if (token.getGMName().equalsIgnoreCase(name)) {
-        return token;
-      }
-    }
-    return null;
+    return getTokenNameIndex().getTokenByGMName(name);
   }
 
   public List<DrawnElement> getAllDrawnElements() {
@@ -1688,8 +1865,12 @@ public int getTokenCount() {
     return tokenOrderedList.size();
   }
 
+  /**
+   * @return all tokens, ordered by z-order. The list is an immutable snapshot shared between
+   *     callers until the tokens change.
+   */
   public List<Token> getAllTokens() {
-    return List.copyOf(tokenOrderedList);
+    return getTokenViews().all();
   }
 
   public Set<MD5Key> getAllAssetIds() {
@@ -1727,9 +1908,9 @@ public Set<MD5Key> getAllAssetIds() {
   }
 
   public List<Token> getTokensFiltered(Filter filter) {
-    ArrayList<Token> copy = new ArrayList<Token>(getTokenCount());
+    ArrayList<Token> copy = new ArrayList<Token>();
 
-    for (Token token : tokenOrderedList) {
+    for (Token token : getTokenViews().all()) {
       if (filter.matchToken(token)) {
         copy.add(token);
       }
@@ -1741,9 +1922,107 @@ public List<Token> getTokensOnLayer(Layer layer) {
     return getTokensOnLayer(layer, true);
   }
 
+  /**
+   * Finds the tokens whose footprint bounds intersect an area of the zone. Uses the zone's spatial
+   * index, so only tokens near the area are looked at.
+   *
+   * @param area the area, in zone coordinates.
+   * @param layer the layer to search, or {@code null} to search all layers.
+   * @return the tokens found, ordered by z-order.
+   */
+  public List<Token> getTokensIntersecting(Rectangle area, @Nullable Layer layer) {
+    List<Token> tokens = getTokenSpatialIndex().getIntersecting(area, layer);
+    tokens.sort(TOKEN_Z_ORDER_COMPARATOR);
+    return Collections.unmodifiableList(tokens);
+  }
+
+  /**
+   * Finds the tokens on any layer whose footprint bounds come within a distance of a point.
+   *
+   * @param point the point, in zone coordinates.
+   * @param radius the distance from the point, in zone units.
+   * @return the tokens found, ordered by z-order.
+   * @see #getTokensWithin(ZonePoint, double, Layer)
+   */
+  public List<Token> getTokensWithin(ZonePoint point, double radius) {
+    return getTokensWithin(point, radius, null);
+  }
+
+  /**
+   * Finds the tokens whose footprint bounds come within a distance of a point, i.e., whose bounds
+   * intersect the circle around the point.
+   *
+   * @param point the point, in zone coordinates.
+   * @param radius the distance from the point, in zone units.
+   * @param layer the layer to search, or {@code null} to search all layers.
+   * @return the tokens found, ordered by z-order.
+   */
+  public List<Token> getTokensWithin(ZonePoint point, double radius, @Nullable Layer layer) {
+    int r = (int) Math.ceil(radius);
+    List<Token> tokens =
+        getTokenSpatialIndex()
+            .getIntersecting(new Rectangle(point.x - r, point.y - r, 2 * r, 2 * r), layer);
+    tokens.removeIf(
+        t -> {
+          Rectangle b = t.getBounds(this);
+          double dx = Math.max(0, Math.max(b.x - point.x, point.x - (b.x + b.width)));
+          double dy = Math.max(0, Math.max(b.y - point.y, point.y - (b.y + b.height)));
+          return dx * dx + dy * dy > radius * radius;
+        });
+    tokens.sort(TOKEN_Z_ORDER_COMPARATOR);
+    return Collections.unmodifiableList(tokens);
+  }
+
+  /**
+   * The tokens, in z-order, as a whole and partitioned by layer. Both are immutable, so they can be
+   * handed out without copying.
+   */
+  private record TokenViews(List<Token> all, Map<Layer, List<Token>> byLayer) {}
+
+  private TokenViews getTokenViews() {
+    TokenViews views = tokenViews;
+    if (views == null) {
+      Map<Layer, List<Token>> byLayer = new EnumMap<>(Layer.class);
+      for (Token token : tokenOrderedList) {
+        byLayer.computeIfAbsent(token.getLayer(), l -> new ArrayList<>()).add(token);
+      }
+      byLayer.replaceAll((layer, tokens) -> Collections.unmodifiableList(tokens));
+      views = new TokenViews(List.copyOf(tokenOrderedList), Collections.unmodifiableMap(byLayer));
+      tokenViews = views;
+    }
+    return views;
+  }
+
+  private TokenNameIndex getTokenNameIndex() {
+    if (tokenNameIndex == null) {
+      tokenNameIndex = new TokenNameIndex();
+      for (Token token : tokenOrderedList) {
+        tokenNameIndex.update(token);
+      }
+    }
+    return tokenNameIndex;
+  }
+
+  private TokenSpatialIndex getTokenSpatialIndex() {
+    if (tokenSpatialIndex == null) {
+      // Filled from the current tokens on first use.
+      tokenSpatialIndex = new TokenSpatialIndex(this);
+    }
+    return tokenSpatialIndex;
+  }
+
+  /**
+   * @param layer the layer to get the tokens of.
+   * @param getAlwaysVisible whether to include tokens that are always visible.
+   * @return the tokens on the layer, ordered by z-order. Unless always visible tokens have to be
+   *     left out, this is an immutable snapshot shared between callers until the tokens change.
+   */
   public List<Token> getTokensOnLayer(Layer layer, boolean getAlwaysVisible) {
-    return getTokensFiltered(
-        t -> t.getLayer() == layer && (getAlwaysVisible || !t.isAlwaysVisible()));
+    List<Token> tokens = getTokenViews().byLayer().getOrDefault(layer, List.of());
+    if (getAlwaysVisible || tokens.stream().noneMatch(Token::isAlwaysVisible)) {
+      return tokens;
+    }
+    return tokens.stream().filter(t -> !t.isAlwaysVisible()).toList();
   }
 
   /**
@@ -1756,6 +2035,19 @@ public List<Token> getTokensOnLayer(Layer layer, boolean getAlwaysVisible) {
    * @return A list of all tokens for the given layers.
    */
   public List<Token> getTokensForLayers(Predicate<Layer> layerFilter) {
+    Map<Layer, List<Token>> byLayer = getTokenViews().byLayer();
+    List<Token> match = List.of();
+    int matches = 0;
+    for (var entry : byLayer.entrySet()) {
+      if (layerFilter.test(entry.getKey())) {
+        match = entry.getValue();
+        matches++;
+      }
+    }
+    if (matches <= 1) {
+      // No need to filter or merge when the tokens are all on one layer.
+      return match;
+    }
     return getTokensFiltered(t -> layerFilter.test(t.getLayer()));
   }
 
@@ -1776,6 +2068,21 @@ public List<Token> getTokensWithTerrainModifiers() {
         t -> !t.getTerrainModifierOperation().equals(TerrainModifierOperation.NONE));
   }
 
+  /**
+   * Returns the terrain modifiers of the tokens per cell. The field is immutable and can be shared
+   * between threads; it is replaced, sharing the unchanged parts, when terrain tokens change.
+   *
+   * @return the terrain cost field as of now.
+   */
+  public TerrainCostField getTerrainCostField() {
+    TerrainCostIndex index = terrainCostIndex;
+    if (index == null) {
+      index = new TerrainCostIndex(this);
+      terrainCostIndex = index;
+    }
+    return index.getField();
+  }
+
   /**
    * This method is called when no tokens are selected and it determines which tokens FoW to show.
    * New buttons were added to select what type of tokens, by ownership, should be shown and driven
@@ -1993,11 +2300,14 @@ public InitiativeList getInitiativeList() {
    * @param initiativeList Setter for the initiativeList
    */
   public void setInitiativeList(InitiativeList initiativeList) {
+    changed();
     this.initiativeList = initiativeList;
+    watchInitiativeList();
     new MapToolEventBus().getMainEventBus().post(new InitiativeListChanged(initiativeList));
   }
 
   public void optimize() {
+    changed();
     log.debug("Optimizing Map " + getName());
     MapTool.getFrame().setStatusMessage(I18N.getText("Zone.status.optimizing", getName()));
     collapseDrawables();
@@ -2059,6 +2369,13 @@ private void collapseDrawableLayer(List<DrawnElement> layer) {
   // Backward compatibility
   @SuppressWarnings("ConstantConditions")
   protected Object readResolve() {
+    version = versionCounter.incrementAndGet();
+    topologyVersion = versionCounter.incrementAndGet();
+    watchInitiativeList();
+    if (!(tokenOrderedList instanceof ArrayList)) {
+      // Older campaigns saved it as a LinkedList, which placeInZOrder() would search slowly.
+      tokenOrderedList = new ArrayList<>(tokenOrderedList);
+    }
     if (tokenVisionDistance == 0) {
       // 1.3b19
       tokenVisionDistance = DEFAULT_TOKEN_VISION_DISTANCE;
@@ -2205,6 +2522,7 @@ public ExposedAreaMetaData getExposedAreaMetaData(GUID tokenExposedAreaGUID) {
    * @param meta the exposed metadata
    */
   public void setExposedAreaMetaData(GUID tokenExposedAreaGUID, ExposedAreaMetaData meta) {
+    changed();
     if (exposedAreaMeta == null) {
       exposedAreaMeta = new HashMap<GUID, ExposedAreaMetaData>();
     }
@@ -2227,6 +2545,7 @@ public boolean getWaypointExposureToggle() {
    * @param toggle toggle for exposure method
    */
   public void setWaypointExposureToggle(boolean toggle) {
+    changed();
     exposeFogAtWaypoints = toggle;
   }
 
@@ -2267,6 +2586,7 @@ public static Zone fromDto(ZoneDto dto) {
                 zone.exposedAreaMeta.put(
                     GUID.valueOf(id), new ExposedAreaMetaData(Mapper.map(area))));
     zone.initiativeList = InitiativeList.fromDto(dto.getInitiative());
+    zone.watchInitiativeList();
     zone.exposedArea = Mapper.map(dto.getExposedArea());
     zone.hasFog = dto.getHasFog();
     zone.fogPaint = DrawablePaint.fromDto(dto.getFogPaint());
@@ -14,10 +14,11 @@
  */
 package net.rptools.maptool.model.gamedata;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import java.math.BigDecimal;
 import net.rptools.lib.MD5Key;
+import net.rptools.maptool.client.functions.json.JsonParseCache;
 import net.rptools.maptool.model.gamedata.data.DataType;
 import net.rptools.maptool.model.gamedata.data.DataValue;
 import net.rptools.maptool.model.gamedata.data.DataValueFactory;
@@ -87,15 +88,9 @@ public DataValue parseMTScriptString(String name, Object value) {
         return DataValueFactory.undefined(name);
       }
       if (strval.trim().startsWith("{") || strval.trim().startsWith("[")) {
-        try {
-          JsonObject jobj = JsonParser.parseString(strval).getAsJsonObject();
-          if (jobj.isJsonArray()) {
-            return DataValueFactory.fromJsonArray(name, jobj.getAsJsonArray());
-          } else if (jobj.isJsonObject()) {
-            return DataValueFactory.fromJsonObject(name, jobj);
-          }
-        } catch (Exception e) {
-          // Ignore
+        JsonElement json = JsonParseCache.parse(strval);
+        if (json != null && json.isJsonObject()) {
+          return DataValueFactory.fromJsonObject(name, json.getAsJsonObject());
         }
       }
       if (strval.startsWith("asset://")) {
@@ -58,6 +58,7 @@
 import net.rptools.maptool.model.library.proto.MTScriptPropertiesDto;
 import net.rptools.maptool.model.sheet.stats.StatSheet;
 import net.rptools.maptool.model.sheet.stats.StatSheetManager;
+import net.rptools.maptool.util.HandlebarsUtil;
 import net.rptools.parser.ParserException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -437,6 +438,7 @@ public void cleanup() {
     if (JSScriptEngine.hasAddOnContext(jsContextName)) {
       JSScriptEngine.removeAddOnContext(jsContextName);
     }
+    HandlebarsUtil.invalidateLibrary(namespace);
   }
 
   @Override
@@ -619,6 +621,7 @@ void initialize() {
   public void registerSheets() {
     var statSheetManager = new StatSheetManager();
     statSheetManager.removeNamespace(namespace);
+    HandlebarsUtil.invalidateLibrary(namespace);
     for (StatSheet sheet : statSheets) {
       try {
         statSheetManager.addStatSheet(sheet, this);
@@ -667,9 +670,11 @@ private void runJS(String file) {
     readFile(file)
         .thenAccept(
             script -> {
+              Asset asset = script.asAsset();
+              var source =
+                  JSScriptEngine.getSource(asset.getMD5Key(), file, asset::getDataAsString);
               try {
-                JSScriptEngine.getJSScriptEngine()
-                    .evalScript(jsContextName, script.asAsset().getDataAsString(), true);
+                JSScriptEngine.getJSScriptEngine().evalScript(jsContextName, source, true);
               } catch (ParserException | ScriptException e) {
                 throw new RuntimeException(e);
               }
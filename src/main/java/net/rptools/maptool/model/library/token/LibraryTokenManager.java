@@ -281,12 +281,9 @@ private static Library findLibrary(URL path) {
    * @return list of tokens.
    */
   private static List<Token> getTokensWithName(String name) {
-    List<Token> tokenList = new ArrayList<Token>();
-    for (var zone : MapTool.getCampaign().getZones()) {
-      tokenList.addAll(zone.getTokensFiltered(t -> name.equalsIgnoreCase(t.getName())));
-    }
-
-    return tokenList;
+    return LibraryTokenRegistry.getInstance().getLibraryTokens(name).stream()
+        .map(LibraryTokenRegistry.LibraryTokenEntry::token)
+        .toList();
   }
 
   /**
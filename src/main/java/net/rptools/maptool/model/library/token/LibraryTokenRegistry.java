@@ -0,0 +1,288 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model.library.token;
+
+import com.google.common.eventbus.Subscribe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.events.MapToolEventBus;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.zones.TokenEdited;
+import net.rptools.maptool.model.zones.TokensAdded;
+import net.rptools.maptool.model.zones.TokensChanged;
+import net.rptools.maptool.model.zones.TokensRemoved;
+import net.rptools.maptool.model.zones.ZoneRemoved;
+
+/**
+ * Campaign-wide index of the Lib:Tokens on all maps, by lower case name and by the event callback
+ * macros they define.
+ *
+ * <p>The index is built from the zones of the current campaign on first use, or when the campaign
+ * has been replaced, and is then kept up to date from the token events posted by the zones. Unlike
+ * {@link LibraryTokenManager} it is updated on the thread that posts the event, so a lib:token is
+ * found by the macro that creates or renames it.
+ */
+public final class LibraryTokenRegistry {
+  /**
+   * A Lib:Token and the zone it is on.
+   *
+   * @param token the Lib:Token.
+   * @param zone the zone that holds the token.
+   */
+  public record LibraryTokenEntry(Token token, Zone zone) {}
+
+  /** The prefix of the names of library tokens. */
+  private static final String LIB_PREFIX = "lib:";
+
+  private static LibraryTokenRegistry instance;
+
+  /** Supplies the current campaign. */
+  private final Supplier<Campaign> campaignSupplier;
+
+  /** The campaign that has been indexed, or {@code null} if the index must be built. */
+  private @Nullable Campaign campaign;
+
+  /** The key each library token is indexed under. */
+  private final Map<GUID, String> keysById = new HashMap<>();
+
+  /** The library tokens by lower case name. */
+  private final Map<String, List<LibraryTokenEntry>> entriesByName = new HashMap<>();
+
+  /** The library tokens that define each callback macro, filled as the callbacks are looked up. */
+  private final Map<String, List<Token>> tokensByCallback = new HashMap<>();
+
+  /**
+   * Creates a registry over the campaigns of {@code campaignSupplier}. The registry does not
+   * listen to events until it is registered on the event bus.
+   *
+   * @param campaignSupplier supplies the current campaign.
+   */
+  LibraryTokenRegistry(Supplier<Campaign> campaignSupplier) {
+    this.campaignSupplier = campaignSupplier;
+  }
+
+  /**
+   * Returns the registry for the campaign of the client, registering it for token events when it
+   * is first used.
+   *
+   * @return the registry.
+   */
+  public static synchronized LibraryTokenRegistry getInstance() {
+    if (instance == null) {
+      instance = new LibraryTokenRegistry(MapTool::getCampaign);
+      new MapToolEventBus().getMainEventBus().register(instance);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the library tokens with the name, ignoring case, in map and z-order.
+   *
+   * @param name the name of the library token, including the {@code lib:} prefix.
+   * @return the library tokens with the name and the zones they are on.
+   */
+  public synchronized List<LibraryTokenEntry> getLibraryTokens(String name) {
+    if (!isLibName(name)) {
+      return List.of();
+    }
+    Campaign current = indexedCampaign();
+    List<LibraryTokenEntry> entries = entriesByName.get(key(name));
+    if (entries == null) {
+      return List.of();
+    }
+    List<LibraryTokenEntry> found = new ArrayList<>(entries.size());
+    for (LibraryTokenEntry entry : entries) {
+      if (isCurrent(current, entry) && name.equalsIgnoreCase(entry.token().getName())) {
+        found.add(entry);
+      }
+    }
+    if (found.size() > 1) {
+      found.sort(inCampaignOrder(current));
+    }
+    return found;
+  }
+
+  /**
+   * Returns the library tokens that have a macro with the label, in map and z-order.
+   *
+   * @param macroCallback the label of the macro.
+   * @return the library tokens that have the macro.
+   */
+  public synchronized List<Token> getTokensWithMacro(String macroCallback) {
+    Campaign current = indexedCampaign();
+    return tokensByCallback.computeIfAbsent(
+        macroCallback,
+        callback -> {
+          List<LibraryTokenEntry> found = new ArrayList<>();
+          for (List<LibraryTokenEntry> entries : entriesByName.values()) {
+            for (LibraryTokenEntry entry : entries) {
+              if (isCurrent(current, entry) && entry.token().getMacro(callback, false) != null) {
+                found.add(entry);
+              }
+            }
+          }
+          found.sort(inCampaignOrder(current));
+          return found.stream().map(LibraryTokenEntry::token).toList();
+        });
+  }
+
+  @Subscribe
+  synchronized void tokensAdded(TokensAdded event) {
+    update(event.zone(), event.tokens());
+  }
+
+  @Subscribe
+  synchronized void tokensChanged(TokensChanged event) {
+    update(event.zone(), event.tokens());
+  }
+
+  @Subscribe
+  synchronized void tokenEdited(TokenEdited event) {
+    update(event.zone(), List.of(event.token()));
+  }
+
+  @Subscribe
+  synchronized void tokensRemoved(TokensRemoved event) {
+    for (Token token : event.tokens()) {
+      unindex(token.getId());
+    }
+  }
+
+  @Subscribe
+  synchronized void zoneRemoved(ZoneRemoved event) {
+    List<GUID> removed = new ArrayList<>();
+    for (List<LibraryTokenEntry> entries : entriesByName.values()) {
+      for (LibraryTokenEntry entry : entries) {
+        if (entry.zone() == event.zone()) {
+          removed.add(entry.token().getId());
+        }
+      }
+    }
+    removed.forEach(this::unindex);
+  }
+
+  /**
+   * Returns the current campaign, rebuilding the index first if it was built for another one.
+   *
+   * @return the current campaign.
+   */
+  private Campaign indexedCampaign() {
+    Campaign current = campaignSupplier.get();
+    if (current != campaign) {
+      clear();
+      for (Zone zone : current.getZones()) {
+        for (Token token : zone.getTokensFiltered(t -> isLibName(t.getName()))) {
+          index(zone, token);
+        }
+      }
+      campaign = current;
+    }
+    return current;
+  }
+
+  private void update(Zone zone, Collection<Token> tokens) {
+    if (campaign == null) {
+      // Not built yet, everything is indexed on first use.
+      return;
+    }
+    if (campaign != campaignSupplier.get()) {
+      clear();
+      return;
+    }
+    if (campaign.getZone(zone.getId()) != zone) {
+      // Zones post events before they are added to the campaign, and again once they are.
+      return;
+    }
+    for (Token token : tokens) {
+      if (keysById.containsKey(token.getId()) || isLibName(token.getName())) {
+        unindex(token.getId());
+        index(zone, token);
+      }
+    }
+  }
+
+  private void index(Zone zone, Token token) {
+    if (!isLibName(token.getName())) {
+      return;
+    }
+    String key = key(token.getName());
+    keysById.put(token.getId(), key);
+    entriesByName
+        .computeIfAbsent(key, k -> new ArrayList<>(1))
+        .add(new LibraryTokenEntry(token, zone));
+    tokensByCallback.clear();
+  }
+
+  private void unindex(GUID tokenId) {
+    String key = keysById.remove(tokenId);
+    if (key == null) {
+      return;
+    }
+    List<LibraryTokenEntry> entries = entriesByName.get(key);
+    if (entries != null) {
+      entries.removeIf(e -> e.token().getId().equals(tokenId));
+      if (entries.isEmpty()) {
+        entriesByName.remove(key);
+      }
+    }
+    tokensByCallback.clear();
+  }
+
+  private void clear() {
+    campaign = null;
+    keysById.clear();
+    entriesByName.clear();
+    tokensByCallback.clear();
+  }
+
+  /**
+   * Checks that the entry still describes a token of the campaign, in case a zone was changed
+   * without posting an event.
+   */
+  private static boolean isCurrent(Campaign campaign, LibraryTokenEntry entry) {
+    Zone zone = entry.zone();
+    return campaign.getZone(zone.getId()) == zone
+        && zone.getToken(entry.token().getId()) == entry.token();
+  }
+
+  private static Comparator<LibraryTokenEntry> inCampaignOrder(Campaign campaign) {
+    Map<GUID, Integer> zoneOrder = new HashMap<>();
+    for (Zone zone : campaign.getZones()) {
+      zoneOrder.put(zone.getId(), zoneOrder.size());
+    }
+    Comparator<LibraryTokenEntry> byZone =
+        Comparator.comparingInt(e -> zoneOrder.getOrDefault(e.zone().getId(), Integer.MAX_VALUE));
+    return byZone.thenComparing(LibraryTokenEntry::token, Zone.TOKEN_Z_ORDER_COMPARATOR);
+  }
+
+  private static boolean isLibName(@Nullable String name) {
+    return name != null && name.regionMatches(true, 0, LIB_PREFIX, 0, LIB_PREFIX.length());
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+}
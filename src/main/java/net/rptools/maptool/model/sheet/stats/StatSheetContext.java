@@ -197,7 +197,6 @@ public StatSheetContext(Token token, Player player, StatSheetLocation location)
     label = token.getLabel();
     MapToolVariableResolver resolver = new MapToolVariableResolver(token);
     MapTool.getCampaign()
-        .getCampaignProperties()
         .getTokenPropertyList(token.getPropertyType())
         .forEach(
             tp -> {
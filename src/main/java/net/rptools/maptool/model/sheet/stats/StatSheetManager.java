@@ -15,12 +15,15 @@
 package net.rptools.maptool.model.sheet.stats;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.library.Library;
+import net.rptools.maptool.util.HandlebarsUtil;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -215,4 +218,36 @@ public String getStatSheetContent(String id) {
   public String getId(StatSheet ss) {
     return getId(ss.namespace(), ss.name());
   }
+
+  /**
+   * Compiles the templates of the stat sheets in the background, so that hovering over the first
+   * token does not wait for its stat sheet to be compiled.
+   *
+   * @param ids the ids of the stat sheets.
+   */
+  public void precompile(Collection<String> ids) {
+    var sheets =
+        ids.stream()
+            .distinct()
+            .map(this::getStatSheet)
+            .filter(s -> !isLegacyStatSheet(s))
+            .toList();
+    if (sheets.isEmpty()) {
+      return;
+    }
+    CompletableFuture.runAsync(
+        () -> {
+          for (StatSheet sheet : sheets) {
+            var content = statSheets.get(sheet);
+            if (content == null) {
+              continue;
+            }
+            try {
+              HandlebarsUtil.forLibrary(content, sheet.entry());
+            } catch (IOException e) {
+              // Already logged, and reported when the stat sheet is shown.
+            }
+          }
+        });
+  }
 }
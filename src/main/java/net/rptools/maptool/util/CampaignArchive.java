@@ -0,0 +1,529 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import com.google.common.hash.Hashing;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import javax.annotation.Nullable;
+import net.rptools.lib.FileUtil;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.model.Asset;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.proto.ZoneDto;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.function.IOConsumer;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Campaign files that keep each zone in an entry of its own.
+ *
+ * <p>Besides the properties, assets, add-on libraries and game data that every campaign file has,
+ * such a file holds
+ *
+ * <ul>
+ *   <li>{@value #CAMPAIGN_FILE}: the {@link PersistedCampaign}, without the zones of the campaign;
+ *   <li>{@value #ZONE_DIR}{@code <id>.pb}: each of the zones, as a {@link ZoneDto}. Files written
+ *       before zones were stored as protocol buffers have {@code <id>.xml} entries instead, which
+ *       are still read;
+ *   <li>{@value #MANIFEST_FILE}: the zones in campaign order, and a digest of the content each was
+ *       saved with.
+ * </ul>
+ *
+ * <p>The content file of older campaign files is deliberately not written, so that versions that
+ * do not know about this layout refuse the file instead of loading a campaign without maps.
+ *
+ * <p>When a campaign is saved over an earlier file, the zones whose content has not changed since
+ * and all assets are copied from the old file as they are, without being compressed again. Zones
+ * are compared by content rather than by {@link Zone#getVersion()}, so that a change that bypassed
+ * the methods of the zone is never lost.
+ *
+ * <p>{@link #readZones(PackedFile, String, GUID)} decodes the zones in parallel while the caller
+ * reads the rest of the file. All zones are loaded with the campaign; none are loaded on demand.
+ */
+final class CampaignArchive {
+  private static final Logger log = LogManager.getLogger(CampaignArchive.class);
+
+  static final String PROPERTY_FILE = "properties.xml";
+  static final String CAMPAIGN_FILE = "campaign.xml";
+  static final String MANIFEST_FILE = "manifest.xml";
+  static final String ZONE_DIR = "zones/";
+
+  /** How zones are stored. */
+  enum ZoneFormat {
+    XML(".xml"),
+    PROTOBUF(".pb");
+
+    private final String extension;
+
+    ZoneFormat(String extension) {
+      this.extension = extension;
+    }
+  }
+
+  /** The zones of a campaign file, in campaign order. */
+  static final class Manifest {
+    final List<ZoneEntry> zones = new ArrayList<>();
+  }
+
+  /** A zone of a campaign file. A class rather than a record, as XStream cannot create records. */
+  static final class ZoneEntry {
+    final GUID id;
+
+    /** The name of the zone, so the file can be inspected without reading the zone. */
+    final String name;
+
+    /** The path of the entry holding the zone. */
+    final String path;
+
+    /** The digest of the entry holding the zone, which identifies the state that was saved. */
+    final String stamp;
+
+    ZoneEntry(GUID id, String name, String path, String stamp) {
+      this.id = id;
+      this.name = name;
+      this.path = path;
+      this.stamp = stamp;
+    }
+  }
+
+  private CampaignArchive() {}
+
+  /**
+   * Checks whether the file has the layout written by {@link Writer}.
+   *
+   * @param pakFile the campaign file.
+   * @return {@code true} if the zones are stored in entries of their own.
+   * @throws IOException if the file cannot be read.
+   */
+  static boolean isZoned(PackedFile pakFile) throws IOException {
+    return pakFile.hasFile(MANIFEST_FILE);
+  }
+
+  /**
+   * Reads the campaign and its zones from a file that {@link #isZoned(PackedFile)}.
+   *
+   * @param pakFile the campaign file, with the version manager for campaigns set.
+   * @param campaignVersion the campaign version the file was written with.
+   * @return the campaign.
+   * @throws IOException if the file cannot be read.
+   */
+  static PersistedCampaign read(PackedFile pakFile, String campaignVersion) throws IOException {
+    var persistedCampaign = readCampaign(pakFile, campaignVersion);
+    readZones(pakFile, campaignVersion, null).putZones(persistedCampaign.campaign);
+    return persistedCampaign;
+  }
+
+  /**
+   * Reads the campaign of a file that {@link #isZoned(PackedFile)}, without its zones.
+   *
+   * @param pakFile the campaign file, with the version manager for campaigns set.
+   * @param campaignVersion the campaign version the file was written with.
+   * @return the campaign, without zones.
+   * @throws IOException if the file cannot be read.
+   */
+  static PersistedCampaign readCampaign(PackedFile pakFile, String campaignVersion)
+      throws IOException {
+    pakFile.getXStream().registerLocalConverter(Campaign.class, "zones", new OmittedZones());
+    return (PersistedCampaign) pakFile.getFileObject(CAMPAIGN_FILE, campaignVersion);
+  }
+
+  /**
+   * Starts reading the zones of a file that {@link #isZoned(PackedFile)}. Zones stored as protocol
+   * buffers are decoded in parallel in the background, starting with the given zone, so the caller
+   * can do other work until it needs them.
+   *
+   * @param pakFile the campaign file, with the version manager for campaigns set.
+   * @param campaignVersion the campaign version the file was written with.
+   * @param firstZoneId the zone to decode first, or null to decode them in campaign order.
+   * @return the zones being read.
+   * @throws IOException if the file cannot be read.
+   */
+  static ZoneReader readZones(
+      PackedFile pakFile, String campaignVersion, @Nullable GUID firstZoneId) throws IOException {
+    return new ZoneReader(pakFile, campaignVersion, readManifest(pakFile).zones, firstZoneId);
+  }
+
+  /**
+   * @param pakFile a campaign file that {@link #isZoned(PackedFile)}.
+   * @return the zones of the file.
+   * @throws IOException if the file cannot be read.
+   */
+  private static Manifest readManifest(PackedFile pakFile) throws IOException {
+    return (Manifest) pakFile.getFileObject(MANIFEST_FILE);
+  }
+
+  /**
+   * Reads one zone of a campaign file on the calling thread.
+   *
+   * @param pakFile the campaign file, with the version manager for campaigns set.
+   * @param entry the zone, from the {@link #readManifest(PackedFile)}.
+   * @param campaignVersion the campaign version the file was written with.
+   * @return the zone.
+   * @throws IOException if the zone cannot be read.
+   */
+  private static Zone readZone(PackedFile pakFile, ZoneEntry entry, String campaignVersion)
+      throws IOException {
+    if (entry.path.endsWith(ZoneFormat.PROTOBUF.extension)) {
+      try (InputStream in = pakFile.getFileAsInputStream(entry.path)) {
+        return Zone.fromDto(ZoneDto.parseFrom(in));
+      }
+    }
+    return (Zone) pakFile.getFileObject(entry.path, campaignVersion);
+  }
+
+  /** The zones of a campaign file being read. */
+  static final class ZoneReader {
+    private static final ThreadFactory threadFactory =
+        (new com.google.common.util.concurrent.ThreadFactoryBuilder())
+            .setNameFormat("campaign-load-%d")
+            .setDaemon(true)
+            .build();
+
+    private final PackedFile pakFile;
+    private final String campaignVersion;
+    private final List<ZoneEntry> entries;
+
+    /** The zones being decoded in the background, by entry path. */
+    private final Map<String, CompletableFuture<Zone>> decoding = new HashMap<>();
+
+    private ZoneReader(
+        PackedFile pakFile,
+        String campaignVersion,
+        List<ZoneEntry> entries,
+        @Nullable GUID firstZoneId)
+        throws IOException {
+      this.pakFile = pakFile;
+      this.campaignVersion = campaignVersion;
+      this.entries = entries;
+
+      List<ZoneEntry> binary = new ArrayList<>();
+      for (ZoneEntry entry : entries) {
+        if (entry.path.endsWith(ZoneFormat.PROTOBUF.extension)) {
+          binary.add(entry);
+        }
+      }
+      binary.sort(Comparator.comparing(entry -> !entry.id.equals(firstZoneId)));
+      if (binary.isEmpty()) {
+        return;
+      }
+
+      // PackedFile is not thread safe, but a ZipFile can be read from several threads at once.
+      var zip = new java.util.zip.ZipFile(pakFile.getPackedFile());
+      int threads =
+          Math.max(1, Math.min(binary.size(), Runtime.getRuntime().availableProcessors() - 1));
+      ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+      for (ZoneEntry entry : binary) {
+        decoding.put(entry.path, CompletableFuture.supplyAsync(() -> decode(zip, entry), executor));
+      }
+      executor.shutdown();
+      CompletableFuture.allOf(decoding.values().toArray(CompletableFuture[]::new))
+          .whenComplete(
+              (result, e) -> {
+                try {
+                  zip.close();
+                } catch (IOException ioe) {
+                  log.warn("Cannot close {}", pakFile.getPackedFile(), ioe);
+                }
+              });
+    }
+
+    private static Zone decode(java.util.zip.ZipFile zip, ZoneEntry entry) {
+      ZipEntry zipEntry = zip.getEntry(entry.path);
+      if (zipEntry == null) {
+        throw new UncheckedIOException(new FileNotFoundException(entry.path));
+      }
+      try (InputStream in = zip.getInputStream(zipEntry)) {
+        return Zone.fromDto(ZoneDto.parseFrom(in));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Waits for the zones to be read and puts them into the campaign, in campaign order.
+     *
+     * @param campaign the campaign the zones belong to.
+     * @throws IOException if a zone cannot be read.
+     */
+    void putZones(Campaign campaign) throws IOException {
+      for (ZoneEntry entry : entries) {
+        CompletableFuture<Zone> future = decoding.get(entry.path);
+        if (future == null) {
+          campaign.putZone(readZone(pakFile, entry, campaignVersion));
+          continue;
+        }
+        try {
+          campaign.putZone(future.join());
+        } catch (CompletionException e) {
+          if (e.getCause() instanceof UncheckedIOException io) {
+            throw io.getCause();
+          }
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a campaign file.
+   *
+   * <p>Entries are streamed to the file as they are put. Putting an entry that has already been put
+   * does nothing, as assets are often shared.
+   */
+  static final class Writer implements Closeable {
+    private final XStream xstream = FileUtil.getConfiguredXStream();
+    private final ZipArchiveOutputStream out;
+    private final @Nullable ZipFile previous;
+    private final ZoneFormat zoneFormat;
+
+    /** The zone stamps of the previous file, by entry path. */
+    private final Map<String, String> previousStamps = new HashMap<>();
+
+    private final Set<String> written = new HashSet<>();
+    private int zonesCopied;
+
+    /**
+     * @param file the file to write.
+     * @param previous an earlier version of the campaign file, whose entries can be reused. It is
+     *     ignored if it cannot be read.
+     * @throws IOException if the file cannot be created.
+     */
+    Writer(File file, @Nullable File previous) throws IOException {
+      this(file, previous, ZoneFormat.PROTOBUF);
+    }
+
+    /**
+     * @param file the file to write.
+     * @param previous an earlier version of the campaign file, whose entries can be reused. It is
+     *     ignored if it cannot be read.
+     * @param zoneFormat how to store the zones.
+     * @throws IOException if the file cannot be created.
+     */
+    Writer(File file, @Nullable File previous, ZoneFormat zoneFormat) throws IOException {
+      this.zoneFormat = zoneFormat;
+      xstream.processAnnotations(Asset.class);
+      xstream.registerLocalConverter(Campaign.class, "zones", new OmittedZones());
+      out = new ZipArchiveOutputStream(file);
+      this.previous = previous == null ? null : openPrevious(previous);
+    }
+
+    private @Nullable ZipFile openPrevious(File file) {
+      ZipFile zip = null;
+      try {
+        zip = ZipFile.builder().setFile(file).get();
+        ZipArchiveEntry entry = zip.getEntry(MANIFEST_FILE);
+        if (entry != null) {
+          try (Reader reader =
+              new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8)) {
+            var manifest = (Manifest) xstream.fromXML(reader);
+            for (ZoneEntry zone : manifest.zones) {
+              previousStamps.put(zone.path, zone.stamp);
+            }
+          }
+        }
+        return zip;
+      } catch (IOException | RuntimeException e) {
+        log.warn("Cannot reuse entries of {}", file, e);
+        previousStamps.clear();
+        if (zip != null) {
+          try {
+            zip.close();
+          } catch (IOException ignored) {
+          }
+        }
+        return null;
+      }
+    }
+
+    /**
+     * Copies an entry of the previous file without decompressing it. Only entries whose content is
+     * determined by their path, such as assets, may be copied this way.
+     *
+     * @param path the path of the entry.
+     * @return {@code true} if the entry has been written, {@code false} if the previous file does
+     *     not have it.
+     * @throws IOException if the entry cannot be copied.
+     */
+    boolean copyFile(String path) throws IOException {
+      if (written.contains(path)) {
+        return true;
+      }
+      ZipArchiveEntry entry = previous == null ? null : previous.getEntry(path);
+      if (entry == null) {
+        return false;
+      }
+      try (InputStream raw = previous.getRawInputStream(entry)) {
+        out.addRawArchiveEntry(entry, raw);
+      }
+      written.add(path);
+      return true;
+    }
+
+    /**
+     * @param path the path of the entry.
+     * @param data the content of the entry.
+     * @throws IOException if the entry cannot be written.
+     */
+    void putFile(String path, byte[] data) throws IOException {
+      putEntry(path, stream -> stream.write(data));
+    }
+
+    /**
+     * @param path the path of the entry.
+     * @param object the object to write as XML.
+     * @throws IOException if the entry cannot be written.
+     */
+    void putFile(String path, Object object) throws IOException {
+      putEntry(path, stream -> writeXml(object, stream));
+    }
+
+    private void writeXml(Object object, OutputStream stream) throws IOException {
+      var writer =
+          new BufferedWriter(
+              new OutputStreamWriter(CloseShieldOutputStream.wrap(stream), StandardCharsets.UTF_8));
+      try (writer) {
+        xstream.toXML(object, writer);
+        writer.newLine();
+      }
+    }
+
+    /**
+     * @param zone the zone to encode.
+     * @return the content of the entry of the zone.
+     * @throws IOException if the zone cannot be encoded.
+     */
+    private byte[] encodeZone(Zone zone) throws IOException {
+      if (zoneFormat == ZoneFormat.PROTOBUF) {
+        return zone.toDto().toByteArray();
+      }
+      var stream = new ByteArrayOutputStream();
+      writeXml(zone, stream);
+      return stream.toByteArray();
+    }
+
+    private void putEntry(String path, IOConsumer<OutputStream> content) throws IOException {
+      if (!written.add(path)) {
+        return;
+      }
+      out.putArchiveEntry(new ZipArchiveEntry(path));
+      content.accept(out);
+      out.closeArchiveEntry();
+    }
+
+    /**
+     * Writes the campaign, its zones, the manifest and the properties. Zones whose content is the
+     * same as in the previous file are copied from it.
+     *
+     * @param persistedCampaign the campaign.
+     * @param properties the properties of the file.
+     * @throws IOException if the campaign cannot be written.
+     */
+    void putCampaign(PersistedCampaign persistedCampaign, Map<String, Object> properties)
+        throws IOException {
+      var manifest = new Manifest();
+      for (Zone zone : persistedCampaign.campaign.getZones()) {
+        // Encoding is cheap next to compressing, which is what copying the old entry saves.
+        byte[] content = encodeZone(zone);
+        String stamp = Hashing.sha256().hashBytes(content).toString();
+        String path = ZONE_DIR + zone.getId() + zoneFormat.extension;
+        if (stamp.equals(previousStamps.get(path)) && copyFile(path)) {
+          zonesCopied++;
+        } else {
+          putFile(path, content);
+        }
+        manifest.zones.add(new ZoneEntry(zone.getId(), zone.getName(), path, stamp));
+      }
+      putFile(CAMPAIGN_FILE, persistedCampaign);
+      putFile(MANIFEST_FILE, manifest);
+      putFile(PROPERTY_FILE, new HashMap<>(properties));
+    }
+
+    /**
+     * @return the number of zones copied from the previous file.
+     */
+    int getZonesCopied() {
+      return zonesCopied;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try (out) {
+        if (previous != null) {
+          previous.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Leaves the zones out of a campaign, as they are written to entries of their own, and starts
+   * the campaign read back with no zones.
+   */
+  private static final class OmittedZones implements Converter {
+    @Override
+    public boolean canConvert(Class type) {
+      return Map.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void marshal(
+        Object source, HierarchicalStreamWriter writer, MarshallingContext context) {}
+
+    @Override
+    public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+      return Collections.synchronizedMap(new LinkedHashMap<GUID, Zone>());
+    }
+  }
+}
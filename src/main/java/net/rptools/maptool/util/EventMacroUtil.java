@@ -20,11 +20,11 @@
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.MapToolVariableResolver;
 import net.rptools.maptool.client.functions.exceptions.*;
-import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.TextMessage;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.library.LibraryManager;
+import net.rptools.maptool.model.library.token.LibraryTokenRegistry;
 import net.rptools.parser.ParserException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -34,32 +34,25 @@ public class EventMacroUtil {
   private static final Logger LOGGER = LogManager.getLogger(EventMacroUtil.class);
 
   /**
-   * Scans all maps to find any Lib:Tokens that contain a macro matching the given "callback" label.
+   * Finds any trusted Lib:Tokens that contain a macro matching the given "callback" label.
    *
    * @param macroCallback the macro name to find
    * @return a (possibly empty) list of Lib:tokens that contain the requested macro
    */
   public static List<Token> getEventMacroTokens(final String macroCallback) {
     List<Token> found = new ArrayList<>();
-    List<ZoneRenderer> zrenderers = MapTool.getFrame().getZoneRenderers();
-    for (ZoneRenderer zr : zrenderers) {
-      List<Token> tokenList =
-          zr.getZone().getTokensFiltered(t -> t.getName().toLowerCase().startsWith("lib:"));
-      var nonGms = MapTool.getNonGMs();
-      for (Token token : tokenList) {
-        // If the token is not owned by everyone and all owners are GMs then we are in
-        // its a trusted Lib:token so we can run the macro
-        if (token.isOwnedByAll()) {
-          continue;
-        }
-        if (token.isOwnedByAny(nonGms)) {
-          // Not trusted, don't run.
-          continue;
-        }
-        if (token.getMacro(macroCallback, false) != null) {
-          found.add(token);
-        }
+    var nonGms = MapTool.getNonGMs();
+    for (Token token : LibraryTokenRegistry.getInstance().getTokensWithMacro(macroCallback)) {
+      // If the token is not owned by everyone and all owners are GMs then we are in
+      // its a trusted Lib:token so we can run the macro
+      if (token.isOwnedByAll()) {
+        continue;
       }
+      if (token.isOwnedByAny(nonGms)) {
+        // Not trusted, don't run.
+        continue;
+      }
+      found.add(token);
     }
     return found;
   }
@@ -435,7 +435,8 @@ public static JsonObject paramFromStrPropOrJsonAsJsonObject(
 
   /**
    * Return the jsonObject value of a parameter. Throws a <code>ParserException</code> if the
-   * parameter can't be converted to a jsonObject.
+   * parameter can't be converted to a jsonObject. The object may be shared with other parses of the
+   * same string, so it must not be modified.
    *
    * @param functionName this is used in the exception message
    * @param parameters the list of parameters
@@ -475,7 +476,8 @@ public static String paramAsString(
 
   /**
    * Return the jsonObject or jsonArray value of a parameter. Throws a <code>ParserException</code>
-   * if the parameter can't be converted to a json.
+   * if the parameter can't be converted to a json. The element may be shared with other parses of
+   * the same string, so it must not be modified.
    *
    * @param functionName this is used in the exception message
    * @param parameters the list of parameters
@@ -538,7 +540,8 @@ public static JsonObject jsonWithLowerCaseKeys(JsonObject jsonObject) {
 
   /**
    * Return the jsonArray value of a parameter. Throws a <code>ParserException</code> if the
-   * parameter can't be converted to a jsonArray.
+   * parameter can't be converted to a jsonArray. The array may be shared with other parses of the
+   * same string, so it must not be modified.
    *
    * @param functionName this is used in the exception message
    * @param parameters the list of parameters
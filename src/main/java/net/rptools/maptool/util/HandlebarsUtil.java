@@ -28,6 +28,8 @@
 import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
 import com.github.jknack.handlebars.io.TemplateLoader;
 import com.github.jknack.handlebars.io.URLTemplateLoader;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -35,6 +37,7 @@
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.ExecutionException;
 import net.rptools.maptool.model.Token;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -52,6 +55,22 @@
   /** Logging class instance. */
   private static final Logger log = LogManager.getLogger(Token.class);
 
+  /** The maximum number of compiled library templates to keep. */
+  private static final int MAXIMUM_LIBRARY_TEMPLATES = 100;
+
+  /**
+   * Identifies a compiled library template.
+   *
+   * @param namespace the namespace of the library the template belongs to.
+   * @param path the path of the template in the library, which partials are resolved against.
+   * @param content the template that was compiled.
+   */
+  private record TemplateKey(String namespace, String path, String content) {}
+
+  /** The compiled library templates, so that templates applied repeatedly are compiled once. */
+  private static final Cache<TemplateKey, HandlebarsUtil<?>> libraryTemplates =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_LIBRARY_TEMPLATES).build();
+
   /** Handlebars partial template loader that uses Add-On Library URIs */
   private static class LibraryTemplateLoader extends URLTemplateLoader {
     /** Path to template being resolved, relative paths are resolved relative to its parent. */
@@ -168,6 +187,41 @@ public HandlebarsUtil(String stringTemplate) throws IOException {
     this(stringTemplate, new ClassPathTemplateLoader());
   }
 
+  /**
+   * Returns the compiled template for a library, compiling it only if the same template at the same
+   * location was not compiled before.
+   *
+   * @param stringTemplate The template to compile.
+   * @param entry The lib:// URL of the template to load partial templates relative to
+   * @param <T> The type of the bean to apply the template to.
+   * @return the compiled template.
+   * @throws IOException If there is an error compiling the template.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> HandlebarsUtil<T> forLibrary(String stringTemplate, URL entry)
+      throws IOException {
+    var key = new TemplateKey(entry.getHost(), entry.getPath(), stringTemplate);
+    try {
+      return (HandlebarsUtil<T>)
+          libraryTemplates.get(key, () -> new HandlebarsUtil<>(stringTemplate, entry));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioe) {
+        throw ioe;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Discards the compiled templates of a library, so that they are compiled again after the
+   * library is reloaded.
+   *
+   * @param namespace the namespace of the library.
+   */
+  public static void invalidateLibrary(String namespace) {
+    libraryTemplates.asMap().keySet().removeIf(k -> k.namespace().equals(namespace));
+  }
+
   /**
    * Applies the template to the given bean.
    *
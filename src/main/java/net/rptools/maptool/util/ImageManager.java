@@ -20,10 +20,14 @@
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import net.rptools.lib.MD5Key;
 import net.rptools.lib.image.ImageUtil;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.ui.theme.Images;
 import net.rptools.maptool.client.ui.theme.RessourceManager;
 import net.rptools.maptool.model.Asset;
@@ -37,10 +41,15 @@
 /**
  * The ImageManager class keeps a cache of loaded images. This class can be used to load the raw
  * image data from an asset. The loading of the raw image data into a usable class is done in the
- * background by one of two threads. The ImageManager will return a "?" (UNKNOWN_IMAGE) if the asset
- * is still downloading or the asset image is still being loaded, and a "X" (BROKEN_IMAGE) if the
- * asset or image is invalid. Small images are loaded using a different thread pool from large
- * images, and allows small images to load quicker.
+ * background by a pool of decoder threads. The ImageManager will return a "?" (UNKNOWN_IMAGE) if
+ * the asset is still downloading or the asset image is still being loaded, and a "X"
+ * (BROKEN_IMAGE) if the asset or image is invalid.
+ *
+ * <p>Pending decodes are prioritized: images that are currently on screen (as reported by {@link
+ * #updateViewportAssets(ImageObserver, Set)}) are decoded first, then small images before large
+ * ones, and otherwise in request order. A pending decode that nobody is observing anymore, e.g.
+ * because its token was scrolled out of view, is cancelled before it starts, unless it was also
+ * requested without an observer.
  *
  * @author RPTools Team.
  */
@@ -65,13 +74,37 @@ public class ImageManager {
   /** The broken image, a "X" is used for all situations where the asset or image was invalid. */
   public static BufferedImage BROKEN_IMAGE;
 
-  /** Small and large thread pools for background processing of asset raw image data. */
-  private static ExecutorService smallImageLoader = Executors.newFixedThreadPool(1);
+  /** Images with raw data larger than this (in bytes) are decoded after smaller images. */
+  private static final int LARGE_IMAGE_SIZE = 128 * 1024;
+
+  private static final ThreadFactory imageLoaderThreadFactory =
+      (new com.google.common.util.concurrent.ThreadFactoryBuilder())
+          .setNameFormat("image-loader-%d")
+          .build();
 
-  private static ExecutorService largeImageLoader = Executors.newFixedThreadPool(1);
+  /**
+   * Thread pool for background processing of asset raw image data. The queue orders the pending
+   * {@link BackgroundImageLoader}s by priority.
+   */
+  private static final ThreadPoolExecutor imageLoader = createImageLoader();
 
   private static final Object imageLoaderMutex = new Object();
 
+  /** Decodes that have been queued but not yet completed, keyed by asset id. */
+  private static final Map<MD5Key, BackgroundImageLoader> pendingLoads = new HashMap<>();
+
+  /**
+   * The assets whose image was requested without an observer since their decode was queued. These
+   * callers cannot be told that the decode was cancelled, so it never is.
+   */
+  private static final Set<MD5Key> unobservedRequests = new HashSet<>();
+
+  /** The assets last reported as on screen, per observer. */
+  private static final Map<ImageObserver, Set<MD5Key>> viewportAssetMap = new WeakHashMap<>();
+
+  /** Used to keep decodes of equal priority in request order. */
+  private static final AtomicLong loadSequence = new AtomicLong();
+
   /**
    * A Map containing sets of observers for each asset id. Observers are notified when the image is
    * done loading.
@@ -84,6 +117,20 @@ public class ImageManager {
     BROKEN_IMAGE = RessourceManager.getImage(Images.BROKEN);
   }
 
+  private static ThreadPoolExecutor createImageLoader() {
+    int threads = Math.max(1, AppPreferences.imageLoaderThreads.get());
+    var executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            30,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            imageLoaderThreadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * Remove all images from the image cache. The observers and image load hints are not flushed. The
    * same observers will be notified when the image is reloaded, and the same hints will be used for
@@ -198,7 +245,11 @@ public static BufferedImage getImage(
       imageMap.put(assetId, TRANSFERING_IMAGE);
 
       // Make sure we are informed when it's done loading
-      addObservers(assetId, observers);
+      if (observers == null || observers.length == 0) {
+        unobservedRequests.add(assetId);
+      } else {
+        addObservers(assetId, observers);
+      }
 
       // Force a load of the asset, this will trigger a transfer if the
       // asset is not available locally
@@ -340,8 +391,75 @@ public static void flushImage(Asset asset) {
    * @param assetId MD5Key associated with this image
    */
   public static void flushImage(MD5Key assetId) {
-    // LATER: investigate how this effects images that are already in progress
-    imageMap.remove(assetId);
+    synchronized (imageLoaderMutex) {
+      // A decode that has already started will still store its result when it is done.
+      BackgroundImageLoader loader = pendingLoads.get(assetId);
+      if (loader != null && imageLoader.remove(loader)) {
+        pendingLoads.remove(assetId);
+        unobservedRequests.remove(assetId);
+      }
+      imageMap.remove(assetId);
+    }
+  }
+
+  /**
+   * Tell the image manager which assets are currently on screen for an observer, typically a zone
+   * renderer reporting the token images it drew in its last frame. Pending decodes of these assets
+   * are moved to the front of the queue. Assets that were on screen in the previous report but no
+   * longer are, stop being observed by {@code observer}; if nobody else is waiting for them their
+   * pending decode is cancelled, and they will be queued again the next time they are requested.
+   * Decodes that were also requested without an observer are never cancelled.
+   *
+   * @param observer the observer the assets are visible to
+   * @param assetIds the assets currently visible to the observer
+   */
+  public static void updateViewportAssets(ImageObserver observer, Set<MD5Key> assetIds) {
+    synchronized (imageLoaderMutex) {
+      Set<MD5Key> previous = viewportAssetMap.put(observer, Set.copyOf(assetIds));
+      if (previous != null) {
+        for (MD5Key id : previous) {
+          if (!assetIds.contains(id)) {
+            leaveViewport(observer, id);
+          }
+        }
+      }
+      for (MD5Key id : assetIds) {
+        if (previous == null || !previous.contains(id)) {
+          BackgroundImageLoader loader = pendingLoads.get(id);
+          if (loader != null && !loader.onScreen && imageLoader.remove(loader)) {
+            // Re-queue so the priority queue sees the new ordering.
+            loader.onScreen = true;
+            imageLoader.execute(loader);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Handle an asset scrolling out of view of an observer. Must be called with {@link
+   * #imageLoaderMutex} held.
+   */
+  private static void leaveViewport(ImageObserver observer, MD5Key assetId) {
+    Set<ImageObserver> observerSet = imageObserverMap.get(assetId);
+    if (observerSet != null) {
+      observerSet.remove(observer);
+      if (!observerSet.isEmpty()) {
+        return;
+      }
+      imageObserverMap.remove(assetId);
+    }
+    if (unobservedRequests.contains(assetId)) {
+      return;
+    }
+    BackgroundImageLoader loader = pendingLoads.get(assetId);
+    if (loader != null && imageLoader.remove(loader)) {
+      log.debug("Cancelled loading of off screen asset: " + assetId);
+      pendingLoads.remove(assetId);
+      if (imageMap.get(assetId) == TRANSFERING_IMAGE) {
+        imageMap.remove(assetId);
+      }
+    }
   }
 
   /**
@@ -356,7 +474,7 @@ public static void addObservers(MD5Key assetId, ImageObserver... observers) {
       return;
     }
     Set<ImageObserver> observerSet =
-        imageObserverMap.computeIfAbsent(assetId, k -> new HashSet<ImageObserver>());
+        imageObserverMap.computeIfAbsent(assetId, k -> ConcurrentHashMap.newKeySet());
     observerSet.addAll(Arrays.asList(observers));
   }
 
@@ -365,9 +483,15 @@ public static void addObservers(MD5Key assetId, ImageObserver... observers) {
    *
    * @author RPTools Team.
    */
-  private static class BackgroundImageLoader implements Runnable {
+  private static class BackgroundImageLoader
+      implements Runnable, Comparable<BackgroundImageLoader> {
     private final Asset asset;
     private final Map<String, Object> hints;
+    private final boolean large;
+    private final long sequence = loadSequence.getAndIncrement();
+
+    /** Whether the asset was on screen when the loader was last (re-)queued. */
+    private volatile boolean onScreen;
 
     /**
      * Create a background image loader to load the asset image using the hints provided.
@@ -375,9 +499,23 @@ private static class BackgroundImageLoader implements Runnable {
      * @param asset Asset to load
      * @param hints Hints to use for image loading
      */
-    public BackgroundImageLoader(Asset asset, Map<String, Object> hints) {
+    public BackgroundImageLoader(Asset asset, Map<String, Object> hints, boolean onScreen) {
       this.asset = asset;
       this.hints = hints;
+      this.large = asset.getData().length > LARGE_IMAGE_SIZE;
+      this.onScreen = onScreen;
+    }
+
+    /** On screen images first, then small images, then in request order. */
+    @Override
+    public int compareTo(BackgroundImageLoader other) {
+      if (onScreen != other.onScreen) {
+        return onScreen ? -1 : 1;
+      }
+      if (large != other.large) {
+        return large ? 1 : -1;
+      }
+      return Long.compare(sequence, other.sequence);
     }
 
     /** Load the asset raw image data and notify observers that the image is loaded. */
@@ -388,6 +526,10 @@ public void run() {
       if (image != null && image != TRANSFERING_IMAGE) {
         // We've somehow already loaded this image
         log.debug("Image wasn't in transit: " + asset.getMD5Key());
+        synchronized (imageLoaderMutex) {
+          pendingLoads.remove(asset.getMD5Key());
+          unobservedRequests.remove(asset.getMD5Key());
+        }
         return;
       }
 
@@ -406,7 +548,7 @@ public void run() {
           assert asset.getData() != null
               : "asset.getImage() for " + asset.toString() + "returns null?!";
           image =
-              ImageUtil.createCompatibleImage(
+              ImageUtil.createDisplayCompatibleImage(
                   ImageUtil.bytesToImage(asset.getData(), asset.getName()), hints);
         } catch (Throwable t) {
           if (!AssetManager.BAD_ASSET_LOCATION_KEY.toString().equals(asset.getMD5Key())) {
@@ -426,6 +568,8 @@ public void run() {
       }
 
       synchronized (imageLoaderMutex) {
+        pendingLoads.remove(asset.getMD5Key());
+        unobservedRequests.remove(asset.getMD5Key());
         // Replace placeholder with actual image
         imageMap.put(asset.getMD5Key(), image);
         backupImageMap.put(asset.getMD5Key(), image);
@@ -459,11 +603,22 @@ private static void notifyObservers(Asset asset, BufferedImage image) {
    * @param hints Hints used when loading image data
    */
   private static void backgroundLoadImage(Asset asset, Map<String, Object> hints) {
-    // Use large image loader if the image is larger than 128kb.
-    if (asset.getData().length > 128 * 1024) {
-      largeImageLoader.execute(new BackgroundImageLoader(asset, hints));
-    } else {
-      smallImageLoader.execute(new BackgroundImageLoader(asset, hints));
+    synchronized (imageLoaderMutex) {
+      MD5Key id = asset.getMD5Key();
+      if (pendingLoads.containsKey(id)) {
+        // Already queued by an earlier request for the same asset.
+        return;
+      }
+      boolean onScreen = false;
+      for (Set<MD5Key> visible : viewportAssetMap.values()) {
+        if (visible.contains(id)) {
+          onScreen = true;
+          break;
+        }
+      }
+      var loader = new BackgroundImageLoader(asset, hints, onScreen);
+      pendingLoads.put(id, loader);
+      imageLoader.execute(loader);
     }
   }
 
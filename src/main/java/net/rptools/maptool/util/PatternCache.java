@@ -0,0 +1,98 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled regular expressions of macros. Macros run the same patterns over and over, from roll
+ * options such as {@code if} and {@code switch} and from functions such as {@code replace()} and
+ * {@code matches()}, and a {@link Pattern} is immutable and safe to share between threads, so each
+ * pattern is compiled once and reused until it is evicted.
+ */
+public final class PatternCache {
+  /** The number of patterns to keep. Frameworks use a few hundred distinct patterns at most. */
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private record Key(String regex, int flags) {}
+
+  private static final Cache<Key, Pattern> CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).recordStats().build();
+
+  private PatternCache() {}
+
+  /**
+   * Returns the compiled pattern, like {@link Pattern#compile(String)}.
+   *
+   * @param regex the expression to compile.
+   * @return the compiled pattern.
+   * @throws PatternSyntaxException if the expression is not valid.
+   */
+  public static Pattern compile(String regex) {
+    return compile(regex, 0);
+  }
+
+  /**
+   * Returns the compiled pattern, like {@link Pattern#compile(String, int)}.
+   *
+   * @param regex the expression to compile.
+   * @param flags the match flags.
+   * @return the compiled pattern.
+   * @throws PatternSyntaxException if the expression is not valid.
+   */
+  public static Pattern compile(String regex, int flags) {
+    var key = new Key(regex, flags);
+    Pattern pattern = CACHE.getIfPresent(key);
+    if (pattern == null) {
+      // Compiled outside the cache so that syntax errors are thrown as they are. Two threads may
+      // both compile a new pattern, which is harmless.
+      pattern = Pattern.compile(regex, flags);
+      CACHE.put(key, pattern);
+    }
+    return pattern;
+  }
+
+  /**
+   * Returns whether the whole input matches the expression, like {@link String#matches(String)}.
+   *
+   * @param input the string to match.
+   * @param regex the expression to match against.
+   * @return {@code true} if the input matches.
+   * @throws PatternSyntaxException if the expression is not valid.
+   */
+  public static boolean matches(String input, String regex) {
+    return compile(regex).matcher(input).matches();
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache.
+   *
+   * @return the statistics of the cache since it was created.
+   */
+  public static CacheStats stats() {
+    return CACHE.stats();
+  }
+
+  /**
+   * @return the number of patterns in the cache.
+   */
+  public static long size() {
+    return CACHE.size();
+  }
+}
@@ -380,78 +380,64 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
           File tmpFile = new File(tmpDir.getAbsolutePath(), campaignFile.getName());
           if (tmpFile.exists()) tmpFile.delete();
 
-          PackedFile pakFile = null;
-          try {
-            pakFile = new PackedFile(tmpFile);
-            // Configure the meta file (this is for legacy support)
-            PersistedCampaign persistedCampaign = new PersistedCampaign();
-
-            persistedCampaign.campaign = campaign;
-
-            // Keep track of the current view
-            ZoneRenderer currentZoneRenderer = MapTool.getFrame().getCurrentZoneRenderer();
-            if (currentZoneRenderer != null) {
-              persistedCampaign.currentZoneId = currentZoneRenderer.getZone().getId();
-              persistedCampaign.currentView = currentZoneRenderer.getZoneScale();
-            }
-            // Save all assets in active use (consolidate duplicates between maps)
-            saveTimer.start("Collect all assets");
-            Set<MD5Key> allAssetIds = campaign.getAllAssetIds();
-            for (MD5Key key : allAssetIds) {
-              // Put in a placeholder; all we really care about is the MD5Key for now...
-              persistedCampaign.assetMap.put(key, null);
-            }
-            saveTimer.stop("Collect all assets");
+          // Configure the meta file (this is for legacy support)
+          PersistedCampaign persistedCampaign = new PersistedCampaign();
+
+          persistedCampaign.campaign = campaign;
+
+          // Keep track of the current view
+          ZoneRenderer currentZoneRenderer = MapTool.getFrame().getCurrentZoneRenderer();
+          if (currentZoneRenderer != null) {
+            persistedCampaign.currentZoneId = currentZoneRenderer.getZone().getId();
+            persistedCampaign.currentView = currentZoneRenderer.getZoneScale();
+          }
+          // Save all assets in active use (consolidate duplicates between maps)
+          saveTimer.start("Collect all assets");
+          Set<MD5Key> allAssetIds = campaign.getAllAssetIds();
+          for (MD5Key key : allAssetIds) {
+            // Put in a placeholder; all we really care about is the MD5Key for now...
+            persistedCampaign.assetMap.put(key, null);
+          }
+          saveTimer.stop("Collect all assets");
 
+          // Entries that have not changed since the campaign was last saved to this file are
+          // copied from it rather than written again.
+          File previousFile = campaignFile.exists() ? campaignFile : null;
+          try (var archive = new CampaignArchive.Writer(tmpFile, previousFile)) {
             // And store the asset elsewhere
             saveTimer.start("Save assets");
-            saveAssets(allAssetIds, pakFile);
+            saveAssets(allAssetIds, archive);
             saveTimer.stop("Save assets");
 
             // Store the Drop In Libraries.
             saveTimer.start("Save Drop In Libraries");
-            saveAddOnLibraries(pakFile);
+            saveAddOnLibraries(archive);
             saveTimer.stop("Save Drop In Libraries");
 
             // Store the Game Data
             saveTimer.start("Save Game Data");
-            saveGameData(pakFile);
+            saveGameData(archive);
             saveTimer.stop("Save Game Data");
 
-            try {
-              saveTimer.start("Set content");
-
-              pakFile.setContent(persistedCampaign);
-              pakFile.setProperty(PROP_CAMPAIGN_VERSION, CAMPAIGN_VERSION);
-              pakFile.setProperty(PROP_VERSION, MapTool.getVersion());
-
-              saveTimer.stop("Set content");
-              saveTimer.start("Save");
-              pakFile.save();
-              saveTimer.stop("Save");
-            } catch (OutOfMemoryError oom) {
-              /*
-               * This error is normally because the heap space has been exceeded while trying to save the campaign. Since MapTool caches the images used by the current Zone, and since the
-               * VersionManager must keep the XML for objects in memory in order to apply transforms to them, the memory usage can spike very high during the save() operation. A common solution is
-               * to switch to an empty map and perform the save from there; this causes MapTool to unload any images that it may have had cached and this can frequently free up enough memory for the
-               * save() to work. We'll tell the user all this right here and then fail the save and they can try again.
-               */
-              saveTimer.start("OOM Close");
-              pakFile.close(); // Have to close the tmpFile first on some OSes
-              pakFile = null;
-              tmpFile.delete(); // Delete the temporary file
-              saveTimer.stop("OOM Close");
-              MapTool.showError("msg.error.failedSaveCampaignOOM");
-              return;
-            }
-          } finally {
-            saveTimer.start("Close");
-            try {
-              if (pakFile != null) pakFile.close();
-            } catch (Exception e) {
-            }
-            saveTimer.stop("Close");
-            pakFile = null;
+            saveTimer.start("Save zones");
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(PROP_CAMPAIGN_VERSION, CAMPAIGN_VERSION);
+            properties.put(PROP_VERSION, MapTool.getVersion());
+            archive.putCampaign(persistedCampaign, properties);
+            log.debug(
+                "Saved {} zones, {} of them unchanged",
+                campaign.getZones().size(),
+                archive.getZonesCopied());
+            saveTimer.stop("Save zones");
+          } catch (OutOfMemoryError oom) {
+            /*
+             * This error is normally because the heap space has been exceeded while trying to save the campaign. Since MapTool caches the images used by the current Zone, the memory usage can
+             * spike very high during the save() operation. A common solution is to switch to an empty map and perform the save from there; this causes MapTool to unload any images that it may
+             * have had cached and this can frequently free up enough memory for the save() to work. We'll tell the user all this right here and then fail the save and they can try again.
+             */
+            tmpFile.delete(); // Delete the temporary file
+            MapTool.showError("msg.error.failedSaveCampaignOOM");
+            return;
           }
 
           /*
@@ -544,8 +530,20 @@ public static PersistedCampaign loadCampaign(File campaignFile) throws IOExcepti
       // This is where the campaignVersion was added
       campaignVersion = campaignVersion == null ? "1.3.50" : campaignVersion;
 
+      CampaignArchive.ZoneReader zoneReader = null;
       try {
-        persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
+        if (CampaignArchive.isZoned(pakFile)) {
+          // The zones are decoded in the background while the assets are loaded, starting with the
+          // one that will be shown first.
+          persistedCampaign = CampaignArchive.readCampaign(pakFile, campaignVersion);
+          GUID firstZoneId = persistedCampaign.currentZoneId;
+          if (firstZoneId == null) {
+            firstZoneId = persistedCampaign.campaign.getLandingMapId();
+          }
+          zoneReader = CampaignArchive.readZones(pakFile, campaignVersion, firstZoneId);
+        } else {
+          persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
+        }
       } catch (ConversionException ce) {
         // Ignore the exception and check for "campaign == null" below...
         MapTool.showError("PersistenceUtil.error.campaignVersion", ce);
@@ -562,6 +560,9 @@ public static PersistedCampaign loadCampaign(File campaignFile) throws IOExcepti
         // Note that the values are all placeholders
         Set<MD5Key> allAssetIds = persistedCampaign.assetMap.keySet();
         loadAssets(allAssetIds, pakFile);
+        if (zoneReader != null) {
+          zoneReader.putZones(persistedCampaign.campaign);
+        }
         for (Zone zone : persistedCampaign.campaign.getZones()) {
           zone.optimize();
         }
@@ -849,32 +850,29 @@ private static void loadAddOnLibraries(PackedFile packedFile) throws IOException
   }
 
   /**
-   * Saves the add-on libraries to the provided packed file.
+   * Saves the add-on libraries to the provided campaign file.
    *
-   * @param packedFile The packed file to save the add-on libraries to.
+   * @param archive The campaign file to save the add-on libraries to.
    * @throws IOException If an error occurs while saving the add-on libraries.
    */
-  private static void saveAddOnLibraries(PackedFile packedFile) throws IOException {
-    // remove all drop-in libraries from the packed file first.
-    for (String path : packedFile.getPaths()) {
-      if (path.startsWith(DROP_IN_LIBRARY_ASSET_DIR) && !path.equals(DROP_IN_LIBRARY_ASSET_DIR)) {
-        packedFile.removeFile(path);
-      }
-    }
-
+  private static void saveAddOnLibraries(CampaignArchive.Writer archive) throws IOException {
     AddOnLibraryListDto dto = null;
     try {
       dto = new LibraryManager().addOnLibrariesToDto().get();
     } catch (InterruptedException | ExecutionException e) {
       throw new IOException(e);
     }
-    packedFile.putFile(
+    archive.putFile(
         DROP_IN_LIBRARY_LIST_FILE,
         JsonFormat.printer().print(dto).getBytes(StandardCharsets.UTF_8));
 
     for (var ldto : dto.getLibrariesList()) {
-      Asset asset = AssetManager.getAsset(new MD5Key(ldto.getMd5Hash()));
-      packedFile.putFile(DROP_IN_LIBRARY_ASSET_DIR + asset.getMD5Key().toString(), asset.getData());
+      // The path is the hash of the library, so an entry of the same path is the same library.
+      String path = DROP_IN_LIBRARY_ASSET_DIR + ldto.getMd5Hash();
+      if (!archive.copyFile(path)) {
+        Asset asset = AssetManager.getAsset(new MD5Key(ldto.getMd5Hash()));
+        archive.putFile(path, asset.getData());
+      }
     }
   }
 
@@ -904,27 +902,19 @@ private static void loadGameData(PackedFile packedFile) throws IOException {
   }
 
   /**
-   * Saves the game data to the specified packed file.
+   * Saves the game data to the specified campaign file.
    *
-   * @param packedFile The packed file to save the game data to.
+   * @param archive The campaign file to save the game data to.
    * @throws IOException If an I/O error occurs while saving the game data.
    */
-  private static void saveGameData(PackedFile packedFile) throws IOException {
-    // Remove all the game data from the packed file first.
-    for (String path : packedFile.getPaths()) {
-      if (path.startsWith(GAME_DATA_DIR) && !path.equals(GAME_DATA_DIR)) {
-        packedFile.removeFile(path);
-      }
-    }
-
+  private static void saveGameData(CampaignArchive.Writer archive) throws IOException {
     try {
       DataStoreManager dataStoreManager = new DataStoreManager();
       DataStoreDto dto = dataStoreManager.toDto().get();
-      packedFile.putFile(
+      archive.putFile(
           GAME_DATA_FILE, JsonFormat.printer().print(dto).getBytes(StandardCharsets.UTF_8));
 
-      Set<MD5Key> assets = dataStoreManager.getAssets().get();
-      saveAssets(dataStoreManager.getAssets().get(), packedFile);
+      saveAssets(dataStoreManager.getAssets().get(), archive);
     } catch (ExecutionException | InterruptedException e) {
       throw new IOException(e);
     }
@@ -962,6 +952,36 @@ private static void saveAssets(Collection<MD5Key> assetIds, PackedFile pakFile)
     }
   }
 
+  /**
+   * Saves a collection of assets to a campaign file. Assets are identified by the hash of their
+   * data, so those already in the previous version of the file are copied from it.
+   *
+   * @param assetIds The ids of the assets to save.
+   * @param archive The campaign file to save the assets to.
+   * @throws IOException If there is an error writing the assets to the file.
+   */
+  private static void saveAssets(Collection<MD5Key> assetIds, CampaignArchive.Writer archive)
+      throws IOException {
+    for (MD5Key assetId : assetIds) {
+      if (assetId == null) continue;
+
+      Asset asset = AssetManager.getAsset(assetId);
+      if (asset == null) {
+        log.error("AssetId " + assetId + " not found while saving?!");
+        continue;
+      }
+
+      String dataPath = ASSET_DIR + assetId + "." + asset.getExtension();
+      if (!archive.copyFile(dataPath)) {
+        archive.putFile(dataPath, asset.getData());
+      }
+      String path = ASSET_DIR + assetId;
+      if (!archive.copyFile(path)) {
+        archive.putFile(path, asset); // Does not write the image
+      }
+    }
+  }
+
   /**
    * Clears all assets in the given packed file that are located in the asset directory.
    *
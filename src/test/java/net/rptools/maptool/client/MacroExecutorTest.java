@@ -0,0 +1,159 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import javax.swing.SwingUtilities;
+import net.rptools.parser.ParserException;
+import org.junit.jupiter.api.Test;
+
+class MacroExecutorTest {
+
+  /** Runs a macro on the worker, waits for it and rethrows what failed in it. */
+  private static void onWorker(Runnable macro) throws Exception {
+    var failure = new AtomicReference<Throwable>();
+    MacroExecutor.submit(
+            () -> {
+              try {
+                macro.run();
+              } catch (Throwable t) {
+                failure.set(t);
+              }
+            })
+        .get(30, TimeUnit.SECONDS);
+    if (failure.get() instanceof Error error) {
+      throw error;
+    }
+    if (failure.get() instanceof Exception e) {
+      throw e;
+    }
+  }
+
+  @Test
+  void stepsRunOnEdtInOrder() throws Exception {
+    List<Integer> steps = new ArrayList<>();
+    onWorker(
+        () -> {
+          assertTrue(MacroExecutor.isWorkerThread());
+          for (int i = 0; i < 100; i++) {
+            int step = i;
+            MacroExecutor.runOnEdt(
+                () -> {
+                  assertTrue(SwingUtilities.isEventDispatchThread());
+                  steps.add(step);
+                });
+          }
+        });
+    assertEquals(IntStream.range(0, 100).boxed().toList(), steps);
+  }
+
+  @Test
+  void callOnEdtOffWorkerRunsDirectly() {
+    Thread caller = Thread.currentThread();
+    assertSame(caller, MacroExecutor.callOnEdt(Thread::currentThread));
+    assertFalse(MacroExecutor.isRunningForWorker());
+  }
+
+  @Test
+  void callOnEdtPropagatesExceptions() throws Exception {
+    var checked = new ParserException("checked");
+    var unchecked = new IllegalStateException("unchecked");
+    onWorker(
+        () -> {
+          assertSame(
+              checked,
+              assertThrows(
+                  ParserException.class,
+                  () ->
+                      MacroExecutor.callOnEdt(
+                          () -> {
+                            throw checked;
+                          })));
+          assertSame(
+              unchecked,
+              assertThrows(
+                  IllegalStateException.class,
+                  () ->
+                      MacroExecutor.runOnEdt(
+                          () -> {
+                            throw unchecked;
+                          })));
+        });
+  }
+
+  @Test
+  void nestedStepsRunDirectlyOnEdt() throws Exception {
+    var local = MacroExecutor.local(Object::new);
+    Object shared = local.get();
+    var workerState = new AtomicReference<>();
+    onWorker(
+        () -> {
+          workerState.set(local.get());
+          assertNotSame(shared, workerState.get());
+          Thread edt =
+              MacroExecutor.callOnEdt(
+                  () -> {
+                    assertTrue(MacroExecutor.isRunningForWorker());
+                    assertFalse(MacroExecutor.isWorkerThread());
+                    assertSame(workerState.get(), local.get());
+                    return MacroExecutor.callOnEdt(Thread::currentThread);
+                  });
+          assertNotSame(Thread.currentThread(), edt);
+        });
+    SwingUtilities.invokeAndWait(
+        () -> {
+          assertFalse(MacroExecutor.isRunningForWorker());
+          assertSame(shared, local.get());
+        });
+  }
+
+  @Test
+  void edtDoesNotWaitForWorker() throws Exception {
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var future =
+        MacroExecutor.submit(
+            () -> {
+              started.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    try {
+      assertTrue(started.await(30, TimeUnit.SECONDS));
+      var ran = new AtomicBoolean();
+      SwingUtilities.invokeAndWait(
+          () -> {
+            assertFalse(MacroExecutor.isRunningForWorker());
+            ran.set(true);
+          });
+      assertTrue(ran.get());
+      assertFalse(future.isDone());
+    } finally {
+      release.countDown();
+    }
+    future.get(30, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import net.rptools.maptool.client.MacroProfiler.Entry;
+import net.rptools.maptool.client.MacroProfiler.Kind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MacroProfilerTest {
+
+  @BeforeEach
+  void setUp() {
+    MacroProfiler.reset();
+    MacroProfiler.setEnabled(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    MacroProfiler.setEnabled(false);
+    MacroProfiler.reset();
+  }
+
+  private static Entry entry(Kind kind, String name) {
+    return MacroProfiler.getEntries().stream()
+        .filter(e -> e.kind() == kind && e.name().equals(name))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  @Test
+  void nestedSections() {
+    for (int i = 0; i < 2; i++) {
+      try (var macro = MacroProfiler.enter(Kind.MACRO, "test@lib:test")) {
+        try (var function = MacroProfiler.enter(Kind.FUNCTION, "json.get")) {
+          assertNotNull(function);
+        }
+      }
+    }
+
+    Entry macro = entry(Kind.MACRO, "test@lib:test");
+    Entry function = entry(Kind.FUNCTION, "json.get");
+    assertEquals(2, macro.calls());
+    assertEquals(2, function.calls());
+    assertTrue(macro.inclusiveNanos() >= function.inclusiveNanos());
+    assertEquals(macro.inclusiveNanos() - function.inclusiveNanos(), macro.exclusiveNanos());
+    assertEquals(function.inclusiveNanos(), function.exclusiveNanos());
+  }
+
+  @Test
+  void disabled() {
+    MacroProfiler.setEnabled(false);
+    try (var macro = MacroProfiler.enter(Kind.MACRO, "test@lib:test")) {
+      assertNotNull(macro);
+    }
+    assertEquals(List.of(), MacroProfiler.getEntries());
+  }
+
+  @Test
+  void flameGraph() throws IOException, InterruptedException {
+    try (var macro = MacroProfiler.enter(Kind.MACRO, "test@lib:test")) {
+      try (var expression = MacroProfiler.enter(Kind.EXPRESSION, "a = 1; b = 2")) {
+        Thread.sleep(2);
+      }
+    }
+    var writer = new StringWriter();
+    MacroProfiler.writeFlameGraph(writer);
+    String stacks = writer.toString();
+    assertTrue(
+        stacks.contains("macro:test@lib:test;expression:a = 1 b = 2 "), () -> "got " + stacks);
+  }
+
+  @Test
+  void report() {
+    try (var function = MacroProfiler.enter(Kind.FUNCTION, "json.get")) {
+      assertNotNull(function);
+    }
+    String report = MacroProfiler.getReport();
+    assertTrue(report.contains("function json.get"));
+    assertTrue(report.contains("Regular expressions"));
+    assertTrue(report.contains("Parsed json"));
+  }
+}
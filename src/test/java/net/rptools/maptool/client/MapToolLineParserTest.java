@@ -16,6 +16,7 @@
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.math.BigDecimal;
 import java.util.Collections;
@@ -274,4 +275,18 @@ public void testExpression() throws ParserException {
     assertEquals(resolver.getVariable("a"), BigDecimal.TEN);
     assertEquals(result.getDetailExpression(), "a = (a * 10)");
   }
+
+  @Test
+  public void testInlineRolls() {
+    String line = "a [h, if(x == 1): y = \"]\"] b {z} c";
+    var rolls = MapToolLineParser.getInlineRolls(line);
+    assertEquals(2, rolls.size());
+    assertEquals("h, if(x == 1)", rolls.get(0).getOpt());
+    assertEquals(" y = \"]\"", rolls.get(0).getRoll());
+    assertEquals("", rolls.get(1).getOpt());
+    assertEquals("z", rolls.get(1).getRoll());
+
+    // Parsing the same text again reuses the rolls found before.
+    assertSame(rolls, MapToolLineParser.getInlineRolls(new String(line)));
+  }
 }
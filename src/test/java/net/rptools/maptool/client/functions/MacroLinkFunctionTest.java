@@ -15,10 +15,14 @@
 package net.rptools.maptool.client.functions;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvFileSource;
 
@@ -109,4 +113,15 @@ void testLinkDataPattern(String caseName, String macro, String macroLink, String
     assertEquals(macroLink, matcher.group(1));
     assertEquals(macroData, matcher.group(2));
   }
+
+  @Test
+  void testLinkDataCanBeModified() {
+    String linkData = URLEncoder.encode("{\"a\": 1}", StandardCharsets.UTF_8);
+    MacroLinkFunction.getInstance()
+        .getLinkDataAsJson(linkData)
+        .getAsJsonObject()
+        .addProperty("form", "submitted");
+    assertFalse(
+        MacroLinkFunction.getInstance().getLinkDataAsJson(linkData).getAsJsonObject().has("form"));
+  }
 }
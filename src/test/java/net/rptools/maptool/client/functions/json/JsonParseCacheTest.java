@@ -0,0 +1,70 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+class JsonParseCacheTest {
+
+  @Test
+  void parse() {
+    String json = "{\"a\": {\"b\": [1, 2, 3]}}";
+    JsonElement parsed = JsonParseCache.parse(json);
+    assertEquals(JsonParser.parseString(json), parsed);
+    assertSame(parsed, JsonParseCache.parse(json));
+    // An equal string that is a different instance is found by value.
+    assertSame(parsed, JsonParseCache.parse(new String(json)));
+
+    assertNull(JsonParseCache.parse("{\"a\": "));
+    assertNull(JsonParseCache.parse("{\"a\": "));
+  }
+
+  @Test
+  void parseStrictObject() {
+    assertEquals(
+        JsonParser.parseString("{\"a\": 1}"), JsonParseCache.parseStrictObject("{\"a\": 1}"));
+    assertNull(JsonParseCache.parseStrictObject("{\"a\": 1}{\"b\": 2}"));
+    assertNull(JsonParseCache.parseStrictObject("{a: 1}"));
+    // The lenient parse accepts what the strict one does not.
+    assertNotNull(JsonParseCache.parse("{a: 1}"));
+  }
+
+  @Test
+  void stats() {
+    String json = "[\"stats\"]";
+    JsonParseCache.parse(json);
+    long hits = JsonParseCache.stats().hitCount();
+    JsonParseCache.parse(json);
+    assertEquals(hits + 1, JsonParseCache.stats().hitCount());
+  }
+
+  @Test
+  void clonedElementsAreNotShared() {
+    var typeConversion = new JsonMTSTypeConversion();
+    String json = "{\"a\": {\"b\": 1}}";
+    JsonElement shared = typeConversion.asJsonElement(json);
+    assertSame(shared, typeConversion.asJsonElement(json));
+
+    JsonElement copy = typeConversion.asClonedJsonElement(json);
+    assertNotSame(shared, copy);
+    copy.getAsJsonObject().getAsJsonObject("a").addProperty("b", 2);
+    JsonElement reparsed = typeConversion.asJsonElement(json);
+    assertEquals(1, reparsed.getAsJsonObject().getAsJsonObject("a").get("b").getAsInt());
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.Map;
+import net.rptools.maptool.model.Token;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TokenLocationIndexTest {
+  private ZoneRenderer renderer;
+  private TokenLocationIndex index;
+  private Token first;
+  private Token second;
+  private Token third;
+
+  @BeforeEach
+  void setUp() {
+    renderer = mock(ZoneRenderer.class);
+    index = new TokenLocationIndex();
+    first = new Token();
+    second = new Token();
+    third = new Token();
+  }
+
+  private TokenLocation location(Token token, int x, int y, int width, int height) {
+    return new TokenLocation(
+        renderer,
+        new Area(new Rectangle(x, y, width, height)),
+        new Rectangle2D.Double(x, y, width, height),
+        token,
+        x,
+        y,
+        width,
+        height,
+        width,
+        height);
+  }
+
+  /** Adds the tokens the way the renderer does for a frame, bottom most first. */
+  private void drawFrame(Map<Token, Rectangle> tokens) {
+    index.clear();
+    for (Token token : List.of(first, second, third)) {
+      Rectangle bounds = tokens.get(token);
+      if (bounds != null) {
+        index.add(location(token, bounds.x, bounds.y, bounds.width, bounds.height));
+      }
+    }
+  }
+
+  private static List<Token> tokens(List<TokenLocation> locations) {
+    return locations.stream().map(location -> location.token).toList();
+  }
+
+  private Token topmostAt(int x, int y) {
+    TokenLocation location = index.getTopmostAt(x, y);
+    return location == null ? null : location.token;
+  }
+
+  @Test
+  @DisplayName("Added tokens are found at their location, top most first")
+  void testPut() {
+    drawFrame(
+        Map.of(
+            first, new Rectangle(10, 10, 50, 50),
+            second, new Rectangle(300, 300, 50, 50),
+            third, new Rectangle(30, 30, 50, 50)));
+
+    assertEquals(List.of(first, second, third), tokens(index.getLocations()));
+    assertSame(first, topmostAt(15, 15));
+    assertSame(third, topmostAt(40, 40));
+    assertSame(second, topmostAt(310, 310));
+    assertNull(topmostAt(200, 200));
+  }
+
+  @Test
+  @DisplayName("A moved token is only found at its new location")
+  void testMove() {
+    drawFrame(Map.of(first, new Rectangle(10, 10, 50, 50), second, new Rectangle(20, 20, 50, 50)));
+    assertSame(second, topmostAt(30, 30));
+
+    drawFrame(
+        Map.of(first, new Rectangle(10, 10, 50, 50), second, new Rectangle(500, 500, 50, 50)));
+    assertSame(first, topmostAt(30, 30));
+    assertSame(second, topmostAt(510, 510));
+    assertEquals(List.of(first), tokens(index.getIntersecting(new Rectangle(0, 0, 100, 100))));
+  }
+
+  @Test
+  @DisplayName("A removed token is no longer found")
+  void testRemove() {
+    drawFrame(
+        Map.of(
+            first, new Rectangle(10, 10, 50, 50),
+            second, new Rectangle(20, 20, 50, 50),
+            third, new Rectangle(30, 30, 50, 50)));
+    drawFrame(Map.of(first, new Rectangle(10, 10, 50, 50), third, new Rectangle(30, 30, 50, 50)));
+
+    assertEquals(List.of(first, third), tokens(index.getLocations()));
+    assertSame(first, topmostAt(25, 25));
+    assertEquals(
+        List.of(first, third), tokens(index.getIntersecting(new Rectangle(0, 0, 100, 100))));
+
+    index.clear();
+    assertTrue(index.getLocations().isEmpty());
+    assertNull(topmostAt(25, 25));
+  }
+
+  @Test
+  @DisplayName("Region queries find each intersecting token once, in drawing order")
+  void testRegionQuery() {
+    drawFrame(
+        Map.of(
+            // Covers a few buckets.
+            first, new Rectangle(-100, -100, 400, 300),
+            // Covers too many buckets and is kept apart from them.
+            second, new Rectangle(-1000, -1000, 3000, 3000),
+            third, new Rectangle(600, 600, 50, 50)));
+
+    assertEquals(
+        List.of(first, second), tokens(index.getIntersecting(new Rectangle(-50, -50, 20, 20))));
+    assertEquals(
+        List.of(first, second, third),
+        tokens(index.getIntersecting(new Rectangle(-200, -200, 1000, 1000))));
+    assertEquals(
+        List.of(second, third), tokens(index.getIntersecting(new Rectangle(620, 620, 10, 10))));
+    assertEquals(List.of(), tokens(index.getIntersecting(new Rectangle(5000, 5000, 10, 10))));
+
+    // The oversized token is drawn above the first one and below the third.
+    assertSame(second, topmostAt(0, 0));
+    assertSame(third, topmostAt(610, 610));
+  }
+}
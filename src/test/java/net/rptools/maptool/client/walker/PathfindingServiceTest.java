@@ -0,0 +1,64 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.EventQueue;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PathfindingServiceTest {
+  @Test
+  @DisplayName("A newer request cancels the running one and drops the queued ones")
+  void testSupersededRequests() throws Exception {
+    var service = new PathfindingService(1);
+    var channel = service.newChannel();
+    var started = new CountDownLatch(1);
+    var delivered = new CopyOnWriteArrayList<String>();
+
+    var first =
+        channel.submit(
+            () -> {
+              started.countDown();
+              while (!PathfindingService.isCancelled()) {
+                Thread.onSpinWait();
+              }
+              return "first";
+            },
+            delivered::add);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    var second = channel.submit(() -> "second", delivered::add);
+    var third = channel.submit(() -> "third", delivered::add);
+
+    assertEquals("third", third.get(10, TimeUnit.SECONDS));
+    assertTrue(first.isCancelled());
+    assertTrue(second.isCancelled());
+
+    // Results are delivered on the event dispatch thread, so wait for it to catch up.
+    EventQueue.invokeAndWait(() -> {});
+    assertEquals(List.of("third"), delivered);
+  }
+
+  @Test
+  @DisplayName("Requests are not cancelled outside of a channel")
+  void testNotCancelledOutsideRequests() {
+    assertFalse(PathfindingService.isCancelled());
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AStarNodesTest {
+  @Test
+  @DisplayName("Open nodes are polled in order of f cost, including after their cost decreases")
+  void testPollOrder() {
+    var nodes = new AStarNodes();
+    var random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      int node = nodes.create(i, -i, i % 2 == 0);
+      nodes.setCosts(node, AStarNodes.NONE, random.nextInt(500), random.nextInt(500), 0, 0);
+      nodes.open(node);
+    }
+    for (int i = 0; i < 1000; i += 7) {
+      int node = nodes.find(i, -i, i % 2 == 0);
+      nodes.setCosts(node, AStarNodes.NONE, nodes.g(node) / 2, nodes.h(node), 0, 0);
+      nodes.open(node);
+    }
+
+    double last = Double.NEGATIVE_INFINITY;
+    int polled = 0;
+    for (int node = nodes.pollLowest(); node != AStarNodes.NONE; node = nodes.pollLowest()) {
+      assertTrue(nodes.f(node) >= last);
+      assertTrue(nodes.isClosed(node));
+      last = nodes.f(node);
+      polled++;
+    }
+    assertEquals(1000, polled);
+  }
+
+  @Test
+  @DisplayName("Nodes are told apart by cell and parity, and cleared for reuse")
+  void testFindAndClear() {
+    var nodes = new AStarNodes();
+    int even = nodes.create(-3, 5, false);
+    int odd = nodes.create(-3, 5, true);
+    assertNotEquals(even, odd);
+    assertEquals(even, nodes.find(-3, 5, false));
+    assertEquals(odd, nodes.find(-3, 5, true));
+    assertEquals(AStarNodes.NONE, nodes.find(5, -3, false));
+
+    nodes.close(7, 7, false);
+    assertTrue(nodes.isClosed(nodes.find(7, 7, false)));
+
+    nodes.clear();
+    assertEquals(0, nodes.size());
+    assertEquals(AStarNodes.NONE, nodes.find(-3, 5, false));
+  }
+}
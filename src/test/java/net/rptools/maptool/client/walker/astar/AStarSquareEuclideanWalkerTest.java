@@ -0,0 +1,113 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.rptools.maptool.client.walker.WalkerMetric;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.ZonePoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AStarSquareEuclideanWalkerTest {
+  private Zone zone;
+  private final Set<CellPoint> blockedCells = new HashSet<>();
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+
+    // A wall at x = 5 from y = -10 to y = 10.
+    for (int y = -10; y <= 10; y++) {
+      ZonePoint zp = grid.convert(new CellPoint(5, y));
+      var token = new Token();
+      token.setX(zp.x);
+      token.setY(zp.y);
+      token.setTerrainModifierOperation(TerrainModifierOperation.BLOCK);
+      zone.putToken(token);
+      blockedCells.addAll(token.getOccupiedCells(grid));
+    }
+  }
+
+  private AStarSquareEuclideanWalker createWalker(WalkerMetric metric) {
+    var walker = new AStarSquareEuclideanWalker(zone, metric);
+    // There are no waypoints yet, so this only sets the movement options.
+    walker.replaceLastWaypoint(
+        new CellPoint(0, 0), true, Set.of(TerrainModifierOperation.NONE), null);
+    return walker;
+  }
+
+  @Test
+  @DisplayName("Continuing a search for a moving goal finds paths as short as searching afresh")
+  void testContinuedSearch() {
+    for (var metric : List.of(WalkerMetric.ONE_ONE_ONE, WalkerMetric.ONE_TWO_ONE)) {
+      var dragged = createWalker(metric);
+      var fresh = createWalker(metric);
+
+      // Drag across the wall, back towards the start, and beyond the end of the wall.
+      for (int step = 0; step < 40; step++) {
+        int goalX = step < 20 ? step : 40 - step;
+        int goalY = step < 30 ? step / 3 : 3 * (step - 30) + 10;
+        var goal = new CellPoint(goalX, goalY);
+
+        List<CellPoint> path = dragged.findPath(new CellPoint(0, 0), goal, 60_000);
+        fresh.resetSearch();
+        List<CellPoint> expected = fresh.findPath(new CellPoint(0, 0), goal, 60_000);
+
+        assertEquals(new CellPoint(0, 0), path.getFirst());
+        assertEquals(goal, path.getLast());
+        assertEquals(
+            expected.getLast().distanceTraveled,
+            path.getLast().distanceTraveled,
+            1e-9,
+            metric + " to " + goal);
+        for (int i = 1; i < path.size(); i++) {
+          assertFalse(blockedCells.contains(path.get(i)));
+          assertTrue(Math.abs(path.get(i).x - path.get(i - 1).x) <= 1);
+          assertTrue(Math.abs(path.get(i).y - path.get(i - 1).y) <= 1);
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("A search guided by a coarse route gets around the wall")
+  void testHierarchicalSearch() {
+    var hierarchical = createWalker(WalkerMetric.ONE_ONE_ONE);
+    hierarchical.setHierarchicalMinCells(0);
+    var flat = createWalker(WalkerMetric.ONE_ONE_ONE);
+
+    var goal = new CellPoint(12, 2);
+    List<CellPoint> path = hierarchical.findPath(new CellPoint(0, 0), goal, 60_000);
+    List<CellPoint> expected = flat.findPath(new CellPoint(0, 0), goal, 60_000);
+
+    assertEquals(goal, path.getLast());
+    assertTrue(path.stream().noneMatch(blockedCells::contains));
+    assertTrue(path.getLast().distanceTraveled <= 1.25 * expected.getLast().distanceTraveled);
+  }
+}
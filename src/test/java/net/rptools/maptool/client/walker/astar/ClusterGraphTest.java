@@ -0,0 +1,112 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.TokenFootprint;
+import net.rptools.maptool.model.Zone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ClusterGraphTest {
+  private static final Object TERRAIN = new Object();
+  private static final Rectangle REGION = new Rectangle(0, 0, 160, 160);
+
+  private Zone zone;
+  private TokenFootprint footprint;
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    footprint = grid.getDefaultFootprint();
+
+    // A wall of MBL through column 80, open only at rows 150 and up.
+    zone.updateMaskTopology(
+        new Area(new Rectangle(80 * 50 + 10, -50, 30, 150 * 50 + 50)),
+        false,
+        Zone.TopologyType.MBL);
+  }
+
+  private ClusterGraph.Corridor findCorridor(ClusterGraph graph) {
+    return graph.findCorridor(
+        PassabilityGrid.get(zone, false, null),
+        footprint,
+        (x, y) -> false,
+        TERRAIN,
+        new CellPoint(10, 10),
+        new CellPoint(150, 10),
+        REGION);
+  }
+
+  @Test
+  @DisplayName("The corridor follows the coarse route through the gap in the wall")
+  void testCorridor() {
+    var corridor = findCorridor(new ClusterGraph());
+
+    assertNotNull(corridor);
+    assertTrue(corridor.contains(10, 10));
+    assertTrue(corridor.contains(150, 10));
+    assertTrue(corridor.contains(80, 155));
+  }
+
+  @Test
+  @DisplayName("There is no corridor when the wall is closed")
+  void testNoRoute() {
+    zone.updateMaskTopology(
+        new Area(new Rectangle(80 * 50 + 10, 0, 30, 400 * 50)), false, Zone.TopologyType.MBL);
+
+    var graph = new ClusterGraph();
+    var corridor =
+        graph.findCorridor(
+            PassabilityGrid.get(zone, false, null),
+            footprint,
+            (x, y) -> false,
+            TERRAIN,
+            new CellPoint(10, 10),
+            new CellPoint(150, 10),
+            new Rectangle(0, 0, 160, 384));
+    assertNull(corridor);
+  }
+
+  @Test
+  @DisplayName("Only the clusters that a topology change touches are rebuilt")
+  void testRebuildsChangedClusters() {
+    var graph = new ClusterGraph();
+    findCorridor(graph);
+    int built = graph.getRebuildCount();
+    assertTrue(built > 0);
+
+    // Block a single cell well inside the cluster of the start.
+    zone.updateMaskTopology(
+        new Area(new Rectangle(5 * 50 + 10, 5 * 50 + 10, 30, 30)), false, Zone.TopologyType.MBL);
+    findCorridor(graph);
+    int rebuilt = graph.getRebuildCount() - built;
+    assertTrue(rebuilt >= 1 && rebuilt < built, "rebuilt " + rebuilt + " of " + built);
+
+    // Nothing changed, so nothing is rebuilt.
+    findCorridor(graph);
+    assertEquals(built + rebuilt, graph.getRebuildCount());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker.astar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.TokenFootprint;
+import net.rptools.maptool.model.Zone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PassabilityGridTest {
+  private Zone zone;
+  private TokenFootprint footprint;
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+    footprint = grid.getDefaultFootprint();
+
+    // A wall of MBL along the right edge of cell (0, 0), and a block covering cell (-40, -40).
+    zone.updateMaskTopology(new Area(new Rectangle(45, 0, 10, 50)), false, Zone.TopologyType.MBL);
+    zone.updateMaskTopology(
+        new Area(new Rectangle(-2000, -2000, 50, 50)), false, Zone.TopologyType.MBL);
+  }
+
+  @Test
+  @DisplayName("Moves and positions are blocked by MBL, on both sides of a chunk boundary")
+  void testBlocked() {
+    var passability = PassabilityGrid.get(zone, false, null);
+
+    assertTrue(passability.isMoveBlocked(0, 0, 1, 0));
+    assertTrue(passability.isMoveBlocked(1, 0, -1, 0));
+    assertFalse(passability.isMoveBlocked(0, 0, 0, 1));
+    assertFalse(passability.isMoveBlocked(0, 1, 1, 0));
+
+    assertTrue(passability.isPositionBlocked(footprint, -40, -40));
+    assertFalse(passability.isPositionBlocked(footprint, -41, -40));
+    assertFalse(passability.isPositionBlocked(footprint, 5, 5));
+  }
+
+  @Test
+  @DisplayName("Walkers share a grid until the topology changes")
+  void testTopologyChanges() {
+    var passability = PassabilityGrid.get(zone, false, null);
+    assertSame(passability, PassabilityGrid.get(zone, false, null));
+    assertFalse(passability.isMoveBlocked(2, 0, 0, 1));
+
+    zone.updateMaskTopology(new Area(new Rectangle(100, 45, 50, 10)), false, Zone.TopologyType.MBL);
+    var updated = PassabilityGrid.get(zone, false, null);
+    assertNotSame(passability, updated);
+    assertTrue(updated.isMoveBlocked(2, 0, 0, 1));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CampaignTest {
+  @Test
+  @DisplayName("Snapshots share the copies of zones that did not change")
+  void testSnapshot() {
+    var campaign = new Campaign();
+    var unchanged = new Zone();
+    var changed = new Zone();
+    campaign.putZone(unchanged);
+    campaign.putZone(changed);
+
+    var first = Campaign.snapshot(campaign, null);
+    assertNotSame(unchanged, first.getZone(unchanged.getId()));
+
+    changed.setName("changed");
+    var second = Campaign.snapshot(campaign, first);
+    assertSame(first.getZone(unchanged.getId()), second.getZone(unchanged.getId()));
+    assertNotSame(first.getZone(changed.getId()), second.getZone(changed.getId()));
+    assertEquals("changed", second.getZone(changed.getId()).getName());
+  }
+
+  @Test
+  @DisplayName("Snapshots copy zones that changed without changing their version")
+  void testSnapshotOfChangeOutsideOfZoneMethods() {
+    var campaign = new Campaign();
+    var zone = new Zone();
+    var token = new Token();
+    token.setName("token");
+    zone.putToken(token);
+    campaign.putZone(zone);
+    var first = Campaign.snapshot(campaign, null);
+
+    long version = zone.getVersion();
+    token.setName("renamed");
+    assertEquals(version, zone.getVersion());
+    var second = Campaign.snapshot(campaign, first);
+    assertNotSame(first.getZone(zone.getId()), second.getZone(zone.getId()));
+    assertEquals("renamed", second.getZone(zone.getId()).getAllTokens().get(0).getName());
+  }
+
+  @Test
+  @DisplayName("Macros are found by label after they are added, renamed or removed")
+  void testMacroButtonPropertyByLabel() {
+    var campaign = new Campaign();
+    var first = new MacroButtonProperties(1);
+    first.setLabel("attack");
+    var second = new MacroButtonProperties(2);
+    second.setLabel("attack");
+    var macros = new ArrayList<>(List.of(first, second));
+    campaign.setMacroButtonPropertiesArray(macros);
+
+    assertSame(first, campaign.getMacroButtonProperty("attack", false));
+    assertEquals(List.of(first, second), campaign.getMacroButtonProperties("attack", false));
+    assertNull(campaign.getMacroButtonProperty("attack", true));
+
+    first.setLabel("defend");
+    assertSame(second, campaign.getMacroButtonProperty("attack", false));
+    assertSame(first, campaign.getMacroButtonProperty("defend", false));
+
+    var third = new MacroButtonProperties(3);
+    third.setLabel("heal");
+    macros.add(third);
+    assertSame(third, campaign.getMacroButtonProperty("heal", false));
+
+    macros.remove(second);
+    assertNull(campaign.getMacroButtonProperty("attack", false));
+    assertEquals(List.of(), campaign.getMacroButtonProperties("attack", false));
+  }
+}
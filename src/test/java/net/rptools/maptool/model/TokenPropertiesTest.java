@@ -136,4 +136,61 @@ public void testBadJsonReturnsAsString() {
     assertEquals(
         "{\"a\": 1}{\"b\": 2}", testToken.getEvaluatedProperty(variableResolver, "badJson"));
   }
+
+  @Test
+  public void testEvaluatedPropertyIsReused() {
+    testToken.setProperty("calc", "{prop1}");
+    Object evaluated = testToken.getEvaluatedProperty(variableResolver, "calc");
+    assertEquals("10", evaluated);
+    assertSame(evaluated, testToken.getEvaluatedProperty(variableResolver, "calc"));
+  }
+
+  @Test
+  public void testEvaluatedPropertyFollowsChanges() {
+    testToken.setProperty("calc", "{prop1}");
+    assertEquals("10", testToken.getEvaluatedProperty(variableResolver, "calc"));
+
+    testToken.setProperty("prop1", "20");
+    assertEquals("20", testToken.getEvaluatedProperty(variableResolver, "calc"));
+
+    testToken.setProperty("calc", "{plainStr1}");
+    assertEquals("justAString", testToken.getEvaluatedProperty(variableResolver, "calc"));
+  }
+
+  @Test
+  public void testEvaluatedDefaultFollowsTokenTypeChanges() {
+    List<TokenProperty> changed = new ArrayList<>(propsList);
+    changed.add(new TokenProperty("calc", null, true, false, false, "{prop1}"));
+    MapTool.getCampaign().putTokenType("testType", changed);
+    assertEquals("10", testToken.getEvaluatedProperty(variableResolver, "calc"));
+
+    changed = new ArrayList<>(changed);
+    changed.set(0, new TokenProperty("prop1", null, true, false, false, "30"));
+    MapTool.getCampaign().putTokenType("testType", changed);
+    assertEquals("30", testToken.getEvaluatedProperty(variableResolver, "calc"));
+  }
+
+  @Test
+  public void testPropertyFoundAfterChangesInPlace() {
+    TokenProperty prop1 = propsList.get(0);
+    assertSame(prop1, MapTool.getCampaign().getTokenProperty("testType", "PROP1"));
+
+    prop1.setName("renamed");
+    assertSame(prop1, MapTool.getCampaign().getTokenProperty("testType", "renamed"));
+    assertNull(MapTool.getCampaign().getTokenProperty("testType", "prop1"));
+
+    var replacement = new TokenProperty("replacement", null, true, false, false, "30");
+    propsList.set(0, replacement);
+    assertSame(replacement, MapTool.getCampaign().getTokenProperty("testType", "replacement"));
+    assertNull(MapTool.getCampaign().getTokenProperty("testType", "renamed"));
+  }
+
+  @Test
+  public void testEvaluatedJsonCanBeModified() {
+    var json = (JsonObject) testToken.getEvaluatedProperty(variableResolver, "jsonObj1");
+    json.addProperty("added", 1);
+    var again = (JsonObject) testToken.getEvaluatedProperty(variableResolver, "jsonObj1");
+    assertFalse(again.has("added"));
+    assertEquals(5, again.get("sampleKey").getAsInt());
+  }
 }
@@ -0,0 +1,263 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.List;
+import net.rptools.maptool.model.Zone.Layer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ZoneTest {
+  private Zone zone;
+
+  @BeforeEach
+  void setUp() {
+    zone = new Zone();
+    Grid grid = new SquareGrid();
+    grid.setSize(50);
+    zone.setGrid(grid);
+  }
+
+  private Token createToken(String name, int x, int y) {
+    Token token = new Token();
+    token.setName(name);
+    token.setX(x);
+    token.setY(y);
+    return token;
+  }
+
+  @Test
+  @DisplayName("Tokens are found by the area their footprint intersects")
+  void testGetTokensIntersecting() {
+    Token near = createToken("near", 0, 0);
+    Token far = createToken("far", 5000, 5000);
+    zone.putToken(near);
+    zone.putToken(far);
+
+    var found = zone.getTokensIntersecting(new Rectangle(-10, -10, 100, 100), null);
+    assertTrue(found.contains(near));
+    assertFalse(found.contains(far));
+
+    found = zone.getTokensIntersecting(new Rectangle(4990, 4990, 100, 100), null);
+    assertFalse(found.contains(near));
+    assertTrue(found.contains(far));
+  }
+
+  @Test
+  @DisplayName("The spatial index follows moves, layer changes and removals")
+  void testSpatialIndexUpdates() {
+    Token token = createToken("mover", 0, 0);
+    zone.putToken(token);
+    Rectangle origin = new Rectangle(-10, -10, 100, 100);
+    Rectangle destination = new Rectangle(2990, 2990, 100, 100);
+
+    token.setX(3000);
+    token.setY(3000);
+    zone.putToken(token);
+    assertFalse(zone.getTokensIntersecting(origin, null).contains(token));
+    assertTrue(zone.getTokensIntersecting(destination, null).contains(token));
+
+    token.setLayer(Layer.GM);
+    zone.putToken(token);
+    assertFalse(zone.getTokensIntersecting(destination, Layer.TOKEN).contains(token));
+    assertTrue(zone.getTokensIntersecting(destination, Layer.GM).contains(token));
+
+    zone.removeToken(token.getId());
+    assertTrue(zone.getTokensIntersecting(destination, null).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Tokens within a radius are found by distance to their footprint")
+  void testGetTokensWithin() {
+    Token adjacent = createToken("adjacent", 100, 0);
+    Token diagonal = createToken("diagonal", 400, 400);
+    zone.putToken(adjacent);
+    zone.putToken(diagonal);
+
+    var found = zone.getTokensWithin(new ZonePoint(0, 0), 150);
+    assertTrue(found.contains(adjacent));
+    assertFalse(found.contains(diagonal));
+
+    found = zone.getTokensWithin(new ZonePoint(0, 0), 600);
+    assertTrue(found.contains(adjacent));
+    assertTrue(found.contains(diagonal));
+  }
+
+  @Test
+  @DisplayName("Tokens are found by name and GM name, ignoring case, after renames and removals")
+  void testGetTokenByName() {
+    Token token = createToken("Goblin", 0, 0);
+    token.setGMName("Boss");
+    zone.putToken(token);
+
+    assertSame(token, zone.getTokenByName("gOBLIN"));
+    assertSame(token, zone.getTokenByGMName("boss"));
+    assertSame(token, zone.resolveToken("BOSS"));
+    assertNull(zone.getTokenByName("Orc"));
+
+    token.setName("Orc");
+    zone.putToken(token);
+    assertNull(zone.getTokenByName("Goblin"));
+    assertSame(token, zone.getTokenByName("orc"));
+
+    zone.removeToken(token.getId());
+    assertNull(zone.getTokenByName("Orc"));
+    assertNull(zone.getTokenByGMName("Boss"));
+  }
+
+  @Test
+  @DisplayName("Layer views stay in z-order as tokens are reordered and change layers")
+  void testTokensOnLayer() {
+    Token bottom = createToken("bottom", 0, 0);
+    Token top = createToken("top", 0, 0);
+    Token object = createToken("object", 0, 0);
+    bottom.setZOrder(1);
+    top.setZOrder(2);
+    object.setLayer(Layer.OBJECT);
+    zone.putToken(top);
+    zone.putToken(bottom);
+    zone.putToken(object);
+
+    assertEquals(List.of(bottom, top), zone.getTokensOnLayer(Layer.TOKEN));
+    assertEquals(List.of(object), zone.getTokensOnLayer(Layer.OBJECT));
+    assertSame(zone.getTokensOnLayer(Layer.TOKEN), zone.getTokensOnLayer(Layer.TOKEN));
+
+    bottom.setZOrder(3);
+    zone.putToken(bottom);
+    assertEquals(List.of(top, bottom), zone.getTokensOnLayer(Layer.TOKEN));
+
+    top.setLayer(Layer.OBJECT);
+    zone.tokenChanged(top);
+    assertEquals(List.of(bottom), zone.getTokensOnLayer(Layer.TOKEN));
+    assertEquals(List.of(object, top), zone.getTokensForLayers(l -> l == Layer.OBJECT));
+    assertEquals(List.of(object, top, bottom), zone.getAllTokens());
+  }
+
+  @Test
+  @DisplayName("A token in the middle keeps the list sorted when its z-order changes in place")
+  void testZOrderChangedInPlace() {
+    List<Token> tokens = new ArrayList<>();
+    for (int z = 10; z <= 50; z += 10) {
+      Token token = createToken("z" + z, 0, 0);
+      token.setZOrder(z);
+      zone.putToken(token);
+      tokens.add(token);
+    }
+    Token middle = tokens.get(2);
+
+    middle.setZOrder(45);
+    zone.tokenChanged(middle);
+    assertEquals(
+        List.of(tokens.get(0), tokens.get(1), tokens.get(3), middle, tokens.get(4)),
+        zone.getAllTokens());
+
+    middle.setZOrder(5);
+    zone.putToken(middle);
+    assertEquals(
+        List.of(middle, tokens.get(0), tokens.get(1), tokens.get(3), tokens.get(4)),
+        zone.getAllTokens());
+
+    // Later binary searches still find their place.
+    Token late = createToken("z35", 0, 0);
+    late.setZOrder(35);
+    zone.putToken(late);
+    assertEquals(
+        List.of(middle, tokens.get(0), tokens.get(1), late, tokens.get(3), tokens.get(4)),
+        zone.getAllTokens());
+  }
+
+  @Test
+  @DisplayName("The terrain cost field follows terrain tokens and old fields stay unchanged")
+  void testTerrainCostField() {
+    Token swamp = createToken("swamp", 0, 0);
+    swamp.setTerrainModifierOperation(Token.TerrainModifierOperation.MULTIPLY);
+    swamp.setTerrainModifier(2);
+    Token mud = createToken("mud", 0, 0);
+    mud.setTerrainModifierOperation(Token.TerrainModifierOperation.MULTIPLY);
+    mud.setTerrainModifier(1.5);
+    Token wall = createToken("wall", 100, 0);
+    wall.setTerrainModifierOperation(Token.TerrainModifierOperation.BLOCK);
+    zone.putToken(swamp);
+    zone.putToken(mud);
+    zone.putToken(wall);
+
+    int multiply = TerrainCostField.bit(Token.TerrainModifierOperation.MULTIPLY);
+    int block = TerrainCostField.bit(Token.TerrainModifierOperation.BLOCK);
+    TerrainCostField before = zone.getTerrainCostField();
+    assertEquals(multiply, before.getOperations(0, 0));
+    assertEquals(3.5, before.getMultiplier(0, 0), 1e-9);
+    assertEquals(block, before.getOperations(2, 0));
+    assertEquals(0, before.getOperations(1, 0));
+    assertSame(before, zone.getTerrainCostField());
+
+    mud.setX(5000);
+    zone.putToken(mud);
+    zone.removeToken(wall.getId());
+    TerrainCostField after = zone.getTerrainCostField();
+    assertEquals(2, after.getMultiplier(0, 0), 1e-9);
+    assertEquals(1.5, after.getMultiplier(100, 0), 1e-9);
+    assertEquals(0, after.getOperations(2, 0));
+
+    assertEquals(3.5, before.getMultiplier(0, 0), 1e-9);
+    assertEquals(block, before.getOperations(2, 0));
+  }
+
+  @Test
+  @DisplayName("The topology version follows tokens that carry mask topology")
+  void testTopologyVersionFollowsTokenTopology() {
+    Token plain = createToken("plain", 0, 0);
+    Token door = createToken("door", 0, 0);
+    door.setMaskTopology(Zone.TopologyType.MBL, new Area(new Rectangle(0, 0, 50, 10)));
+
+    long version = zone.getTopologyVersion();
+    zone.putToken(plain);
+    plain.setX(100);
+    zone.tokenChanged(plain);
+    assertEquals(version, zone.getTopologyVersion());
+
+    zone.putToken(door);
+    assertNotEquals(version, version = zone.getTopologyVersion());
+    door.setX(100);
+    zone.putToken(door);
+    assertNotEquals(version, version = zone.getTopologyVersion());
+    door.setY(100);
+    zone.tokenChanged(door);
+    assertNotEquals(version, version = zone.getTopologyVersion());
+    zone.removeToken(door.getId());
+    assertNotEquals(version, version = zone.getTopologyVersion());
+
+    zone.putToken(door);
+    version = zone.getTopologyVersion();
+    zone.removeTokens(List.of(plain.getId(), door.getId()));
+    assertNotEquals(version, zone.getTopologyVersion());
+  }
+
+  @Test
+  @DisplayName("The version changes with the zone and is kept by exact copies")
+  void testVersion() {
+    long initial = zone.getVersion();
+    zone.putToken(createToken("token", 0, 0));
+    assertNotEquals(initial, zone.getVersion());
+
+    assertEquals(zone.getVersion(), new Zone(zone, true).getVersion());
+    assertNotEquals(zone.getVersion(), new Zone(zone).getVersion());
+  }
+}
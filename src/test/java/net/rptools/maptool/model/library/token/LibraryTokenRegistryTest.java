@@ -0,0 +1,124 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model.library.token;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.MacroButtonProperties;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.library.token.LibraryTokenRegistry.LibraryTokenEntry;
+import net.rptools.maptool.model.zones.TokensAdded;
+import net.rptools.maptool.model.zones.TokensChanged;
+import net.rptools.maptool.model.zones.TokensRemoved;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LibraryTokenRegistryTest {
+  private Campaign campaign;
+  private Zone zone;
+  private LibraryTokenRegistry registry;
+
+  private static Token token(String name, String... macros) {
+    Token token = new Token();
+    token.setName(name);
+    for (int i = 0; i < macros.length; i++) {
+      var macro = new MacroButtonProperties(i);
+      macro.setLabel(macros[i]);
+      token.saveMacro(macro);
+    }
+    return token;
+  }
+
+  private List<Token> libraryTokens(String name) {
+    return registry.getLibraryTokens(name).stream().map(LibraryTokenEntry::token).toList();
+  }
+
+  @BeforeEach
+  void setUp() {
+    campaign = new Campaign();
+    zone = new Zone();
+    campaign.putZone(zone);
+    registry = new LibraryTokenRegistry(() -> campaign);
+  }
+
+  @Test
+  @DisplayName("Library tokens are found by name ignoring case")
+  void testGetLibraryTokens() {
+    Token lib = token("Lib:Test");
+    zone.putToken(lib);
+    zone.putToken(token("Test"));
+
+    assertEquals(List.of(lib), libraryTokens("lib:test"));
+    assertSame(zone, registry.getLibraryTokens("LIB:TEST").get(0).zone());
+    assertEquals(List.of(), libraryTokens("lib:other"));
+    assertEquals(List.of(), libraryTokens("Test"));
+  }
+
+  @Test
+  @DisplayName("Token events keep the registry up to date")
+  void testTokenEvents() {
+    assertEquals(List.of(), libraryTokens("lib:test"));
+
+    Token lib = token("Lib:Test", "onTokenMove");
+    zone.putToken(lib);
+    registry.tokensAdded(new TokensAdded(zone, List.of(lib)));
+    assertEquals(List.of(lib), libraryTokens("lib:test"));
+    assertEquals(List.of(lib), registry.getTokensWithMacro("onTokenMove"));
+
+    lib.setName("Lib:Renamed");
+    zone.putToken(lib);
+    registry.tokensChanged(new TokensChanged(zone, List.of(lib)));
+    assertEquals(List.of(), libraryTokens("lib:test"));
+    assertEquals(List.of(lib), libraryTokens("lib:renamed"));
+
+    lib.deleteMacro(0);
+    zone.putToken(lib);
+    registry.tokensChanged(new TokensChanged(zone, List.of(lib)));
+    assertEquals(List.of(), registry.getTokensWithMacro("onTokenMove"));
+
+    zone.removeToken(lib.getId());
+    registry.tokensRemoved(new TokensRemoved(zone, List.of(lib)));
+    assertEquals(List.of(), libraryTokens("lib:renamed"));
+  }
+
+  @Test
+  @DisplayName("Tokens with a callback macro are returned in map order")
+  void testGetTokensWithMacro() {
+    Zone second = new Zone();
+    campaign.putZone(second);
+    Token first = token("Lib:First", "onCampaignLoad");
+    Token last = token("Lib:Last", "onCampaignLoad", "onTokenMove");
+    second.putToken(last);
+    zone.putToken(first);
+    zone.putToken(token("Lib:None", "other"));
+
+    assertEquals(List.of(first, last), registry.getTokensWithMacro("onCampaignLoad"));
+    assertEquals(List.of(last), registry.getTokensWithMacro("onTokenMove"));
+  }
+
+  @Test
+  @DisplayName("The registry is rebuilt when the campaign is replaced")
+  void testCampaignReplaced() {
+    zone.putToken(token("Lib:Test"));
+    assertEquals(1, libraryTokens("lib:test").size());
+
+    campaign = new Campaign();
+    assertEquals(List.of(), libraryTokens("lib:test"));
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.util.CampaignArchive.ZoneFormat;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class CampaignArchiveTest {
+  private static PersistedCampaign campaignOf(String... zoneNames) {
+    var campaign = new Campaign();
+    for (String name : zoneNames) {
+      var zone = new Zone();
+      zone.setGrid(new SquareGrid());
+      zone.setName(name);
+      campaign.putZone(zone);
+    }
+    var persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = campaign;
+    return persistedCampaign;
+  }
+
+  private static int write(PersistedCampaign persistedCampaign, File file, File previous)
+      throws IOException {
+    return write(persistedCampaign, file, previous, ZoneFormat.PROTOBUF);
+  }
+
+  private static int write(
+      PersistedCampaign persistedCampaign, File file, File previous, ZoneFormat zoneFormat)
+      throws IOException {
+    try (var archive = new CampaignArchive.Writer(file, previous, zoneFormat)) {
+      archive.putCampaign(persistedCampaign, Map.of(PersistenceUtil.PROP_VERSION, "1.0"));
+      return archive.getZonesCopied();
+    }
+  }
+
+  private static List<String> readZoneNames(File file) throws IOException {
+    try (var pakFile = new PackedFile(file)) {
+      assertTrue(CampaignArchive.isZoned(pakFile));
+      assertEquals("1.0", pakFile.getProperty(PersistenceUtil.PROP_VERSION));
+      return CampaignArchive.read(pakFile, "1.15.0")
+          .campaign
+          .getZones()
+          .stream()
+          .map(Zone::getName)
+          .toList();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ZoneFormat.class)
+  @DisplayName("Zones are read back in campaign order")
+  void testRoundTrip(ZoneFormat zoneFormat, @TempDir File dir) throws IOException {
+    var file = new File(dir, "first.cmpgn");
+    assertEquals(0, write(campaignOf("one", "two", "three"), file, null, zoneFormat));
+
+    assertEquals(List.of("one", "two", "three"), readZoneNames(file));
+  }
+
+  @Test
+  @DisplayName("Zones decoded in parallel keep their order, ids and content")
+  void testParallelRoundTrip(@TempDir File dir) throws IOException {
+    int zoneCount = Runtime.getRuntime().availableProcessors() * 2 + 3;
+    var names = new String[zoneCount];
+    for (int i = 0; i < zoneCount; i++) {
+      names[i] = "zone " + i;
+    }
+    var persistedCampaign = campaignOf(names);
+    List<Zone> zones = persistedCampaign.campaign.getZones();
+    for (Zone zone : zones) {
+      var token = new Token();
+      token.setName("token of " + zone.getName());
+      zone.putToken(token);
+    }
+    var file = new File(dir, "parallel.cmpgn");
+    write(persistedCampaign, file, null);
+
+    Zone first = zones.get(zoneCount / 2);
+    var campaign = new Campaign();
+    try (var pakFile = new PackedFile(file)) {
+      CampaignArchive.readZones(pakFile, "1.15.0", first.getId()).putZones(campaign);
+    }
+
+    List<Zone> read = campaign.getZones();
+    assertEquals(zoneCount, read.size());
+    for (int i = 0; i < zoneCount; i++) {
+      Zone expected = zones.get(i);
+      Zone actual = read.get(i);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getName(), actual.getName());
+      assertEquals(1, actual.getAllTokens().size());
+      assertEquals(expected.getAllTokens().get(0).getId(), actual.getAllTokens().get(0).getId());
+      assertEquals("token of " + expected.getName(), actual.getAllTokens().get(0).getName());
+    }
+  }
+
+  @Test
+  @DisplayName("Zones of the previous file are rewritten when the zone format changes")
+  void testFormatChange(@TempDir File dir) throws IOException {
+    var persistedCampaign = campaignOf("one", "two");
+    var first = new File(dir, "first.cmpgn");
+    write(persistedCampaign, first, null, ZoneFormat.XML);
+
+    var second = new File(dir, "second.cmpgn");
+    assertEquals(0, write(persistedCampaign, second, first, ZoneFormat.PROTOBUF));
+    assertEquals(List.of("one", "two"), readZoneNames(second));
+  }
+
+  @Test
+  @DisplayName("Only the zones changed since the previous save are written again")
+  void testUnchangedZonesAreCopied(@TempDir File dir) throws IOException {
+    var persistedCampaign = campaignOf("one", "two", "three");
+    var first = new File(dir, "first.cmpgn");
+    write(persistedCampaign, first, null);
+
+    persistedCampaign.campaign.getZones().get(1).setName("changed");
+    var second = new File(dir, "second.cmpgn");
+    assertEquals(2, write(persistedCampaign, second, first));
+    assertEquals(List.of("one", "changed", "three"), readZoneNames(second));
+
+    var third = new File(dir, "third.cmpgn");
+    assertEquals(3, write(persistedCampaign, third, second));
+    assertEquals(List.of("one", "changed", "three"), readZoneNames(third));
+  }
+
+  @Test
+  @DisplayName("A zone changed without its version changing is still written again")
+  void testChangeOutsideOfZoneMethodsIsWritten(@TempDir File dir) throws IOException {
+    var persistedCampaign = campaignOf("one", "two");
+    var first = new File(dir, "first.cmpgn");
+    write(persistedCampaign, first, null);
+
+    var token = new Token();
+    token.setName("token");
+    Zone zone = persistedCampaign.campaign.getZones().get(0);
+    zone.putToken(token);
+    var second = new File(dir, "second.cmpgn");
+    write(persistedCampaign, second, first);
+
+    long version = zone.getVersion();
+    token.setName("renamed");
+    assertEquals(version, zone.getVersion());
+    var third = new File(dir, "third.cmpgn");
+    assertEquals(1, write(persistedCampaign, third, second));
+    try (var pakFile = new PackedFile(third)) {
+      Zone read = CampaignArchive.read(pakFile, "1.15.0").campaign.getZones().get(0);
+      assertEquals("renamed", read.getAllTokens().get(0).getName());
+    }
+  }
+
+  @Test
+  @DisplayName("Grid changes count as changes to the zone")
+  void testGridChangeChangesZoneVersion() {
+    Zone zone = campaignOf("one").campaign.getZones().get(0);
+    long version = zone.getVersion();
+    zone.getGrid().setSize(zone.getGrid().getSize() + 10);
+    assertNotEquals(version, version = zone.getVersion());
+    zone.getGrid().setOffset(5, 5);
+    assertNotEquals(version, zone.getVersion());
+  }
+}
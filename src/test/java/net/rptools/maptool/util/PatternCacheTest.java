@@ -0,0 +1,51 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PatternCacheTest {
+  @Test
+  @DisplayName("Patterns are compiled once per expression and flags")
+  void testCompile() {
+    Pattern pattern = PatternCache.compile("^a+b$");
+    long hits = PatternCache.stats().hitCount();
+
+    assertSame(pattern, PatternCache.compile("^a+b$"));
+    assertEquals(hits + 1, PatternCache.stats().hitCount());
+    Pattern insensitive = PatternCache.compile("^a+b$", Pattern.CASE_INSENSITIVE);
+    assertNotSame(pattern, insensitive);
+    assertEquals(Pattern.CASE_INSENSITIVE, insensitive.flags());
+  }
+
+  @Test
+  @DisplayName("Matching behaves like String.matches")
+  void testMatches() {
+    assertTrue(PatternCache.matches("aaab", "a+b"));
+    assertFalse(PatternCache.matches("aaabc", "a+b"));
+  }
+
+  @Test
+  @DisplayName("Invalid expressions throw PatternSyntaxException every time")
+  void testInvalid() {
+    assertThrows(PatternSyntaxException.class, () -> PatternCache.compile("(unclosed"));
+    assertThrows(PatternSyntaxException.class, () -> PatternCache.compile("(unclosed"));
+  }
+}